@@ -1,12 +1,15 @@
 package it.unive.lisa;
 
 import it.unive.lisa.analysis.AbstractState;
+import it.unive.lisa.analysis.CFGWithAnalysisResults;
 import it.unive.lisa.checks.semantic.SemanticCheck;
 import it.unive.lisa.checks.syntactic.SyntacticCheck;
 import it.unive.lisa.checks.warnings.Warning;
 import it.unive.lisa.interprocedural.InterproceduralAnalysis;
 import it.unive.lisa.interprocedural.callgraph.CallGraph;
+import it.unive.lisa.interprocedural.impl.ContextBasedAnalysis;
 import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.FixpointStrategy;
 import it.unive.lisa.program.cfg.statement.Statement;
 import java.nio.file.Paths;
 import java.util.Collection;
@@ -73,6 +76,41 @@ public class LiSAConfiguration {
 	 */
 	private boolean jsonOutput;
 
+	/**
+	 * The maximum number of contexts each cfg can be analyzed in by
+	 * {@link ContextBasedAnalysis}, or {@code 0} if there is no limit
+	 */
+	private int contextBudget;
+
+	/**
+	 * The maximum share of the analysis time that {@link ContextBasedAnalysis}
+	 * can spend on a single cfg, or {@code 0} if there is no limit
+	 */
+	private double contextTimeShare;
+
+	/**
+	 * Whether or not variables that are no longer live should be removed from
+	 * the abstract states computed during fixpoints
+	 */
+	private boolean pruneDeadVariables;
+
+	/**
+	 * The maximum number of states before statements that each
+	 * {@link CFGWithAnalysisResults} caches, or {@code 0} if there is no limit
+	 */
+	private int cachedStatesLimit;
+
+	/**
+	 * Whether or not the results of expressions nested within statements
+	 * should be dropped once the fixpoint over their cfg converged
+	 */
+	private boolean dropInnerResults;
+
+	/**
+	 * The strategy used to compute the fixpoint over each cfg
+	 */
+	private FixpointStrategy fixpointStrategy = FixpointStrategy.WORKLIST;
+
 	/**
 	 * The workdir that LiSA should use as root for all generated files (log
 	 * files excluded, use the logging configuration for controlling where those
@@ -93,6 +131,11 @@ public class LiSAConfiguration {
 	 * <li>the type inference will not be dumped</li>
 	 * <li>the results of the analysis will not be dumped</li>
 	 * <li>the json report will not be dumped</li>
+	 * <li>cfgs can be analyzed in any number of contexts</li>
+	 * <li>dead variables are kept in the abstract states</li>
+	 * <li>analysis results cache any number of derived states</li>
+	 * <li>analysis results of nested expressions are retained</li>
+	 * <li>fixpoints are computed with {@link FixpointStrategy#WORKLIST}</li>
 	 * </ul>
 	 */
 	public LiSAConfiguration() {
@@ -290,6 +333,112 @@ public class LiSAConfiguration {
 		return this;
 	}
 
+	/**
+	 * Sets the maximum number of contexts that each cfg can be analyzed in,
+	 * when the interprocedural analysis is a {@link ContextBasedAnalysis}.
+	 * Cfgs exceeding the budget are demoted: further calls to them are merged
+	 * into a single context-insensitive result (see
+	 * {@link ContextBasedAnalysis#setContextBudget(int, double)}).
+	 * 
+	 * @param contextBudget the maximum number of contexts for each cfg, or
+	 *                          {@code 0} for no limit
+	 * 
+	 * @return the current (modified) configuration
+	 */
+	public LiSAConfiguration setContextBudget(int contextBudget) {
+		this.contextBudget = contextBudget;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum share of the analysis time, between {@code 0} and
+	 * {@code 1}, that can be spent on the fixpoints of a single cfg when the
+	 * interprocedural analysis is a {@link ContextBasedAnalysis}. Cfgs
+	 * exceeding the share are demoted: further calls to them are merged into a
+	 * single context-insensitive result (see
+	 * {@link ContextBasedAnalysis#setContextBudget(int, double)}).
+	 * 
+	 * @param contextTimeShare the maximum share of the analysis time for each
+	 *                             cfg, or {@code 0} for no limit
+	 * 
+	 * @return the current (modified) configuration
+	 */
+	public LiSAConfiguration setContextTimeShare(double contextTimeShare) {
+		this.contextTimeShare = contextTimeShare;
+		return this;
+	}
+
+	/**
+	 * Sets whether or not variables that are no longer live should be removed
+	 * from the abstract states computed during the fixpoint over each cfg (see
+	 * {@link CFG#setPruneDeadVariables(boolean)}). Pruning shrinks the states
+	 * and speeds up their comparisons, but dead variables will not appear in
+	 * the analysis results.
+	 * 
+	 * @param pruneDeadVariables whether or not dead variables should be
+	 *                               pruned
+	 * 
+	 * @return the current (modified) configuration
+	 */
+	public LiSAConfiguration setPruneDeadVariables(boolean pruneDeadVariables) {
+		this.pruneDeadVariables = pruneDeadVariables;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of states before statements that each
+	 * {@link CFGWithAnalysisResults} caches after computing them (see
+	 * {@link CFG#setCachedStatesLimit(int)}). Bounding the
+	 * caches limits the memory used by analysis results, at the price of
+	 * recomputing the evicted states when they are requested again.
+	 * 
+	 * @param cachedStatesLimit the maximum number of cached states for each
+	 *                              result, or {@code 0} for no limit
+	 * 
+	 * @return the current (modified) configuration
+	 */
+	public LiSAConfiguration setCachedStatesLimit(int cachedStatesLimit) {
+		this.cachedStatesLimit = cachedStatesLimit;
+		return this;
+	}
+
+	/**
+	 * Sets whether or not the analysis results of expressions nested within
+	 * statements should be dropped once the fixpoint over their cfg converged
+	 * (see {@link CFG#setInnerResultsFilter(java.util.function.Predicate)}).
+	 * If enabled, only the results of the statements that are nodes of a cfg
+	 * are retained, together with the ones of the nested expressions that are
+	 * needed by the registered semantic checks (see
+	 * {@link SemanticCheck#needsResultsOf(it.unive.lisa.program.cfg.statement.Expression)}).
+	 * Since checks retain all results unless they state otherwise, this
+	 * setting saves memory only when the registered checks opt out. Type
+	 * inference is not affected by this setting.
+	 * 
+	 * @param dropInnerResults whether or not the results of nested expressions
+	 *                             should be dropped
+	 * 
+	 * @return the current (modified) configuration
+	 */
+	public LiSAConfiguration setDropInnerResults(boolean dropInnerResults) {
+		this.dropInnerResults = dropInnerResults;
+		return this;
+	}
+
+	/**
+	 * Sets the {@link FixpointStrategy} used to compute the fixpoint over each
+	 * cfg during the analysis (see
+	 * {@link CFG#setFixpointStrategy(FixpointStrategy)}). Type inference always
+	 * uses {@link FixpointStrategy#WORKLIST}.
+	 * 
+	 * @param fixpointStrategy the strategy to use
+	 * 
+	 * @return the current (modified) configuration
+	 */
+	public LiSAConfiguration setFixpointStrategy(FixpointStrategy fixpointStrategy) {
+		this.fixpointStrategy = fixpointStrategy;
+		return this;
+	}
+
 	/**
 	 * Sets the working directory for this instance of LiSA, that is, the
 	 * directory files will be created, if any. If files need to be created and
@@ -405,6 +554,66 @@ public class LiSAConfiguration {
 		return jsonOutput;
 	}
 
+	/**
+	 * Yields the maximum number of contexts that each cfg can be analyzed in.
+	 * 
+	 * @return the budget, or {@code 0} if there is no limit
+	 */
+	public int getContextBudget() {
+		return contextBudget;
+	}
+
+	/**
+	 * Yields the maximum share of the analysis time that can be spent on the
+	 * fixpoints of a single cfg.
+	 * 
+	 * @return the share, or {@code 0} if there is no limit
+	 */
+	public double getContextTimeShare() {
+		return contextTimeShare;
+	}
+
+	/**
+	 * Yields whether or not variables that are no longer live should be
+	 * removed from the abstract states computed during fixpoints.
+	 * 
+	 * @return {@code true} if that condition holds
+	 */
+	public boolean isPruneDeadVariables() {
+		return pruneDeadVariables;
+	}
+
+	/**
+	 * Yields the maximum number of states before statements that each
+	 * {@link CFGWithAnalysisResults} caches.
+	 * 
+	 * @return the limit, or {@code 0} if there is no limit
+	 */
+	public int getCachedStatesLimit() {
+		return cachedStatesLimit;
+	}
+
+	/**
+	 * Yields whether or not the analysis results of expressions nested within
+	 * statements should be dropped once the fixpoint over their cfg
+	 * converged.
+	 * 
+	 * @return {@code true} if that condition holds
+	 */
+	public boolean isDropInnerResults() {
+		return dropInnerResults;
+	}
+
+	/**
+	 * Yields the {@link FixpointStrategy} used to compute the fixpoint over
+	 * each cfg during the analysis.
+	 * 
+	 * @return the strategy
+	 */
+	public FixpointStrategy getFixpointStrategy() {
+		return fixpointStrategy;
+	}
+
 	/**
 	 * Yields the working directory where LiSA will dump all of its outputs.
 	 * 
@@ -418,12 +627,18 @@ public class LiSAConfiguration {
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
+		result = prime * result + cachedStatesLimit;
 		result = prime * result + ((callGraph == null) ? 0 : callGraph.hashCode());
+		result = prime * result + contextBudget;
+		result = prime * result + Double.hashCode(contextTimeShare);
+		result = prime * result + (dropInnerResults ? 1231 : 1237);
 		result = prime * result + (dumpAnalysis ? 1231 : 1237);
 		result = prime * result + (dumpCFGs ? 1231 : 1237);
 		result = prime * result + (dumpTypeInference ? 1231 : 1237);
+		result = prime * result + ((fixpointStrategy == null) ? 0 : fixpointStrategy.hashCode());
 		result = prime * result + (inferTypes ? 1231 : 1237);
 		result = prime * result + (jsonOutput ? 1231 : 1237);
+		result = prime * result + (pruneDeadVariables ? 1231 : 1237);
 		result = prime * result + ((state == null) ? 0 : state.hashCode());
 		result = prime * result + ((syntacticChecks == null) ? 0 : syntacticChecks.hashCode());
 		result = prime * result + ((semanticChecks == null) ? 0 : semanticChecks.hashCode());
@@ -440,21 +655,33 @@ public class LiSAConfiguration {
 		if (getClass() != obj.getClass())
 			return false;
 		LiSAConfiguration other = (LiSAConfiguration) obj;
+		if (cachedStatesLimit != other.cachedStatesLimit)
+			return false;
 		if (callGraph == null) {
 			if (other.callGraph != null)
 				return false;
 		} else if (!callGraph.equals(other.callGraph))
 			return false;
+		if (contextBudget != other.contextBudget)
+			return false;
+		if (Double.compare(contextTimeShare, other.contextTimeShare) != 0)
+			return false;
+		if (dropInnerResults != other.dropInnerResults)
+			return false;
 		if (dumpAnalysis != other.dumpAnalysis)
 			return false;
 		if (dumpCFGs != other.dumpCFGs)
 			return false;
 		if (dumpTypeInference != other.dumpTypeInference)
 			return false;
+		if (fixpointStrategy != other.fixpointStrategy)
+			return false;
 		if (inferTypes != other.inferTypes)
 			return false;
 		if (jsonOutput != other.jsonOutput)
 			return false;
+		if (pruneDeadVariables != other.pruneDeadVariables)
+			return false;
 		if (state == null) {
 			if (other.state != null)
 				return false;
@@ -487,6 +714,12 @@ public class LiSAConfiguration {
 				"\n  dump inferred types: " + dumpTypeInference +
 				"\n  dump analysis results: " + dumpAnalysis +
 				"\n  dump json report: " + jsonOutput +
+				"\n  context budget: " + (contextBudget == 0 ? "unlimited" : contextBudget) +
+				"\n  context time share: " + (contextTimeShare == 0 ? "unlimited" : contextTimeShare) +
+				"\n  prune dead variables: " + pruneDeadVariables +
+				"\n  cached states per result: " + (cachedStatesLimit == 0 ? "unlimited" : cachedStatesLimit) +
+				"\n  drop results of nested expressions: " + dropInnerResults +
+				"\n  fixpoint strategy: " + fixpointStrategy +
 				"\n  " + syntacticChecks.size() + " syntactic checks to execute"
 				+ (syntacticChecks.isEmpty() ? "" : ":");
 		for (SyntacticCheck check : syntacticChecks)
@@ -5,6 +5,7 @@ import static it.unive.lisa.LiSAFactory.getInstance;
 import it.unive.lisa.analysis.AbstractState;
 import it.unive.lisa.analysis.AnalysisState;
 import it.unive.lisa.analysis.CFGWithAnalysisResults;
+import it.unive.lisa.analysis.CFGWithAnalysisResults.CacheStatistics;
 import it.unive.lisa.analysis.SemanticException;
 import it.unive.lisa.analysis.SimpleAbstractState;
 import it.unive.lisa.analysis.heap.HeapDomain;
@@ -14,18 +15,21 @@ import it.unive.lisa.analysis.value.ValueDomain;
 import it.unive.lisa.caches.Caches;
 import it.unive.lisa.checks.ChecksExecutor;
 import it.unive.lisa.checks.semantic.CheckToolWithAnalysisResults;
+import it.unive.lisa.checks.semantic.SemanticCheck;
 import it.unive.lisa.checks.syntactic.CheckTool;
 import it.unive.lisa.checks.warnings.Warning;
 import it.unive.lisa.interprocedural.InterproceduralAnalysis;
 import it.unive.lisa.interprocedural.InterproceduralAnalysisException;
 import it.unive.lisa.interprocedural.callgraph.CallGraph;
 import it.unive.lisa.interprocedural.callgraph.CallGraphConstructionException;
+import it.unive.lisa.interprocedural.impl.ContextBasedAnalysis;
 import it.unive.lisa.logging.IterationLogger;
 import it.unive.lisa.logging.TimerLogger;
 import it.unive.lisa.program.Program;
 import it.unive.lisa.program.ProgramValidationException;
 import it.unive.lisa.program.SyntheticLocation;
 import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.FixpointStrategy;
 import it.unive.lisa.program.cfg.edge.Edge;
 import it.unive.lisa.program.cfg.statement.Expression;
 import it.unive.lisa.program.cfg.statement.Statement;
@@ -41,6 +45,7 @@ import java.util.Collection;
 import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -98,6 +103,12 @@ public class LiSARunner<A extends AbstractState<A, H, V>,
 		finalizeProgram(program);
 
 		Collection<CFG> allCFGs = program.getAllCFGs();
+		// each run owns its counters, even if it shares the program
+		CacheStatistics statistics = new CacheStatistics();
+		for (CFG cfg : allCFGs) {
+			cfg.setCachedStatesLimit(conf.getCachedStatesLimit());
+			cfg.setCacheStatistics(statistics);
+		}
 
 		if (conf.isDumpCFGs())
 			for (CFG cfg : IterationLogger.iterate(log, allCFGs, "Dumping input CFGs", "cfgs"))
@@ -118,17 +129,33 @@ public class LiSARunner<A extends AbstractState<A, H, V>,
 
 		try {
 			interproc.init(program, callGraph);
+			configure(interproc);
 		} catch (InterproceduralAnalysisException e) {
 			log.fatal("Exception while building the interprocedural analysis for the input program", e);
 			throw new AnalysisExecutionException(
 					"Exception while building the interprocedural analysis for the input program", e);
 		}
 
+		// type inference always uses the default strategy and needs all
+		// results and variables, while a previous run on the same program might
+		// have changed these settings
+		for (CFG cfg : allCFGs) {
+			cfg.setFixpointStrategy(FixpointStrategy.WORKLIST);
+			cfg.setInnerResultsFilter(null);
+			cfg.setPruneDeadVariables(false);
+		}
 		if (conf.isInferTypes())
 			inferTypes(fileManager, program, allCFGs);
 		else
 			log.warn("Type inference disabled: dynamic type information will not be available for following analysis");
 
+		Predicate<Statement> filter = conf.isDropInnerResults() ? innerResultsFilter(conf.getSemanticChecks()) : null;
+		for (CFG cfg : allCFGs) {
+			cfg.setFixpointStrategy(conf.getFixpointStrategy());
+			cfg.setInnerResultsFilter(filter);
+			cfg.setPruneDeadVariables(conf.isPruneDeadVariables());
+		}
+
 		if (state != null) {
 			analyze(allCFGs, fileManager);
 			Map<CFG, Collection<CFGWithAnalysisResults<A, H, V>>> results = new IdentityHashMap<>(allCFGs.size());
@@ -145,9 +172,18 @@ public class LiSARunner<A extends AbstractState<A, H, V>,
 		} else
 			log.warn("Skipping analysis execution since no abstract sate has been provided");
 
+		log.debug("Cached states of analysis results: " + statistics.getHits() + " hits, " + statistics.getMisses()
+				+ " misses");
 		return tool.getWarnings();
 	}
 
+	private void configure(InterproceduralAnalysis<?, ?, ?> analysis) {
+		if ((conf.getContextBudget() != 0 || conf.getContextTimeShare() != 0)
+				&& analysis instanceof ContextBasedAnalysis)
+			((ContextBasedAnalysis<?, ?, ?>) analysis).setContextBudget(conf.getContextBudget(),
+					conf.getContextTimeShare());
+	}
+
 	private void analyze(Collection<CFG> allCFGs, FileManager fileManager) {
 		A state = this.state.top();
 		TimerLogger.execAction(log, "Computing fixpoint over the whole program",
@@ -169,6 +205,19 @@ public class LiSARunner<A extends AbstractState<A, H, V>,
 			}
 	}
 
+	/**
+	 * Yields the filter selecting the inner expressions whose results are
+	 * needed by at least one of the given checks.
+	 * 
+	 * @param checks the semantic checks that will inspect the results
+	 * 
+	 * @return the filter
+	 */
+	private static Predicate<Statement> innerResultsFilter(Collection<SemanticCheck> checks) {
+		return st -> st instanceof Expression
+				&& checks.stream().anyMatch(check -> check.needsResultsOf((Expression) st));
+	}
+
 	@SuppressWarnings("unchecked")
 	private void inferTypes(FileManager fileManager, Program program, Collection<CFG> allCFGs) {
 		SimpleAbstractState<H, InferenceSystem<InferredTypes>> typesState;
@@ -181,6 +230,7 @@ public class LiSARunner<A extends AbstractState<A, H, V>,
 			typesState = getInstance(SimpleAbstractState.class, heap, types).top();
 			typesInterproc = getInstance(interproc.getClass());
 			typesInterproc.init(program, callGraph);
+			configure(typesInterproc);
 		} catch (AnalysisSetupException | InterproceduralAnalysisException e) {
 			throw new AnalysisExecutionException("Unable to initialize type inference", e);
 		}
@@ -254,6 +304,7 @@ public class LiSARunner<A extends AbstractState<A, H, V>,
 	}
 
 	private void finalizeProgram(Program program) {
+		Caches.clearAnalysisCaches();
 		// fill up the types cache by side effect on an external set
 		Caches.types().clear();
 		ExternalSet<Type> types = Caches.types().mkEmptySet();
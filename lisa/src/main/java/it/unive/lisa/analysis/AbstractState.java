@@ -5,6 +5,7 @@ import it.unive.lisa.analysis.heap.HeapDomain;
 import it.unive.lisa.analysis.value.ValueDomain;
 import it.unive.lisa.symbolic.SymbolicExpression;
 import it.unive.lisa.symbolic.value.Identifier;
+import it.unive.lisa.util.collections.Interner;
 
 /**
  * An abstract state of the analysis, composed by a heap state modeling the
@@ -36,4 +37,21 @@ public interface AbstractState<A extends AbstractState<A, H, V>, H extends HeapD
 	 * @return the value domain
 	 */
 	V getValueState();
+
+	/**
+	 * Yields the canonical instance of this abstract state, that is, the
+	 * instance equal to this one that is stored in the given {@link Interner}.
+	 * Interning states lets equal states share the same instance, so that
+	 * comparisons between them short-circuit on reference identity.
+	 * Implementers can override this method to also intern the components of
+	 * the state.
+	 * 
+	 * @param interner the interner storing the canonical instances
+	 * 
+	 * @return the canonical instance of this state
+	 */
+	@SuppressWarnings("unchecked")
+	default A intern(Interner<Object> interner) {
+		return (A) interner.intern(this);
+	}
 }
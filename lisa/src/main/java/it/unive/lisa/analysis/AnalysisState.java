@@ -9,6 +9,7 @@ import it.unive.lisa.analysis.value.ValueDomain;
 import it.unive.lisa.program.cfg.ProgramPoint;
 import it.unive.lisa.symbolic.SymbolicExpression;
 import it.unive.lisa.symbolic.value.Identifier;
+import it.unive.lisa.util.collections.Interner;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -90,6 +91,25 @@ public class AnalysisState<A extends AbstractState<A, H, V>, H extends HeapDomai
 		return computedExpressions;
 	}
 
+	/**
+	 * Yields the canonical instance of this analysis state, that is, the
+	 * instance equal to this one that is stored in the given {@link Interner}.
+	 * The embedded abstract state is interned as well through
+	 * {@link AbstractState#intern(Interner)}. Interning states lets equal
+	 * states share the same instance, so that comparisons between them
+	 * short-circuit on reference identity.
+	 * 
+	 * @param interner the interner storing the canonical instances
+	 * 
+	 * @return the canonical instance of this state
+	 */
+	public AnalysisState<A, H, V> intern(Interner<Object> interner) {
+		A canonical = state.intern(interner);
+		if (canonical == state)
+			return interner.intern(this);
+		return interner.intern(new AnalysisState<>(canonical, computedExpressions));
+	}
+
 	@Override
 	public AnalysisState<A, H, V> assign(Identifier id, SymbolicExpression value, ProgramPoint pp)
 			throws SemanticException {
@@ -5,17 +5,33 @@ import it.unive.lisa.analysis.value.ValueDomain;
 import it.unive.lisa.outputs.DotCFG;
 import it.unive.lisa.program.cfg.CFG;
 import it.unive.lisa.program.cfg.edge.Edge;
+import it.unive.lisa.program.cfg.statement.Expression;
 import it.unive.lisa.program.cfg.statement.Statement;
+import it.unive.lisa.util.collections.Interner;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 /**
  * A control flow graph, that has {@link Statement}s as nodes and {@link Edge}s
  * as edges. It also maps each statement (and its inner expressions) to the
  * result of a fixpoint computation, in the form of an {@link AnalysisState}
- * instance.
+ * instance. Results can be partially stored: in that case, a
+ * {@link ResultsProvider} is used to recompute the missing ones from the
+ * stored ones when they are requested, and the most recently recomputed ones
+ * are cached. Derived states
+ * (the entry and exit states of the cfg, and the states before statements
+ * with more than one predecessor) are computed lazily and cached, since they
+ * are requested repeatedly by interprocedural analyses and semantic checks.
  * 
  * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
  * 
@@ -29,16 +45,144 @@ import java.util.function.Function;
 public class CFGWithAnalysisResults<A extends AbstractState<A, H, V>, H extends HeapDomain<H>, V extends ValueDomain<V>>
 		extends CFG implements Lattice<CFGWithAnalysisResults<A, H, V>> {
 
+	/**
+	 * The number of results yielded by the {@link #provider} that are cached
+	 */
+	private static final int RECOMPUTED_CACHE_SIZE = 8;
+
+	/**
+	 * Counters of the derived states (see {@link #getEntryState()},
+	 * {@link #getExitState()} and {@link #getAnalysisStateBefore(Statement)})
+	 * that have been found in the caches of the results of an analysis, and
+	 * of the ones that had to be computed. An instance is meant to be shared
+	 * by all the results of a single analysis, through
+	 * {@link CFG#setCacheStatistics(CacheStatistics)}, so that concurrent
+	 * analyses do not mix their counters.
+	 * 
+	 * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+	 */
+	public static final class CacheStatistics {
+
+		private final AtomicLong hits = new AtomicLong();
+
+		private final AtomicLong misses = new AtomicLong();
+
+		/**
+		 * Yields the number of derived states that have been found in a
+		 * cache.
+		 * 
+		 * @return the number of hits
+		 */
+		public long getHits() {
+			return hits.get();
+		}
+
+		/**
+		 * Yields the number of derived states that have been computed.
+		 * 
+		 * @return the number of misses
+		 */
+		public long getMisses() {
+			return misses.get();
+		}
+	}
+
+	/**
+	 * An object that can compute the results that are not stored in a cfg,
+	 * starting from the ones that are stored. Providers do not hold any state:
+	 * they only know the structure of the cfg they have been built for, so
+	 * that the same provider can be used by all the results computed over
+	 * that cfg.
+	 * 
+	 * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+	 * 
+	 * @param <A> the type of {@link AbstractState} contained into the analysis
+	 *                state
+	 * @param <H> the type of {@link HeapDomain} contained into the computed
+	 *                abstract state
+	 * @param <V> the type of {@link ValueDomain} contained into the computed
+	 *                abstract state
+	 */
+	public interface ResultsProvider<A extends AbstractState<A, H, V>,
+			H extends HeapDomain<H>,
+			V extends ValueDomain<V>> {
+
+		/**
+		 * Computes the result of the given statement (or expression). Since
+		 * results are usually recomputed in groups (e.g., the ones of a whole
+		 * basic block), the returned map can contain the results of other
+		 * statements as well.
+		 * 
+		 * @param st      the statement whose result is requested
+		 * @param seeds   the stored states before the statements from which
+		 *                    the computation can start
+		 * @param results the stored results
+		 * 
+		 * @return a map containing the result of {@code st}, if any
+		 * 
+		 * @throws SemanticException if an error happens while computing the
+		 *                               results
+		 */
+		Map<Statement, AnalysisState<A, H, V>> compute(Statement st, StatementStore<A, H, V> seeds,
+				StatementStore<A, H, V> results) throws SemanticException;
+
+		/**
+		 * Yields a provider for the given cfg, that must be structurally
+		 * identical to the one this provider has been built for (see
+		 * {@link CFGWithAnalysisResults#relocate(CFG)}).
+		 * 
+		 * @param cfg the cfg
+		 * 
+		 * @return the provider for {@code cfg}
+		 */
+		ResultsProvider<A, H, V> relocate(CFG cfg);
+	}
+
 	/**
 	 * The map storing the analysis results
 	 */
 	private final StatementStore<A, H, V> results;
 
+	/**
+	 * The states before the statements from which the {@link #provider}
+	 * recomputes the results that are not in {@link #results}
+	 */
+	private final StatementStore<A, H, V> seeds;
+
+	/**
+	 * The provider of the results that are not in {@link #results}, or
+	 * {@code null} if all results are stored
+	 */
+	private final ResultsProvider<A, H, V> provider;
+
+	/**
+	 * The results most recently yielded by the {@link #provider}, with the
+	 * most recently used ones first
+	 */
+	private final LinkedList<Map<Statement, AnalysisState<A, H, V>>> recomputed = new LinkedList<>();
+
 	/**
 	 * The map storing the entry state of each entry point
 	 */
 	private final StatementStore<A, H, V> entryStates;
 
+	/**
+	 * The entry state of this cfg, lazily computed
+	 */
+	private volatile AnalysisState<A, H, V> cachedEntryState;
+
+	/**
+	 * The exit state of this cfg, lazily computed
+	 */
+	private volatile AnalysisState<A, H, V> cachedExitState;
+
+	/**
+	 * The states before statements having more than one predecessor, lazily
+	 * computed
+	 */
+	private final Map<Statement, AnalysisState<A, H, V>> cachedStatesBefore = new StatesCache<>(
+			getCachedStatesLimit());
+
 	/**
 	 * An optional string meant to identify this specific result, based on how
 	 * it has been produced
@@ -72,17 +216,58 @@ public class CFGWithAnalysisResults<A extends AbstractState<A, H, V>, H extends
 	public CFGWithAnalysisResults(CFG cfg, AnalysisState<A, H, V> singleton,
 			Map<Statement, AnalysisState<A, H, V>> entryStates,
 			Map<Statement, AnalysisState<A, H, V>> results) {
+		this(cfg, singleton, entryStates, results, Collections.emptyMap(), null);
+	}
+
+	/**
+	 * Builds the control flow graph, storing the given mapping between nodes
+	 * and fixpoint computation results. The results of statements that are
+	 * not part of the given mapping are computed on demand by the given
+	 * provider, starting from the given seeds, the first time they are
+	 * requested through {@link #getAnalysisStateAfter(Statement)}. Only a few
+	 * of the recomputed results are cached, trading recomputations for memory.
+	 * Lattice operations between cfgs built with a provider are applied to the
+	 * stored states only (the results and the seeds), and the missing results
+	 * of the cfgs they yield are recomputed from the combined seeds: since the
+	 * semantics of statements is monotone, these over-approximate the
+	 * combination of the missing results of the operands.
+	 * 
+	 * @param cfg         the original control flow graph
+	 * @param singleton   an instance of the {@link AnalysisState} containing
+	 *                        the abstract state of the analysis that was
+	 *                        executed, used to retrieve top and bottom values
+	 * @param entryStates the entry state for each entry point of the cfg
+	 * @param results     the results of the fixpoint computation that are
+	 *                        stored
+	 * @param seeds       the states before the statements from which
+	 *                        {@code provider} recomputes the results that are
+	 *                        not stored
+	 * @param provider    the provider of the results that are not stored, or
+	 *                        {@code null} if {@code results} contains all of
+	 *                        them
+	 */
+	public CFGWithAnalysisResults(CFG cfg, AnalysisState<A, H, V> singleton,
+			Map<Statement, AnalysisState<A, H, V>> entryStates,
+			Map<Statement, AnalysisState<A, H, V>> results,
+			Map<Statement, AnalysisState<A, H, V>> seeds,
+			ResultsProvider<A, H, V> provider) {
 		super(cfg);
 		this.results = new StatementStore<>(singleton);
 		results.forEach(this.results::put);
 		this.entryStates = new StatementStore<>(singleton);
 		entryStates.forEach(this.entryStates::put);
+		this.seeds = new StatementStore<>(singleton);
+		seeds.forEach(this.seeds::put);
+		this.provider = provider;
 	}
 
-	private CFGWithAnalysisResults(CFG cfg, StatementStore<A, H, V> entryStates, StatementStore<A, H, V> results) {
+	private CFGWithAnalysisResults(CFG cfg, StatementStore<A, H, V> entryStates, StatementStore<A, H, V> results,
+			StatementStore<A, H, V> seeds, ResultsProvider<A, H, V> provider) {
 		super(cfg);
 		this.results = results;
 		this.entryStates = entryStates;
+		this.seeds = seeds;
+		this.provider = provider;
 	}
 
 	/**
@@ -105,6 +290,66 @@ public class CFGWithAnalysisResults<A extends AbstractState<A, H, V>, H extends
 		this.id = id;
 	}
 
+	/**
+	 * Moves the results stored in this object onto the given cfg, that must be
+	 * structurally identical to the one these results have been computed on
+	 * (that is, it must have the same {@link CFG#fingerprint()}). Statements
+	 * of the two cfgs are matched through their offsets: results of
+	 * statements that cannot be matched are discarded. Results that are not
+	 * stored are not computed: they will be recomputed on {@code cfg} when
+	 * requested.
+	 * 
+	 * @param cfg the cfg where results should be moved
+	 * 
+	 * @return a new instance of {@link CFGWithAnalysisResults} built on top of
+	 *             {@code cfg}, containing the same results of this one
+	 */
+	public CFGWithAnalysisResults<A, H, V> relocate(CFG cfg) {
+		Map<Integer, Statement> targets = cfg.getStatementsByOffset();
+		CFGWithAnalysisResults<A, H, V> relocated = new CFGWithAnalysisResults<>(cfg,
+				relocate(entryStates, targets), relocate(results, targets), relocate(seeds, targets),
+				provider == null ? null : provider.relocate(cfg));
+		relocated.setId(id);
+		return relocated;
+	}
+
+	private static <A extends AbstractState<A, H, V>,
+			H extends HeapDomain<H>,
+			V extends ValueDomain<V>> StatementStore<A, H, V> relocate(StatementStore<A, H, V> store,
+					Map<Integer, Statement> targets) {
+		StatementStore<A, H, V> relocated = store.top();
+		for (Entry<Statement, AnalysisState<A, H, V>> entry : store)
+			if (targets.containsKey(entry.getKey().getOffset()))
+				relocated.put(targets.get(entry.getKey().getOffset()), entry.getValue());
+		return relocated;
+	}
+
+	/**
+	 * Replaces the states stored in this cfg with their canonical instances
+	 * (see {@link AnalysisState#intern(Interner)}), so that equal states
+	 * stored by different results share the same instance. States that are
+	 * computed on demand by a {@link ResultsProvider} are not interned. This
+	 * method is meant to be invoked before this cfg is stored for the rest of
+	 * the analysis, and not while other threads are reading its results.
+	 * 
+	 * @param interner the interner storing the canonical instances
+	 * 
+	 * @return this cfg
+	 */
+	public CFGWithAnalysisResults<A, H, V> intern(Interner<Object> interner) {
+		intern(entryStates, interner);
+		intern(results, interner);
+		intern(seeds, interner);
+		return this;
+	}
+
+	private static <A extends AbstractState<A, H, V>,
+			H extends HeapDomain<H>,
+			V extends ValueDomain<V>> void intern(StatementStore<A, H, V> store, Interner<Object> interner) {
+		for (Statement st : new ArrayList<>(store.getKeys()))
+			store.put(st, store.getState(st).intern(interner));
+	}
+
 	/**
 	 * Yields the computed result before a given statement (entry state).
 	 *
@@ -117,7 +362,27 @@ public class CFGWithAnalysisResults<A extends AbstractState<A, H, V>, H extends
 	public final AnalysisState<A, H, V> getAnalysisStateBefore(Statement st) throws SemanticException {
 		if (getEntrypoints().contains(st))
 			return entryStates.getState(st);
-		return lub(predecessorsOf(st), false);
+
+		Collection<Statement> preds = predecessorsOf(st);
+		if (preds.size() == 1)
+			return getAnalysisStateAfter(preds.iterator().next());
+
+		AnalysisState<A, H, V> cached;
+		synchronized (cachedStatesBefore) {
+			cached = cachedStatesBefore.get(st);
+		}
+		if (cached != null) {
+			count(true);
+			return cached;
+		}
+
+		count(false);
+		AnalysisState<A, H, V> computed = lub(preds, false);
+		if (computed != null)
+			synchronized (cachedStatesBefore) {
+				cachedStatesBefore.put(st, computed);
+			}
+		return computed;
 	}
 
 	/**
@@ -126,9 +391,98 @@ public class CFGWithAnalysisResults<A extends AbstractState<A, H, V>, H extends
 	 * @param st the statement
 	 *
 	 * @return the result computed at the given statement
+	 * 
+	 * @throws IllegalStateException if {@code st} is an inner expression whose
+	 *                                   result has been dropped after the
+	 *                                   fixpoint (see
+	 *                                   {@link CFG#setInnerResultsFilter(java.util.function.Predicate)})
 	 */
 	public final AnalysisState<A, H, V> getAnalysisStateAfter(Statement st) {
-		return results.getState(st);
+		if (results.getKeys().contains(st))
+			return results.getState(st);
+
+		if (provider == null) {
+			if (isDropped(st))
+				throw new IllegalStateException("The result of '" + st + "' in " + this
+						+ " has been dropped after the fixpoint since no check declared to need it");
+			return results.getState(st);
+		}
+
+		synchronized (recomputed) {
+			for (Iterator<Map<Statement, AnalysisState<A, H, V>>> it = recomputed.iterator(); it.hasNext();) {
+				Map<Statement, AnalysisState<A, H, V>> cached = it.next();
+				if (cached.containsKey(st)) {
+					it.remove();
+					recomputed.addFirst(cached);
+					return cached.get(st);
+				}
+			}
+		}
+
+		Map<Statement, AnalysisState<A, H, V>> computed = recompute(st);
+		if (!computed.containsKey(st))
+			return results.getState(st);
+
+		synchronized (recomputed) {
+			recomputed.addFirst(computed);
+			if (recomputed.size() > RECOMPUTED_CACHE_SIZE)
+				recomputed.removeLast();
+		}
+		return computed.get(st);
+	}
+
+	/**
+	 * Yields whether or not the result of the given statement has been dropped
+	 * after the fixpoint, that is, if {@code st} is an inner expression whose
+	 * result has not been retained (see
+	 * {@link CFG#setInnerResultsFilter(java.util.function.Predicate)}) while
+	 * the one of its root statement has been computed. Requesting such a
+	 * result through {@link #getAnalysisStateAfter(Statement)} raises an
+	 * {@link IllegalStateException}.
+	 * 
+	 * @param st the statement
+	 * 
+	 * @return {@code true} if the result of {@code st} has been dropped
+	 */
+	public final boolean isDropped(Statement st) {
+		if (provider != null || results.getKeys().contains(st) || !(st instanceof Expression)
+				|| retainsInnerResult(st))
+			return false;
+		Statement root = ((Expression) st).getRootStatement();
+		return root != st && results.getKeys().contains(root);
+	}
+
+	private Map<Statement, AnalysisState<A, H, V>> recompute(Statement st) {
+		try {
+			return provider.compute(st, seeds, results);
+		} catch (SemanticException e) {
+			throw new IllegalStateException("Unable to recompute the result of '" + st + "' in " + this, e);
+		}
+	}
+
+	/**
+	 * Yields a store containing all the results of this cfg, computing the
+	 * ones that are not stored through the {@link #provider}. This is used
+	 * only by lattice operations between a cfg that has a provider and one
+	 * that does not.
+	 */
+	private StatementStore<A, H, V> allResults() {
+		if (provider == null)
+			return results;
+
+		StatementStore<A, H, V> all = results.top();
+		for (Entry<Statement, AnalysisState<A, H, V>> result : results)
+			all.put(result.getKey(), result.getValue());
+		// stored statements might have inner expressions that are not stored
+		Set<Statement> covered = new HashSet<>();
+		for (Statement st : getNodes())
+			if (!covered.contains(st))
+				for (Entry<Statement, AnalysisState<A, H, V>> result : recompute(st).entrySet()) {
+					covered.add(result.getKey());
+					if (!all.getKeys().contains(result.getKey()))
+						all.put(result.getKey(), result.getValue());
+				}
+		return all;
 	}
 
 	/**
@@ -139,7 +493,16 @@ public class CFGWithAnalysisResults<A extends AbstractState<A, H, V>, H extends
 	 * @throws SemanticException if the lub operator fails
 	 */
 	public final AnalysisState<A, H, V> getEntryState() throws SemanticException {
-		return lub(this.getEntrypoints(), true);
+		AnalysisState<A, H, V> result = cachedEntryState;
+		if (result != null) {
+			count(true);
+			return result;
+		}
+
+		count(false);
+		// concurrent computations yield the same result
+		cachedEntryState = result = lub(this.getEntrypoints(), true);
+		return result;
 	}
 
 	/**
@@ -150,7 +513,22 @@ public class CFGWithAnalysisResults<A extends AbstractState<A, H, V>, H extends
 	 * @throws SemanticException if the lub operator fails
 	 */
 	public final AnalysisState<A, H, V> getExitState() throws SemanticException {
-		return lub(this.getNormalExitpoints(), false);
+		AnalysisState<A, H, V> result = cachedExitState;
+		if (result != null) {
+			count(true);
+			return result;
+		}
+
+		count(false);
+		// concurrent computations yield the same result
+		cachedExitState = result = lub(this.getNormalExitpoints(), false);
+		return result;
+	}
+
+	private void count(boolean hit) {
+		CacheStatistics statistics = getCacheStatistics();
+		if (statistics != null)
+			(hit ? statistics.hits : statistics.misses).incrementAndGet();
 	}
 
 	private AnalysisState<A, H, V> lub(Collection<Statement> statements, boolean entry) throws SemanticException {
@@ -179,8 +557,7 @@ public class CFGWithAnalysisResults<A extends AbstractState<A, H, V>, H extends
 		if (!getDescriptor().equals(other.getDescriptor()))
 			throw new SemanticException("Cannot perform the least upper bound of two graphs with different descriptor");
 
-		return new CFGWithAnalysisResults<>(this, entryStates.lub(other.entryStates),
-				results.lub(other.results));
+		return lubAux(other);
 	}
 
 	@Override
@@ -188,20 +565,31 @@ public class CFGWithAnalysisResults<A extends AbstractState<A, H, V>, H extends
 		if (!getDescriptor().equals(other.getDescriptor()))
 			throw new SemanticException("Cannot perform the least upper bound of two graphs with different descriptor");
 
-		CFGWithAnalysisResults<A, H, V> lub = new CFGWithAnalysisResults<>(this, entryStates.lub(other.entryStates),
-				results.lub(other.results));
+		CFGWithAnalysisResults<A, H, V> lub = lubAux(other);
 		lub.setId(joinIDs(other));
 		return lub;
 	}
 
+	private CFGWithAnalysisResults<A, H, V> lubAux(CFGWithAnalysisResults<A, H, V> other) throws SemanticException {
+		if (provider != null && other.provider != null)
+			return new CFGWithAnalysisResults<>(this, entryStates.lub(other.entryStates),
+					results.lub(other.results), seeds.lub(other.seeds), provider);
+		return new CFGWithAnalysisResults<>(this, entryStates.lub(other.entryStates),
+				allResults().lub(other.allResults()), seeds.bottom(), null);
+	}
+
 	@Override
 	public CFGWithAnalysisResults<A, H, V> widening(CFGWithAnalysisResults<A, H, V> other) throws SemanticException {
 		if (!getDescriptor().equals(other.getDescriptor()))
 			throw new SemanticException("Cannot perform the least upper bound of two graphs with different descriptor");
 
-		CFGWithAnalysisResults<A, H,
-				V> widen = new CFGWithAnalysisResults<>(this, entryStates.widening(other.entryStates),
-						results.widening(other.results));
+		CFGWithAnalysisResults<A, H, V> widen;
+		if (provider != null && other.provider != null)
+			widen = new CFGWithAnalysisResults<>(this, entryStates.widening(other.entryStates),
+					results.widening(other.results), seeds.widening(other.seeds), provider);
+		else
+			widen = new CFGWithAnalysisResults<>(this, entryStates.widening(other.entryStates),
+					allResults().widening(other.allResults()), seeds.bottom(), null);
 		widen.setId(joinIDs(other));
 		return widen;
 	}
@@ -232,12 +620,16 @@ public class CFGWithAnalysisResults<A extends AbstractState<A, H, V>, H extends
 		if (!getDescriptor().equals(other.getDescriptor()))
 			throw new SemanticException("Cannot perform the least upper bound of two graphs with different descriptor");
 
-		return entryStates.lessOrEqual(other.entryStates) && results.lessOrEqual(other.results);
+		if (provider != null && other.provider != null)
+			// the missing results are monotone in the stored ones
+			return entryStates.lessOrEqual(other.entryStates) && results.lessOrEqual(other.results)
+					&& seeds.lessOrEqual(other.seeds);
+		return entryStates.lessOrEqual(other.entryStates) && allResults().lessOrEqual(other.allResults());
 	}
 
 	@Override
 	public CFGWithAnalysisResults<A, H, V> top() {
-		return new CFGWithAnalysisResults<>(this, entryStates.top(), results.top());
+		return new CFGWithAnalysisResults<>(this, entryStates.top(), results.top(), seeds.top(), null);
 	}
 
 	@Override
@@ -247,7 +639,7 @@ public class CFGWithAnalysisResults<A extends AbstractState<A, H, V>, H extends
 
 	@Override
 	public CFGWithAnalysisResults<A, H, V> bottom() {
-		return new CFGWithAnalysisResults<>(this, entryStates.bottom(), results.bottom());
+		return new CFGWithAnalysisResults<>(this, entryStates.bottom(), results.bottom(), seeds.bottom(), null);
 	}
 
 	@Override
@@ -259,4 +651,30 @@ public class CFGWithAnalysisResults<A extends AbstractState<A, H, V>, H extends
 	protected DotCFG toDot(Function<Statement, String> labelGenerator) {
 		return DotCFG.fromCFG(this, id, labelGenerator);
 	}
+
+	/**
+	 * A map with least-recently-used eviction, bounded by the limit given at
+	 * construction.
+	 * 
+	 * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+	 * 
+	 * @param <K> the type of keys
+	 * @param <V> the type of values
+	 */
+	private static class StatesCache<K, V> extends LinkedHashMap<K, V> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int limit;
+
+		private StatesCache(int limit) {
+			super(16, 0.75f, true);
+			this.limit = limit;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Entry<K, V> eldest) {
+			return limit > 0 && size() > limit;
+		}
+	}
 }
@@ -11,6 +11,7 @@ import it.unive.lisa.program.cfg.ProgramPoint;
 import it.unive.lisa.symbolic.SymbolicExpression;
 import it.unive.lisa.symbolic.value.Identifier;
 import it.unive.lisa.symbolic.value.ValueExpression;
+import it.unive.lisa.util.collections.Interner;
 
 /**
  * An abstract state of the analysis, composed by a heap state modeling the
@@ -61,6 +62,17 @@ public class SimpleAbstractState<H extends HeapDomain<H>, V extends ValueDomain<
 		return valueState;
 	}
 
+	@Override
+	public SimpleAbstractState<H, V> intern(Interner<Object> interner) {
+		// components are interned as well, so that they are shared also among
+		// states that are not equal
+		H heap = interner.intern(heapState);
+		V value = interner.intern(valueState);
+		if (heap == heapState && value == valueState)
+			return interner.intern(this);
+		return interner.intern(new SimpleAbstractState<>(heap, value));
+	}
+
 	@Override
 	public SimpleAbstractState<H, V> assign(Identifier id, SymbolicExpression expression, ProgramPoint pp)
 			throws SemanticException {
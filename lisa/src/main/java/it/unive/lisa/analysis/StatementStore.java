@@ -4,6 +4,8 @@ import it.unive.lisa.analysis.heap.HeapDomain;
 import it.unive.lisa.analysis.lattices.FunctionalLattice;
 import it.unive.lisa.analysis.value.ValueDomain;
 import it.unive.lisa.program.cfg.statement.Statement;
+import it.unive.lisa.util.datastructures.graph.NodeMap;
+import java.util.Map;
 
 /**
  * A functional lattice that stores instances of {@link AnalysisState} computed
@@ -42,6 +44,19 @@ public class StatementStore<A extends AbstractState<A, H, V>, H extends HeapDoma
 		return function.put(st, state);
 	}
 
+	/**
+	 * {@inheritDoc}<br>
+	 * <br>
+	 * Statement stores are backed by {@link NodeMap}s, that index states
+	 * through the offsets of the statements instead of their hash codes.
+	 */
+	@Override
+	protected Map<Statement, AnalysisState<A, H, V>> mkNewFunction(Map<Statement, AnalysisState<A, H, V>> other) {
+		if (other == null)
+			return new NodeMap<>();
+		return new NodeMap<>(other);
+	}
+
 	@Override
 	public StatementStore<A, H, V> top() {
 		return new StatementStore<>(lattice.top());
@@ -0,0 +1,104 @@
+package it.unive.lisa.analysis.dataflow;
+
+import it.unive.lisa.caches.Caches;
+import it.unive.lisa.symbolic.value.Identifier;
+import it.unive.lisa.util.collections.externalSet.ExternalSet;
+import it.unive.lisa.util.collections.externalSet.ExternalSetCache;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An {@link ExternalSetCache} of {@link DataflowElement}s, that indexes each
+ * element once and allows dataflow domains to represent their facts as bit
+ * vectors. Besides indexing elements, this cache tracks the elements
+ * associated with each {@link Identifier} (see
+ * {@link DataflowElement#getIdentifier()}), so that the elements killed by an
+ * assignment can be removed from a set with a single word-level difference.
+ * Only elements added through {@link #mkSet(Iterable)} and
+ * {@link #mkSingletonSet(DataflowElement)} are tracked: dataflow domains must
+ * create their sets only through these methods, or by combining sets created
+ * through them. This cache can be accessed concurrently.<br>
+ * <br>
+ * Each domain singleton owns one cache, shared by all the instances derived
+ * from it: elements generated in different cfgs are thus indexed by the same
+ * cache, so that states can flow through calls and be combined across cfgs
+ * without translating their indexes. The price is that the bit vector of a
+ * state is as long as the highest index among its elements, that grows with
+ * the number of elements generated in the whole program rather than in the
+ * cfg the state belongs to. To avoid growing across analyses, each cache is
+ * registered through {@link Caches#registerAnalysisCache(ExternalSetCache)}
+ * and cleared when a new analysis starts: states computed by a previous
+ * analysis must not be used after that.
+ *
+ * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+ *
+ * @param <E> the type of {@link DataflowElement}s stored in this cache
+ */
+class DataflowElementCache<E extends DataflowElement<?, E>> extends ExternalSetCache<E> {
+
+	/**
+	 * The elements associated with each identifier. Sets stored in this map
+	 * are never modified, and are replaced when a new element is tracked.
+	 */
+	private final ConcurrentMap<Identifier, ExternalSet<E>> byIdentifier = new ConcurrentHashMap<>();
+
+	/**
+	 * Builds an empty cache, that is cleared when a new analysis starts.
+	 */
+	DataflowElementCache() {
+		Caches.registerAnalysisCache(this);
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		byIdentifier.clear();
+	}
+
+	@Override
+	public ExternalSet<E> mkSet(Iterable<E> iterable) {
+		for (E element : iterable)
+			track(element);
+		return super.mkSet(iterable);
+	}
+
+	@Override
+	public ExternalSet<E> mkSingletonSet(E element) {
+		track(element);
+		return super.mkSingletonSet(element);
+	}
+
+	private void track(E element) {
+		Identifier id = element.getIdentifier();
+		ExternalSet<E> tracked = byIdentifier.get(id);
+		if (tracked != null && tracked.contains(element))
+			return;
+
+		byIdentifier.compute(id, (k, current) -> {
+			if (current == null)
+				return super.mkSingletonSet(element);
+			if (current.contains(element))
+				return current;
+			return current.union(super.mkSingletonSet(element));
+		});
+	}
+
+	/**
+	 * Yields the set of all the elements tracked by this cache that are
+	 * associated with one of the given identifiers.
+	 *
+	 * @param ids the identifiers
+	 *
+	 * @return the set of elements associated with {@code ids}
+	 */
+	ExternalSet<E> elementsOf(Collection<Identifier> ids) {
+		ExternalSet<E> result = mkEmptySet();
+		for (Identifier id : ids) {
+			ExternalSet<E> tracked = byIdentifier.get(id);
+			if (tracked != null)
+				result = result.union(tracked);
+		}
+		return result;
+	}
+}
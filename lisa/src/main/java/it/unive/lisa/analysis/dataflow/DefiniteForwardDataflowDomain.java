@@ -8,9 +8,11 @@ import it.unive.lisa.analysis.representation.SetRepresentation;
 import it.unive.lisa.program.cfg.ProgramPoint;
 import it.unive.lisa.symbolic.value.Identifier;
 import it.unive.lisa.symbolic.value.ValueExpression;
+import it.unive.lisa.util.collections.externalSet.ExternalSet;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -33,6 +35,12 @@ public class DefiniteForwardDataflowDomain<E extends DataflowElement<DefiniteFor
 
 	private final E domain;
 
+	/**
+	 * The cache indexing the elements of this domain, shared by all the
+	 * instances derived from the same singleton
+	 */
+	private final DataflowElementCache<E> cache;
+
 	/**
 	 * Builds an empty domain.
 	 * 
@@ -40,16 +48,26 @@ public class DefiniteForwardDataflowDomain<E extends DataflowElement<DefiniteFor
 	 *                   to perform <i>kill</i> and <i>gen</i> operations
 	 */
 	public DefiniteForwardDataflowDomain(E domain) {
-		this(domain, new HashSet<>(), true, false);
+		this(domain, new DataflowElementCache<>(), true, false);
 	}
 
-	private DefiniteForwardDataflowDomain(E domain, Set<E> elements, boolean isTop, boolean isBottom) {
+	private DefiniteForwardDataflowDomain(E domain, DataflowElementCache<E> cache, boolean isTop, boolean isBottom) {
+		this(domain, cache, cache.mkEmptySet(), isTop, isBottom);
+	}
+
+	private DefiniteForwardDataflowDomain(E domain, DataflowElementCache<E> cache, ExternalSet<E> elements, boolean isTop,
+			boolean isBottom) {
 		super(elements);
 		this.domain = domain;
+		this.cache = cache;
 		this.isTop = isTop;
 		this.isBottom = isBottom;
 	}
 
+	private ExternalSet<E> bits() {
+		return (ExternalSet<E>) elements;
+	}
+
 	@Override
 	public DefiniteForwardDataflowDomain<E> assign(Identifier id, ValueExpression expression, ProgramPoint pp)
 			throws SemanticException {
@@ -60,11 +78,9 @@ public class DefiniteForwardDataflowDomain<E extends DataflowElement<DefiniteFor
 		// or if the expression cannot be processed, return this
 		if (!domain.tracksIdentifiers(id) || !domain.canProcess(expression))
 			return this;
-		DefiniteForwardDataflowDomain<E> killed = forgetIdentifiers(domain.kill(id, expression, pp, this));
-		Set<E> updated = new HashSet<>(killed.elements);
-		for (E generated : domain.gen(id, expression, pp, this))
-			updated.add(generated);
-		return new DefiniteForwardDataflowDomain<E>(domain, updated, false, false);
+		ExternalSet<E> killed = bits().difference(cache.elementsOf(domain.kill(id, expression, pp, this)));
+		ExternalSet<E> updated = killed.union(cache.mkSet(domain.gen(id, expression, pp, this)));
+		return new DefiniteForwardDataflowDomain<E>(domain, cache, updated, false, false);
 	}
 
 	@Override
@@ -82,19 +98,18 @@ public class DefiniteForwardDataflowDomain<E extends DataflowElement<DefiniteFor
 
 	@Override
 	public DefiniteForwardDataflowDomain<E> forgetIdentifier(Identifier id) throws SemanticException {
+		return forgetIdentifiers(Collections.singleton(id));
+	}
+
+	@Override
+	public DefiniteForwardDataflowDomain<E> forgetIdentifiers(Collection<Identifier> ids) throws SemanticException {
 		if (isTop())
 			return this;
 
-		Collection<E> toRemove = new LinkedList<>();
-		for (E e : elements)
-			if (e.getIdentifier().equals(id))
-				toRemove.add(e);
-
-		if (toRemove.isEmpty())
+		ExternalSet<E> toRemove = cache.elementsOf(ids);
+		if (!bits().intersects(toRemove))
 			return this;
-		Set<E> updated = new HashSet<>(elements);
-		updated.removeAll(toRemove);
-		return new DefiniteForwardDataflowDomain<E>(domain, updated, false, false);
+		return new DefiniteForwardDataflowDomain<E>(domain, cache, bits().difference(toRemove), false, false);
 	}
 
 	@Override
@@ -133,7 +148,7 @@ public class DefiniteForwardDataflowDomain<E extends DataflowElement<DefiniteFor
 
 	@Override
 	public DefiniteForwardDataflowDomain<E> top() {
-		return new DefiniteForwardDataflowDomain<>(domain, new HashSet<>(), true, false);
+		return new DefiniteForwardDataflowDomain<>(domain, cache, true, false);
 	}
 
 	@Override
@@ -143,7 +158,7 @@ public class DefiniteForwardDataflowDomain<E extends DataflowElement<DefiniteFor
 
 	@Override
 	public DefiniteForwardDataflowDomain<E> bottom() {
-		return new DefiniteForwardDataflowDomain<>(domain, new HashSet<>(), false, true);
+		return new DefiniteForwardDataflowDomain<>(domain, cache, false, true);
 	}
 
 	@Override
@@ -153,7 +168,12 @@ public class DefiniteForwardDataflowDomain<E extends DataflowElement<DefiniteFor
 
 	@Override
 	protected DefiniteForwardDataflowDomain<E> mk(Set<E> set) {
-		return new DefiniteForwardDataflowDomain<>(domain, set, false, false);
+		ExternalSet<E> elements;
+		if (set instanceof ExternalSet && ((ExternalSet<E>) set).getCache() == cache)
+			elements = (ExternalSet<E>) set;
+		else
+			elements = cache.mkSet(set);
+		return new DefiniteForwardDataflowDomain<>(domain, cache, elements, false, false);
 	}
 
 	@Override
@@ -163,21 +183,21 @@ public class DefiniteForwardDataflowDomain<E extends DataflowElement<DefiniteFor
 
 	@Override
 	public DefiniteForwardDataflowDomain<E> pushScope(ScopeToken scope) throws SemanticException {
-		DefiniteForwardDataflowDomain<E> result = new DefiniteForwardDataflowDomain<>(this.domain);
+		List<E> result = new ArrayList<>(elements.size());
 		E pushed;
 		for (E element : this.elements)
 			if ((pushed = element.pushScope(scope)) != null)
-				result.elements.add(pushed);
-		return result;
+				result.add(pushed);
+		return new DefiniteForwardDataflowDomain<>(domain, cache, cache.mkSet(result), true, false);
 	}
 
 	@Override
 	public DefiniteForwardDataflowDomain<E> popScope(ScopeToken scope) throws SemanticException {
-		DefiniteForwardDataflowDomain<E> result = new DefiniteForwardDataflowDomain<>(this.domain);
+		List<E> result = new ArrayList<>(elements.size());
 		E popped;
 		for (E element : this.elements)
 			if ((popped = element.popScope(scope)) != null)
-				result.elements.add(popped);
-		return result;
+				result.add(popped);
+		return new DefiniteForwardDataflowDomain<>(domain, cache, cache.mkSet(result), true, false);
 	}
 }
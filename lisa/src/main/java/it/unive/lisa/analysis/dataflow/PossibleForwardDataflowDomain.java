@@ -8,9 +8,11 @@ import it.unive.lisa.analysis.representation.SetRepresentation;
 import it.unive.lisa.program.cfg.ProgramPoint;
 import it.unive.lisa.symbolic.value.Identifier;
 import it.unive.lisa.symbolic.value.ValueExpression;
+import it.unive.lisa.util.collections.externalSet.ExternalSet;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -31,6 +33,12 @@ public class PossibleForwardDataflowDomain<E extends DataflowElement<PossibleFor
 
 	private final E domain;
 
+	/**
+	 * The cache indexing the elements of this domain, shared by all the
+	 * instances derived from the same singleton
+	 */
+	private final DataflowElementCache<E> cache;
+
 	/**
 	 * Builds an empty domain.
 	 * 
@@ -38,16 +46,26 @@ public class PossibleForwardDataflowDomain<E extends DataflowElement<PossibleFor
 	 *                   to perform <i>kill</i> and <i>gen</i> operations
 	 */
 	public PossibleForwardDataflowDomain(E domain) {
-		this(domain, new HashSet<>(), true, false);
+		this(domain, new DataflowElementCache<>(), true, false);
 	}
 
-	private PossibleForwardDataflowDomain(E domain, Set<E> elements, boolean isTop, boolean isBottom) {
+	private PossibleForwardDataflowDomain(E domain, DataflowElementCache<E> cache, boolean isTop, boolean isBottom) {
+		this(domain, cache, cache.mkEmptySet(), isTop, isBottom);
+	}
+
+	private PossibleForwardDataflowDomain(E domain, DataflowElementCache<E> cache, ExternalSet<E> elements, boolean isTop,
+			boolean isBottom) {
 		super(elements);
 		this.domain = domain;
+		this.cache = cache;
 		this.isTop = isTop;
 		this.isBottom = isBottom;
 	}
 
+	private ExternalSet<E> bits() {
+		return (ExternalSet<E>) elements;
+	}
+
 	@Override
 	public PossibleForwardDataflowDomain<E> assign(Identifier id, ValueExpression expression, ProgramPoint pp)
 			throws SemanticException {
@@ -58,11 +76,9 @@ public class PossibleForwardDataflowDomain<E extends DataflowElement<PossibleFor
 		// or if the expression cannot be processed, return this
 		if (!domain.tracksIdentifiers(id) || !domain.canProcess(expression))
 			return this;
-		PossibleForwardDataflowDomain<E> killed = forgetIdentifiers(domain.kill(id, expression, pp, this));
-		Set<E> updated = new HashSet<>(killed.elements);
-		for (E generated : domain.gen(id, expression, pp, this))
-			updated.add(generated);
-		return new PossibleForwardDataflowDomain<E>(domain, updated, false, false);
+		ExternalSet<E> killed = bits().difference(cache.elementsOf(domain.kill(id, expression, pp, this)));
+		ExternalSet<E> updated = killed.union(cache.mkSet(domain.gen(id, expression, pp, this)));
+		return new PossibleForwardDataflowDomain<E>(domain, cache, updated, false, false);
 	}
 
 	@Override
@@ -80,19 +96,18 @@ public class PossibleForwardDataflowDomain<E extends DataflowElement<PossibleFor
 
 	@Override
 	public PossibleForwardDataflowDomain<E> forgetIdentifier(Identifier id) throws SemanticException {
+		return forgetIdentifiers(Collections.singleton(id));
+	}
+
+	@Override
+	public PossibleForwardDataflowDomain<E> forgetIdentifiers(Collection<Identifier> ids) throws SemanticException {
 		if (isTop())
 			return this;
 
-		Collection<E> toRemove = new LinkedList<>();
-		for (E e : elements)
-			if (e.getIdentifier().equals(id))
-				toRemove.add(e);
-
-		if (toRemove.isEmpty())
+		ExternalSet<E> toRemove = cache.elementsOf(ids);
+		if (!bits().intersects(toRemove))
 			return this;
-		Set<E> updated = new HashSet<>(elements);
-		updated.removeAll(toRemove);
-		return new PossibleForwardDataflowDomain<E>(domain, updated, false, false);
+		return new PossibleForwardDataflowDomain<E>(domain, cache, bits().difference(toRemove), false, false);
 	}
 
 	@Override
@@ -131,7 +146,7 @@ public class PossibleForwardDataflowDomain<E extends DataflowElement<PossibleFor
 
 	@Override
 	public PossibleForwardDataflowDomain<E> top() {
-		return new PossibleForwardDataflowDomain<>(domain, new HashSet<>(), true, false);
+		return new PossibleForwardDataflowDomain<>(domain, cache, true, false);
 	}
 
 	@Override
@@ -141,7 +156,7 @@ public class PossibleForwardDataflowDomain<E extends DataflowElement<PossibleFor
 
 	@Override
 	public PossibleForwardDataflowDomain<E> bottom() {
-		return new PossibleForwardDataflowDomain<>(domain, new HashSet<>(), false, true);
+		return new PossibleForwardDataflowDomain<>(domain, cache, false, true);
 	}
 
 	@Override
@@ -151,7 +166,12 @@ public class PossibleForwardDataflowDomain<E extends DataflowElement<PossibleFor
 
 	@Override
 	protected PossibleForwardDataflowDomain<E> mk(Set<E> set) {
-		return new PossibleForwardDataflowDomain<>(domain, set, false, false);
+		ExternalSet<E> elements;
+		if (set instanceof ExternalSet && ((ExternalSet<E>) set).getCache() == cache)
+			elements = (ExternalSet<E>) set;
+		else
+			elements = cache.mkSet(set);
+		return new PossibleForwardDataflowDomain<>(domain, cache, elements, false, false);
 	}
 
 	@Override
@@ -161,22 +181,22 @@ public class PossibleForwardDataflowDomain<E extends DataflowElement<PossibleFor
 
 	@Override
 	public PossibleForwardDataflowDomain<E> pushScope(ScopeToken scope) throws SemanticException {
-		PossibleForwardDataflowDomain<E> result = new PossibleForwardDataflowDomain<>(this.domain);
+		List<E> result = new ArrayList<>(elements.size());
 		E pushed;
 		for (E element : this.elements)
 			if ((pushed = element.pushScope(scope)) != null)
-				result.elements.add(pushed);
-		return result;
+				result.add(pushed);
+		return new PossibleForwardDataflowDomain<>(domain, cache, cache.mkSet(result), true, false);
 	}
 
 	@Override
 	public PossibleForwardDataflowDomain<E> popScope(ScopeToken scope) throws SemanticException {
-		PossibleForwardDataflowDomain<E> result = new PossibleForwardDataflowDomain<>(this.domain);
+		List<E> result = new ArrayList<>(elements.size());
 		E popped;
 		for (E element : this.elements)
 			if ((popped = element.popScope(scope)) != null)
-				result.elements.add(popped);
-		return result;
+				result.add(popped);
+		return new PossibleForwardDataflowDomain<>(domain, cache, cache.mkSet(result), true, false);
 	}
 
 }
@@ -3,10 +3,12 @@ package it.unive.lisa.analysis.lattices;
 import it.unive.lisa.analysis.BaseLattice;
 import it.unive.lisa.analysis.Lattice;
 import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.util.collections.PersistentMap;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -59,7 +61,14 @@ public abstract class FunctionalLattice<F extends FunctionalLattice<F, K, V>, K,
 	/**
 	 * Creates a new instance of the underlying function. The purpose of this
 	 * method is to provide a common function implementation to every subclass
-	 * that does not have implementation-specific requirements.
+	 * that does not have implementation-specific requirements.<br>
+	 * <br>
+	 * The default implementation yields a {@link HashMap}, unless
+	 * {@code other} is a {@link PersistentMap}: in that case, the copy is a
+	 * {@link PersistentMap} sharing its structure with {@code other}. Subclasses
+	 * can select the {@link PersistentMap} backend by overriding this method,
+	 * making copies constant-time and updates logarithmic in the size of the
+	 * function.
 	 * 
 	 * @param other an optional function to copy, can be {@code null}
 	 * 
@@ -69,6 +78,8 @@ public abstract class FunctionalLattice<F extends FunctionalLattice<F, K, V>, K,
 	protected Map<K, V> mkNewFunction(Map<K, V> other) {
 		if (other == null)
 			return new HashMap<>();
+		if (other instanceof PersistentMap)
+			return new PersistentMap<>(other);
 		return new HashMap<>(other);
 	}
 
@@ -157,7 +168,15 @@ public abstract class FunctionalLattice<F extends FunctionalLattice<F, K, V>, K,
 	}
 
 	/**
-	 * Yields the functional lift between {@code this} and {@code other}.
+	 * Yields the functional lift between {@code this} and {@code other}.<br>
+	 * <br>
+	 * {@code valueLifter} is assumed to be idempotent (as lub, widening and
+	 * glb are), and it is not invoked on keys that are mapped to the same
+	 * object in both functions. The function of the result is built as a
+	 * copy of the one of {@code this}, where only the keys whose value changed
+	 * are updated. A new instance is returned even if no value changed, so
+	 * that the function of the result is never shared with the one of
+	 * {@code this}.
 	 * 
 	 * @param other       the other functional lattice
 	 * @param keyLifter   the key lifter
@@ -170,15 +189,33 @@ public abstract class FunctionalLattice<F extends FunctionalLattice<F, K, V>, K,
 	 */
 	protected final F functionalLift(F other, KeyFunctionalLift<K> keyLifter, FunctionalLift<V> valueLifter)
 			throws SemanticException {
-		F result = bottom();
-		result.function = mkNewFunction(null);
+		Map<K, V> lifted = mkNewFunction(function);
 		Set<K> keys = keyLifter.keyLift(this.getKeys(), other.getKeys());
+		// the key lifter might replace a key with an equal but different
+		// object (e.g., when lubbing identifiers), that must end up in the
+		// result
+		Set<K> own = Collections.newSetFromMap(new IdentityHashMap<>());
+		own.addAll(getKeys());
 		for (K key : keys)
 			try {
-				result.function.put(key, valueLifter.lift(getState(key), other.getState(key)));
+				V mine = getState(key);
+				V theirs = other.getState(key);
+				V value = mine == theirs ? mine : valueLifter.lift(mine, theirs);
+				if (!own.contains(key)) {
+					lifted.remove(key);
+					lifted.put(key, value);
+				} else if (function.get(key) != value)
+					lifted.put(key, value);
 			} catch (SemanticException e) {
 				throw new SemanticException("Exception during functional lifting of key '" + key + "'", e);
 			}
+
+		if (lifted.size() != keys.size())
+			// some keys of this function are not part of the result
+			lifted.keySet().retainAll(keys);
+
+		F result = bottom();
+		result.function = lifted;
 		return result;
 	}
 
@@ -215,11 +252,36 @@ public abstract class FunctionalLattice<F extends FunctionalLattice<F, K, V>, K,
 		return keys;
 	}
 
+	/**
+	 * Yields the entries of this function that {@link #lessOrEqualAux} has to
+	 * compare with the ones of {@code other}. Entries that {@code other} maps
+	 * to the very same value object are trivially included in it, and can be
+	 * omitted. The default implementation omits the entries shared with
+	 * {@code other} when both functions are {@link PersistentMap}s, and yields
+	 * all entries otherwise.
+	 * 
+	 * @param other the other functional lattice
+	 * 
+	 * @return the entries to compare
+	 */
+	@SuppressWarnings("unchecked")
+	protected Iterable<Entry<K, V>> entriesToCompare(F other) {
+		if (function instanceof PersistentMap && other.function instanceof PersistentMap)
+			// entries shared with the other function are trivially included
+			return ((PersistentMap<K, V>) function).entriesNotSharedWith((PersistentMap<K, V>) other.function);
+		return function.entrySet();
+	}
+
 	@Override
 	public boolean lessOrEqualAux(F other) throws SemanticException {
-		for (K key : function.keySet())
-			if (getState(key) != null && (!getState(key).lessOrEqual(other.getState(key))))
+		for (Entry<K, V> entry : entriesToCompare(other)) {
+			V mine = entry.getValue();
+			if (mine == null)
+				continue;
+			V theirs = other.getState(entry.getKey());
+			if (mine != theirs && !mine.lessOrEqual(theirs))
 				return false;
+		}
 
 		return true;
 	}
@@ -303,4 +365,14 @@ public abstract class FunctionalLattice<F extends FunctionalLattice<F, K, V>, K,
 	public Map<K, V> getMap() {
 		return function;
 	}
+
+	/**
+	 * Yields the underlying lattice of this functional lattice element, that
+	 * is used to retrieve top and bottom values.
+	 * 
+	 * @return the underlying lattice
+	 */
+	public V getLattice() {
+		return lattice;
+	}
 }
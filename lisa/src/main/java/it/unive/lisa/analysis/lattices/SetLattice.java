@@ -3,6 +3,7 @@ package it.unive.lisa.analysis.lattices;
 import it.unive.lisa.analysis.BaseLattice;
 import it.unive.lisa.analysis.Lattice;
 import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.util.collections.externalSet.ExternalSet;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
@@ -18,7 +19,11 @@ import java.util.Set;
  * Widening on instances of this lattice depends on the cardinality of the
  * domain of the underlying elements. The provided implementation behave as the
  * domain is <b>finite</b>, thus invoking the lub. Set lattices defined on
- * infinite domains must implement a coherent widening logic.
+ * infinite domains must implement a coherent widening logic.<br>
+ * <br>
+ * If the elements of two instances are {@link ExternalSet}s connected to the
+ * same cache, lattice operations between them are performed directly on the
+ * underlying bit vectors.
  * 
  * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
  * 
@@ -56,8 +61,24 @@ public abstract class SetLattice<S extends SetLattice<S, E>, E> extends BaseLatt
 	 */
 	protected abstract S mk(Set<E> set);
 
+	/**
+	 * Yields whether or not the elements of this lattice element and the ones
+	 * of {@code other} are {@link ExternalSet}s connected to the same cache.
+	 * 
+	 * @param other the other set lattice element
+	 * 
+	 * @return {@code true} if that condition holds
+	 */
+	protected final boolean sharesCacheWith(S other) {
+		return elements instanceof ExternalSet && other.elements instanceof ExternalSet
+				&& ((ExternalSet<E>) elements).getCache() == ((ExternalSet<E>) other.elements).getCache();
+	}
+
 	@Override
 	protected S lubAux(S other) throws SemanticException {
+		if (sharesCacheWith(other))
+			return mk(((ExternalSet<E>) elements).union((ExternalSet<E>) other.elements));
+
 		Set<E> lub = new HashSet<>(elements);
 		lub.addAll(other.elements);
 		return mk(lub);
@@ -82,6 +103,9 @@ public abstract class SetLattice<S extends SetLattice<S, E>, E> extends BaseLatt
 		if (other.isBottom() || this.isTop() || other.lessOrEqual((S) this))
 			return (S) other;
 
+		if (sharesCacheWith(other))
+			return mk(((ExternalSet<E>) elements).intersection((ExternalSet<E>) other.elements));
+
 		Set<E> glb = new HashSet<>(elements);
 		glb.retainAll(other.elements);
 		return mk(glb);
@@ -94,6 +118,8 @@ public abstract class SetLattice<S extends SetLattice<S, E>, E> extends BaseLatt
 
 	@Override
 	protected boolean lessOrEqualAux(S other) throws SemanticException {
+		if (sharesCacheWith(other))
+			return ((ExternalSet<E>) other.elements).contains((ExternalSet<E>) elements);
 		return other.elements.containsAll(elements);
 	}
 
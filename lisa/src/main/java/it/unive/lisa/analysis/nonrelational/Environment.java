@@ -12,9 +12,11 @@ import it.unive.lisa.program.cfg.ProgramPoint;
 import it.unive.lisa.symbolic.SymbolicExpression;
 import it.unive.lisa.symbolic.value.Identifier;
 import it.unive.lisa.util.collections.CollectionsDiffBuilder;
+import it.unive.lisa.util.collections.PersistentMap;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
@@ -68,6 +70,39 @@ public abstract class Environment<M extends Environment<M, E, T, V>,
 		super(domain, function);
 	}
 
+	/**
+	 * {@inheritDoc}<br>
+	 * <br>
+	 * Environments are backed by {@link PersistentMap}s: since
+	 * {@link #assign(Identifier, SymbolicExpression, ProgramPoint)} copies the
+	 * function to change a single identifier, this makes each assignment
+	 * logarithmic in the number of identifiers instead of linear. Subclasses
+	 * can override this method to select a different backend.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	protected Map<Identifier, T> mkNewFunction(Map<Identifier, T> other) {
+		if (other == null)
+			return new PersistentMap<>();
+		if (other instanceof ScopedFunction)
+			return new ScopedFunction<>((ScopedFunction<T>) other);
+		return new PersistentMap<>(other);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	protected Iterable<Entry<Identifier, T>> entriesToCompare(M other) {
+		if (function instanceof ScopedFunction && other.function instanceof ScopedFunction) {
+			ScopedFunction<T> mine = (ScopedFunction<T>) function;
+			ScopedFunction<T> theirs = (ScopedFunction<T>) other.function;
+			if (mine.sharesOuterWith(theirs))
+				// the entries of the caller that are untouched in both
+				// functions are trivially included
+				return mine.entriesNotSharedWith(theirs);
+		}
+		return super.entriesToCompare(other);
+	}
+
 	/**
 	 * Copies this environment. The function of the returned environment
 	 * <b>must</b> be a (shallow) copy of the one of the given environment.
@@ -237,27 +272,49 @@ public abstract class Environment<M extends Environment<M, E, T, V>,
 		return lattice.isBottom() && function == null;
 	}
 
+	/**
+	 * {@inheritDoc}<br>
+	 * <br>
+	 * Identifiers are renamed lazily: the function of the returned environment
+	 * stores the one of this environment together with {@code scope}, and
+	 * translates identifiers only when they are accessed. This makes the push
+	 * a constant time operation, regardless of the size of this environment.
+	 */
 	@Override
+	@SuppressWarnings("unchecked")
 	public M pushScope(ScopeToken scope) throws SemanticException {
-		AtomicReference<SemanticException> holder = new AtomicReference<>();
-
-		M result = liftIdentifiers(id -> {
-			try {
-				return (Identifier) id.pushScope(scope);
-			} catch (SemanticException e) {
-				holder.set(e);
-			}
-			return null;
-		});
-
-		if (holder.get() != null)
-			throw new SemanticException("Pushing the scope '" + scope + "' raised an error", holder.get());
+		if (isBottom() || isTop())
+			return (M) this;
 
-		return result;
+		// the function of this environment is copied, so that it is never
+		// modified by later updates of this environment
+		return mk(lattice, new ScopedFunction<>(mkNewFunction(function), scope));
 	}
 
+	/**
+	 * {@inheritDoc}<br>
+	 * <br>
+	 * If {@code scope} is the last scope pushed on this environment through
+	 * {@link #pushScope(ScopeToken)}, the function of the returned environment
+	 * is a copy of the one the scope was pushed on, where only the identifiers
+	 * changed after the push are updated. This takes time proportional to the
+	 * number of such identifiers, regardless of the size of the environment
+	 * where the scope was pushed. Otherwise, all identifiers are renamed.
+	 */
 	@Override
+	@SuppressWarnings("unchecked")
 	public M popScope(ScopeToken scope) throws SemanticException {
+		if (function instanceof ScopedFunction && ((ScopedFunction<T>) function).isScopedBy(scope)) {
+			ScopedFunction<T> scoped = (ScopedFunction<T>) function;
+			Map<Identifier, T> popped = mkNewFunction(scoped.outer());
+			try {
+				scoped.popInto(popped);
+			} catch (SemanticException e) {
+				throw new SemanticException("Popping the scope '" + scope + "' raised an error", e);
+			}
+			return mk(lattice, popped);
+		}
+
 		AtomicReference<SemanticException> holder = new AtomicReference<>();
 
 		M result = liftIdentifiers(id -> {
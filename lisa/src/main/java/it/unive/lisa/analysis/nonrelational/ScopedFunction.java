@@ -0,0 +1,411 @@
+package it.unive.lisa.analysis.nonrelational;
+
+import it.unive.lisa.analysis.Lattice;
+import it.unive.lisa.analysis.ScopeToken;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.symbolic.value.Identifier;
+import it.unive.lisa.util.collections.PersistentMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The function of an {@link Environment} on which a {@link ScopeToken} has
+ * been pushed, whose identifiers are renamed lazily. Pushing a scope on a
+ * function {@code f} yields the function that maps
+ * {@code id.pushScope(scope)} to {@code f(id)} for each identifier {@code id}
+ * of {@code f}: instead of building such function, this map stores
+ * {@code f} (the <i>outer</i> function, that is never modified) together with
+ * the scope, and translates keys when they are accessed. Entries that are
+ * added or changed after the push are stored in a separate
+ * {@link PersistentMap}, that shadows the ones of the outer function, while
+ * removed entries of the outer function are masked.<br>
+ * <br>
+ * As a consequence, pushing a scope takes constant time, and popping it (see
+ * {@link #popInto(Map)}) takes time proportional to the number of entries
+ * changed after the push, regardless of the size of the outer function.
+ * Copies made through {@link #ScopedFunction(ScopedFunction)} share the outer
+ * function, and take constant time. Instances are not thread safe, exactly as
+ * {@link java.util.HashMap}s.
+ *
+ * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+ *
+ * @param <T> the type of the values of this function
+ */
+final class ScopedFunction<T extends Lattice<T>> extends AbstractMap<Identifier, T> {
+
+	/**
+	 * The scope that has been pushed, together with the function it has been
+	 * pushed on. Frames are shared among copies of a function.
+	 *
+	 * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+	 *
+	 * @param <T> the type of the values of the function
+	 */
+	private static final class Frame<T> {
+
+		private final ScopeToken scope;
+
+		private final Map<Identifier, T> outer;
+
+		/**
+		 * The keys of the outer function, indexed by their renamed version.
+		 * This is lazily built the first time that the whole function is
+		 * visited.
+		 */
+		private volatile Map<Identifier, Identifier> renamed;
+
+		private Frame(ScopeToken scope, Map<Identifier, T> outer) {
+			this.scope = scope;
+			this.outer = outer;
+		}
+
+		private Map<Identifier, Identifier> renamed() {
+			Map<Identifier, Identifier> result = renamed;
+			if (result == null) {
+				result = new HashMap<>(outer.size() * 4 / 3 + 1);
+				for (Identifier id : outer.keySet())
+					result.put(push(id), id);
+				renamed = result;
+			}
+			return result;
+		}
+
+		private Identifier push(Identifier id) {
+			try {
+				return (Identifier) id.pushScope(scope);
+			} catch (SemanticException e) {
+				throw new IllegalStateException("Pushing the scope '" + scope + "' on '" + id + "' raised an error",
+						e);
+			}
+		}
+
+		private Identifier pop(Identifier id) {
+			try {
+				return (Identifier) id.popScope(scope);
+			} catch (SemanticException e) {
+				throw new IllegalStateException("Popping the scope '" + scope + "' from '" + id + "' raised an error",
+						e);
+			}
+		}
+
+		/**
+		 * Yields the key of the outer function that is renamed to
+		 * {@code key}, if any.
+		 */
+		private Identifier outerKey(Object key) {
+			if (!(key instanceof Identifier))
+				return null;
+
+			Map<Identifier, Identifier> index = renamed;
+			if (index != null)
+				return index.get(key);
+
+			Identifier popped = pop((Identifier) key);
+			if (popped == null || !outer.containsKey(popped) || !push(popped).equals(key))
+				return null;
+			return popped;
+		}
+	}
+
+	/**
+	 * The pushed scope, or {@code null} if the function has been cleared
+	 */
+	private Frame<T> frame;
+
+	/**
+	 * The entries added or changed after the push
+	 */
+	private final PersistentMap<Identifier, T> local;
+
+	/**
+	 * The (renamed) keys of the outer function that have been removed after
+	 * the push
+	 */
+	private final PersistentMap<Identifier, Boolean> masked;
+
+	/**
+	 * The number of keys of the outer function that are either shadowed by
+	 * {@link #local} or contained in {@link #masked}
+	 */
+	private int hidden;
+
+	/**
+	 * Builds the function obtained by pushing {@code scope} on {@code outer}.
+	 * The given function must not be modified afterwards.
+	 *
+	 * @param outer the function the scope is pushed on
+	 * @param scope the scope
+	 */
+	ScopedFunction(Map<Identifier, T> outer, ScopeToken scope) {
+		this.frame = new Frame<>(scope, outer);
+		this.local = new PersistentMap<>();
+		this.masked = new PersistentMap<>();
+		this.hidden = 0;
+	}
+
+	/**
+	 * Builds a copy of the given function, sharing its outer function.
+	 *
+	 * @param other the function to copy
+	 */
+	ScopedFunction(ScopedFunction<T> other) {
+		this.frame = other.frame;
+		this.local = new PersistentMap<>(other.local);
+		this.masked = new PersistentMap<>(other.masked);
+		this.hidden = other.hidden;
+	}
+
+	/**
+	 * Yields whether or not the last scope pushed on this function is
+	 * {@code scope}.
+	 *
+	 * @param scope the scope
+	 *
+	 * @return {@code true} if that condition holds
+	 */
+	boolean isScopedBy(ScopeToken scope) {
+		return frame != null && frame.scope.equals(scope);
+	}
+
+	/**
+	 * Yields whether or not this function and {@code other} have been
+	 * obtained, possibly through copies, by the same push of a scope.
+	 *
+	 * @param other the other function
+	 *
+	 * @return {@code true} if that condition holds
+	 */
+	boolean sharesOuterWith(ScopedFunction<T> other) {
+		return frame != null && frame == other.frame;
+	}
+
+	/**
+	 * Yields the function that the scope has been pushed on. This function
+	 * must not be modified.
+	 *
+	 * @return the outer function
+	 */
+	Map<Identifier, T> outer() {
+		return frame.outer;
+	}
+
+	/**
+	 * Pops the scope of this function, storing the result in {@code target}.
+	 * The latter must be a copy of {@link #outer()}: entries of the outer
+	 * function that have been removed after the push are removed from it, and
+	 * each entry added or changed after the push is stored in it under the
+	 * key obtained by popping the scope from the original one (entries whose
+	 * key does not survive the pop are discarded, and entries whose keys are
+	 * popped to the same one are joined together).
+	 *
+	 * @param target the copy of the outer function to update
+	 *
+	 * @throws SemanticException if an error happens while joining values
+	 */
+	void popInto(Map<Identifier, T> target) throws SemanticException {
+		for (Identifier key : masked.keySet())
+			target.remove(frame.outerKey(key));
+
+		Map<Identifier, T> popped = new HashMap<>();
+		for (Entry<Identifier, T> entry : local.entrySet()) {
+			Identifier id = frame.pop(entry.getKey());
+			if (id != null) {
+				T previous = popped.get(id);
+				popped.put(id, previous == null ? entry.getValue() : entry.getValue().lub(previous));
+			}
+		}
+
+		target.putAll(popped);
+	}
+
+	/**
+	 * Yields the entries of this function that are not shared with
+	 * {@code other}, that is, the ones whose key is not mapped by
+	 * {@code other} to the very same value object. Both functions must share
+	 * their outer function (see {@link #sharesOuterWith(ScopedFunction)}): the
+	 * entries of the outer function that are neither shadowed nor masked in
+	 * the two functions are skipped without being visited.
+	 *
+	 * @param other the other function
+	 *
+	 * @return the entries of this function that are not shared with
+	 *             {@code other}
+	 */
+	List<Entry<Identifier, T>> entriesNotSharedWith(ScopedFunction<T> other) {
+		List<Entry<Identifier, T>> diff = new ArrayList<>(local.entriesNotSharedWith(other.local));
+		for (Identifier key : other.local.keySet())
+			addOuterEntry(key, diff);
+		for (Identifier key : other.masked.keySet())
+			addOuterEntry(key, diff);
+		return diff;
+	}
+
+	private void addOuterEntry(Identifier key, List<Entry<Identifier, T>> diff) {
+		if (local.containsKey(key) || masked.containsKey(key))
+			return;
+		Identifier outerKey = frame.outerKey(key);
+		if (outerKey != null)
+			diff.add(new SimpleImmutableEntry<>(key, frame.outer.get(outerKey)));
+	}
+
+	@Override
+	public int size() {
+		return frame == null ? local.size() : local.size() + frame.outer.size() - hidden;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		if (local.containsKey(key))
+			return true;
+		return frame != null && !masked.containsKey(key) && frame.outerKey(key) != null;
+	}
+
+	@Override
+	public T get(Object key) {
+		if (local.containsKey(key))
+			return local.get(key);
+		if (frame == null || masked.containsKey(key))
+			return null;
+		Identifier outerKey = frame.outerKey(key);
+		return outerKey == null ? null : frame.outer.get(outerKey);
+	}
+
+	@Override
+	public T put(Identifier key, T value) {
+		if (local.containsKey(key))
+			return local.put(key, value);
+
+		T previous = null;
+		Identifier outerKey = frame == null ? null : frame.outerKey(key);
+		if (outerKey != null && masked.remove(key) == null) {
+			// the key becomes shadowed
+			previous = frame.outer.get(outerKey);
+			hidden++;
+		}
+
+		local.put(key, value);
+		return previous;
+	}
+
+	@Override
+	public T remove(Object key) {
+		Identifier outerKey = frame == null ? null : frame.outerKey(key);
+		if (local.containsKey(key)) {
+			T previous = local.remove(key);
+			if (outerKey != null)
+				// the key was shadowed, and it is still hidden
+				masked.put((Identifier) key, Boolean.TRUE);
+			return previous;
+		}
+
+		if (outerKey == null || masked.containsKey(key))
+			return null;
+		masked.put((Identifier) key, Boolean.TRUE);
+		hidden++;
+		return frame.outer.get(outerKey);
+	}
+
+	@Override
+	public void clear() {
+		frame = null;
+		local.clear();
+		masked.clear();
+		hidden = 0;
+	}
+
+	@Override
+	public Set<Entry<Identifier, T>> entrySet() {
+		return new AbstractSet<Entry<Identifier, T>>() {
+
+			@Override
+			public Iterator<Entry<Identifier, T>> iterator() {
+				return new EntryIterator();
+			}
+
+			@Override
+			public int size() {
+				return ScopedFunction.this.size();
+			}
+		};
+	}
+
+	/**
+	 * An iterator over the entries of the function, that yields the entries
+	 * added or changed after the push first, and then the ones of the outer
+	 * function that are neither shadowed nor masked. The iterator visits the
+	 * function as it was when the iterator was created, and removals performed
+	 * through it never affect the visit.
+	 *
+	 * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+	 */
+	private class EntryIterator implements Iterator<Entry<Identifier, T>> {
+
+		private final PersistentMap<Identifier, T> localSnapshot;
+
+		private final PersistentMap<Identifier, Boolean> maskedSnapshot;
+
+		private final Frame<T> frameSnapshot;
+
+		private final Iterator<Entry<Identifier, T>> locals;
+
+		private final Iterator<Entry<Identifier, Identifier>> outers;
+
+		private Entry<Identifier, T> next;
+
+		private Entry<Identifier, T> last;
+
+		private EntryIterator() {
+			localSnapshot = new PersistentMap<>(local);
+			maskedSnapshot = new PersistentMap<>(masked);
+			frameSnapshot = frame;
+			locals = localSnapshot.entrySet().iterator();
+			outers = frameSnapshot == null || frameSnapshot.outer.size() == hidden ? null
+					: frameSnapshot.renamed().entrySet().iterator();
+			advance();
+		}
+
+		private void advance() {
+			next = null;
+			if (locals.hasNext()) {
+				next = locals.next();
+				return;
+			}
+
+			while (outers != null && next == null && outers.hasNext()) {
+				Entry<Identifier, Identifier> candidate = outers.next();
+				Identifier key = candidate.getKey();
+				if (!localSnapshot.containsKey(key) && !maskedSnapshot.containsKey(key))
+					next = new SimpleImmutableEntry<>(key, frameSnapshot.outer.get(candidate.getValue()));
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public Entry<Identifier, T> next() {
+			if (next == null)
+				throw new NoSuchElementException();
+			last = next;
+			advance();
+			return last;
+		}
+
+		@Override
+		public void remove() {
+			if (last == null)
+				throw new IllegalStateException();
+			ScopedFunction.this.remove(last.getKey());
+			last = null;
+		}
+	}
+}
@@ -3,6 +3,11 @@ package it.unive.lisa.caches;
 import it.unive.lisa.type.Type;
 import it.unive.lisa.util.collections.externalSet.ExternalSet;
 import it.unive.lisa.util.collections.externalSet.ExternalSetCache;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 /**
  * A holder of {@link ExternalSetCache}s, to ensure that all
@@ -18,6 +23,14 @@ public class Caches {
 	 */
 	private static final ExternalSetCache<Type> types = new ExternalSetCache<>();
 
+	/**
+	 * The caches whose contents are meaningful only for a single analysis,
+	 * weakly referenced so that caches that are no longer used can be garbage
+	 * collected
+	 */
+	private static final Set<ExternalSetCache<?>> analysisCaches = Collections
+			.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
 	/**
 	 * Yields the globally defined cache for {@link ExternalSet}s containing
 	 * {@link Type}s.
@@ -27,4 +40,30 @@ public class Caches {
 	public static ExternalSetCache<Type> types() {
 		return types;
 	}
+
+	/**
+	 * Registers a cache whose contents are meaningful only for a single
+	 * analysis, and that will thus be cleared by
+	 * {@link #clearAnalysisCaches()}.
+	 * 
+	 * @param cache the cache to register
+	 */
+	public static void registerAnalysisCache(ExternalSetCache<?> cache) {
+		analysisCaches.add(cache);
+	}
+
+	/**
+	 * Clears all the caches registered through
+	 * {@link #registerAnalysisCache(ExternalSetCache)}. This is invoked when a
+	 * new analysis starts, and it invalidates all the {@link ExternalSet}s
+	 * built by such caches during previous analyses. This method must not be
+	 * invoked while other threads are accessing the caches.
+	 */
+	public static void clearAnalysisCaches() {
+		List<ExternalSetCache<?>> caches;
+		synchronized (analysisCaches) {
+			caches = new ArrayList<>(analysisCaches);
+		}
+		caches.forEach(ExternalSetCache::clear);
+	}
 }
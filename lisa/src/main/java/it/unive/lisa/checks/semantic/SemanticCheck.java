@@ -1,6 +1,8 @@
 package it.unive.lisa.checks.semantic;
 
+import it.unive.lisa.LiSAConfiguration;
 import it.unive.lisa.checks.Check;
+import it.unive.lisa.program.cfg.statement.Expression;
 
 /**
  * A {@link Check} that is able to exploit both the syntactic structure of the
@@ -11,4 +13,26 @@ import it.unive.lisa.checks.Check;
  * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
  */
 public interface SemanticCheck extends Check<CheckToolWithAnalysisResults<?, ?, ?>> {
+
+	/**
+	 * Yields whether or not this check needs the analysis results computed
+	 * on the given expression, that is nested within a statement of a cfg.
+	 * This is queried only if the results of nested expressions are dropped
+	 * after the analysis (see
+	 * {@link LiSAConfiguration#setDropInnerResults(boolean)}): the results of
+	 * the expressions for which no registered check returns {@code true} will
+	 * not be available during the inspection, and requesting them will raise
+	 * an {@link IllegalStateException}. The results of the statements that are
+	 * nodes of a cfg are always available. The default implementation of this
+	 * method conservatively returns {@code true}: checks that do not inspect
+	 * nested expressions should override it to let their results be dropped.
+	 * 
+	 * @param expression the nested expression
+	 * 
+	 * @return {@code true} if this check needs the results of
+	 *             {@code expression}
+	 */
+	default boolean needsResultsOf(Expression expression) {
+		return true;
+	}
 }
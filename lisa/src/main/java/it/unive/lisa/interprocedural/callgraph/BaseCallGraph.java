@@ -12,10 +12,18 @@ import it.unive.lisa.program.cfg.statement.Expression;
 import it.unive.lisa.program.cfg.statement.HybridCall;
 import it.unive.lisa.program.cfg.statement.OpenCall;
 import it.unive.lisa.program.cfg.statement.UnresolvedCall;
+import it.unive.lisa.program.cfg.statement.UnresolvedCall.ResolutionStrategy;
 import it.unive.lisa.type.Type;
+import it.unive.lisa.util.collections.externalSet.ExternalSet;
 import it.unive.lisa.util.datastructures.graph.Graph;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -25,7 +33,13 @@ import java.util.stream.Collectors;
  * <br>
  * The graph underlying this call graph is built lazily through each call to
  * resolve: querying for information about the graph before the completion of
- * the analysis might lead to wrong results.
+ * the analysis might lead to wrong results.<br>
+ * <br>
+ * Resolutions are cached for each call site, together with the types they
+ * were computed from: the possible types of the receiver and, depending on the
+ * {@link ResolutionStrategy} of the call, the runtime types of the parameters.
+ * Resolving the same call again with the same types reuses the cached targets
+ * without querying the program, nor updating the graph.
  *
  * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a> and
  *             <a href="mailto:pietro.ferrara@unive.it">Pietro Ferrara</a>
@@ -34,45 +48,61 @@ public abstract class BaseCallGraph extends Graph<BaseCallGraph, CallGraphNode,
 
 	private Program program;
 
+	/**
+	 * The non-instance code members of the program, indexed by name
+	 */
+	private Map<String, Collection<CodeMember>> staticMembers;
+
+	/**
+	 * The last resolution of each call site
+	 */
+	private final Map<UnresolvedCall, Resolution> resolutions = Collections.synchronizedMap(new IdentityHashMap<>());
+
 	@Override
 	public final void init(Program program) throws CallGraphConstructionException {
 		this.program = program;
+		this.staticMembers = new HashMap<>();
+		for (CodeMember cm : program.getAllCodeMembers())
+			if (!cm.getDescriptor().isInstance())
+				staticMembers.computeIfAbsent(cm.getDescriptor().getName(), n -> new ArrayList<>()).add(cm);
+		resolutions.clear();
 	}
 
 	@Override
 	public final Call resolve(UnresolvedCall call) throws CallResolutionException {
-		Collection<CFG> targets = new ArrayList<>();
-		Collection<NativeCFG> nativeTargets = new ArrayList<>();
-
+		Collection<Type> receiverTypes = null;
 		if (call.isInstanceCall()) {
 			if (call.getParameters().length == 0)
 				throw new CallResolutionException(
 						"An instance call should have at least one parameter to be used as the receiver of the call");
-			Expression receiver = call.getParameters()[0];
-			for (Type recType : getPossibleTypesOfReceiver(receiver)) {
-				if (!recType.isUnitType())
-					continue;
-
-				CompilationUnit unit = recType.asUnitType().getUnit();
-				Collection<CodeMember> candidates = unit.getInstanceCodeMembersByName(call.getTargetName(), true);
-				for (CodeMember cm : candidates)
-					if (cm.getDescriptor().isInstance()
-							&& call.getStrategy().matches(cm.getDescriptor().getArgs(), call.getParameters()))
-						if (cm instanceof CFG)
-							targets.add((CFG) cm);
-						else
-							nativeTargets.add((NativeCFG) cm);
-			}
-		} else {
-			for (CodeMember cm : program.getAllCodeMembers())
-				if (!cm.getDescriptor().isInstance() && cm.getDescriptor().getName().equals(call.getTargetName())
-						&& call.getStrategy().matches(cm.getDescriptor().getArgs(), call.getParameters()))
-					if (cm instanceof CFG)
-						targets.add((CFG) cm);
-					else
-						nativeTargets.add((NativeCFG) cm);
+			receiverTypes = getPossibleTypesOfReceiver(call.getParameters()[0]);
+		}
+
+		List<Collection<Type>> types = typesOf(call, receiverTypes);
+		Resolution resolution = resolutions.get(call);
+		if (resolution == null || !sameTypes(resolution.types, types)) {
+			resolution = new Resolution(snapshot(types));
+			if (receiverTypes != null)
+				for (Type recType : receiverTypes) {
+					if (!recType.isUnitType())
+						continue;
+
+					CompilationUnit unit = recType.asUnitType().getUnit();
+					Collection<CodeMember> candidates = unit.getInstanceCodeMembersByName(call.getTargetName(), true);
+					for (CodeMember cm : candidates)
+						if (cm.getDescriptor().isInstance())
+							resolution.addIfMatching(call, cm);
+				}
+			else
+				for (CodeMember cm : staticMembers.getOrDefault(call.getTargetName(), Collections.emptyList()))
+					resolution.addIfMatching(call, cm);
+
+			resolutions.put(call, resolution);
+			registerCall(call.getCFG(), resolution.targets, resolution.nativeTargets);
 		}
 
+		Collection<CFG> targets = resolution.targets;
+		Collection<NativeCFG> nativeTargets = resolution.nativeTargets;
 		Call resolved;
 		if (targets.isEmpty() && nativeTargets.isEmpty())
 			resolved = new OpenCall(call.getCFG(), call.getLocation(), call.getTargetName(), call.getStaticType(),
@@ -86,14 +116,112 @@ public abstract class BaseCallGraph extends Graph<BaseCallGraph, CallGraphNode,
 
 		resolved.setOffset(call.getOffset());
 
-		CallGraphNode source = new CallGraphNode(this, call.getCFG());
+		return resolved;
+	}
+
+	/**
+	 * Yields the types that the resolution of the given call depends on: the
+	 * possible types of its receiver, if any, followed by the runtime types of
+	 * the parameters that are matched using
+	 * {@link ResolutionStrategy#DYNAMIC_TYPES}. Static types never change, and
+	 * are thus not part of the result. The returned collections are the ones
+	 * used by the analysis, and they might be updated in place afterwards: they
+	 * must be passed to {@link #snapshot(List)} before being stored.
+	 * 
+	 * @param call          the call
+	 * @param receiverTypes the possible types of the receiver of the call, or
+	 *                          {@code null} if it is not an instance call
+	 * 
+	 * @return the types
+	 */
+	private static List<Collection<Type>> typesOf(UnresolvedCall call, Collection<Type> receiverTypes) {
+		List<Collection<Type>> types = new ArrayList<>();
+		if (receiverTypes != null)
+			types.add(receiverTypes);
+
+		Expression[] params = call.getParameters();
+		if (call.getStrategy() == ResolutionStrategy.DYNAMIC_TYPES)
+			for (Expression param : params)
+				types.add(param.getRuntimeTypes());
+		else if (call.getStrategy() == ResolutionStrategy.FIRST_DYNAMIC_THEN_STATIC && params.length > 0)
+			types.add(params[0].getRuntimeTypes());
+		return types;
+	}
+
+	private static List<Collection<Type>> snapshot(List<Collection<Type>> types) {
+		List<Collection<Type>> snapshot = new ArrayList<>(types.size());
+		for (Collection<Type> t : types)
+			// runtime types are updated in place during the analysis
+			if (t instanceof ExternalSet)
+				snapshot.add(((ExternalSet<Type>) t).copy());
+			else
+				snapshot.add(new HashSet<>(t));
+		return snapshot;
+	}
+
+	private static boolean sameTypes(List<Collection<Type>> stored, List<Collection<Type>> live) {
+		if (stored.size() != live.size())
+			return false;
+		for (int i = 0; i < stored.size(); i++) {
+			Collection<Type> s = stored.get(i), l = live.get(i);
+			if (s instanceof ExternalSet && l instanceof ExternalSet) {
+				// compares the underlying bits, without copying
+				if (!s.equals(l))
+					return false;
+			} else if (s.size() != l.size() || !s.containsAll(l))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * The targets of a call, together with the types they were computed from.
+	 * 
+	 * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+	 */
+	private static final class Resolution {
+
+		private final List<Collection<Type>> types;
+
+		private final Collection<CFG> targets = new ArrayList<>();
+
+		private final Collection<NativeCFG> nativeTargets = new ArrayList<>();
+
+		private Resolution(List<Collection<Type>> types) {
+			this.types = types;
+		}
+
+		private void addIfMatching(UnresolvedCall call, CodeMember cm) {
+			if (!call.getStrategy().matches(cm.getDescriptor().getArgs(), call.getParameters()))
+				return;
+			if (cm instanceof CFG)
+				targets.add((CFG) cm);
+			else
+				nativeTargets.add((NativeCFG) cm);
+		}
+	}
+
+	/**
+	 * Adds to this call graph the edges going from {@code caller} to each of
+	 * the given targets, adding the nodes if needed. Since calls might be
+	 * resolved by different threads at the same time (e.g., when more than one
+	 * entrypoint is analyzed in parallel), updates to the graph are
+	 * synchronized. This method is invoked only when the targets of a call are
+	 * computed, and not when they are retrieved from the cache.
+	 * 
+	 * @param caller        the cfg containing the resolved call
+	 * @param targets       the cfgs that are targets of the call
+	 * @param nativeTargets the native cfgs that are targets of the call
+	 */
+	synchronized void registerCall(CFG caller, Collection<CFG> targets, Collection<NativeCFG> nativeTargets) {
+		CallGraphNode source = new CallGraphNode(this, caller);
 		if (!adjacencyMatrix.containsNode(source, false))
-			addNode(source, program.getEntryPoints().contains(call.getCFG()));
+			addNode(source, program.getEntryPoints().contains(caller));
 
 		for (CFG target : targets) {
 			CallGraphNode t = new CallGraphNode(this, target);
 			if (!adjacencyMatrix.containsNode(t, false))
-				addNode(t, program.getEntryPoints().contains(call.getCFG()));
+				addNode(t, program.getEntryPoints().contains(caller));
 			addEdge(new CallGraphEdge(source, t));
 		}
 
@@ -103,8 +231,6 @@ public abstract class BaseCallGraph extends Graph<BaseCallGraph, CallGraphNode,
 				addNode(t, false);
 			addEdge(new CallGraphEdge(source, t));
 		}
-
-		return resolved;
 	}
 
 	/**
@@ -119,15 +245,21 @@ public abstract class BaseCallGraph extends Graph<BaseCallGraph, CallGraphNode,
 	protected abstract Collection<Type> getPossibleTypesOfReceiver(Expression receiver);
 
 	@Override
-	public Collection<CodeMember> getCallees(CodeMember cm) {
-		return followersOf(new CallGraphNode(this, cm)).stream().map(CallGraphNode::getCodeMember)
-				.collect(Collectors.toList());
+	public synchronized Collection<CodeMember> getCallees(CodeMember cm) {
+		Collection<CallGraphNode> callees = followersOf(new CallGraphNode(this, cm));
+		if (callees == null)
+			// the graph is built lazily: cm has not been reached yet
+			return Collections.emptyList();
+		return callees.stream().map(CallGraphNode::getCodeMember).collect(Collectors.toList());
 	}
 
 	@Override
-	public Collection<CodeMember> getCallers(CodeMember cm) {
-		return predecessorsOf(new CallGraphNode(this, cm)).stream().map(CallGraphNode::getCodeMember)
-				.collect(Collectors.toList());
+	public synchronized Collection<CodeMember> getCallers(CodeMember cm) {
+		Collection<CallGraphNode> callers = predecessorsOf(new CallGraphNode(this, cm));
+		if (callers == null)
+			// the graph is built lazily: cm has not been reached yet
+			return Collections.emptyList();
+		return callers.stream().map(CallGraphNode::getCodeMember).collect(Collectors.toList());
 	}
 
 	@Override
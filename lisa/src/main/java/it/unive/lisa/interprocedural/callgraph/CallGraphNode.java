@@ -48,6 +48,12 @@ public class CallGraphNode implements Node<CallGraphNode, CallGraphEdge, BaseCal
 		return offset;
 	}
 
+	@Override
+	public int getOffset() {
+		// call graph nodes are not numbered
+		return -1;
+	}
+
 	@Override
 	public boolean isEqualTo(CallGraphNode other) {
 		return equals(other);
@@ -0,0 +1,330 @@
+package it.unive.lisa.interprocedural.impl;
+
+import it.unive.lisa.AnalysisExecutionException;
+import it.unive.lisa.analysis.AbstractState;
+import it.unive.lisa.analysis.AnalysisState;
+import it.unive.lisa.analysis.CFGWithAnalysisResults;
+import it.unive.lisa.analysis.ScopeToken;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.heap.HeapDomain;
+import it.unive.lisa.analysis.lattices.ExpressionSet;
+import it.unive.lisa.analysis.value.ValueDomain;
+import it.unive.lisa.interprocedural.callgraph.BaseCallGraph;
+import it.unive.lisa.interprocedural.callgraph.CallGraphEdge;
+import it.unive.lisa.interprocedural.callgraph.CallGraphNode;
+import it.unive.lisa.interprocedural.callgraph.CallResolutionException;
+import it.unive.lisa.logging.IterationLogger;
+import it.unive.lisa.logging.TimerLogger;
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.CodeMember;
+import it.unive.lisa.program.cfg.statement.CFGCall;
+import it.unive.lisa.program.cfg.statement.Statement;
+import it.unive.lisa.program.cfg.statement.UnresolvedCall;
+import it.unive.lisa.symbolic.SymbolicExpression;
+import it.unive.lisa.symbolic.value.Identifier;
+import it.unive.lisa.symbolic.value.Variable;
+import it.unive.lisa.util.datastructures.graph.FixpointException;
+import it.unive.lisa.util.datastructures.graph.FixpointGraph;
+import it.unive.lisa.util.datastructures.graph.algorithms.StronglyConnectedComponents;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A context insensitive interprocedural analysis that visits the call graph
+ * bottom-up. All calls of the program are first resolved, and the resulting
+ * {@link BaseCallGraph} is condensed into its strongly connected components
+ * (see {@link StronglyConnectedComponents}). Components are then analyzed in
+ * reverse topological order, so that the results of all callees are available
+ * when a caller is analyzed. Each cfg is analyzed once, starting from an entry
+ * state where its parameters can hold any value, and its exit state is used as
+ * summary for all calls targeting it. Only the components containing
+ * recursive calls are iterated until the results of their cfgs stabilize,
+ * starting from bottom summaries and applying widening after
+ * {@link FixpointGraph#DEFAULT_WIDENING_THRESHOLD} iterations.<br>
+ * <br>
+ * If an {@link ExecutorService} is provided at construction time, components
+ * whose callees have all been analyzed are analyzed concurrently on it.
+ * Results do not depend on the order in which components are processed, and
+ * are thus the same of the ones produced by the sequential analysis.<br>
+ * <br>
+ * Calls whose targets were not part of the call graph when components were
+ * computed are treated as in {@link ModularWorstCaseAnalysis}. This analysis
+ * can only be used with call graphs extending {@link BaseCallGraph}.
+ *
+ * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+ *
+ * @param <A> the abstract state of the analysis
+ * @param <H> the heap domain
+ * @param <V> the value domain
+ */
+public class BottomUpAnalysis<A extends AbstractState<A, H, V>,
+		H extends HeapDomain<H>,
+		V extends ValueDomain<V>> extends CallGraphBasedAnalysis<A, H, V> {
+
+	private static final Logger log = LogManager.getLogger(BottomUpAnalysis.class);
+
+	/**
+	 * The results of the cfgs that have been analyzed at least once.
+	 */
+	private final Map<CFG, CFGWithAnalysisResults<A, H, V>> results;
+
+	/**
+	 * The cfgs whose component has been completely analyzed, and whose
+	 * results are thus final.
+	 */
+	private final Set<CFG> done;
+
+	/**
+	 * The component currently being analyzed. This is confined to the thread
+	 * performing the analysis, since different components might be analyzed
+	 * in parallel.
+	 */
+	private final ThreadLocal<Collection<CFG>> component;
+
+	/**
+	 * The executor used to analyze components in parallel, or {@code null} if
+	 * they should be analyzed sequentially.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * Builds the analysis.
+	 */
+	public BottomUpAnalysis() {
+		this(null);
+	}
+
+	/**
+	 * Builds the analysis. If {@code executor} is not {@code null}, independent
+	 * components of the call graph will be analyzed in parallel using it. Note
+	 * that the lifecycle of the executor is not managed by this analysis: it
+	 * is up to the caller to shut it down once the analysis terminates.
+	 *
+	 * @param executor the executor used to analyze components in parallel
+	 *                     (can be {@code null})
+	 */
+	public BottomUpAnalysis(ExecutorService executor) {
+		this.executor = executor;
+		this.results = new ConcurrentHashMap<>();
+		this.done = Collections.newSetFromMap(new ConcurrentHashMap<>());
+		this.component = new ThreadLocal<>();
+	}
+
+	@Override
+	public final void fixpoint(AnalysisState<A, H, V> entryState) throws FixpointException {
+		if (!(callgraph instanceof BaseCallGraph))
+			throw new FixpointException(getClass().getSimpleName() + " requires a call graph extending "
+					+ BaseCallGraph.class.getSimpleName());
+
+		results.clear();
+		done.clear();
+		List<Collection<CFG>> components = components();
+		TimerLogger.execAction(log, "Computing fixpoint over the whole program", () -> {
+			if (executor == null)
+				for (Collection<CFG> cfgs : IterationLogger.iterate(log, components,
+						"Processing call graph components", "components"))
+					analyze(cfgs, entryState);
+			else
+				analyzeInParallel(components, entryState);
+		});
+	}
+
+	/**
+	 * Resolves all the calls of the program, and yields the strongly connected
+	 * components of the resulting call graph, in reverse topological order.
+	 * Cfgs that are not part of the call graph are returned as singleton
+	 * components.
+	 */
+	private List<Collection<CFG>> components() throws FixpointException {
+		for (CFG cfg : program.getAllCFGs())
+			for (Statement st : cfg.getStatementsByOffset().values())
+				if (st instanceof UnresolvedCall)
+					try {
+						callgraph.resolve((UnresolvedCall) st);
+					} catch (CallResolutionException e) {
+						throw new FixpointException("Unable to resolve call '" + st + "' in " + cfg, e);
+					}
+
+		List<Collection<CFG>> components = new ArrayList<>();
+		Set<CFG> covered = new HashSet<>();
+		for (Collection<CallGraphNode> scc : new StronglyConnectedComponents<BaseCallGraph, CallGraphNode,
+				CallGraphEdge>().build((BaseCallGraph) callgraph)) {
+			Collection<CFG> cfgs = new LinkedHashSet<>();
+			for (CallGraphNode node : scc)
+				if (node.getCodeMember() instanceof CFG)
+					cfgs.add((CFG) node.getCodeMember());
+			if (!cfgs.isEmpty()) {
+				components.add(cfgs);
+				covered.addAll(cfgs);
+			}
+		}
+
+		for (CFG cfg : program.getAllCFGs())
+			if (!covered.contains(cfg))
+				components.add(Collections.singleton(cfg));
+
+		return components;
+	}
+
+	private void analyzeInParallel(List<Collection<CFG>> components, AnalysisState<A, H, V> entryState)
+			throws AnalysisExecutionException {
+		Map<CFG, Integer> indexes = new HashMap<>();
+		for (int i = 0; i < components.size(); i++)
+			for (CFG cfg : components.get(i))
+				indexes.put(cfg, i);
+
+		// a component can be analyzed once all the ones it calls are done
+		int[] pending = new int[components.size()];
+		List<Collection<Integer>> dependents = new ArrayList<>(components.size());
+		for (int i = 0; i < components.size(); i++)
+			dependents.add(new ArrayList<>());
+		for (int i = 0; i < components.size(); i++) {
+			Set<Integer> callees = new HashSet<>();
+			for (CFG cfg : components.get(i))
+				for (CodeMember callee : callgraph.getCallees(cfg)) {
+					Integer index = indexes.get(callee);
+					if (index != null && index != i)
+						callees.add(index);
+				}
+			pending[i] = callees.size();
+			for (Integer callee : callees)
+				dependents.get(callee).add(i);
+		}
+
+		CompletionService<Integer> service = new ExecutorCompletionService<>(executor);
+		Collection<Future<Integer>> tasks = new ArrayList<>(components.size());
+		for (int i = 0; i < components.size(); i++)
+			if (pending[i] == 0)
+				tasks.add(submit(service, components, i, entryState));
+
+		for (int completed = 0; completed < components.size(); completed++)
+			try {
+				for (int dependent : dependents.get(service.take().get()))
+					if (--pending[dependent] == 0)
+						tasks.add(submit(service, components, dependent, entryState));
+			} catch (InterruptedException e) {
+				tasks.forEach(t -> t.cancel(true));
+				Thread.currentThread().interrupt();
+				throw new AnalysisExecutionException("Interrupted while processing call graph components", e);
+			} catch (ExecutionException e) {
+				tasks.forEach(t -> t.cancel(true));
+				if (e.getCause() instanceof AnalysisExecutionException)
+					throw (AnalysisExecutionException) e.getCause();
+				throw new AnalysisExecutionException("Error while processing call graph components", e.getCause());
+			}
+	}
+
+	private Future<Integer> submit(CompletionService<Integer> service, List<Collection<CFG>> components, int index,
+			AnalysisState<A, H, V> entryState) {
+		return service.submit(() -> {
+			analyze(components.get(index), entryState);
+			return index;
+		});
+	}
+
+	private void analyze(Collection<CFG> cfgs, AnalysisState<A, H, V> entryState)
+			throws AnalysisExecutionException {
+		boolean recursive = cfgs.size() > 1 || callgraph.getCallees(cfgs.iterator().next()).containsAll(cfgs);
+		component.set(cfgs);
+		CFG current = null;
+		try {
+			Map<CFG, AnalysisState<A, H, V>> entries = new HashMap<>();
+			for (CFG cfg : cfgs) {
+				current = cfg;
+				entries.put(cfg, prepareEntryStateOfEntryPoint(entryState, cfg));
+			}
+
+			int iter = 0;
+			boolean changed;
+			do {
+				changed = false;
+				for (CFG cfg : cfgs) {
+					current = cfg;
+					CFGWithAnalysisResults<A, H, V> result = cfg.getFixpointStrategy().fixpoint(cfg,
+							entries.get(cfg), this);
+					CFGWithAnalysisResults<A, H, V> previous = results.get(cfg);
+					if (previous == null) {
+						results.put(cfg, result);
+						changed = true;
+					} else if (!result.lessOrEqual(previous)) {
+						results.put(cfg, iter < FixpointGraph.DEFAULT_WIDENING_THRESHOLD ? previous.lub(result)
+								: previous.widening(result));
+						changed = true;
+					}
+				}
+				iter++;
+			} while (recursive && changed);
+
+			done.addAll(cfgs);
+		} catch (SemanticException e) {
+			throw new AnalysisExecutionException("Error while computing the results of " + current, e);
+		} catch (FixpointException e) {
+			throw new AnalysisExecutionException("Error while computing fixpoint for " + current, e);
+		} finally {
+			component.remove();
+		}
+	}
+
+	@Override
+	public final Collection<CFGWithAnalysisResults<A, H, V>> getAnalysisResultsOf(CFG cfg) {
+		CFGWithAnalysisResults<A, H, V> result = results.get(cfg);
+		return result == null ? Collections.emptySet() : Collections.singleton(result);
+	}
+
+	@Override
+	public final AnalysisState<A, H, V> getAbstractResultOf(CFGCall call, AnalysisState<A, H, V> entryState,
+			ExpressionSet<SymbolicExpression>[] parameters)
+			throws SemanticException {
+		ScopeToken scope = new ScopeToken(call);
+		AnalysisState<A, H, V> callState = entryState.pushScope(scope);
+		Identifier meta = (Identifier) call.getMetaVariable().pushScope(scope);
+		Collection<CFG> current = component.get();
+		AnalysisState<A, H, V> result = entryState.bottom();
+
+		for (CFG cfg : call.getTargets()) {
+			if (!done.contains(cfg) && (current == null || !current.contains(cfg))) {
+				// not part of the call graph used to schedule components
+				if (call.getStaticType().isVoidType())
+					result = result.lub(entryState.top());
+				else
+					result = result.lub(entryState.top().smallStepSemantics(
+							new Variable(call.getRuntimeTypes(), "ret_value", call.getLocation()), call));
+				continue;
+			}
+
+			CFGWithAnalysisResults<A, H, V> summary = results.get(cfg);
+			if (summary == null)
+				// first iteration over a recursive component: the call
+				// contributes with bottom
+				continue;
+
+			// the summary has been computed with unknown parameters: the
+			// variables of the caller, hidden in the call state, are not
+			// modified by the callee and can be joined with its exit state
+			AnalysisState<A, H, V> exitState = summary.getExitState();
+			AnalysisState<A, H, V> merged = callState.lub(exitState);
+			AnalysisState<A, H, V> tmp = callState.bottom();
+			for (SymbolicExpression ret : exitState.getComputedExpressions())
+				tmp = tmp.lub(merged.assign(meta, ret, call));
+
+			result = result.lub(tmp.popScope(scope));
+		}
+
+		return result;
+	}
+}
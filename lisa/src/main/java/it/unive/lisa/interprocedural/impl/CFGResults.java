@@ -6,7 +6,10 @@ import it.unive.lisa.analysis.SemanticException;
 import it.unive.lisa.analysis.heap.HeapDomain;
 import it.unive.lisa.analysis.lattices.FunctionalLattice;
 import it.unive.lisa.analysis.value.ValueDomain;
+import it.unive.lisa.util.collections.Interner;
 import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.lang3.tuple.Pair;
 
 /**
@@ -28,6 +31,12 @@ public class CFGResults<A extends AbstractState<A, H, V>,
 		V extends ValueDomain<V>>
 		extends FunctionalLattice<CFGResults<A, H, V>, ContextSensitivityToken, CFGWithAnalysisResults<A, H, V>> {
 
+	/**
+	 * The interner used to share equal states among the stored results, or
+	 * {@code null} if states are not interned
+	 */
+	private final Interner<Object> states;
+
 	/**
 	 * Builds a new result.
 	 * 
@@ -35,7 +44,23 @@ public class CFGResults<A extends AbstractState<A, H, V>,
 	 *                    values
 	 */
 	public CFGResults(CFGWithAnalysisResults<A, H, V> lattice) {
+		this(lattice, null);
+	}
+
+	/**
+	 * Builds a new result, where the states of each stored result are
+	 * interned (see {@link CFGWithAnalysisResults#intern(Interner)}) through
+	 * the given interner.
+	 * 
+	 * @param lattice a singleton instance used for retrieving top and bottom
+	 *                    values
+	 * @param states  the interner used to share equal states among stored
+	 *                    results, or {@code null} if states should not be
+	 *                    interned
+	 */
+	public CFGResults(CFGWithAnalysisResults<A, H, V> lattice, Interner<Object> states) {
 		super(lattice);
+		this.states = states;
 	}
 
 	/**
@@ -57,7 +82,7 @@ public class CFGResults<A extends AbstractState<A, H, V>,
 	 * The value returned by this method is intended to be a hint that a new
 	 * fixpoint computation is needed to ensure that the results are stable.
 	 * 
-	 * @param token  the {@link ContextSensitivityToken} that identifying the
+	 * @param token  the {@link ContextSensitivityToken} identifying the
 	 *                   result
 	 * @param result the {@link CFGWithAnalysisResults} to store
 	 * 
@@ -65,13 +90,13 @@ public class CFGResults<A extends AbstractState<A, H, V>,
 	 * 
 	 * @throws SemanticException if something goes wrong during the update
 	 */
-	public Pair<Boolean, CFGWithAnalysisResults<A, H, V>> putResult(ContextSensitivityToken token,
+	public synchronized Pair<Boolean, CFGWithAnalysisResults<A, H, V>> putResult(ContextSensitivityToken token,
 			CFGWithAnalysisResults<A, H, V> result)
 			throws SemanticException {
 		CFGWithAnalysisResults<A, H, V> previousResult = function.get(token);
 		if (previousResult == null) {
 			// no previous result
-			function.put(token, result);
+			function.put(token, intern(result));
 			return Pair.of(false, result);
 		} else if (previousResult.lessOrEqual(result)) {
 			// previous is smaller than result
@@ -80,7 +105,7 @@ public class CFGResults<A extends AbstractState<A, H, V>,
 				return Pair.of(false, previousResult);
 			else {
 				// result is bigger, store that instead
-				function.put(token, result);
+				function.put(token, intern(result));
 				return Pair.of(true, result);
 			}
 		} else if (result.lessOrEqual(previousResult)) {
@@ -89,15 +114,21 @@ public class CFGResults<A extends AbstractState<A, H, V>,
 		} else {
 			// result and previous are not comparable
 			CFGWithAnalysisResults<A, H, V> lub = previousResult.lub(result);
-			function.put(token, lub);
+			function.put(token, intern(lub));
 			return Pair.of(true, lub);
 		}
 	}
 
+	private CFGWithAnalysisResults<A, H, V> intern(CFGWithAnalysisResults<A, H, V> result) {
+		// results are interned only when stored, since interning requires
+		// hashing all of their states
+		return states == null ? result : result.intern(states);
+	}
+
 	/**
 	 * Yields {@code true} if a result exists for the given {@code token}.
 	 * 
-	 * @param token the {@link ContextSensitivityToken} that identifying the
+	 * @param token the {@link ContextSensitivityToken} identifying the
 	 *                  result
 	 * 
 	 * @return {@code true} if that condition holds
@@ -106,6 +137,17 @@ public class CFGResults<A extends AbstractState<A, H, V>,
 		return function != null && function.containsKey(token);
 	}
 
+	/**
+	 * Forgets the result for the given {@code token}, if any.
+	 * 
+	 * @param token the {@link ContextSensitivityToken} identifying the
+	 *                  result
+	 */
+	public void forget(ContextSensitivityToken token) {
+		if (function != null)
+			function.remove(token);
+	}
+
 	/**
 	 * Yields all the results stored in this object, for any possible
 	 * {@link ContextSensitivityToken} used.
@@ -116,9 +158,17 @@ public class CFGResults<A extends AbstractState<A, H, V>,
 		return function.values();
 	}
 
+	@Override
+	protected Map<ContextSensitivityToken, CFGWithAnalysisResults<A, H, V>> mkNewFunction(
+			Map<ContextSensitivityToken, CFGWithAnalysisResults<A, H, V>> other) {
+		if (other == null)
+			return new ConcurrentHashMap<>();
+		return new ConcurrentHashMap<>(other);
+	}
+
 	@Override
 	public CFGResults<A, H, V> top() {
-		return new CFGResults<>(lattice.top());
+		return new CFGResults<>(lattice.top(), states);
 	}
 
 	@Override
@@ -128,7 +178,7 @@ public class CFGResults<A extends AbstractState<A, H, V>,
 
 	@Override
 	public CFGResults<A, H, V> bottom() {
-		return new CFGResults<>(lattice.bottom());
+		return new CFGResults<>(lattice.bottom(), states);
 	}
 
 	@Override
@@ -0,0 +1,82 @@
+package it.unive.lisa.interprocedural.impl;
+
+import it.unive.lisa.analysis.ScopeToken;
+
+/**
+ * A context sensitive token representing the last {@code k} call sites of
+ * the call chain (i.e., a k-limited call string). Popping a token always
+ * yields back the token it has been pushed on, even if its oldest call site
+ * has been dropped when pushing.
+ *
+ * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+ */
+public class CallStringToken extends InternedToken {
+
+	private final int limit;
+
+	/**
+	 * The number of call sites in the context of this token.
+	 */
+	private final int length;
+
+	/**
+	 * The canonical token of the context of this one without its oldest call
+	 * site, lazily computed. This is used only on canonical tokens.
+	 */
+	private volatile InternedToken suffix;
+
+	/**
+	 * Builds the empty token.
+	 *
+	 * @param limit the maximum number of call sites tracked by the token
+	 *                  (must be positive)
+	 */
+	public CallStringToken(int limit) {
+		super();
+		if (limit <= 0)
+			throw new IllegalArgumentException("The limit of a call string must be positive");
+		this.limit = limit;
+		this.length = 0;
+	}
+
+	private CallStringToken(CallStringToken parent, ScopeToken scope, InternedToken context) {
+		super(parent, scope, context);
+		this.limit = parent.limit;
+		this.length = context == null ? parent.length + 1 : ((CallStringToken) context).length;
+	}
+
+	/**
+	 * Yields the maximum number of call sites tracked by this token.
+	 *
+	 * @return the limit
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	@Override
+	public ContextSensitivityToken empty() {
+		return new CallStringToken(limit);
+	}
+
+	@Override
+	protected InternedToken mkChild(ScopeToken c) {
+		InternedToken context = getContext();
+		if (!isCanonical())
+			return new CallStringToken(this, c, (InternedToken) context.pushToken(c));
+		if (length < limit)
+			return new CallStringToken(this, c, null);
+		return new CallStringToken(this, c, (InternedToken) suffix().pushToken(c));
+	}
+
+	private InternedToken suffix() {
+		InternedToken s = suffix;
+		if (s == null) {
+			// canonical tokens are always reached from canonical tokens
+			CallStringToken parent = (CallStringToken) getParent();
+			s = parent.getParent() == null ? parent : (InternedToken) parent.suffix().pushToken(getScope());
+			suffix = s;
+		}
+		return s;
+	}
+}
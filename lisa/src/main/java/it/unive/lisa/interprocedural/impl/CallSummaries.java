@@ -0,0 +1,196 @@
+package it.unive.lisa.interprocedural.impl;
+
+import it.unive.lisa.analysis.AbstractState;
+import it.unive.lisa.analysis.AnalysisState;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.heap.HeapDomain;
+import it.unive.lisa.analysis.value.ValueDomain;
+import it.unive.lisa.program.cfg.CFG;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * A memoization table of the fixpoints computed for calls to a cfg. For each
+ * pair of a {@link CFG} and a {@link ContextSensitivityToken}, this table
+ * keeps the most recently used entry states that a fixpoint over the cfg has
+ * been computed from, each mapped to the exit state of that fixpoint. Once the
+ * number of entry states stored for a pair exceeds a given bound, the least
+ * recently used one is evicted.<br>
+ * <br>
+ * The exit state of a fixpoint computed from an entry state is a sound result
+ * for any call whose entry state is smaller than that one: a lookup yields the
+ * exit state recorded for an equal entry state through a hash-based search,
+ * falling back to the first recorded entry state that is greater than the
+ * given one. Such exit states are usually more precise than the one of the
+ * results stored for the whole pair, that join all the fixpoints computed for
+ * it. Since an exit state also depends on the results of the cfgs called
+ * while computing it, the recorded exit states must be forgotten whenever
+ * those might grow.
+ *
+ * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+ *
+ * @param <A> the type of {@link AbstractState} contained into the analysis
+ *                state
+ * @param <H> the type of {@link HeapDomain} contained into the computed
+ *                abstract state
+ * @param <V> the type of {@link ValueDomain} contained into the computed
+ *                abstract state
+ */
+public class CallSummaries<A extends AbstractState<A, H, V>,
+		H extends HeapDomain<H>,
+		V extends ValueDomain<V>> {
+
+	private final int bound;
+
+	private final Map<Pair<CFG, ContextSensitivityToken>, Map<AnalysisState<A, H, V>, AnalysisState<A, H, V>>> table;
+
+	private int hits;
+
+	private int misses;
+
+	/**
+	 * Builds an empty table.
+	 *
+	 * @param bound the maximum number of entry states kept for each pair of
+	 *                  cfg and token, or {@code 0} to disable the table
+	 *
+	 * @throws IllegalArgumentException if {@code bound} is negative
+	 */
+	public CallSummaries(int bound) {
+		if (bound < 0)
+			throw new IllegalArgumentException("The bound of the table cannot be negative");
+		this.bound = bound;
+		this.table = new HashMap<>();
+	}
+
+	/**
+	 * Yields {@code true} if and only if this table records exit states, that
+	 * is, if its bound is not {@code 0}.
+	 *
+	 * @return {@code true} if that condition holds
+	 */
+	public boolean isEnabled() {
+		return bound > 0;
+	}
+
+	/**
+	 * Yields an exit state recorded for a call to {@code cfg}, under the given
+	 * token, that is sound for {@code entryState}.
+	 *
+	 * @param cfg        the called cfg
+	 * @param token      the token used for the call
+	 * @param entryState the entry state of the call
+	 *
+	 * @return the recorded exit state, or {@code null} if no exit state has
+	 *             been recorded for an entry state greater or equal to
+	 *             {@code entryState}
+	 *
+	 * @throws SemanticException if an error occurs while comparing entry
+	 *                               states
+	 */
+	public synchronized AnalysisState<A, H, V> get(CFG cfg, ContextSensitivityToken token,
+			AnalysisState<A, H, V> entryState) throws SemanticException {
+		Map<AnalysisState<A, H, V>, AnalysisState<A, H, V>> summaries = table.get(Pair.of(cfg, token));
+		if (summaries == null) {
+			misses++;
+			return null;
+		}
+
+		AnalysisState<A, H, V> exitState = summaries.get(entryState);
+		if (exitState == null)
+			for (AnalysisState<A, H, V> recorded : summaries.keySet())
+				if (entryState.lessOrEqual(recorded)) {
+					// also marks the entry as the most recently used one
+					exitState = summaries.get(recorded);
+					break;
+				}
+
+		if (exitState == null)
+			misses++;
+		else
+			hits++;
+		return exitState;
+	}
+
+	/**
+	 * Records the exit state of a fixpoint over {@code cfg}, under the given
+	 * token, computed starting from {@code entryState}. This is a no-op if the
+	 * table is disabled.
+	 *
+	 * @param cfg        the cfg
+	 * @param token      the token of the fixpoint
+	 * @param entryState the entry state of the fixpoint
+	 * @param exitState  the exit state of the fixpoint
+	 */
+	public synchronized void put(CFG cfg, ContextSensitivityToken token, AnalysisState<A, H, V> entryState,
+			AnalysisState<A, H, V> exitState) {
+		if (bound == 0)
+			return;
+
+		table.computeIfAbsent(Pair.of(cfg, token), k -> new LinkedHashMap<>(bound, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<AnalysisState<A, H, V>, AnalysisState<A, H, V>> eldest) {
+				return size() > bound;
+			}
+		}).put(entryState, exitState);
+	}
+
+	/**
+	 * Removes all the exit states recorded for calls to {@code cfg}.
+	 *
+	 * @param cfg the cfg to forget
+	 */
+	public synchronized void forget(CFG cfg) {
+		table.keySet().removeIf(key -> key.getLeft().equals(cfg));
+	}
+
+	/**
+	 * Removes the exit states recorded for calls to {@code cfg} under the
+	 * given token.
+	 *
+	 * @param cfg   the cfg to forget
+	 * @param token the token to forget
+	 *
+	 * @return {@code true} if at least one exit state has been removed
+	 */
+	public synchronized boolean forget(CFG cfg, ContextSensitivityToken token) {
+		return table.remove(Pair.of(cfg, token)) != null;
+	}
+
+	/**
+	 * Removes all the recorded exit states, and resets the counters of hits
+	 * and misses.
+	 */
+	public synchronized void clear() {
+		table.clear();
+		hits = 0;
+		misses = 0;
+	}
+
+	/**
+	 * Yields the number of calls to
+	 * {@link #get(CFG, ContextSensitivityToken, AnalysisState)} that returned
+	 * a recorded exit state.
+	 *
+	 * @return the number of hits
+	 */
+	public synchronized int getHits() {
+		return hits;
+	}
+
+	/**
+	 * Yields the number of calls to
+	 * {@link #get(CFG, ContextSensitivityToken, AnalysisState)} that did not
+	 * return a recorded exit state.
+	 *
+	 * @return the number of misses
+	 */
+	public synchronized int getMisses() {
+		return misses;
+	}
+}
@@ -11,29 +11,85 @@ import it.unive.lisa.analysis.lattices.ExpressionSet;
 import it.unive.lisa.analysis.value.ValueDomain;
 import it.unive.lisa.caches.Caches;
 import it.unive.lisa.interprocedural.InterproceduralAnalysisException;
+import it.unive.lisa.interprocedural.callgraph.CallResolutionException;
+import it.unive.lisa.interprocedural.impl.PersistentResults.StoredCall;
+import it.unive.lisa.interprocedural.impl.PersistentResults.StoredResults;
 import it.unive.lisa.logging.IterationLogger;
 import it.unive.lisa.logging.TimerLogger;
 import it.unive.lisa.program.cfg.CFG;
 import it.unive.lisa.program.cfg.Parameter;
 import it.unive.lisa.program.cfg.statement.CFGCall;
+import it.unive.lisa.program.cfg.statement.Call;
+import it.unive.lisa.program.cfg.statement.Statement;
+import it.unive.lisa.program.cfg.statement.UnresolvedCall;
 import it.unive.lisa.symbolic.SymbolicExpression;
 import it.unive.lisa.symbolic.value.Identifier;
 import it.unive.lisa.symbolic.value.Variable;
 import it.unive.lisa.util.datastructures.graph.FixpointException;
 import it.unive.lisa.util.workset.FIFOWorkingSet;
 import it.unive.lisa.util.workset.VisitOnceWorkingSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
  * A context sensitive interprocedural analysis. The context sensitivity is
- * tuned by the kind of {@link ContextSensitivityToken} used.
+ * tuned by the kind of {@link ContextSensitivityToken} used.<br>
+ * <br>
+ * If an {@link ExecutorService} is provided at construction time, the
+ * entrypoints of the program are analyzed concurrently on it: each thread uses
+ * its own {@link ContextSensitivityToken}, while fixpoint results are shared
+ * among all of them. Since results are joined when stored, the final results
+ * are the same of the ones produced by the sequential analysis.<br>
+ * <br>
+ * Whenever the result of a cfg grows after it has been used as the result of
+ * a call, the results of its callers might be outdated. By default, all the
+ * transitive callers of such cfgs are forgotten, and the whole analysis is
+ * restarted from the entrypoints. If dependency tracking is enabled at
+ * construction time, the analysis instead records which results (identified
+ * by a cfg and a token) consumed the exit state of which other results, and
+ * re-evaluates only the results that consumed an exit state that grew, until
+ * no result changes.<br>
+ * <br>
+ * The number of contexts a cfg is analyzed in can be bounded through
+ * {@link #setContextBudget(int, double)}: once a cfg exhausts its budget, it
+ * is demoted, and all further calls to it are merged into a single,
+ * context-insensitive result, identified by a dedicated token. The merged
+ * result counts against the budget, and results computed before the demotion
+ * are kept.<br>
+ * <br>
+ * The results of calls can be memoized through {@link #setSummaryBound(int)}:
+ * the exit states of the fixpoints computed for each cfg and token are then
+ * recorded in {@link CallSummaries}, and used as results of the calls whose
+ * entry states they cover, instead of the exit state of the results joined
+ * for the whole token.<br>
+ * <br>
+ * Results of previous analyses can be reused through
+ * {@link #setPersistentResults(PersistentResults)}: the results previously
+ * stored for an entrypoint are reused, together with the ones of all the calls
+ * they used, transitively, provided that none of the cfgs in the whole call
+ * chain changed since then. Since the states of reused results might refer to
+ * the code of a different version of the program, they are never used by the
+ * results computed by the analysis: if that would happen, reused results are
+ * discarded and computed again.
  * 
  * @param <A> the abstract state of the analysis
  * @param <H> the heap domain
@@ -53,10 +109,127 @@ public class ContextBasedAnalysis<A extends AbstractState<A, H, V>,
 	 */
 	private FixpointResults<A, H, V> results;
 
-	private ContextSensitivityToken token;
+	/**
+	 * The empty token, used as starting point for the analysis of each
+	 * entrypoint.
+	 */
+	private final ContextSensitivityToken emptyToken;
+
+	/**
+	 * The token of the results where the calls to demoted cfgs are merged.
+	 */
+	private final ContextSensitivityToken mergedToken;
+
+	/**
+	 * The token of the call chain currently being analyzed. This is confined
+	 * to the thread performing the analysis, since different entrypoints might
+	 * be analyzed in parallel.
+	 */
+	private final ThreadLocal<ContextSensitivityToken> token;
 
 	private final Collection<CFG> fixpointTriggers;
 
+	/**
+	 * The executor used to analyze entrypoints in parallel, or {@code null} if
+	 * they should be analyzed sequentially.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * Whether or not results are re-evaluated following the recorded
+	 * {@link #dependents} instead of restarting the analysis from the
+	 * entrypoints.
+	 */
+	private final boolean trackDependencies;
+
+	/**
+	 * For each pair of cfg and token, the pairs whose results have been
+	 * computed using its exit state. This is populated only if dependencies
+	 * are tracked.
+	 */
+	private final Map<Pair<CFG, ContextSensitivityToken>, Set<Pair<CFG, ContextSensitivityToken>>> dependents;
+
+	/**
+	 * The pairs of cfg and token whose results grew since the last time their
+	 * dependents have been re-evaluated. This is populated only if
+	 * dependencies are tracked.
+	 */
+	private final Set<Pair<CFG, ContextSensitivityToken>> grown;
+
+	/**
+	 * The maximum number of contexts each cfg can be analyzed in before being
+	 * demoted, or {@code 0} if there is no limit.
+	 */
+	private int maxContexts;
+
+	/**
+	 * The maximum share of the analysis time that can be spent on a single
+	 * cfg before being demoted, or {@code 0} if there is no limit.
+	 */
+	private double maxTimeShare;
+
+	/**
+	 * The cfgs that have been demoted, each mapped to the reason of the
+	 * demotion.
+	 */
+	private final Map<CFG, String> demoted;
+
+	/**
+	 * The time spent computing the fixpoints of each cfg, excluding the time
+	 * spent on the cfgs it calls. This is populated only if
+	 * {@link #maxTimeShare} is set.
+	 */
+	private final Map<CFG, Long> times;
+
+	/**
+	 * For each fixpoint computation in progress on the current thread, the
+	 * time spent on the fixpoints of the cfgs it called.
+	 */
+	private final ThreadLocal<Deque<long[]>> nestedTimes;
+
+	/**
+	 * The exit states of the fixpoints computed for calls, indexed by cfg,
+	 * token and entry state.
+	 */
+	private CallSummaries<A, H, V> summaries = new CallSummaries<>(0);
+
+	/**
+	 * The results of previous analyses that can be reused, if any.
+	 */
+	private PersistentResults<A, H, V> previous;
+
+	/**
+	 * For each pair of cfg and token, the calls whose results have been used
+	 * to compute its results. This is populated only if {@link #previous} is
+	 * set.
+	 */
+	private final Map<Pair<CFG, ContextSensitivityToken>, Set<StoredCall>> calls;
+
+	/**
+	 * The entrypoints whose results have been reused from {@link #previous},
+	 * that are thus not analyzed.
+	 */
+	private final Set<CFG> restoredEntryPoints;
+
+	/**
+	 * The pairs of cfg and token whose results have been reused from
+	 * {@link #previous}.
+	 */
+	private final Set<Pair<CFG, ContextSensitivityToken>> restoredPairs;
+
+	/**
+	 * The results reused from {@link #previous}, compared by identity.
+	 */
+	private final Set<CFGWithAnalysisResults<A, H, V>> restoredResults;
+
+	/**
+	 * The entrypoints whose reused results have been discarded, and that must
+	 * thus be analyzed.
+	 */
+	private final Set<CFG> evicted;
+
+	private long start;
+
 	/**
 	 * Builds the analysis, using {@link SingleScopeToken}s.
 	 */
@@ -71,8 +244,134 @@ public class ContextBasedAnalysis<A extends AbstractState<A, H, V>,
 	 *                  context sensitivity
 	 */
 	public ContextBasedAnalysis(ContextSensitivityToken token) {
-		this.token = token.empty();
-		fixpointTriggers = new HashSet<>();
+		this(token, null);
+	}
+
+	/**
+	 * Builds the analysis. If {@code executor} is not {@code null}, the
+	 * entrypoints of the program will be analyzed in parallel using it. Note
+	 * that the lifecycle of the executor is not managed by this analysis: it
+	 * is up to the caller to shut it down once the analysis terminates.
+	 *
+	 * @param token    an instance of the tokens to be used to partition w.r.t.
+	 *                     context sensitivity
+	 * @param executor the executor used to analyze entrypoints in parallel
+	 *                     (can be {@code null})
+	 */
+	public ContextBasedAnalysis(ContextSensitivityToken token, ExecutorService executor) {
+		this(token, executor, false);
+	}
+
+	/**
+	 * Builds the analysis. If {@code executor} is not {@code null}, the
+	 * entrypoints of the program will be analyzed in parallel using it. Note
+	 * that the lifecycle of the executor is not managed by this analysis: it
+	 * is up to the caller to shut it down once the analysis terminates.
+	 *
+	 * @param token             an instance of the tokens to be used to
+	 *                              partition w.r.t. context sensitivity
+	 * @param executor          the executor used to analyze entrypoints in
+	 *                              parallel (can be {@code null})
+	 * @param trackDependencies whether or not, when the result of a cfg grows,
+	 *                              only the results that used it should be
+	 *                              re-evaluated, instead of restarting the
+	 *                              analysis from the entrypoints
+	 */
+	public ContextBasedAnalysis(ContextSensitivityToken token, ExecutorService executor,
+			boolean trackDependencies) {
+		this.emptyToken = token.empty();
+		this.mergedToken = new MergedToken(emptyToken);
+		this.token = ThreadLocal.withInitial(() -> emptyToken);
+		this.executor = executor;
+		this.trackDependencies = trackDependencies;
+		fixpointTriggers = Collections.newSetFromMap(new ConcurrentHashMap<>());
+		dependents = new ConcurrentHashMap<>();
+		grown = Collections.newSetFromMap(new ConcurrentHashMap<>());
+		demoted = new ConcurrentHashMap<>();
+		times = new ConcurrentHashMap<>();
+		nestedTimes = ThreadLocal.withInitial(ArrayDeque::new);
+		calls = new ConcurrentHashMap<>();
+		restoredEntryPoints = ConcurrentHashMap.newKeySet();
+		restoredPairs = ConcurrentHashMap.newKeySet();
+		restoredResults = Collections.newSetFromMap(Collections.synchronizedMap(new IdentityHashMap<>()));
+		evicted = new HashSet<>();
+	}
+
+	/**
+	 * Sets the budget of contexts of each cfg. A cfg is demoted, with further
+	 * calls to it analyzed in a single context-insensitive result, when a
+	 * call would cause it to be analyzed in a new context and either the new
+	 * context would leave no room in {@code maxContexts} for the merged
+	 * result, or the time spent computing its fixpoints (excluding the time
+	 * spent on the cfgs it calls) exceeds {@code maxTimeShare} of the time
+	 * spent on the whole analysis. The merged result counts against the
+	 * budget: a cfg is analyzed in at most {@code maxContexts} contexts, and
+	 * with a budget of {@code 1} all calls to it are merged.
+	 *
+	 * @param maxContexts  the maximum number of contexts for each cfg, or
+	 *                         {@code 0} for no limit
+	 * @param maxTimeShare the maximum share of the analysis time, between
+	 *                         {@code 0} and {@code 1}, for each cfg, or
+	 *                         {@code 0} for no limit
+	 * 
+	 * @throws IllegalArgumentException if {@code maxContexts} is negative, or
+	 *                                      if {@code maxTimeShare} is not
+	 *                                      between {@code 0} and {@code 1}
+	 */
+	public void setContextBudget(int maxContexts, double maxTimeShare) {
+		if (maxContexts < 0)
+			throw new IllegalArgumentException("The maximum number of contexts cannot be negative");
+		if (maxTimeShare < 0 || maxTimeShare > 1)
+			throw new IllegalArgumentException("The maximum time share must be between 0 and 1");
+		this.maxContexts = maxContexts;
+		this.maxTimeShare = maxTimeShare;
+	}
+
+	/**
+	 * Sets the number of fixpoints whose exit states are memoized for each cfg
+	 * and token (see {@link CallSummaries}). When a cfg is called with an
+	 * entry state covered by a memoized fixpoint, its exit state is used as
+	 * result of the call. This yields results that are at least as precise as
+	 * the ones computed without memoization, where the exit state of the
+	 * results joined for the whole token is used.
+	 *
+	 * @param bound the maximum number of memoized fixpoints for each cfg and
+	 *                  token, or {@code 0} to disable memoization
+	 * 
+	 * @throws IllegalArgumentException if {@code bound} is negative
+	 */
+	public void setSummaryBound(int bound) {
+		this.summaries = new CallSummaries<>(bound);
+	}
+
+	/**
+	 * Enables incremental analysis. Before each analysis, the results in
+	 * {@code previous} of the cfgs that changed, and of their transitive
+	 * callers, are invalidated (see
+	 * {@link PersistentResults#invalidate(Collection)}). Then, the results
+	 * stored in {@code previous} for each entrypoint are reused if they have
+	 * been computed starting from an entry state that covers the current one,
+	 * and if the results of all the calls they used, transitively, can be
+	 * reused as well. All results of the analysis are then stored into
+	 * {@code previous}, with the exception of the ones whose tokens cannot be
+	 * told apart by their textual representation.
+	 *
+	 * @param previous the results of previous analyses (can be {@code null}
+	 *                     to disable incremental analysis)
+	 */
+	public void setPersistentResults(PersistentResults<A, H, V> previous) {
+		this.previous = previous;
+	}
+
+	/**
+	 * Yields the cfgs that have been demoted during the last analysis, since
+	 * they exceeded the budget set through
+	 * {@link #setContextBudget(int, double)}.
+	 *
+	 * @return the demoted cfgs
+	 */
+	public Collection<CFG> getDemotedCFGs() {
+		return Collections.unmodifiableSet(demoted.keySet());
 	}
 
 	@Override
@@ -100,23 +399,40 @@ public class ContextBasedAnalysis<A extends AbstractState<A, H, V>,
 	}
 
 	private void fixpointAux(AnalysisState<A, H, V> entryState) throws AnalysisExecutionException {
-		this.results = null;
+		CFG first = program.getEntryPoints().iterator().next();
+		this.results = new FixpointResults<>(new CFGResults<>(new CFGWithAnalysisResults<>(first, entryState)).top());
+		demoted.clear();
+		times.clear();
+		summaries.clear();
+		calls.clear();
+		if (previous != null)
+			previous.invalidate(program.getAllCFGs());
+		start = System.nanoTime();
+		if (trackDependencies) {
+			dependents.clear();
+			grown.clear();
+			restoreEntryPoints(entryState);
+			analyzeEntryPoints(entryState);
+			reanalyzeDependents();
+			// entrypoints whose reused results have been discarded must be
+			// analyzed
+			for (Collection<CFG> pending = takeEvicted(); !pending.isEmpty(); pending = takeEvicted()) {
+				for (CFG cfg : pending)
+					analyzeEntryPoint(cfg, entryState);
+				reanalyzeDependents();
+			}
+			persist();
+			logDemotions();
+			logSummaries();
+			return;
+		}
+
+		restoreEntryPoints(entryState);
 		int iter = 0;
 		do {
 			log.info("Performing " + ordinal(iter + 1) + " fixpoint iteration");
 			fixpointTriggers.clear();
-			for (CFG cfg : IterationLogger.iterate(log, program.getEntryPoints(), "Processing entrypoints", "entries"))
-				try {
-					CFGResults<A, H, V> value = new CFGResults<>(new CFGWithAnalysisResults<>(cfg, entryState));
-					AnalysisState<A, H, V> entryStateCFG = prepareEntryStateOfEntryPoint(entryState, cfg);
-					if (results == null)
-						this.results = new FixpointResults<>(value.top());
-					results.putResult(cfg, token.empty(), cfg.fixpoint(entryStateCFG, this));
-				} catch (SemanticException e) {
-					throw new AnalysisExecutionException("Error while creating the entrystate for " + cfg, e);
-				} catch (FixpointException e) {
-					throw new AnalysisExecutionException("Error while computing fixpoint for entrypoint " + cfg, e);
-				}
+			analyzeEntryPoints(entryState);
 
 			// starting from the callers of the cfgs that needed a lub,
 			// find out the complete set of cfgs that might need to be
@@ -128,10 +444,189 @@ public class ContextBasedAnalysis<A extends AbstractState<A, H, V>,
 				callgraph.getCallers(ws.pop()).stream().filter(CFG.class::isInstance).map(CFG.class::cast)
 						.forEach(ws::push);
 
+			// the call chains of reused results cannot be partially forgotten
+			if (restoredPairs.stream().anyMatch(pair -> ws.getSeen().contains(pair.getLeft())))
+				evict();
 			ws.getSeen().forEach(results::forget);
+			// memoized exit states used the results of the forgotten cfgs
+			ws.getSeen().forEach(summaries::forget);
 
 			iter++;
 		} while (!fixpointTriggers.isEmpty());
+
+		persist();
+		logDemotions();
+		logSummaries();
+	}
+
+	private void persist() throws AnalysisExecutionException {
+		if (previous == null)
+			return;
+
+		for (CFG cfg : program.getAllCFGs()) {
+			if (!results.contains(cfg))
+				continue;
+
+			// tokens are stored through their textual representation: the
+			// results of tokens that cannot be told apart are not stored
+			CFGResults<A, H, V> cfgresult = results.getState(cfg);
+			Map<String, Long> names = cfgresult.getKeys().stream()
+					.collect(Collectors.groupingBy(Object::toString, Collectors.counting()));
+			for (Map.Entry<ContextSensitivityToken, CFGWithAnalysisResults<A, H, V>> result : cfgresult)
+				if (names.get(result.getKey().toString()) == 1)
+					try {
+						previous.store(cfg, result.getKey(), result.getValue().getEntryState(), result.getValue(),
+								calls.getOrDefault(Pair.of(cfg, result.getKey()), Collections.emptySet()));
+					} catch (SemanticException e) {
+						throw new AnalysisExecutionException("Error while storing the results of " + cfg
+								+ " with token " + result.getKey(), e);
+					}
+		}
+
+		previous.recordCallers(program.getAllCFGs(), callgraph);
+		log.debug("Persistent results: " + previous.getHits() + " hits, " + previous.getMisses() + " misses");
+	}
+
+	private void logSummaries() {
+		if (summaries.isEnabled())
+			log.debug("Call summaries: " + summaries.getHits() + " hits, " + summaries.getMisses() + " misses");
+	}
+
+	private void logDemotions() {
+		if (demoted.isEmpty())
+			return;
+
+		log.info(demoted.size() + " cfgs exceeded their context budget and have been demoted to "
+				+ "context-insensitive results:");
+		for (Map.Entry<CFG, String> demotion : demoted.entrySet())
+			log.info("  " + demotion.getKey().getDescriptor().getFullSignatureWithParNames() + ": "
+					+ demotion.getValue());
+	}
+
+	/**
+	 * Yields whether or not calls to {@code cfg} should be analyzed in the
+	 * context-insensitive result, demoting it if analyzing it in
+	 * {@code context} would exceed its budget.
+	 */
+	private boolean isDemoted(CFG cfg, ContextSensitivityToken context) {
+		if (demoted.containsKey(cfg))
+			return true;
+		if (maxContexts == 0 && maxTimeShare == 0)
+			return false;
+
+		int contexts = 0;
+		if (results.contains(cfg)) {
+			CFGResults<A, H, V> cfgresult = results.getState(cfg);
+			if (cfgresult.contains(context))
+				return false;
+			contexts = cfgresult.getAll().size();
+		}
+
+		// one context is reserved to the merged result
+		if (maxContexts > 0 && contexts + 1 >= maxContexts) {
+			demoted.putIfAbsent(cfg, "analyzed in " + contexts + " contexts, with a budget of " + maxContexts);
+			return true;
+		}
+
+		if (maxTimeShare > 0 && contexts > 0) {
+			long elapsed = System.nanoTime() - start;
+			long spent = times.getOrDefault(cfg, 0L);
+			if (elapsed > 0 && spent > maxTimeShare * elapsed) {
+				demoted.putIfAbsent(cfg, String.format("%.1f%% of the analysis time spent in %d contexts",
+						100.0 * spent / elapsed, contexts));
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private Collection<CFG> entryPointsToAnalyze() {
+		Collection<CFG> entries = new ArrayList<>(program.getEntryPoints());
+		entries.removeAll(restoredEntryPoints);
+		return entries;
+	}
+
+	private void analyzeEntryPoints(AnalysisState<A, H, V> entryState) throws AnalysisExecutionException {
+		if (executor == null)
+			for (CFG cfg : IterationLogger.iterate(log, entryPointsToAnalyze(), "Processing entrypoints",
+					"entries"))
+				analyzeEntryPoint(cfg, entryState);
+		else
+			analyzeEntryPointsInParallel(entryState);
+	}
+
+	private void reanalyzeDependents() throws AnalysisExecutionException {
+		int iter = 0;
+		while (!grown.isEmpty()) {
+			// the results that used an exit state that grew might be outdated
+			Set<Pair<CFG, ContextSensitivityToken>> outdated = new LinkedHashSet<>();
+			for (Pair<CFG, ContextSensitivityToken> changed : new ArrayList<>(grown)) {
+				grown.remove(changed);
+				outdated.addAll(dependents.getOrDefault(changed, Collections.emptySet()));
+			}
+
+			iter++;
+			log.info("Re-evaluating " + outdated.size() + " results (" + ordinal(iter) + " round)");
+			for (Pair<CFG, ContextSensitivityToken> dependent : outdated)
+				reanalyze(dependent.getLeft(), dependent.getRight());
+		}
+	}
+
+	private void reanalyze(CFG cfg, ContextSensitivityToken localToken) throws AnalysisExecutionException {
+		if (!results.contains(cfg) || !results.getState(cfg).contains(localToken))
+			return;
+
+		token.set(localToken);
+		// memoized exit states used the results that made this one outdated:
+		// the results that consumed them must be re-evaluated even if this
+		// one does not grow
+		if (summaries.forget(cfg, localToken))
+			grown.add(Pair.of(cfg, localToken));
+		try {
+			CFGWithAnalysisResults<A, H, V> current = results.getState(cfg).getState(localToken);
+			computeFixpoint(cfg, localToken, current.getEntryState());
+		} catch (SemanticException | FixpointException | InterproceduralAnalysisException e) {
+			throw new AnalysisExecutionException("Error while re-evaluating the results of " + cfg
+					+ " with token " + localToken, e);
+		} finally {
+			token.remove();
+		}
+	}
+
+	private void analyzeEntryPoint(CFG cfg, AnalysisState<A, H, V> entryState) throws AnalysisExecutionException {
+		token.set(emptyToken);
+		try {
+			AnalysisState<A, H, V> entryStateCFG = prepareEntryStateOfEntryPoint(entryState, cfg);
+			results.putResult(cfg, emptyToken, cfg.getFixpointStrategy().fixpoint(cfg, entryStateCFG, this));
+		} catch (SemanticException e) {
+			throw new AnalysisExecutionException("Error while creating the entrystate for " + cfg, e);
+		} catch (FixpointException e) {
+			throw new AnalysisExecutionException("Error while computing fixpoint for entrypoint " + cfg, e);
+		} finally {
+			token.remove();
+		}
+	}
+
+	private void analyzeEntryPointsInParallel(AnalysisState<A, H, V> entryState) throws AnalysisExecutionException {
+		Collection<CFG> entries = entryPointsToAnalyze();
+		Collection<Future<?>> tasks = new ArrayList<>(entries.size());
+		for (CFG cfg : entries)
+			tasks.add(executor.submit(() -> analyzeEntryPoint(cfg, entryState)));
+
+		for (Future<?> task : IterationLogger.iterate(log, tasks, "Processing entrypoints", "entries"))
+			try {
+				task.get();
+			} catch (InterruptedException e) {
+				tasks.forEach(t -> t.cancel(true));
+				Thread.currentThread().interrupt();
+				throw new AnalysisExecutionException("Interrupted while processing entrypoints", e);
+			} catch (ExecutionException e) {
+				tasks.forEach(t -> t.cancel(true));
+				if (e.getCause() instanceof AnalysisExecutionException)
+					throw (AnalysisExecutionException) e.getCause();
+				throw new AnalysisExecutionException("Error while processing entrypoints", e.getCause());
+			}
 	}
 
 	@Override
@@ -142,15 +637,14 @@ public class ContextBasedAnalysis<A extends AbstractState<A, H, V>,
 			return Collections.emptySet();
 	}
 
-	private Pair<AnalysisState<A, H, V>, AnalysisState<A, H, V>> getEntryAndExit(CFG cfg)
-			throws SemanticException {
+	private CFGWithAnalysisResults<A, H, V> getCurrentResult(CFG cfg) {
 		if (!results.contains(cfg))
 			return null;
 		CFGResults<A, H, V> cfgresult = results.getState(cfg);
-		if (!cfgresult.contains(token))
+		ContextSensitivityToken current = token.get();
+		if (!cfgresult.contains(current))
 			return null;
-		CFGWithAnalysisResults<A, H, V> analysisresult = cfgresult.getState(token);
-		return Pair.of(analysisresult.getEntryState(), analysisresult.getExitState());
+		return cfgresult.getState(current);
 	}
 
 	@Override
@@ -158,11 +652,19 @@ public class ContextBasedAnalysis<A extends AbstractState<A, H, V>,
 			ExpressionSet<SymbolicExpression>[] parameters)
 			throws SemanticException {
 		ScopeToken scope = new ScopeToken(call);
-		token = token.pushToken(scope);
+		ContextSensitivityToken callerToken = token.get();
+		ContextSensitivityToken calleeToken = callerToken.pushToken(scope);
 		AnalysisState<A, H, V> result = entryState.bottom();
 
 		for (CFG cfg : call.getTargets()) {
-			Pair<AnalysisState<A, H, V>, AnalysisState<A, H, V>> states = getEntryAndExit(cfg);
+			boolean merged = isDemoted(cfg, calleeToken);
+			token.set(merged ? mergedToken : calleeToken);
+			CFGWithAnalysisResults<A, H, V> current = getCurrentResult(cfg);
+			if (current != null && restoredResults.contains(current)) {
+				// reused results cannot be used by the computed ones
+				evict();
+				current = getCurrentResult(cfg);
+			}
 
 			// prepare the state for the call: hide the visible variables
 			AnalysisState<A, H, V> callState = entryState.pushScope(scope);
@@ -180,23 +682,36 @@ public class ContextBasedAnalysis<A extends AbstractState<A, H, V>,
 				prepared = temp;
 			}
 
-			AnalysisState<A, H, V> exitState;
-			if (states != null && prepared.lessOrEqual(states.getLeft()))
-				// no need to compute the fixpoint: we already have an
-				// approximation
-				exitState = states.getRight();
-			else {
-				// compute the result
-				CFGWithAnalysisResults<A, H, V> fixpointResult = null;
-				try {
-					fixpointResult = computeFixpoint(cfg, token, prepared);
-				} catch (FixpointException | InterproceduralAnalysisException e) {
-					throw new SemanticException("Exception during the interprocedural analysis", e);
-				}
+			if (merged && current != null)
+				// the result must cover all the calls merged into it
+				prepared = prepared.lub(current.getEntryState());
+
+			// a memoized fixpoint covering the call is its most precise result
+			AnalysisState<A, H, V> exitState = null;
+			if (summaries.isEnabled())
+				exitState = summaries.get(cfg, token.get(), prepared);
 
-				exitState = fixpointResult.getExitState();
+			if (exitState == null) {
+				// if we already have an approximation, there is no need to
+				// compute the fixpoint
+				if (current == null || !prepared.lessOrEqual(current.getEntryState()))
+					// compute the result
+					try {
+						exitState = computeFixpoint(cfg, token.get(), prepared);
+					} catch (FixpointException | InterproceduralAnalysisException e) {
+						throw new SemanticException("Exception during the interprocedural analysis", e);
+					}
+				else
+					exitState = current.getExitState();
 			}
 
+			if (trackDependencies)
+				dependents.computeIfAbsent(Pair.of(cfg, token.get()), k -> ConcurrentHashMap.newKeySet())
+						.add(Pair.of(call.getCFG(), callerToken));
+			if (previous != null)
+				calls.computeIfAbsent(Pair.of(call.getCFG(), callerToken), k -> ConcurrentHashMap.newKeySet())
+						.add(new StoredCall(call.getOffset(), cfg, token.get()));
+
 			// store the return value of the call inside the meta variable
 			AnalysisState<A, H, V> tmp = callState.bottom();
 			Identifier meta = (Identifier) call.getMetaVariable().pushScope(scope);
@@ -207,20 +722,248 @@ public class ContextBasedAnalysis<A extends AbstractState<A, H, V>,
 			result = result.lub(tmp.popScope(scope));
 		}
 
-		token = token.popToken();
+		token.set(callerToken);
 
 		return result;
 	}
 
-	private CFGWithAnalysisResults<A, H, V> computeFixpoint(CFG cfg, ContextSensitivityToken localToken,
+	/**
+	 * Computes the fixpoint over {@code cfg} starting from
+	 * {@code computedEntryState}, storing its results with the given token.
+	 * The returned exit state, to be used as result of a call, is the one of
+	 * the fixpoint if it has been memoized, and the one of the results stored
+	 * for the token otherwise.
+	 */
+	private AnalysisState<A, H, V> computeFixpoint(CFG cfg, ContextSensitivityToken localToken,
 			AnalysisState<A, H, V> computedEntryState)
 			throws FixpointException, InterproceduralAnalysisException, SemanticException {
-		CFGWithAnalysisResults<A, H, V> fixpointResult = cfg.fixpoint(computedEntryState, this);
+		CFGWithAnalysisResults<A, H, V> fixpointResult;
+		if (maxTimeShare == 0)
+			fixpointResult = cfg.getFixpointStrategy().fixpoint(cfg, computedEntryState, this);
+		else {
+			Deque<long[]> nested = nestedTimes.get();
+			nested.push(new long[1]);
+			long begin = System.nanoTime();
+			try {
+				fixpointResult = cfg.getFixpointStrategy().fixpoint(cfg, computedEntryState, this);
+			} finally {
+				long elapsed = System.nanoTime() - begin;
+				long callees = nested.pop()[0];
+				if (!nested.isEmpty())
+					nested.peek()[0] += elapsed;
+				times.merge(cfg, elapsed - callees, Long::sum);
+			}
+		}
+
 		fixpointResult.setId(localToken.toString());
-		Pair<Boolean, CFGWithAnalysisResults<A, H, V>> res = results.putResult(cfg, localToken, fixpointResult);
-		if (res.getLeft())
+		Pair<Boolean, CFGWithAnalysisResults<A, H, V>> res = putResult(cfg, localToken, fixpointResult);
+		if (!summaries.isEnabled())
+			return res.getRight().getExitState();
+		AnalysisState<A, H, V> exitState = fixpointResult.getExitState();
+		summaries.put(cfg, localToken, computedEntryState, exitState);
+		return exitState;
+	}
+
+	private Pair<Boolean, CFGWithAnalysisResults<A, H, V>> putResult(CFG cfg, ContextSensitivityToken localToken,
+			CFGWithAnalysisResults<A, H, V> result) throws SemanticException {
+		Pair<Boolean, CFGWithAnalysisResults<A, H, V>> res = results.putResult(cfg, localToken, result);
+		if (res.getLeft()) {
 			fixpointTriggers.add(cfg);
-		return res.getRight();
+			if (trackDependencies)
+				grown.add(Pair.of(cfg, localToken));
+		}
+		return res;
+	}
+
+	private void restoreEntryPoints(AnalysisState<A, H, V> entryState) throws AnalysisExecutionException {
+		restoredEntryPoints.clear();
+		restoredPairs.clear();
+		restoredResults.clear();
+		evicted.clear();
+		if (previous == null)
+			return;
+
+		String generation = null;
+		for (CFG cfg : program.getEntryPoints())
+			try {
+				String restored = restore(cfg, prepareEntryStateOfEntryPoint(entryState, cfg), generation);
+				if (restored != null) {
+					restoredEntryPoints.add(cfg);
+					generation = restored;
+				}
+			} catch (SemanticException e) {
+				throw new AnalysisExecutionException("Error while reusing the results of entrypoint " + cfg, e);
+			}
+
+		if (!restoredEntryPoints.isEmpty())
+			log.info("Reused the results of " + restoredEntryPoints.size() + " entrypoints, and of the "
+					+ restoredPairs.size() + " results of their call chains");
+	}
+
+	/**
+	 * Reuses the results stored in {@link #previous} for the entrypoint
+	 * {@code cfg}, if they have been computed starting from an entry state
+	 * covering {@code entryState}, together with the ones of all the calls
+	 * they used, transitively. Results are reused only if all of them are
+	 * available and have been computed by the same analysis, that must be the
+	 * one identified by {@code generation}, if any.
+	 *
+	 * @return the generation of the reused results, or {@code null} if no
+	 *             result has been reused
+	 */
+	private String restore(CFG cfg, AnalysisState<A, H, V> entryState, String generation)
+			throws SemanticException {
+		Pair<CFG, ContextSensitivityToken> root = Pair.of(cfg, emptyToken);
+		Optional<StoredResults<A, H, V>> stored = previous.lookup(cfg, emptyToken, entryState);
+		if (!stored.isPresent() || (generation != null && !generation.equals(stored.get().getGeneration())))
+			return null;
+		if (restoredPairs.contains(root))
+			// the entrypoint is part of the call chain of another one
+			return generation;
+
+		Map<Pair<CFG, ContextSensitivityToken>, StoredResults<A, H, V>> chain = new LinkedHashMap<>();
+		Map<Pair<CFG, ContextSensitivityToken>, Collection<Pair<CFG, ContextSensitivityToken>>> callees = new HashMap<>();
+		Deque<Pair<CFG, ContextSensitivityToken>> ws = new ArrayDeque<>();
+		chain.put(root, stored.get());
+		ws.push(root);
+		while (!ws.isEmpty()) {
+			Pair<CFG, ContextSensitivityToken> caller = ws.pop();
+			Map<Integer, Statement> statements = caller.getLeft().getStatementsByOffset();
+			Collection<Pair<CFG, ContextSensitivityToken>> targets = new ArrayList<>();
+			for (StoredCall call : chain.get(caller).getCalls()) {
+				Pair<CFG, ContextSensitivityToken> callee = calleeOf(statements.get(call.getOffset()),
+						caller.getRight(), call);
+				if (callee == null)
+					return null;
+
+				targets.add(callee);
+				if (chain.containsKey(callee) || restoredPairs.contains(callee))
+					continue;
+
+				Optional<StoredResults<A, H, V>> dependency = previous.lookupDependency(callee.getLeft(),
+						callee.getRight(), stored.get().getGeneration(), entryState);
+				if (!dependency.isPresent())
+					return null;
+				chain.put(callee, dependency.get());
+				ws.push(callee);
+			}
+			callees.put(caller, targets);
+		}
+
+		for (Map.Entry<Pair<CFG, ContextSensitivityToken>, StoredResults<A, H, V>> restored : chain.entrySet()) {
+			Pair<CFG, ContextSensitivityToken> caller = restored.getKey();
+			results.putResult(caller.getLeft(), caller.getRight(), restored.getValue().getResults());
+			restoredResults.add(results.getState(caller.getLeft()).getState(caller.getRight()));
+			restoredPairs.add(caller);
+			calls.computeIfAbsent(caller, k -> ConcurrentHashMap.newKeySet()).addAll(restored.getValue().getCalls());
+			if (trackDependencies)
+				for (Pair<CFG, ContextSensitivityToken> callee : callees.get(caller))
+					dependents.computeIfAbsent(callee, k -> ConcurrentHashMap.newKeySet()).add(caller);
+		}
+
+		return stored.get().getGeneration();
+	}
+
+	/**
+	 * Discards all the results reused from {@link #previous}, scheduling the
+	 * analysis of their entrypoints. This is needed whenever reused results
+	 * would be used by computed ones, since the states of the former might
+	 * refer to the code of a different version of the program.
+	 */
+	private void evict() {
+		synchronized (evicted) {
+			if (restoredPairs.isEmpty())
+				return;
+
+			log.info("Discarding the reused results of " + restoredEntryPoints.size()
+					+ " entrypoints, since they are used by other results");
+			for (Pair<CFG, ContextSensitivityToken> pair : restoredPairs) {
+				results.forget(pair.getLeft(), pair.getRight());
+				calls.remove(pair);
+			}
+			restoredPairs.clear();
+			evicted.addAll(restoredEntryPoints);
+			// forces another iteration if dependencies are not tracked
+			fixpointTriggers.addAll(restoredEntryPoints);
+			restoredEntryPoints.clear();
+		}
+	}
+
+	private Collection<CFG> takeEvicted() {
+		synchronized (evicted) {
+			Collection<CFG> pending = new ArrayList<>(evicted);
+			evicted.clear();
+			return pending;
+		}
+	}
+
+	/**
+	 * Yields the cfg and the token that a call stored in {@link #previous},
+	 * performed by {@code st} with the given caller token, refers to in the
+	 * current analysis. Since the call is resolved again, it is also added to
+	 * the call graph.
+	 *
+	 * @return the cfg and the token, or {@code null} if {@code st} does not
+	 *             perform the same call anymore
+	 */
+	private Pair<CFG, ContextSensitivityToken> calleeOf(Statement st, ContextSensitivityToken callerToken,
+			StoredCall call) throws SemanticException {
+		Call resolved = null;
+		try {
+			if (st instanceof UnresolvedCall)
+				resolved = resolve((UnresolvedCall) st);
+			else if (st instanceof Call)
+				resolved = (Call) st;
+		} catch (CallResolutionException e) {
+			throw new SemanticException("Unable to resolve call " + st, e);
+		}
+
+		if (!(resolved instanceof CFGCall))
+			return null;
+
+		for (CFG target : ((CFGCall) resolved).getTargets())
+			if (target.getDescriptor().getFullSignatureWithParNames().equals(call.getTarget())) {
+				ContextSensitivityToken calleeToken = mergedToken.toString().equals(call.getToken()) ? mergedToken
+						: callerToken.pushToken(new ScopeToken(resolved));
+				return calleeToken.toString().equals(call.getToken()) ? Pair.of(target, calleeToken) : null;
+			}
+		return null;
+	}
+
+	/**
+	 * The token of the context-insensitive result of a demoted cfg. It differs
+	 * from all other tokens, while the calls performed within the merged
+	 * result are analyzed as if they were performed from the empty token.
+	 * 
+	 * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+	 */
+	private static final class MergedToken implements ContextSensitivityToken {
+
+		private final ContextSensitivityToken empty;
+
+		private MergedToken(ContextSensitivityToken empty) {
+			this.empty = empty;
+		}
+
+		@Override
+		public ContextSensitivityToken empty() {
+			return empty;
+		}
+
+		@Override
+		public ContextSensitivityToken pushToken(ScopeToken c) {
+			return empty.pushToken(c);
+		}
+
+		@Override
+		public ContextSensitivityToken popToken() {
+			return empty;
+		}
+
+		@Override
+		public String toString() {
+			return "<merged>";
+		}
 	}
 
 }
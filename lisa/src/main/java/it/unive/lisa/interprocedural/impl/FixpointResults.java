@@ -7,12 +7,20 @@ import it.unive.lisa.analysis.heap.HeapDomain;
 import it.unive.lisa.analysis.lattices.FunctionalLattice;
 import it.unive.lisa.analysis.value.ValueDomain;
 import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.util.collections.Interner;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.lang3.tuple.Pair;
 
 /**
  * A {@link FunctionalLattice} from {@link CFG}s to {@link CFGResults}s. This
  * class is meant to store all fixpoint results on all token generated during
- * the interprocedural analysis for each cfg under analysis.
+ * the interprocedural analysis for each cfg under analysis. Since
+ * {@link ContextBasedAnalysis} can analyze more than one entrypoint at the
+ * same time, results can be stored concurrently: both this function and the
+ * ones of the {@link CFGResults} it contains are backed by concurrent maps.
+ * Equal states are shared among all the results stored in the same instance
+ * of this class, that owns the {@link Interner} used to share them.
  * 
  * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
  * 
@@ -27,6 +35,11 @@ public class FixpointResults<A extends AbstractState<A, H, V>,
 		H extends HeapDomain<H>,
 		V extends ValueDomain<V>> extends FunctionalLattice<FixpointResults<A, H, V>, CFG, CFGResults<A, H, V>> {
 
+	/**
+	 * The interner used to share equal states among the stored results
+	 */
+	private final Interner<Object> states;
+
 	/**
 	 * Builds a new result.
 	 * 
@@ -35,6 +48,7 @@ public class FixpointResults<A extends AbstractState<A, H, V>,
 	 */
 	public FixpointResults(CFGResults<A, H, V> lattice) {
 		super(lattice);
+		this.states = new Interner<>();
 	}
 
 	/**
@@ -56,7 +70,7 @@ public class FixpointResults<A extends AbstractState<A, H, V>,
 	public Pair<Boolean, CFGWithAnalysisResults<A, H, V>> putResult(CFG cfg, ContextSensitivityToken token,
 			CFGWithAnalysisResults<A, H, V> result)
 			throws SemanticException {
-		CFGResults<A, H, V> res = function.computeIfAbsent(cfg, c -> new CFGResults<>(result.top()));
+		CFGResults<A, H, V> res = function.computeIfAbsent(cfg, c -> new CFGResults<>(result.top(), states));
 		return res.putResult(token, result);
 	}
 
@@ -71,6 +85,13 @@ public class FixpointResults<A extends AbstractState<A, H, V>,
 		return function != null && function.containsKey(cfg);
 	}
 
+	@Override
+	protected Map<CFG, CFGResults<A, H, V>> mkNewFunction(Map<CFG, CFGResults<A, H, V>> other) {
+		if (other == null)
+			return new ConcurrentHashMap<>();
+		return new ConcurrentHashMap<>(other);
+	}
+
 	@Override
 	public FixpointResults<A, H, V> top() {
 		return new FixpointResults<>(lattice.top());
@@ -99,4 +120,17 @@ public class FixpointResults<A extends AbstractState<A, H, V>,
 	public void forget(CFG cfg) {
 		function.remove(cfg);
 	}
+
+	/**
+	 * Forgets the result about the given {@link CFG} that is identified by
+	 * the given {@link ContextSensitivityToken}.
+	 * 
+	 * @param cfg   the cfg to forget
+	 * @param token the token of the result to forget
+	 */
+	public void forget(CFG cfg, ContextSensitivityToken token) {
+		CFGResults<A, H, V> res = function.get(cfg);
+		if (res != null)
+			res.forget(token);
+	}
 }
@@ -0,0 +1,215 @@
+package it.unive.lisa.interprocedural.impl;
+
+import it.unive.lisa.analysis.ScopeToken;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link ContextSensitivityToken} that is a node of a trie of call chains.
+ * Each node represents the call chain going from the root of the trie (that
+ * is, the empty token returned by {@link #empty()}) to the node itself, and
+ * it is created once, the first time its call chain is reached: pushing a
+ * {@link ScopeToken} yields the child of the node corresponding to that scope,
+ * and popping a token yields the parent of the node. Both operations thus take
+ * constant time, and do not allocate anything once the call chain has been
+ * visited.<br>
+ * <br>
+ * Different call chains can represent the same calling context (e.g., when
+ * the context only tracks the last call sites). Each node is thus associated
+ * with a canonical node, that is the first node created for its calling
+ * context, and whose integer identifier ({@link #getId()}) is shared by all
+ * the nodes of that context. Two tokens are equal if and only if they have
+ * the same canonical node. The hash code of a token is instead computed from
+ * the scopes of its context, and it does not depend on the order in which
+ * nodes are created (e.g., when entrypoints are analyzed in parallel).
+ * Subclasses decide which nodes share the same context by implementing
+ * {@link #mkChild(ScopeToken)}.<br>
+ * <br>
+ * Each call to {@link #empty()} should yield the root of a new trie, so that
+ * tries are not shared among different analyses. Tokens coming from different
+ * tries are never equal. This class is thread-safe.
+ *
+ * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+ */
+public abstract class InternedToken implements ContextSensitivityToken {
+
+	private final InternedToken root;
+
+	private final InternedToken parent;
+
+	private final ScopeToken scope;
+
+	private final InternedToken context;
+
+	private final int id;
+
+	private final int hash;
+
+	private final Map<ScopeToken, InternedToken> children;
+
+	/**
+	 * The generator of the identifiers of canonical nodes. This is only set
+	 * on the root of the trie.
+	 */
+	private final AtomicInteger ids;
+
+	/**
+	 * Builds the root of a new trie, representing the empty call chain.
+	 */
+	protected InternedToken() {
+		this.root = this;
+		this.parent = null;
+		this.scope = null;
+		this.context = this;
+		this.ids = new AtomicInteger();
+		this.id = ids.getAndIncrement();
+		this.hash = Objects.hash(getContextScopes());
+		this.children = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Builds a node of the trie.
+	 *
+	 * @param parent  the parent of the node
+	 * @param scope   the scope that has been pushed on {@code parent} to reach
+	 *                    the node
+	 * @param context the canonical node of the context of the new node, or
+	 *                    {@code null} if the new node is the first one of its
+	 *                    context
+	 */
+	protected InternedToken(InternedToken parent, ScopeToken scope, InternedToken context) {
+		this.root = parent.root;
+		this.parent = parent;
+		this.scope = scope;
+		this.context = context == null ? this : context.context;
+		this.ids = null;
+		this.id = context == null ? root.ids.getAndIncrement() : this.context.id;
+		this.hash = context == null ? Objects.hash(getContextScopes()) : this.context.hash;
+		this.children = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Builds the child of this node that is reached by pushing the given
+	 * scope. The returned node must have been built through
+	 * {@link #InternedToken(InternedToken, ScopeToken, InternedToken)}, using
+	 * {@code this} as parent and {@code c} as scope. This method is invoked
+	 * at most once for each child that is stored in the trie.
+	 *
+	 * @param c the scope being pushed
+	 *
+	 * @return the child
+	 */
+	protected abstract InternedToken mkChild(ScopeToken c);
+
+	@Override
+	public final ContextSensitivityToken pushToken(ScopeToken c) {
+		InternedToken child = children.get(c);
+		if (child != null)
+			return child;
+
+		// the child is built outside of the map since building it might
+		// require to push scopes on other nodes
+		child = mkChild(c);
+		InternedToken previous = children.putIfAbsent(c, child);
+		return previous == null ? child : previous;
+	}
+
+	@Override
+	public final ContextSensitivityToken popToken() {
+		return parent == null ? this : parent;
+	}
+
+	/**
+	 * Yields the root of the trie this node belongs to.
+	 *
+	 * @return the root
+	 */
+	protected final InternedToken getRoot() {
+		return root;
+	}
+
+	/**
+	 * Yields the parent of this node in the trie, that is, the node this one
+	 * has been reached from.
+	 *
+	 * @return the parent, or {@code null} if this node is the root
+	 */
+	protected final InternedToken getParent() {
+		return parent;
+	}
+
+	/**
+	 * Yields the scope that has been pushed to reach this node.
+	 *
+	 * @return the scope, or {@code null} if this node is the root
+	 */
+	protected final ScopeToken getScope() {
+		return scope;
+	}
+
+	/**
+	 * Yields the canonical node of the context of this node.
+	 *
+	 * @return the canonical node
+	 */
+	protected final InternedToken getContext() {
+		return context;
+	}
+
+	/**
+	 * Yields whether or not this node is the canonical one for its context.
+	 *
+	 * @return {@code true} if that condition holds
+	 */
+	protected final boolean isCanonical() {
+		return context == this;
+	}
+
+	/**
+	 * Yields the identifier of the context of this token. Identifiers are
+	 * small, non-negative integers, unique within the trie.
+	 *
+	 * @return the identifier
+	 */
+	public final int getId() {
+		return id;
+	}
+
+	/**
+	 * Yields the scopes of the call chain of the canonical node of this
+	 * token, from the least recent to the most recent one.
+	 *
+	 * @return the scopes
+	 */
+	protected final List<ScopeToken> getContextScopes() {
+		List<ScopeToken> scopes = new ArrayList<>();
+		for (InternedToken node = context; node.parent != null; node = node.parent)
+			scopes.add(node.scope);
+		Collections.reverse(scopes);
+		return scopes;
+	}
+
+	@Override
+	public final boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof InternedToken))
+			return false;
+		return context == ((InternedToken) o).context;
+	}
+
+	@Override
+	public final int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return String.valueOf(getContextScopes());
+	}
+}
@@ -53,6 +53,11 @@ public class ModularWorstCaseAnalysis<A extends AbstractState<A, H, V>,
 	 */
 	private Program program;
 
+	/**
+	 * The call graph.
+	 */
+	private CallGraph callgraph;
+
 	/**
 	 * The cash of the fixpoints' results. {@link Map#keySet()} will contain all
 	 * the cfgs that have been added. If a key's values's
@@ -61,15 +66,42 @@ public class ModularWorstCaseAnalysis<A extends AbstractState<A, H, V>,
 	 */
 	private final Map<CFG, Optional<CFGWithAnalysisResults<A, H, V>>> results;
 
+	/**
+	 * The results of previous analyses that can be reused, if any.
+	 */
+	private final PersistentResults<A, H, V> previous;
+
 	/**
 	 * Builds the call graph.
 	 */
 	public ModularWorstCaseAnalysis() {
+		this(null);
+	}
+
+	/**
+	 * Builds the call graph, enabling incremental analysis. Since calls always
+	 * return top, the results of each cfg depend only on the cfg itself and on
+	 * the entry state used to analyze it: whenever {@code previous} contains
+	 * results for a cfg that did not change since when they were computed,
+	 * those are reused instead of computing a new fixpoint. The results of the
+	 * cfgs that changed are invalidated (see
+	 * {@link PersistentResults#invalidate(Collection)}) before the analysis
+	 * starts, and all results computed by this analysis are then stored into
+	 * {@code previous}.
+	 * 
+	 * @param previous the results of previous analyses (can be {@code null}
+	 *                     to disable incremental analysis)
+	 */
+	public ModularWorstCaseAnalysis(PersistentResults<A, H, V> previous) {
 		this.results = new ConcurrentHashMap<>();
+		this.previous = previous;
 	}
 
 	@Override
 	public final void fixpoint(AnalysisState<A, H, V> entryState) throws FixpointException {
+		if (previous != null)
+			previous.invalidate(program.getAllCFGs());
+
 		for (CFG cfg : IterationLogger.iterate(log, program.getAllCFGs(), "Computing fixpoint over the whole program",
 				"cfgs"))
 			try {
@@ -81,10 +113,24 @@ public class ModularWorstCaseAnalysis<A extends AbstractState<A, H, V>,
 					prepared = prepared.assign(id, new PushAny(all, arg.getLocation()), cfg.getGenericProgramPoint());
 				}
 
-				results.put(cfg, Optional.of(cfg.fixpoint(prepared, this)));
+				if (previous == null)
+					results.put(cfg, Optional.of(cfg.getFixpointStrategy().fixpoint(cfg, prepared, this)));
+				else {
+					Optional<CFGWithAnalysisResults<A, H, V>> reused = previous.lookup(cfg, prepared);
+					CFGWithAnalysisResults<A, H, V> result = reused.isPresent() ? reused.get()
+							: cfg.getFixpointStrategy().fixpoint(cfg, prepared, this);
+					previous.store(cfg, prepared, result);
+					results.put(cfg, Optional.of(result));
+				}
 			} catch (SemanticException e) {
 				throw new FixpointException("Error while creating the entrystate for " + cfg, e);
 			}
+
+		if (previous != null) {
+			previous.retain(program.getAllCFGs());
+			previous.recordCallers(program.getAllCFGs(), callgraph);
+			log.info("Reused the results of " + previous.getHits() + " cfgs, recomputed " + previous.getMisses());
+		}
 	}
 
 	@Override
@@ -106,6 +152,7 @@ public class ModularWorstCaseAnalysis<A extends AbstractState<A, H, V>,
 	@Override
 	public void init(Program program, CallGraph callgraph) throws InterproceduralAnalysisException {
 		this.program = program;
+		this.callgraph = callgraph;
 	}
 
 	@Override
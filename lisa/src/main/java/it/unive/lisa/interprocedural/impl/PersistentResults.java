@@ -0,0 +1,793 @@
+package it.unive.lisa.interprocedural.impl;
+
+import it.unive.lisa.analysis.AbstractState;
+import it.unive.lisa.analysis.AnalysisState;
+import it.unive.lisa.analysis.CFGWithAnalysisResults;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.heap.HeapDomain;
+import it.unive.lisa.analysis.value.ValueDomain;
+import it.unive.lisa.interprocedural.callgraph.CallGraph;
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.statement.Expression;
+import it.unive.lisa.program.cfg.statement.Statement;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A store of fixpoint results that survives across different analyses of
+ * (possibly different versions of) the same program, enabling incremental
+ * re-analysis both within the same process and across different executions of
+ * the analyzer. Results are stored for each cfg and
+ * {@link ContextSensitivityToken} (tokens are identified by their textual
+ * representation, since they are not shared among different executions), and
+ * are given back by
+ * {@link #lookup(CFG, ContextSensitivityToken, AnalysisState)} only if they
+ * have been computed on a cfg with the same {@link CFG#fingerprint()}, with
+ * the same runtime types of its expressions, and starting from an entry state
+ * that is greater or equal to the given one, since any other difference might
+ * change the outcome of the fixpoint computation.<br>
+ * <br>
+ * The results of a cfg also depend on the ones of the cfgs it calls. Stored
+ * results thus come with the calls whose results have been used to compute
+ * them (see {@link StoredCall}), and with the generation of the analysis they
+ * have been computed by: the results of the callees of a cfg can be retrieved
+ * through {@link #lookupDependency(CFG, ContextSensitivityToken, String,
+ * AnalysisState)}, only if they belong to the same generation, so that whole
+ * call chains are reused only if all the cfgs in them did not change. To
+ * release memory as soon as possible, {@link #invalidate(Collection)} marks as
+ * dirty the cfgs whose fingerprint changed since when their results were
+ * stored, propagating that to their transitive callers, as recorded by
+ * {@link #recordCallers(Collection, CallGraph)}, and forgets their
+ * results.<br>
+ * <br>
+ * Results are kept in memory, and are also stored on disk so that they can be
+ * reused by later executions. Files are content-addressed: the results of each
+ * cfg and token are stored in a file whose name is a digest of the
+ * {@link CFG#fingerprint()} of the cfg, of the class of the abstract state, of
+ * a string identifying the configuration of the analysis, of the token and of
+ * the runtime types of the expressions of the cfg. A file for a given cfg thus
+ * exists only if the same cfg has been analyzed, under the same conditions, by
+ * a previous execution, and it is overwritten each time new results are
+ * stored for it.<br>
+ * <br>
+ * Since abstract domains are not required to be serializable, the conversion
+ * of {@link AnalysisState}s to and from bytes is delegated to a
+ * {@link StateCodec} provided by the user. Errors while reading or writing
+ * files are logged and otherwise ignored, falling back to the computation of
+ * a new fixpoint.
+ * 
+ * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+ * 
+ * @param <A> the type of {@link AbstractState} contained into the analysis
+ *                state
+ * @param <H> the type of {@link HeapDomain} contained into the computed
+ *                abstract state
+ * @param <V> the type of {@link ValueDomain} contained into the computed
+ *                abstract state
+ */
+public class PersistentResults<A extends AbstractState<A, H, V>,
+		H extends HeapDomain<H>,
+		V extends ValueDomain<V>> {
+
+	private static final Logger log = LogManager.getLogger(PersistentResults.class);
+
+	private static final String EXTENSION = ".summary";
+
+	private final Path directory;
+
+	private final StateCodec<A, H, V> codec;
+
+	private final String configuration;
+
+	private final Map<String, Snapshot<A, H, V>> snapshots;
+
+	/**
+	 * The signatures of the callers of each cfg, indexed by signature, as
+	 * recorded at the end of the last analysis.
+	 */
+	private final Map<String, Set<String>> callers;
+
+	/**
+	 * The generation assigned to the results stored from now on.
+	 */
+	private volatile String generation;
+
+	private final AtomicInteger hits;
+
+	private final AtomicInteger misses;
+
+	/**
+	 * Builds the store.
+	 * 
+	 * @param directory     the directory where results are stored
+	 * @param codec         the {@link StateCodec} used to convert analysis
+	 *                          states to and from bytes
+	 * @param configuration a string identifying the configuration of the
+	 *                          analysis (e.g., the parameters of the abstract
+	 *                          domains) that is not captured by the entry
+	 *                          state: results computed with different
+	 *                          configurations are never mixed
+	 */
+	public PersistentResults(Path directory, StateCodec<A, H, V> codec, String configuration) {
+		this.directory = directory;
+		this.codec = codec;
+		this.configuration = configuration;
+		this.snapshots = new ConcurrentHashMap<>();
+		this.callers = new ConcurrentHashMap<>();
+		this.generation = UUID.randomUUID().toString();
+		this.hits = new AtomicInteger();
+		this.misses = new AtomicInteger();
+	}
+
+	/**
+	 * Yields the results previously computed for a cfg that is structurally
+	 * identical to {@code cfg}, starting from an entry state that is greater
+	 * or equal to {@code entryState}, if any. This is meant to be used by
+	 * analyses where the results of a cfg do not depend on the ones of its
+	 * callees, and is equivalent to invoking
+	 * {@link #lookup(CFG, ContextSensitivityToken, AnalysisState)} with a
+	 * {@code null} token.
+	 * 
+	 * @param cfg        the cfg to analyze
+	 * @param entryState the entry state that would be used for analyzing
+	 *                       {@code cfg}
+	 * 
+	 * @return the previous results, relocated on {@code cfg}, or an empty
+	 *             optional if no reusable results exist
+	 * 
+	 * @throws SemanticException if an error occurs while comparing
+	 *                               {@code entryState} with the one used for
+	 *                               computing previous results
+	 */
+	public final Optional<CFGWithAnalysisResults<A, H, V>> lookup(CFG cfg, AnalysisState<A, H, V> entryState)
+			throws SemanticException {
+		return lookup(cfg, null, entryState).map(StoredResults::getResults);
+	}
+
+	/**
+	 * Yields the results previously computed for a cfg that is structurally
+	 * identical to {@code cfg}, with the given token, starting from an entry
+	 * state that is greater or equal to {@code entryState}, if any. Results
+	 * are first searched in memory, and then on disk. The returned results are
+	 * relocated on {@code cfg} (see {@link CFGWithAnalysisResults#relocate(CFG)}).
+	 * Note that the returned results are reusable only if the ones of all the
+	 * calls they used are also reusable: those must be retrieved through
+	 * {@link #lookupDependency(CFG, ContextSensitivityToken, String,
+	 * AnalysisState)}.
+	 * 
+	 * @param cfg        the cfg to analyze
+	 * @param token      the token that the results should have been computed
+	 *                       with (can be {@code null} if the analysis does
+	 *                       not use tokens)
+	 * @param entryState the entry state that would be used for analyzing
+	 *                       {@code cfg}
+	 * 
+	 * @return the previous results, or an empty optional if no reusable
+	 *             results exist
+	 * 
+	 * @throws SemanticException if an error occurs while comparing
+	 *                               {@code entryState} with the one used for
+	 *                               computing previous results
+	 */
+	public final Optional<StoredResults<A, H, V>> lookup(CFG cfg, ContextSensitivityToken token,
+			AnalysisState<A, H, V> entryState) throws SemanticException {
+		Optional<StoredResults<A, H, V>> result = fetch(cfg, token, entryState, null);
+		if (result.isPresent())
+			hits.incrementAndGet();
+		else
+			misses.incrementAndGet();
+		return result;
+	}
+
+	/**
+	 * Yields the results previously computed for a cfg that is structurally
+	 * identical to {@code cfg}, with the given token, by the given generation,
+	 * if any. This is meant to retrieve the results of the calls used by other
+	 * results, whose entry states are not known: since results computed by
+	 * the same generation are consistent with each other, no constraint is
+	 * placed on the entry state of the returned results. Calls to this method
+	 * are not counted as hits nor misses.
+	 * 
+	 * @param cfg        the called cfg
+	 * @param token      the token that the results should have been computed
+	 *                       with
+	 * @param generation the generation of the results that used the ones to
+	 *                       retrieve (see {@link StoredResults#getGeneration()})
+	 * @param singleton  an instance of the {@link AnalysisState} containing the
+	 *                       abstract state of the analysis, that can be used
+	 *                       to retrieve top and bottom values
+	 * 
+	 * @return the previous results, or an empty optional if no reusable
+	 *             results exist
+	 * 
+	 * @throws SemanticException if an error occurs while retrieving the
+	 *                               results
+	 */
+	public final Optional<StoredResults<A, H, V>> lookupDependency(CFG cfg, ContextSensitivityToken token,
+			String generation, AnalysisState<A, H, V> singleton) throws SemanticException {
+		return fetch(cfg, token, singleton, generation);
+	}
+
+	private Optional<StoredResults<A, H, V>> fetch(CFG cfg, ContextSensitivityToken token,
+			AnalysisState<A, H, V> entryState, String generation) throws SemanticException {
+		String fingerprint = cfg.fingerprint();
+		Map<Integer, Set<String>> types = runtimeTypes(cfg);
+		Snapshot<A, H, V> snapshot = snapshots.get(key(cfg, token));
+		if (snapshot != null && snapshot.matches(fingerprint, types, entryState, generation))
+			return Optional.of(snapshot.toResults(cfg));
+
+		Path file = directory.resolve(address(fingerprint, types, token, entryState) + EXTENSION);
+		if (!Files.exists(file))
+			return Optional.empty();
+
+		try (InputStream stream = Files.newInputStream(file)) {
+			Snapshot<A, H, V> loaded = read(new DataInputStream(stream), cfg, fingerprint, types, entryState);
+			if (!loaded.matches(fingerprint, types, entryState, generation))
+				return Optional.empty();
+			// next lookups will be served from memory
+			snapshots.put(key(cfg, token), loaded);
+			return Optional.of(loaded.toResults(cfg));
+		} catch (IOException e) {
+			log.warn("Unable to load the results of " + cfg + " from " + file + ": " + e);
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Stores the results computed on {@code cfg} starting from
+	 * {@code entryState}, replacing the ones previously stored for it. This
+	 * is meant to be used by analyses where the results of a cfg do not
+	 * depend on the ones of its callees, and is equivalent to invoking
+	 * {@link #store(CFG, ContextSensitivityToken, AnalysisState, CFGWithAnalysisResults, Collection)}
+	 * with a {@code null} token and no calls.
+	 * 
+	 * @param cfg        the analyzed cfg
+	 * @param entryState the entry state used for analyzing {@code cfg}
+	 * @param results    the results of the analysis
+	 */
+	public void store(CFG cfg, AnalysisState<A, H, V> entryState, CFGWithAnalysisResults<A, H, V> results) {
+		store(cfg, null, entryState, results, Collections.emptySet());
+	}
+
+	/**
+	 * Stores the results computed on {@code cfg}, with the given token,
+	 * starting from {@code entryState}, replacing the ones previously stored
+	 * for them both in memory and on disk. The stored results belong to the
+	 * current generation: all the results that are consistent with each other
+	 * (e.g., the ones produced by a single analysis) must be stored without
+	 * invoking {@link #invalidate(Collection)} in between.
+	 * 
+	 * @param cfg        the analyzed cfg
+	 * @param token      the token used for analyzing {@code cfg} (can be
+	 *                       {@code null} if the analysis does not use tokens)
+	 * @param entryState the entry state used for analyzing {@code cfg}
+	 * @param results    the results of the analysis
+	 * @param calls      the calls whose results have been used for computing
+	 *                       {@code results}
+	 */
+	public void store(CFG cfg, ContextSensitivityToken token, AnalysisState<A, H, V> entryState,
+			CFGWithAnalysisResults<A, H, V> results, Collection<StoredCall> calls) {
+		String fingerprint = cfg.fingerprint();
+		Map<Integer, Set<String>> types = runtimeTypes(cfg);
+		Snapshot<A, H, V> snapshot = new Snapshot<>(cfg.getDescriptor().getFullSignatureWithParNames(), generation,
+				fingerprint, entryState, types, new ArrayList<>(calls), results);
+		snapshots.put(key(cfg, token), snapshot);
+
+		Path file = directory.resolve(address(fingerprint, types, token, entryState) + EXTENSION);
+		try {
+			Files.createDirectories(directory);
+			// results are written to a temporary file first, so that other
+			// executions never see partially written files
+			Path tmp = Files.createTempFile(directory, null, null);
+			try {
+				try (OutputStream stream = Files.newOutputStream(tmp)) {
+					write(new DataOutputStream(stream), cfg, snapshot);
+				}
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				// no-op if the file has been moved
+				Files.deleteIfExists(tmp);
+			}
+		} catch (IOException | SemanticException e) {
+			log.warn("Unable to store the results of " + cfg + " into " + file + ": " + e);
+		}
+	}
+
+	/**
+	 * Forgets the results of the cfgs that are no longer reusable, and starts
+	 * a new generation for the results stored afterwards. Starting from the
+	 * cfgs whose results have been computed on a cfg that is not among the
+	 * given ones, or whose fingerprint or runtime types differ from the ones
+	 * of the corresponding cfg among the given ones, cfgs are marked as dirty
+	 * following the callers recorded by
+	 * {@link #recordCallers(Collection, CallGraph)}. The results of all dirty
+	 * cfgs are then removed from memory. Files on disk are not affected: their
+	 * results are still checked, cfg by cfg, when they are loaded. This is
+	 * meant to be invoked before each analysis, once the runtime types of
+	 * the expressions of {@code cfgs} have been computed.
+	 * 
+	 * @param cfgs the cfgs of the program to analyze
+	 * 
+	 * @return the signatures of the cfgs marked as dirty
+	 */
+	public Set<String> invalidate(Collection<CFG> cfgs) {
+		generation = UUID.randomUUID().toString();
+
+		Map<String, CFG> current = new HashMap<>();
+		cfgs.forEach(cfg -> current.put(cfg.getDescriptor().getFullSignatureWithParNames(), cfg));
+		Map<CFG, String> fingerprints = new HashMap<>();
+		Map<CFG, Map<Integer, Set<String>>> types = new HashMap<>();
+		Deque<String> ws = new ArrayDeque<>();
+		for (Snapshot<A, H, V> snapshot : snapshots.values()) {
+			CFG cfg = current.get(snapshot.signature);
+			if (cfg == null
+					|| !snapshot.fingerprint.equals(fingerprints.computeIfAbsent(cfg, CFG::fingerprint))
+					|| !snapshot.runtimeTypes.equals(types.computeIfAbsent(cfg, PersistentResults::runtimeTypes)))
+				ws.add(snapshot.signature);
+		}
+
+		// the results of the callers of a dirty cfg might have used
+		// its ones
+		Set<String> dirty = new HashSet<>();
+		while (!ws.isEmpty()) {
+			String sig = ws.pop();
+			if (dirty.add(sig))
+				ws.addAll(callers.getOrDefault(sig, Collections.emptySet()));
+		}
+
+		snapshots.values().removeIf(snapshot -> dirty.contains(snapshot.signature));
+		if (!dirty.isEmpty())
+			log.info("Forgot the results of " + dirty.size() + " cfgs that changed or call cfgs that changed");
+		return dirty;
+	}
+
+	/**
+	 * Records the callers of the given cfgs, as known by {@code callgraph},
+	 * that will be used by the next call to {@link #invalidate(Collection)}.
+	 * This is meant to be invoked at the end of each analysis, once the call
+	 * graph has been fully built.
+	 * 
+	 * @param cfgs      the analyzed cfgs
+	 * @param callgraph the call graph used by the analysis
+	 */
+	public void recordCallers(Collection<CFG> cfgs, CallGraph callgraph) {
+		for (CFG cfg : cfgs) {
+			Set<String> sigs = new HashSet<>();
+			callgraph.getCallers(cfg).forEach(cm -> sigs.add(cm.getDescriptor().getFullSignatureWithParNames()));
+			callers.put(cfg.getDescriptor().getFullSignatureWithParNames(), sigs);
+		}
+	}
+
+	/**
+	 * Removes all the results that have not been computed on one of the given
+	 * cfgs. This is meant to be used for discarding results of code members
+	 * that have been removed from the program. Files on disk are not
+	 * affected.
+	 * 
+	 * @param cfgs the cfgs whose results should be kept
+	 */
+	public void retain(Collection<CFG> cfgs) {
+		Collection<String> sigs = new HashSet<>();
+		cfgs.forEach(cfg -> sigs.add(cfg.getDescriptor().getFullSignatureWithParNames()));
+		snapshots.values().removeIf(snapshot -> !sigs.contains(snapshot.signature));
+		callers.keySet().retainAll(sigs);
+	}
+
+	/**
+	 * Yields the number of calls to
+	 * {@link #lookup(CFG, ContextSensitivityToken, AnalysisState)} that
+	 * returned reusable results.
+	 * 
+	 * @return the number of hits
+	 */
+	public int getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Yields the number of calls to
+	 * {@link #lookup(CFG, ContextSensitivityToken, AnalysisState)} that did
+	 * not return reusable results.
+	 * 
+	 * @return the number of misses
+	 */
+	public int getMisses() {
+		return misses.get();
+	}
+
+	private static String key(CFG cfg, ContextSensitivityToken token) {
+		String sig = cfg.getDescriptor().getFullSignatureWithParNames();
+		return token == null ? sig : sig + "::" + token;
+	}
+
+	/**
+	 * Yields the names of the runtime types of each expression of the given
+	 * cfg, indexed by offset. Both the returned map and its values are
+	 * sorted.
+	 * 
+	 * @param cfg the cfg
+	 * 
+	 * @return the runtime types of the expressions of {@code cfg}
+	 */
+	private static Map<Integer, Set<String>> runtimeTypes(CFG cfg) {
+		// types are compared by name since frontends might build new type
+		// instances each time the program is parsed, and external sets are not
+		// used since the types cache is reset at each analysis
+		Map<Integer, Set<String>> types = new TreeMap<>();
+		for (Entry<Integer, Statement> st : cfg.getStatementsByOffset().entrySet())
+			if (st.getValue() instanceof Expression) {
+				Set<String> names = new TreeSet<>();
+				((Expression) st.getValue()).getRuntimeTypes().forEach(t -> names.add(t.toString()));
+				types.put(st.getKey(), names);
+			}
+		return types;
+	}
+
+	private String address(String fingerprint, Map<Integer, Set<String>> types, ContextSensitivityToken token,
+			AnalysisState<A, H, V> state) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 digests are not supported by this JVM", e);
+		}
+
+		digest.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+		digest.update(state.getState().getClass().getName().getBytes(StandardCharsets.UTF_8));
+		digest.update(String.valueOf(configuration).getBytes(StandardCharsets.UTF_8));
+		digest.update(String.valueOf(token).getBytes(StandardCharsets.UTF_8));
+		digest.update(types.toString().getBytes(StandardCharsets.UTF_8));
+
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest())
+			hex.append(String.format("%02x", b));
+		return hex.toString();
+	}
+
+	private void write(DataOutputStream out, CFG cfg, Snapshot<A, H, V> snapshot)
+			throws IOException, SemanticException {
+		CFGWithAnalysisResults<A, H, V> results = snapshot.results;
+		Map<Integer, Statement> statements = cfg.getStatementsByOffset();
+		out.writeUTF(snapshot.generation);
+		writeState(out, snapshot.entryState);
+		out.writeInt(snapshot.calls.size());
+		for (StoredCall call : snapshot.calls) {
+			out.writeInt(call.offset);
+			out.writeUTF(call.target);
+			out.writeUTF(call.token);
+		}
+
+		out.writeBoolean(results.getId() != null);
+		if (results.getId() != null)
+			out.writeUTF(results.getId());
+
+		out.writeInt(cfg.getEntrypoints().size());
+		for (Statement entry : cfg.getEntrypoints()) {
+			out.writeInt(entry.getOffset());
+			writeState(out, results.getAnalysisStateBefore(entry));
+		}
+
+		// dropped results are not available, so they are not stored either
+		statements.values().removeIf(results::isDropped);
+		out.writeInt(statements.size());
+		for (Entry<Integer, Statement> st : statements.entrySet()) {
+			out.writeInt(st.getKey());
+			writeState(out, results.getAnalysisStateAfter(st.getValue()));
+		}
+	}
+
+	private void writeState(DataOutputStream out, AnalysisState<A, H, V> state) throws IOException {
+		byte[] bytes = codec.encode(state);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private Snapshot<A, H, V> read(DataInputStream in, CFG cfg, String fingerprint, Map<Integer, Set<String>> types,
+			AnalysisState<A, H, V> singleton) throws IOException {
+		Map<Integer, Statement> statements = cfg.getStatementsByOffset();
+		String generation = in.readUTF();
+		AnalysisState<A, H, V> entryState = readState(in, singleton);
+		List<StoredCall> calls = new ArrayList<>();
+		int size = in.readInt();
+		for (int i = 0; i < size; i++)
+			calls.add(new StoredCall(in.readInt(), in.readUTF(), in.readUTF()));
+
+		String id = in.readBoolean() ? in.readUTF() : null;
+
+		Map<Statement, AnalysisState<A, H, V>> entries = new HashMap<>();
+		size = in.readInt();
+		for (int i = 0; i < size; i++)
+			entries.put(statement(statements, in.readInt()), readState(in, singleton));
+
+		Map<Statement, AnalysisState<A, H, V>> results = new HashMap<>();
+		size = in.readInt();
+		for (int i = 0; i < size; i++)
+			results.put(statement(statements, in.readInt()), readState(in, singleton));
+
+		CFGWithAnalysisResults<A, H, V> loaded = new CFGWithAnalysisResults<>(cfg, entryState, entries, results);
+		loaded.setId(id);
+		return new Snapshot<>(cfg.getDescriptor().getFullSignatureWithParNames(), generation, fingerprint,
+				entryState, types, calls, loaded);
+	}
+
+	private static Statement statement(Map<Integer, Statement> statements, int offset) throws IOException {
+		Statement st = statements.get(offset);
+		if (st == null)
+			throw new IOException("No statement with offset " + offset);
+		return st;
+	}
+
+	private AnalysisState<A, H, V> readState(DataInputStream in, AnalysisState<A, H, V> singleton)
+			throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return codec.decode(bytes, singleton);
+	}
+
+	private static final class Snapshot<A extends AbstractState<A, H, V>,
+			H extends HeapDomain<H>,
+			V extends ValueDomain<V>> {
+
+		private final String signature;
+
+		private final String generation;
+
+		private final String fingerprint;
+
+		private final AnalysisState<A, H, V> entryState;
+
+		private final Map<Integer, Set<String>> runtimeTypes;
+
+		private final Collection<StoredCall> calls;
+
+		private final CFGWithAnalysisResults<A, H, V> results;
+
+		private Snapshot(String signature, String generation, String fingerprint, AnalysisState<A, H, V> entryState,
+				Map<Integer, Set<String>> runtimeTypes, Collection<StoredCall> calls,
+				CFGWithAnalysisResults<A, H, V> results) {
+			this.signature = signature;
+			this.generation = generation;
+			this.fingerprint = fingerprint;
+			this.entryState = entryState;
+			this.runtimeTypes = runtimeTypes;
+			this.calls = calls;
+			this.results = results;
+		}
+
+		/**
+		 * Yields whether or not these results can be reused for a cfg with the
+		 * given fingerprint and runtime types: if {@code generation} is
+		 * {@code null}, {@code entryState} must be covered by the one of these
+		 * results, otherwise these results must belong to that generation.
+		 */
+		private boolean matches(String fingerprint, Map<Integer, Set<String>> runtimeTypes,
+				AnalysisState<A, H, V> entryState, String generation) throws SemanticException {
+			if (!this.fingerprint.equals(fingerprint) || !this.runtimeTypes.equals(runtimeTypes))
+				return false;
+			return generation == null ? entryState.lessOrEqual(this.entryState)
+					: generation.equals(this.generation);
+		}
+
+		private StoredResults<A, H, V> toResults(CFG cfg) {
+			return new StoredResults<>(results.relocate(cfg), calls, generation);
+		}
+	}
+
+	/**
+	 * The results of a cfg, as given back by a {@link PersistentResults}.
+	 * 
+	 * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+	 * 
+	 * @param <A> the type of {@link AbstractState} contained into the analysis
+	 *                state
+	 * @param <H> the type of {@link HeapDomain} contained into the computed
+	 *                abstract state
+	 * @param <V> the type of {@link ValueDomain} contained into the computed
+	 *                abstract state
+	 */
+	public static final class StoredResults<A extends AbstractState<A, H, V>,
+			H extends HeapDomain<H>,
+			V extends ValueDomain<V>> {
+
+		private final CFGWithAnalysisResults<A, H, V> results;
+
+		private final Collection<StoredCall> calls;
+
+		private final String generation;
+
+		private StoredResults(CFGWithAnalysisResults<A, H, V> results, Collection<StoredCall> calls,
+				String generation) {
+			this.results = results;
+			this.calls = calls;
+			this.generation = generation;
+		}
+
+		/**
+		 * Yields the results, relocated on the cfg they have been retrieved
+		 * for.
+		 * 
+		 * @return the results
+		 */
+		public CFGWithAnalysisResults<A, H, V> getResults() {
+			return results;
+		}
+
+		/**
+		 * Yields the calls whose results have been used for computing these
+		 * results.
+		 * 
+		 * @return the calls
+		 */
+		public Collection<StoredCall> getCalls() {
+			return Collections.unmodifiableCollection(calls);
+		}
+
+		/**
+		 * Yields the generation these results have been computed by. The
+		 * results of the calls used by these results are reusable only if
+		 * they belong to the same generation.
+		 * 
+		 * @return the generation
+		 */
+		public String getGeneration() {
+			return generation;
+		}
+	}
+
+	/**
+	 * A call whose results have been used for computing stored results,
+	 * identified by the offset of the call within its cfg, by the signature
+	 * of the called cfg and by the textual representation of the token used
+	 * for analyzing it.
+	 * 
+	 * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+	 */
+	public static final class StoredCall {
+
+		private final int offset;
+
+		private final String target;
+
+		private final String token;
+
+		/**
+		 * Builds the call.
+		 * 
+		 * @param offset the offset of the call within its cfg
+		 * @param target the called cfg
+		 * @param token  the token used for analyzing {@code target}
+		 */
+		public StoredCall(int offset, CFG target, ContextSensitivityToken token) {
+			this(offset, target.getDescriptor().getFullSignatureWithParNames(), token.toString());
+		}
+
+		private StoredCall(int offset, String target, String token) {
+			this.offset = offset;
+			this.target = target;
+			this.token = token;
+		}
+
+		/**
+		 * Yields the offset of the call within its cfg.
+		 * 
+		 * @return the offset
+		 */
+		public int getOffset() {
+			return offset;
+		}
+
+		/**
+		 * Yields the signature of the called cfg, as given by
+		 * {@link it.unive.lisa.program.cfg.CFGDescriptor#getFullSignatureWithParNames()}.
+		 * 
+		 * @return the signature
+		 */
+		public String getTarget() {
+			return target;
+		}
+
+		/**
+		 * Yields the textual representation of the token used for analyzing
+		 * the called cfg.
+		 * 
+		 * @return the token
+		 */
+		public String getToken() {
+			return token;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(offset, target, token);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null || getClass() != obj.getClass())
+				return false;
+			StoredCall other = (StoredCall) obj;
+			return offset == other.offset && target.equals(other.target) && token.equals(other.token);
+		}
+
+		@Override
+		public String toString() {
+			return target + "@" + offset + " with " + token;
+		}
+	}
+
+	/**
+	 * A codec converting {@link AnalysisState}s to and from bytes, used by
+	 * {@link PersistentResults} for storing them on disk.
+	 * 
+	 * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+	 * 
+	 * @param <A> the type of {@link AbstractState} contained into the analysis
+	 *                state
+	 * @param <H> the type of {@link HeapDomain} contained into the computed
+	 *                abstract state
+	 * @param <V> the type of {@link ValueDomain} contained into the computed
+	 *                abstract state
+	 */
+	public interface StateCodec<A extends AbstractState<A, H, V>,
+			H extends HeapDomain<H>,
+			V extends ValueDomain<V>> {
+
+		/**
+		 * Encodes the given state. Equal states must be encoded to the same
+		 * bytes, since encodings are also used to address stored results.
+		 * 
+		 * @param state the state to encode
+		 * 
+		 * @return the bytes representing {@code state}
+		 * 
+		 * @throws IOException if {@code state} cannot be encoded
+		 */
+		byte[] encode(AnalysisState<A, H, V> state) throws IOException;
+
+		/**
+		 * Decodes a state previously encoded with
+		 * {@link #encode(AnalysisState)}.
+		 * 
+		 * @param bytes     the bytes to decode
+		 * @param singleton an instance of the {@link AnalysisState} containing
+		 *                      the abstract state of the analysis, that can be
+		 *                      used to retrieve top and bottom values
+		 * 
+		 * @return the decoded state
+		 * 
+		 * @throws IOException if {@code bytes} cannot be decoded
+		 */
+		AnalysisState<A, H, V> decode(byte[] bytes, AnalysisState<A, H, V> singleton) throws IOException;
+	}
+}
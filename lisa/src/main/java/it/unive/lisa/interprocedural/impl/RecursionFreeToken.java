@@ -1,49 +1,41 @@
 package it.unive.lisa.interprocedural.impl;
 
 import it.unive.lisa.analysis.ScopeToken;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Objects;
 
 /**
  * A context sensitive token representing an entire call chain up until a
- * recursion.
+ * recursion. Pushing a scope that is already part of the call chain yields a
+ * token equal to the current one, from which the current one is obtained back
+ * when popping.
  */
-public class RecursionFreeToken implements ContextSensitivityToken {
+public class RecursionFreeToken extends InternedToken {
 
-	private static final RecursionFreeToken singleton = new RecursionFreeToken(null);
+	private static final RecursionFreeToken singleton = new RecursionFreeToken();
 
-	private final List<ScopeToken> tokens;
-
-	private RecursionFreeToken(ScopeToken newToken) {
-		this(Collections.emptyList(), newToken);
+	private RecursionFreeToken() {
+		super();
 	}
 
-	private RecursionFreeToken(List<ScopeToken> tokens, ScopeToken newToken) {
-		this.tokens = new ArrayList<>(tokens.size() + (newToken == null ? 0 : 1));
-		this.tokens.addAll(tokens);
-		if (newToken != null)
-			this.tokens.add(newToken);
+	private RecursionFreeToken(InternedToken parent, ScopeToken scope, InternedToken context) {
+		super(parent, scope, context);
 	}
 
 	@Override
 	public ContextSensitivityToken empty() {
-		return new RecursionFreeToken(null);
+		return new RecursionFreeToken();
 	}
 
 	@Override
-	public ContextSensitivityToken pushToken(ScopeToken c) {
-		if (tokens.contains(c))
-			return this;
-		return new RecursionFreeToken(tokens, c);
-	}
+	protected InternedToken mkChild(ScopeToken c) {
+		InternedToken context = getContext();
+		for (InternedToken node = context; node.getParent() != null; node = node.getParent())
+			if (node.getScope().equals(c))
+				// recursion: the context does not change
+				return new RecursionFreeToken(this, c, context);
 
-	@Override
-	public ContextSensitivityToken popToken() {
-		List<ScopeToken> toks = new ArrayList<>(tokens);
-		toks.remove(tokens.size() - 1);
-		return new RecursionFreeToken(toks, null);
+		if (isCanonical())
+			return new RecursionFreeToken(this, c, null);
+		return new RecursionFreeToken(this, c, (InternedToken) context.pushToken(c));
 	}
 
 	/**
@@ -54,25 +46,4 @@ public class RecursionFreeToken implements ContextSensitivityToken {
 	public static RecursionFreeToken getSingleton() {
 		return singleton;
 	}
-
-	@Override
-	public String toString() {
-		return String.valueOf(tokens);
-	}
-
-	@Override
-	public boolean equals(Object o) {
-		if (this == o)
-			return true;
-		if (o == null || getClass() != o.getClass())
-			return false;
-		RecursionFreeToken that = (RecursionFreeToken) o;
-		return Objects.equals(tokens, that.tokens);
-	}
-
-	@Override
-	public int hashCode() {
-		return Objects.hash(tokens);
-	}
-
 }
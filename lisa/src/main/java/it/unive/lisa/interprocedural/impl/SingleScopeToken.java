@@ -1,34 +1,34 @@
 package it.unive.lisa.interprocedural.impl;
 
 import it.unive.lisa.analysis.ScopeToken;
-import java.util.Objects;
+import java.util.List;
 
 /**
- * A context sensitive token representing a single {@link ScopeToken}.
+ * A context sensitive token representing a single {@link ScopeToken}, that is,
+ * the last call site of the call chain.
  */
-public class SingleScopeToken implements ContextSensitivityToken {
+public class SingleScopeToken extends InternedToken {
 
-	private static final SingleScopeToken singleton = new SingleScopeToken(null);
+	private static final SingleScopeToken singleton = new SingleScopeToken();
 
-	private final ScopeToken token;
-
-	private SingleScopeToken(ScopeToken token) {
-		this.token = token;
+	private SingleScopeToken() {
+		super();
 	}
 
-	@Override
-	public ContextSensitivityToken empty() {
-		return new SingleScopeToken(null);
+	private SingleScopeToken(InternedToken parent, ScopeToken scope, InternedToken context) {
+		super(parent, scope, context);
 	}
 
 	@Override
-	public ContextSensitivityToken pushToken(ScopeToken c) {
-		return new SingleScopeToken(c);
+	public ContextSensitivityToken empty() {
+		return new SingleScopeToken();
 	}
 
 	@Override
-	public ContextSensitivityToken popToken() {
-		return empty();
+	protected InternedToken mkChild(ScopeToken c) {
+		if (getParent() == null)
+			return new SingleScopeToken(this, c, null);
+		return new SingleScopeToken(this, c, (InternedToken) getRoot().pushToken(c));
 	}
 
 	/**
@@ -42,22 +42,7 @@ public class SingleScopeToken implements ContextSensitivityToken {
 
 	@Override
 	public String toString() {
-		return String.valueOf(token);
+		List<ScopeToken> scopes = getContextScopes();
+		return scopes.isEmpty() ? "null" : String.valueOf(scopes.get(0));
 	}
-
-	@Override
-	public boolean equals(Object o) {
-		if (this == o)
-			return true;
-		if (o == null || getClass() != o.getClass())
-			return false;
-		SingleScopeToken that = (SingleScopeToken) o;
-		return Objects.equals(token, that.token);
-	}
-
-	@Override
-	public int hashCode() {
-		return Objects.hash(token);
-	}
-
 }
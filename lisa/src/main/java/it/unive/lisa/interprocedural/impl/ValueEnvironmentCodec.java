@@ -0,0 +1,376 @@
+package it.unive.lisa.interprocedural.impl;
+
+import it.unive.lisa.analysis.AnalysisState;
+import it.unive.lisa.analysis.SimpleAbstractState;
+import it.unive.lisa.analysis.impl.heap.MonolithicHeap;
+import it.unive.lisa.analysis.lattices.ExpressionSet;
+import it.unive.lisa.analysis.nonrelational.value.NonRelationalValueDomain;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
+import it.unive.lisa.caches.Caches;
+import it.unive.lisa.interprocedural.impl.PersistentResults.StateCodec;
+import it.unive.lisa.program.SyntheticLocation;
+import it.unive.lisa.symbolic.SymbolicExpression;
+import it.unive.lisa.symbolic.value.BinaryExpression;
+import it.unive.lisa.symbolic.value.BinaryOperator;
+import it.unive.lisa.symbolic.value.Constant;
+import it.unive.lisa.symbolic.value.HeapLocation;
+import it.unive.lisa.symbolic.value.Identifier;
+import it.unive.lisa.symbolic.value.NullConstant;
+import it.unive.lisa.symbolic.value.PushAny;
+import it.unive.lisa.symbolic.value.Skip;
+import it.unive.lisa.symbolic.value.TernaryExpression;
+import it.unive.lisa.symbolic.value.TernaryOperator;
+import it.unive.lisa.symbolic.value.UnaryExpression;
+import it.unive.lisa.symbolic.value.UnaryOperator;
+import it.unive.lisa.symbolic.value.Variable;
+import it.unive.lisa.type.Type;
+import it.unive.lisa.util.collections.externalSet.ExternalSet;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A {@link StateCodec} for analyses whose abstract state is a
+ * {@link SimpleAbstractState} made of a {@link MonolithicHeap} and of a
+ * {@link ValueEnvironment}. Since non-relational domains do not expose their
+ * internal representation, the conversion of single abstract values to and
+ * from strings is delegated to a {@link ValueCodec}.<br>
+ * <br>
+ * Identifiers and symbolic expressions are encoded through their structure,
+ * while types are encoded through their name and decoded by searching the
+ * types that are registered in {@link Caches#types()} when decoding happens.
+ * Code locations are not part of the equality of identifiers and expressions,
+ * and are not encoded: all decoded expressions have
+ * {@link SyntheticLocation#INSTANCE} as location. Expressions other than
+ * variables, heap locations, constants of primitive values, {@link Skip},
+ * {@link PushAny} and unary, binary and ternary expressions (e.g., scoped
+ * identifiers) cannot be encoded: encoding states containing them fails with
+ * an {@link IOException}.
+ *
+ * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+ *
+ * @param <T> the type of {@link NonRelationalValueDomain} contained into the
+ *                {@link ValueEnvironment}
+ */
+public class ValueEnvironmentCodec<T extends NonRelationalValueDomain<T>>
+		implements StateCodec<SimpleAbstractState<MonolithicHeap, ValueEnvironment<T>>, MonolithicHeap,
+				ValueEnvironment<T>> {
+
+	private static final byte VARIABLE = 0;
+	private static final byte HEAP_LOCATION = 1;
+	private static final byte CONSTANT = 2;
+	private static final byte NULL = 3;
+	private static final byte SKIP = 4;
+	private static final byte PUSH_ANY = 5;
+	private static final byte UNARY = 6;
+	private static final byte BINARY = 7;
+	private static final byte TERNARY = 8;
+
+	private final ValueCodec<T> values;
+
+	/**
+	 * Builds the codec.
+	 *
+	 * @param values the {@link ValueCodec} used to convert abstract values to
+	 *                   and from strings
+	 */
+	public ValueEnvironmentCodec(ValueCodec<T> values) {
+		this.values = values;
+	}
+
+	@Override
+	public byte[] encode(AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<T>>, MonolithicHeap,
+			ValueEnvironment<T>> state) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		out.writeBoolean(state.getState().getHeapState().isBottom());
+
+		ValueEnvironment<T> env = state.getState().getValueState();
+		Map<Identifier, T> function = env.getMap();
+		out.writeUTF(values.encode(env.getLattice()));
+		out.writeBoolean(function != null);
+		if (function != null) {
+			// entries are sorted to yield the same bytes for equal states
+			List<byte[]> entries = new ArrayList<>(function.size());
+			for (Entry<Identifier, T> entry : function.entrySet()) {
+				ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+				DataOutputStream entryOut = new DataOutputStream(entryBytes);
+				writeExpression(entryOut, entry.getKey());
+				entryOut.writeUTF(values.encode(entry.getValue()));
+				entries.add(entryBytes.toByteArray());
+			}
+			writeSorted(out, entries);
+		}
+
+		ExpressionSet<SymbolicExpression> computed = state.getComputedExpressions();
+		out.writeBoolean(computed.isTop());
+		List<byte[]> expressions = new ArrayList<>(computed.size());
+		for (SymbolicExpression expression : computed) {
+			ByteArrayOutputStream expressionBytes = new ByteArrayOutputStream();
+			writeExpression(new DataOutputStream(expressionBytes), expression);
+			expressions.add(expressionBytes.toByteArray());
+		}
+		writeSorted(out, expressions);
+
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	@Override
+	public AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<T>>, MonolithicHeap,
+			ValueEnvironment<T>> decode(byte[] bytes,
+					AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<T>>, MonolithicHeap,
+							ValueEnvironment<T>> singleton)
+					throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		Map<String, Type> types = new HashMap<>();
+		for (Type type : Caches.types().mkUniversalSet())
+			types.put(type.toString(), type);
+
+		MonolithicHeap heap = singleton.getState().getHeapState();
+		heap = in.readBoolean() ? heap.bottom() : heap.top();
+
+		T singletonValue = singleton.getState().getValueState().getLattice();
+		T lattice = values.decode(in.readUTF(), singletonValue);
+		Map<Identifier, T> function = null;
+		if (in.readBoolean()) {
+			function = new HashMap<>();
+			int size = in.readInt();
+			for (int i = 0; i < size; i++) {
+				in.readInt();
+				SymbolicExpression id = readExpression(in, types);
+				if (!(id instanceof Identifier))
+					throw new IOException(id + " is not an identifier");
+				function.put((Identifier) id, values.decode(in.readUTF(), singletonValue));
+			}
+		}
+
+		boolean top = in.readBoolean();
+		Set<SymbolicExpression> computed = new HashSet<>();
+		int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			in.readInt();
+			computed.add(readExpression(in, types));
+		}
+		ExpressionSet<SymbolicExpression> expressions = new ExpressionSet<>(computed);
+
+		return new AnalysisState<>(new SimpleAbstractState<>(heap, new ValueEnvironment<>(lattice, function)),
+				top ? expressions.top() : expressions);
+	}
+
+	private static void writeSorted(DataOutputStream out, List<byte[]> elements) throws IOException {
+		elements.sort(ValueEnvironmentCodec::compare);
+		out.writeInt(elements.size());
+		for (byte[] element : elements) {
+			// the length allows to skip the comparison key when reading
+			out.writeInt(element.length);
+			out.write(element);
+		}
+	}
+
+	private static int compare(byte[] first, byte[] second) {
+		for (int i = 0; i < Math.min(first.length, second.length); i++)
+			if (first[i] != second[i])
+				return Byte.compare(first[i], second[i]);
+		return Integer.compare(first.length, second.length);
+	}
+
+	private static void writeTypes(DataOutputStream out, ExternalSet<Type> types) throws IOException {
+		Set<String> names = new TreeSet<>();
+		for (Type type : types)
+			names.add(type.toString());
+		out.writeInt(names.size());
+		for (String name : names)
+			out.writeUTF(name);
+	}
+
+	private static ExternalSet<Type> readTypes(DataInputStream in, Map<String, Type> types) throws IOException {
+		int size = in.readInt();
+		List<Type> result = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			String name = in.readUTF();
+			Type type = types.get(name);
+			if (type == null)
+				throw new IOException("Type " + name + " is not registered");
+			result.add(type);
+		}
+		return Caches.types().mkSet(result);
+	}
+
+	private static void writeExpression(DataOutputStream out, SymbolicExpression expression) throws IOException {
+		if (expression instanceof Variable) {
+			out.writeByte(VARIABLE);
+			writeTypes(out, expression.getTypes());
+			out.writeUTF(((Variable) expression).getName());
+		} else if (expression instanceof HeapLocation) {
+			out.writeByte(HEAP_LOCATION);
+			writeTypes(out, expression.getTypes());
+			out.writeUTF(((HeapLocation) expression).getName());
+			out.writeBoolean(((HeapLocation) expression).isWeak());
+		} else if (expression instanceof NullConstant)
+			out.writeByte(NULL);
+		else if (expression instanceof Constant) {
+			out.writeByte(CONSTANT);
+			writeTypes(out, expression.getTypes());
+			writeConstant(out, ((Constant) expression).getValue());
+		} else if (expression instanceof Skip)
+			out.writeByte(SKIP);
+		else if (expression instanceof PushAny) {
+			out.writeByte(PUSH_ANY);
+			writeTypes(out, expression.getTypes());
+		} else if (expression instanceof UnaryExpression) {
+			UnaryExpression unary = (UnaryExpression) expression;
+			out.writeByte(UNARY);
+			writeTypes(out, expression.getTypes());
+			out.writeUTF(unary.getOperator().name());
+			writeExpression(out, unary.getExpression());
+		} else if (expression instanceof BinaryExpression) {
+			BinaryExpression binary = (BinaryExpression) expression;
+			out.writeByte(BINARY);
+			writeTypes(out, expression.getTypes());
+			out.writeUTF(binary.getOperator().name());
+			writeExpression(out, binary.getLeft());
+			writeExpression(out, binary.getRight());
+		} else if (expression instanceof TernaryExpression) {
+			TernaryExpression ternary = (TernaryExpression) expression;
+			out.writeByte(TERNARY);
+			writeTypes(out, expression.getTypes());
+			out.writeUTF(ternary.getOperator().name());
+			writeExpression(out, ternary.getLeft());
+			writeExpression(out, ternary.getMiddle());
+			writeExpression(out, ternary.getRight());
+		} else
+			throw new IOException("Cannot encode " + expression + " (" + expression.getClass().getName() + ")");
+	}
+
+	private static SymbolicExpression readExpression(DataInputStream in, Map<String, Type> types)
+			throws IOException {
+		SyntheticLocation location = SyntheticLocation.INSTANCE;
+		byte kind = in.readByte();
+		switch (kind) {
+		case VARIABLE:
+			return new Variable(readTypes(in, types), in.readUTF(), location);
+		case HEAP_LOCATION:
+			return new HeapLocation(readTypes(in, types), in.readUTF(), in.readBoolean(), location);
+		case NULL:
+			return new NullConstant(location);
+		case CONSTANT:
+			ExternalSet<Type> constantTypes = readTypes(in, types);
+			if (constantTypes.size() != 1)
+				throw new IOException("Constants must have exactly one type");
+			return new Constant(constantTypes.first(), readConstant(in), location);
+		case SKIP:
+			return new Skip(location);
+		case PUSH_ANY:
+			return new PushAny(readTypes(in, types), location);
+		case UNARY:
+			ExternalSet<Type> unaryTypes = readTypes(in, types);
+			UnaryOperator unary = UnaryOperator.valueOf(in.readUTF());
+			return new UnaryExpression(unaryTypes, readExpression(in, types), unary, location);
+		case BINARY:
+			ExternalSet<Type> binaryTypes = readTypes(in, types);
+			BinaryOperator binary = BinaryOperator.valueOf(in.readUTF());
+			SymbolicExpression left = readExpression(in, types);
+			return new BinaryExpression(binaryTypes, left, readExpression(in, types), binary, location);
+		case TERNARY:
+			ExternalSet<Type> ternaryTypes = readTypes(in, types);
+			TernaryOperator ternary = TernaryOperator.valueOf(in.readUTF());
+			SymbolicExpression first = readExpression(in, types);
+			SymbolicExpression second = readExpression(in, types);
+			return new TernaryExpression(ternaryTypes, first, second, readExpression(in, types), ternary,
+					location);
+		default:
+			throw new IOException("Unknown expression kind: " + kind);
+		}
+	}
+
+	private static void writeConstant(DataOutputStream out, Object value) throws IOException {
+		if (value instanceof Integer) {
+			out.writeByte(0);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			out.writeByte(1);
+			out.writeLong((Long) value);
+		} else if (value instanceof Float) {
+			out.writeByte(2);
+			out.writeFloat((Float) value);
+		} else if (value instanceof Double) {
+			out.writeByte(3);
+			out.writeDouble((Double) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte(4);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof String) {
+			out.writeByte(5);
+			out.writeUTF((String) value);
+		} else
+			throw new IOException("Cannot encode constant value " + value);
+	}
+
+	private static Object readConstant(DataInputStream in) throws IOException {
+		byte kind = in.readByte();
+		switch (kind) {
+		case 0:
+			return in.readInt();
+		case 1:
+			return in.readLong();
+		case 2:
+			return in.readFloat();
+		case 3:
+			return in.readDouble();
+		case 4:
+			return in.readBoolean();
+		case 5:
+			return in.readUTF();
+		default:
+			throw new IOException("Unknown constant kind: " + kind);
+		}
+	}
+
+	/**
+	 * A codec converting single abstract values of a
+	 * {@link NonRelationalValueDomain} to and from strings.
+	 *
+	 * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+	 *
+	 * @param <T> the type of {@link NonRelationalValueDomain}
+	 */
+	public interface ValueCodec<T extends NonRelationalValueDomain<T>> {
+
+		/**
+		 * Encodes the given value. Equal values must be encoded to the same
+		 * string.
+		 *
+		 * @param value the value to encode
+		 *
+		 * @return the string representing {@code value}
+		 *
+		 * @throws IOException if {@code value} cannot be encoded
+		 */
+		String encode(T value) throws IOException;
+
+		/**
+		 * Decodes a value previously encoded with {@link #encode(Object)}.
+		 *
+		 * @param value     the string to decode
+		 * @param singleton an instance of the domain, that can be used to
+		 *                      retrieve top and bottom values
+		 *
+		 * @return the decoded value
+		 *
+		 * @throws IOException if {@code value} cannot be decoded
+		 */
+		T decode(String value, T singleton) throws IOException;
+	}
+}
@@ -14,6 +14,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import org.apache.commons.lang3.StringUtils;
@@ -74,6 +75,14 @@ public class CompilationUnit extends Unit implements CodeElement {
 	 */
 	private boolean hierarchyComputed;
 
+	/**
+	 * The instance code members visible from this unit, including the
+	 * inherited ones that are not overridden, indexed by
+	 * {@link CFGDescriptor#getName()}. This is computed by
+	 * {@link #validateAndFinalize()}, and it is {@code null} before that.
+	 */
+	private Map<String, Set<CodeMember>> dispatchTable;
+
 	private Annotations annotations;
 
 	/**
@@ -371,6 +380,8 @@ public class CompilationUnit extends Unit implements CodeElement {
 	 * @return the collection of code members with the given name
 	 */
 	public final Collection<CodeMember> getInstanceCodeMembersByName(String name, boolean traverseHierarchy) {
+		if (traverseHierarchy && dispatchTable != null)
+			return dispatchTable.getOrDefault(name, Collections.emptySet());
 		return searchCodeMembers(cm -> cm.getDescriptor().getName().equals(name), true, true, traverseHierarchy);
 	}
 
@@ -388,6 +399,14 @@ public class CompilationUnit extends Unit implements CodeElement {
 	 */
 	public final Collection<CodeMember> getMatchingInstanceCodeMembers(CFGDescriptor signature,
 			boolean traverseHierarchy) {
+		if (traverseHierarchy && dispatchTable != null) {
+			// matching signatures always have the same name
+			Collection<CodeMember> result = new HashSet<>();
+			for (CodeMember cm : dispatchTable.getOrDefault(signature.getName(), Collections.emptySet()))
+				if (cm.getDescriptor().matchesSignature(signature))
+					result.add(cm);
+			return result;
+		}
 		return searchCodeMembers(cm -> cm.getDescriptor().matchesSignature(signature), true, true, traverseHierarchy);
 	}
 
@@ -561,7 +580,13 @@ public class CompilationUnit extends Unit implements CodeElement {
 	 * call resolutions. Instance code members are also linked to other ones in
 	 * the hierarchy, populating the collections
 	 * {@link CFGDescriptor#overriddenBy()} and
-	 * {@link CFGDescriptor#overrides()}.
+	 * {@link CFGDescriptor#overrides()}. Lastly, the instance code members
+	 * visible from this unit are indexed by name, so that searching them
+	 * through {@link #getInstanceCodeMembersByName(String, boolean)} and
+	 * {@link #getMatchingInstanceCodeMembers(CFGDescriptor, boolean)} does not
+	 * need to traverse the hierarchy anymore. Instance code members and
+	 * superunits added after the validation will not be visible through those
+	 * methods when traversing the hierarchy.
 	 */
 	@Override
 	public final void validateAndFinalize() throws ProgramValidationException {
@@ -623,6 +648,12 @@ public class CompilationUnit extends Unit implements CodeElement {
 						}
 				}
 
+		Map<String, Set<CodeMember>> table = new HashMap<>();
+		for (CodeMember cm : this.<CodeMember>searchCodeMembers(cm -> true, true, true, true))
+			table.computeIfAbsent(cm.getDescriptor().getName(), n -> new HashSet<>()).add(cm);
+		table.replaceAll((n, members) -> Collections.unmodifiableSet(members));
+		dispatchTable = table;
+
 		hierarchyComputed = true;
 	}
 
@@ -0,0 +1,341 @@
+package it.unive.lisa.program.cfg;
+
+import it.unive.lisa.analysis.AbstractState;
+import it.unive.lisa.analysis.AnalysisState;
+import it.unive.lisa.analysis.CFGWithAnalysisResults;
+import it.unive.lisa.analysis.CFGWithAnalysisResults.ResultsProvider;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.StatementStore;
+import it.unive.lisa.analysis.heap.HeapDomain;
+import it.unive.lisa.analysis.value.ValueDomain;
+import it.unive.lisa.interprocedural.InterproceduralAnalysis;
+import it.unive.lisa.program.cfg.edge.Edge;
+import it.unive.lisa.program.cfg.statement.Call;
+import it.unive.lisa.program.cfg.statement.Expression;
+import it.unive.lisa.program.cfg.statement.NativeCall;
+import it.unive.lisa.program.cfg.statement.Statement;
+import it.unive.lisa.util.datastructures.graph.FixpointException;
+import it.unive.lisa.util.datastructures.graph.GraphVisitor;
+import it.unive.lisa.util.datastructures.graph.NodeMap;
+import it.unive.lisa.util.workset.FIFOWorkingSet;
+import it.unive.lisa.util.workset.WorkingSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * A fixpoint over a {@link CFG} that iterates over its basic blocks instead of
+ * its statements. A basic block is a maximal chain of statements where each
+ * statement but the last one has a single follower, and each statement but
+ * the first one (the <i>leader</i>) has a single predecessor. The working set
+ * of this fixpoint contains blocks: each block is evaluated by computing the
+ * semantics of its statements in sequence, starting from the state before its
+ * leader, and only the states before each leader and after the last statement
+ * of each block are stored. Results are composed at leaders, through
+ * {@link it.unive.lisa.analysis.Lattice#lub(it.unive.lisa.analysis.Lattice)}
+ * for the first {@code widenAfter * predecessors} updates and through
+ * {@link it.unive.lisa.analysis.Lattice#widening(it.unive.lisa.analysis.Lattice)}
+ * afterwards.<br>
+ * <br>
+ * The states of the other statements (and of their inner expressions) are not
+ * kept: this object acts as a {@link ResultsProvider} for the
+ * {@link CFGWithAnalysisResults} built from it, and recomputes the states of a
+ * whole block from the state before its leader (that is stored as a seed of
+ * the results) when they are requested. Statements that contain calls to other
+ * cfgs are the only exception, since recomputing them would query the
+ * interprocedural analysis after it terminated: their results are stored
+ * during the fixpoint, and they are read from the stored results when a block
+ * is recomputed.
+ *
+ * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+ *
+ * @param <A> the type of {@link AbstractState} contained into the analysis
+ *                state
+ * @param <H> the type of {@link HeapDomain} contained into the computed
+ *                abstract state
+ * @param <V> the type of {@link ValueDomain} contained into the computed
+ *                abstract state
+ */
+class BlockFixpoint<A extends AbstractState<A, H, V>,
+		H extends HeapDomain<H>,
+		V extends ValueDomain<V>> implements ResultsProvider<A, H, V> {
+
+	private final CFG cfg;
+
+	private final AnalysisState<A, H, V> entryState;
+
+	private final InterproceduralAnalysis<A, H, V> interprocedural;
+
+	private final int widenAfter;
+
+	/**
+	 * The statements of each block, indexed by their leader
+	 */
+	private final Map<Statement, List<Statement>> blocks = new IdentityHashMap<>();
+
+	/**
+	 * The leader of the block containing each statement
+	 */
+	private final Map<Statement, Statement> leaders = new IdentityHashMap<>();
+
+	/**
+	 * The statements that contain calls towards other cfgs
+	 */
+	private final Set<Statement> calls = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	/**
+	 * The state before each leader
+	 */
+	private final Map<Statement, AnalysisState<A, H, V>> entries = new NodeMap<>();
+
+	/**
+	 * The state after the last statement of each block, indexed by leader
+	 */
+	private final Map<Statement, AnalysisState<A, H, V>> exits = new NodeMap<>();
+
+	/**
+	 * The results of the statements in {@link #calls}, together with the ones
+	 * of their inner expressions
+	 */
+	private final Map<Statement, AnalysisState<A, H, V>> stored = new NodeMap<>();
+
+	/**
+	 * Builds the fixpoint, partitioning the statements of the cfg that are
+	 * reachable from its entrypoints into basic blocks.
+	 *
+	 * @param cfg             the cfg to analyze
+	 * @param entryState      the entry state of the entrypoints of {@code cfg}
+	 * @param interprocedural the interprocedural analysis to query when a call
+	 *                            is encountered
+	 * @param widenAfter      the number of updates of the state before a
+	 *                            leader, for each of its predecessors, after
+	 *                            which lub is replaced by widening, or
+	 *                            {@code 0} to always use lub
+	 */
+	BlockFixpoint(CFG cfg, AnalysisState<A, H, V> entryState, InterproceduralAnalysis<A, H, V> interprocedural,
+			int widenAfter) {
+		this.cfg = cfg;
+		this.entryState = entryState;
+		this.interprocedural = interprocedural;
+		this.widenAfter = widenAfter;
+
+		WorkingSet<Statement> visit = FIFOWorkingSet.mk();
+		cfg.getEntrypoints().forEach(visit::push);
+		CallsFinder finder = new CallsFinder();
+		while (!visit.isEmpty()) {
+			Statement leader = visit.pop();
+			if (blocks.containsKey(leader))
+				continue;
+
+			List<Statement> block = new ArrayList<>();
+			Statement current = leader;
+			while (true) {
+				block.add(current);
+				leaders.put(current, leader);
+				if (finder.containsCalls(current))
+					calls.add(current);
+
+				Collection<Statement> followers = cfg.followersOf(current);
+				if (followers.size() != 1)
+					break;
+				Statement next = followers.iterator().next();
+				if (next == leader || cfg.predecessorsOf(next).size() != 1 || cfg.getEntrypoints().contains(next))
+					break;
+				current = next;
+			}
+
+			blocks.put(leader, block);
+			cfg.followersOf(current).forEach(visit::push);
+		}
+	}
+
+	/**
+	 * Runs the fixpoint. After this method returns, the states before the
+	 * leader of each block are available through {@link #getSeeds()}.
+	 *
+	 * @return the results of the fixpoint, mapping the last statement of each
+	 *             block and each statement containing calls (together with
+	 *             their inner expressions) to the state computed after it
+	 *
+	 * @throws FixpointException if an error occurs during the semantic
+	 *                               computation of a statement
+	 */
+	Map<Statement, AnalysisState<A, H, V>> run() throws FixpointException {
+		WorkingSet<Statement> ws = FIFOWorkingSet.mk();
+		Map<Statement, Integer> updates = new IdentityHashMap<>();
+		cfg.getEntrypoints().forEach(ws::push);
+
+		while (!ws.isEmpty()) {
+			Statement leader = ws.pop();
+			try {
+				AnalysisState<A, H, V> in = entryOf(leader);
+				AnalysisState<A, H, V> old = entries.get(leader);
+				if (old != null) {
+					int preds = Math.max(1, cfg.predecessorsOf(leader).size());
+					int count = updates.merge(leader, 1, Integer::sum);
+					if (widenAfter == 0 || count <= widenAfter * preds)
+						in = in.lub(old);
+					else
+						in = old.widening(in);
+					if (in.lessOrEqual(old))
+						continue;
+				}
+
+				entries.put(leader, in);
+				AnalysisState<A, H, V> out = evaluate(leader, in, stored, null);
+				AnalysisState<A, H, V> previous = exits.get(leader);
+				if (previous == null || !out.lessOrEqual(previous)) {
+					exits.put(leader, out);
+					List<Statement> block = blocks.get(leader);
+					cfg.followersOf(block.get(block.size() - 1)).forEach(ws::push);
+				}
+			} catch (SemanticException e) {
+				throw new FixpointException("Semantic exception during fixpoint computation of the block starting at '"
+						+ leader + "' in " + cfg, e);
+			}
+		}
+
+		Map<Statement, AnalysisState<A, H, V>> results = new NodeMap<>();
+		for (Entry<Statement, AnalysisState<A, H, V>> exit : exits.entrySet()) {
+			List<Statement> block = blocks.get(exit.getKey());
+			results.put(block.get(block.size() - 1), exit.getValue());
+		}
+		results.putAll(stored);
+		// this object is kept as provider of the results: it must not retain
+		// any state
+		exits.clear();
+		stored.clear();
+		return results;
+	}
+
+	/**
+	 * Yields the states before the leader of each block, computed by
+	 * {@link #run()}. The states are handed over to the caller: this object
+	 * does not retain them.
+	 * 
+	 * @return the states before the leaders
+	 */
+	Map<Statement, AnalysisState<A, H, V>> getSeeds() {
+		Map<Statement, AnalysisState<A, H, V>> seeds = new NodeMap<>(entries);
+		entries.clear();
+		return seeds;
+	}
+
+	@Override
+	public Map<Statement, AnalysisState<A, H, V>> compute(Statement st, StatementStore<A, H, V> seeds,
+			StatementStore<A, H, V> results) throws SemanticException {
+		Statement root = st instanceof Expression ? ((Expression) st).getRootStatement() : st;
+		Statement leader = leaders.get(root);
+		if (leader == null || !seeds.getKeys().contains(leader))
+			// not reachable from the entrypoints
+			return Collections.emptyMap();
+
+		Map<Statement, AnalysisState<A, H, V>> computed = new NodeMap<>();
+		evaluate(leader, seeds.getState(leader), computed, results);
+		return computed;
+	}
+
+	@Override
+	public ResultsProvider<A, H, V> relocate(CFG cfg) {
+		return new BlockFixpoint<>(cfg, entryState, interprocedural, widenAfter);
+	}
+
+	private AnalysisState<A, H, V> entryOf(Statement leader) throws SemanticException {
+		AnalysisState<A, H, V> result = cfg.getEntrypoints().contains(leader) ? entryState : null;
+		Set<Statement> seen = new HashSet<>();
+		for (Edge edge : cfg.getIngoingEdges(leader)) {
+			Statement pred = edge.getSource();
+			if (!seen.add(pred))
+				// only the first edge coming from each predecessor is
+				// traversed
+				continue;
+
+			AnalysisState<A, H, V> exit = leaders.containsKey(pred) ? exits.get(leaders.get(pred)) : null;
+			if (exit != null) {
+				// this might not have been computed yet
+				AnalysisState<A, H, V> traversed = cfg.cleanUpPostState(pred, edge.traverse(exit));
+				result = result == null ? traversed : result.lub(traversed);
+			}
+		}
+
+		if (result == null)
+			throw new SemanticException(leader + " does not have an entry state");
+		return result;
+	}
+
+	/**
+	 * Evaluates the block starting at {@code leader} from the given state,
+	 * yielding the state after its last statement. If {@code replayed} is
+	 * {@code null} (that is, during the fixpoint), only the results of
+	 * statements containing calls are stored in {@code results}, after
+	 * evaluating them. Otherwise, the results of all statements are stored in
+	 * {@code results}, reading the ones of statements containing calls from
+	 * {@code replayed} instead of evaluating them.
+	 */
+	private AnalysisState<A, H, V> evaluate(Statement leader, AnalysisState<A, H, V> in,
+			Map<Statement, AnalysisState<A, H, V>> results, StatementStore<A, H, V> replayed)
+			throws SemanticException {
+		boolean fixpoint = replayed == null;
+		List<Statement> block = blocks.get(leader);
+		AnalysisState<A, H, V> state = in;
+		for (int i = 0; i < block.size(); i++) {
+			Statement current = block.get(i);
+			AnalysisState<A, H, V> post;
+			if (!fixpoint && calls.contains(current))
+				post = replayed.getState(current);
+			else {
+				StatementStore<A, H, V> expressions = new StatementStore<>(state);
+				post = current.semantics(state, interprocedural, expressions);
+				if (!fixpoint || calls.contains(current)) {
+					for (Entry<Statement, AnalysisState<A, H, V>> e : expressions)
+						if (!fixpoint || cfg.retainsInnerResult(e.getKey()))
+							results.put(e.getKey(), e.getValue());
+					results.put(current, post);
+				}
+			}
+
+			if (i == block.size() - 1)
+				return post;
+
+			Statement next = block.get(i + 1);
+			state = cfg.cleanUpPostState(current, cfg.getEdgeConnecting(current, next).traverse(post));
+		}
+
+		// blocks are never empty
+		return state;
+	}
+
+	private static class CallsFinder implements GraphVisitor<CFG, Statement, Edge, Void> {
+
+		private boolean found;
+
+		private boolean containsCalls(Statement st) {
+			found = false;
+			st.accept(this, null);
+			return found;
+		}
+
+		@Override
+		public boolean visit(Void tool, CFG graph) {
+			return true;
+		}
+
+		@Override
+		public boolean visit(Void tool, CFG graph, Statement node) {
+			if (node instanceof Call && !(node instanceof NativeCall))
+				found = true;
+			return true;
+		}
+
+		@Override
+		public boolean visit(Void tool, CFG graph, Edge edge) {
+			return true;
+		}
+	}
+}
@@ -3,11 +3,15 @@ package it.unive.lisa.program.cfg;
 import it.unive.lisa.analysis.AbstractState;
 import it.unive.lisa.analysis.AnalysisState;
 import it.unive.lisa.analysis.CFGWithAnalysisResults;
+import it.unive.lisa.analysis.CFGWithAnalysisResults.CacheStatistics;
 import it.unive.lisa.analysis.Lattice;
 import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.SimpleAbstractState;
 import it.unive.lisa.analysis.StatementStore;
 import it.unive.lisa.analysis.heap.HeapDomain;
+import it.unive.lisa.analysis.impl.heap.MonolithicHeap;
 import it.unive.lisa.analysis.lattices.FunctionalLattice;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
 import it.unive.lisa.analysis.value.ValueDomain;
 import it.unive.lisa.interprocedural.InterproceduralAnalysis;
 import it.unive.lisa.outputs.DotCFG;
@@ -17,18 +21,25 @@ import it.unive.lisa.program.cfg.controlFlow.ControlFlowStructure;
 import it.unive.lisa.program.cfg.controlFlow.IfThenElse;
 import it.unive.lisa.program.cfg.controlFlow.Loop;
 import it.unive.lisa.program.cfg.edge.Edge;
+import it.unive.lisa.program.cfg.edge.FalseEdge;
 import it.unive.lisa.program.cfg.edge.SequentialEdge;
+import it.unive.lisa.program.cfg.edge.TrueEdge;
 import it.unive.lisa.program.cfg.statement.Expression;
 import it.unive.lisa.program.cfg.statement.NoOp;
 import it.unive.lisa.program.cfg.statement.Statement;
+import it.unive.lisa.program.cfg.statement.VariableRef;
 import it.unive.lisa.symbolic.SymbolicExpression;
 import it.unive.lisa.symbolic.value.Identifier;
 import it.unive.lisa.util.collections.externalSet.ExternalSet;
 import it.unive.lisa.util.datastructures.graph.AdjacencyMatrix;
 import it.unive.lisa.util.datastructures.graph.FixpointException;
 import it.unive.lisa.util.datastructures.graph.FixpointGraph;
+import it.unive.lisa.util.datastructures.graph.GraphVisitor;
 import it.unive.lisa.util.workset.FIFOWorkingSet;
 import it.unive.lisa.util.workset.WorkingSet;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -37,6 +48,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -70,6 +82,42 @@ public class CFG extends FixpointGraph<CFG, Statement, Edge> implements CodeMemb
 	 */
 	private boolean cfsExtracted;
 
+	/**
+	 * Whether or not dead variables are removed from the states computed by
+	 * the fixpoints over this cfg
+	 */
+	private boolean pruneDeadVariables;
+
+	/**
+	 * The live variables of this cfg, lazily computed the first time they are
+	 * needed
+	 */
+	private volatile LiveVariables liveness;
+
+	/**
+	 * The inner expressions whose results are retained by the fixpoints over
+	 * this cfg, or {@code null} if all of them are retained
+	 */
+	private Predicate<Statement> innerResultsFilter;
+
+	/**
+	 * The strategy used by interprocedural analyses to compute fixpoints over
+	 * this cfg
+	 */
+	private FixpointStrategy fixpointStrategy = FixpointStrategy.WORKLIST;
+
+	/**
+	 * The maximum number of states before statements that each result of the
+	 * fixpoints over this cfg caches, or {@code 0} if there is no limit
+	 */
+	private int cachedStatesLimit;
+
+	/**
+	 * The counters of the cached states of the results of the fixpoints over
+	 * this cfg, or {@code null} if they are not counted
+	 */
+	private CacheStatistics cacheStatistics;
+
 	/**
 	 * Builds the control flow graph.
 	 * 
@@ -109,6 +157,12 @@ public class CFG extends FixpointGraph<CFG, Statement, Edge> implements CodeMemb
 		this.descriptor = other.descriptor;
 		this.cfStructs = other.cfStructs;
 		this.cfsExtracted = other.cfsExtracted;
+		this.pruneDeadVariables = other.pruneDeadVariables;
+		this.liveness = other.liveness;
+		this.innerResultsFilter = other.innerResultsFilter;
+		this.fixpointStrategy = other.fixpointStrategy;
+		this.cachedStatesLimit = other.cachedStatesLimit;
+		this.cacheStatistics = other.cacheStatistics;
 	}
 
 	/**
@@ -148,6 +202,62 @@ public class CFG extends FixpointGraph<CFG, Statement, Edge> implements CodeMemb
 				.collect(Collectors.toList());
 	}
 
+	/**
+	 * Yields all the statements of this control flow graph, including the
+	 * {@link Expression}s nested inside them, indexed by their offset (see
+	 * {@link Statement#getOffset()}).
+	 * 
+	 * @return a map from offsets to the statements of this cfg
+	 */
+	public final Map<Integer, Statement> getStatementsByOffset() {
+		Map<Integer, Statement> statements = new HashMap<>();
+		accept(new StatementsCollector(), statements);
+		return statements;
+	}
+
+	/**
+	 * Computes a structural fingerprint of this control flow graph. The
+	 * fingerprint accounts for the signature of this cfg, and for the kind,
+	 * offset, location and textual representation of each statement (nested
+	 * ones included) and edge. Two cfgs with the same fingerprint are thus
+	 * structurally identical, and statements with the same offset in them
+	 * correspond to each other: analysis results computed on one of them can
+	 * be safely moved to the other (see
+	 * {@link CFGWithAnalysisResults#relocate(CFG)}). Note that since locations
+	 * are part of the fingerprint, moving a cfg within its source file changes
+	 * its fingerprint.
+	 * 
+	 * @return the fingerprint of this cfg, as an hexadecimal string
+	 */
+	public final String fingerprint() {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 digests are not supported by this JVM", e);
+		}
+
+		StringBuilder repr = new StringBuilder();
+		repr.append(descriptor.getFullSignatureWithParNames()).append('@').append(descriptor.getLocation())
+				.append('\n');
+		Map<Integer, Statement> statements = new TreeMap<>(getStatementsByOffset());
+		for (Statement st : statements.values())
+			repr.append(st.getOffset()).append(entrypoints.contains(st) ? "*" : "").append(' ')
+					.append(st.getClass().getName()).append('@').append(st.getLocation()).append(' ')
+					.append(st).append('\n');
+		getEdges().stream()
+				.map(e -> e.getSource().getOffset() + "->" + e.getDestination().getOffset() + " "
+						+ e.getClass().getName())
+				.sorted()
+				.forEach(e -> repr.append(e).append('\n'));
+
+		byte[] hash = digest.digest(repr.toString().getBytes(StandardCharsets.UTF_8));
+		StringBuilder hex = new StringBuilder(hash.length * 2);
+		for (byte b : hash)
+			hex.append(String.format("%02x", b));
+		return hex.toString();
+	}
+
 	/**
 	 * Adds the given {@link ControlFlowStructure} to the ones contained in this
 	 * cfg.
@@ -849,6 +959,524 @@ public class CFG extends FixpointGraph<CFG, Statement, Edge> implements CodeMemb
 								(StatementStore) expressions)));
 	}
 
+	/**
+	 * Computes a fixpoint over this control flow graph, iterating over its
+	 * statements following a weak topological ordering. This method returns a
+	 * {@link CFGWithAnalysisResults} instance mapping each {@link Statement} to
+	 * the {@link AnalysisState} computed by this method. Loops are iterated
+	 * until their head is stable, and results are composed only on loop heads:
+	 * through {@link Lattice#lub(Lattice)} for the first
+	 * {@link #DEFAULT_WIDENING_THRESHOLD} iterations, and through
+	 * {@link Lattice#widening(Lattice)} afterwards. The computation starts at
+	 * the entrypoints of this cfg, using {@code entryState} as entry state for
+	 * all of them. {@code interprocedural} will be invoked to get the
+	 * approximation of all invoked cfgs.
+	 * 
+	 * @param <A>             the type of {@link AbstractState} contained into
+	 *                            the analysis state
+	 * @param <H>             the type of {@link HeapDomain} contained into the
+	 *                            computed abstract state
+	 * @param <V>             the type of {@link ValueDomain} contained into the
+	 *                            computed abstract state
+	 * @param entryState      the entry states to apply to each
+	 *                            {@link Statement} in {@link #entrypoints}
+	 * @param interprocedural the interprocedural analysis that can be queried
+	 *                            when a call towards an other cfg is
+	 *                            encountered
+	 * 
+	 * @return a {@link CFGWithAnalysisResults} instance that is equivalent to
+	 *             this control flow graph, and that stores for each
+	 *             {@link Statement} the result of the fixpoint computation
+	 * 
+	 * @throws FixpointException if an error occurs during the semantic
+	 *                               computation of a statement, or if some
+	 *                               unknown/invalid statement is used as
+	 *                               starting point
+	 * 
+	 * @see FixpointGraph#wtoFixpoint(Map, InterproceduralAnalysis, int,
+	 *          SemanticFunction)
+	 */
+	public final <A extends AbstractState<A, H, V>,
+			H extends HeapDomain<H>,
+			V extends ValueDomain<V>> CFGWithAnalysisResults<A, H, V> wtoFixpoint(
+					AnalysisState<A, H, V> entryState, InterproceduralAnalysis<A, H, V> interprocedural)
+					throws FixpointException {
+		return wtoFixpoint(entryState, interprocedural, DEFAULT_WIDENING_THRESHOLD);
+	}
+
+	/**
+	 * Computes a fixpoint over this control flow graph, iterating over its
+	 * statements following a weak topological ordering. This method returns a
+	 * {@link CFGWithAnalysisResults} instance mapping each {@link Statement} to
+	 * the {@link AnalysisState} computed by this method. Loops are iterated
+	 * until their head is stable, and results are composed only on loop heads:
+	 * through {@link Lattice#lub(Lattice)} for the first {@code widenAfter}
+	 * iterations, and through {@link Lattice#widening(Lattice)} afterwards. The
+	 * computation starts at the entrypoints of this cfg, using
+	 * {@code entryState} as entry state for all of them.
+	 * {@code interprocedural} will be invoked to get the approximation of all
+	 * invoked cfgs.
+	 * 
+	 * @param <A>             the type of {@link AbstractState} contained into
+	 *                            the analysis state
+	 * @param <H>             the type of {@link HeapDomain} contained into the
+	 *                            computed abstract state
+	 * @param <V>             the type of {@link ValueDomain} contained into the
+	 *                            computed abstract state
+	 * @param entryState      the entry states to apply to each
+	 *                            {@link Statement} in {@link #entrypoints}
+	 * @param interprocedural the interprocedural analysis that can be queried
+	 *                            when a call towards an other cfg is
+	 *                            encountered
+	 * @param widenAfter      the number of iterations on a loop head after
+	 *                            which the {@link Lattice#lub(Lattice)}
+	 *                            invocation gets replaced by the
+	 *                            {@link Lattice#widening(Lattice)} call. Use
+	 *                            {@code 0} to <b>always</b> use
+	 *                            {@link Lattice#lub(Lattice)}
+	 * 
+	 * @return a {@link CFGWithAnalysisResults} instance that is equivalent to
+	 *             this control flow graph, and that stores for each
+	 *             {@link Statement} the result of the fixpoint computation
+	 * 
+	 * @throws FixpointException if an error occurs during the semantic
+	 *                               computation of a statement, or if some
+	 *                               unknown/invalid statement is used as
+	 *                               starting point
+	 * 
+	 * @see FixpointGraph#wtoFixpoint(Map, InterproceduralAnalysis, int,
+	 *          SemanticFunction)
+	 */
+	public final <A extends AbstractState<A, H, V>,
+			H extends HeapDomain<H>,
+			V extends ValueDomain<V>> CFGWithAnalysisResults<A, H, V> wtoFixpoint(
+					AnalysisState<A, H, V> entryState, InterproceduralAnalysis<A, H, V> interprocedural,
+					int widenAfter)
+					throws FixpointException {
+		Map<Statement, AnalysisState<A, H, V>> start = new HashMap<>();
+		entrypoints.forEach(e -> start.put(e, entryState));
+		return wtoFixpoint(entryState, start, interprocedural, widenAfter);
+	}
+
+	/**
+	 * Computes a fixpoint over this control flow graph, iterating over its
+	 * statements following a weak topological ordering. This method returns a
+	 * {@link CFGWithAnalysisResults} instance mapping each {@link Statement} to
+	 * the {@link AnalysisState} computed by this method. Loops are iterated
+	 * until their head is stable, and results are composed only on loop heads:
+	 * through {@link Lattice#lub(Lattice)} for the first {@code widenAfter}
+	 * iterations, and through {@link Lattice#widening(Lattice)} afterwards. The
+	 * computation starts at the statements in {@code startingPoints}, using as
+	 * its entry state their respective value. {@code interprocedural} will be
+	 * invoked to get the approximation of all invoked cfgs.
+	 * 
+	 * @param <A>             the type of {@link AbstractState} contained into
+	 *                            the analysis state
+	 * @param <H>             the type of {@link HeapDomain} contained into the
+	 *                            computed abstract state
+	 * @param <V>             the type of {@link ValueDomain} contained into the
+	 *                            computed abstract state
+	 * @param singleton       an instance of the {@link AnalysisState}
+	 *                            containing the abstract state of the analysis
+	 *                            to run, used to retrieve top and bottom values
+	 * @param startingPoints  a map between {@link Statement}s that to use as a
+	 *                            starting point of the computation (that must
+	 *                            be nodes of this cfg) and the entry states to
+	 *                            apply on it
+	 * @param interprocedural the callgraph that can be queried when a call
+	 *                            towards an other cfg is encountered
+	 * @param widenAfter      the number of iterations on a loop head after
+	 *                            which the {@link Lattice#lub(Lattice)}
+	 *                            invocation gets replaced by the
+	 *                            {@link Lattice#widening(Lattice)} call. Use
+	 *                            {@code 0} to <b>always</b> use
+	 *                            {@link Lattice#lub(Lattice)}
+	 * 
+	 * @return a {@link CFGWithAnalysisResults} instance that is equivalent to
+	 *             this control flow graph, and that stores for each
+	 *             {@link Statement} the result of the fixpoint computation
+	 * 
+	 * @throws FixpointException if an error occurs during the semantic
+	 *                               computation of a statement, or if some
+	 *                               unknown/invalid statement is used as
+	 *                               starting point
+	 * 
+	 * @see FixpointGraph#wtoFixpoint(Map, InterproceduralAnalysis, int,
+	 *          SemanticFunction)
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public <A extends AbstractState<A, H, V>,
+			H extends HeapDomain<H>,
+			V extends ValueDomain<V>> CFGWithAnalysisResults<A, H, V> wtoFixpoint(
+					AnalysisState<A, H, V> singleton,
+					Map<Statement, AnalysisState<A, H, V>> startingPoints,
+					InterproceduralAnalysis<A, H, V> interprocedural,
+					int widenAfter)
+					throws FixpointException {
+		return new CFGWithAnalysisResults<A, H, V>(this, singleton, startingPoints,
+				super.wtoFixpoint(startingPoints, interprocedural, widenAfter,
+						(st, entryState, callGraph, expressions) -> st.semantics(entryState, callGraph,
+								(StatementStore) expressions)));
+	}
+
+	/**
+	 * Computes a sparse fixpoint over this control flow graph, propagating the
+	 * values of variables along the {@link DefUseChains} of this cfg instead of
+	 * through every statement. This method returns a
+	 * {@link CFGWithAnalysisResults} instance mapping each {@link Statement} to
+	 * the {@link AnalysisState} computed by this method. The values assigned to
+	 * a variable by a statement are composed through
+	 * {@link Lattice#lub(Lattice)} for the first
+	 * {@link #DEFAULT_WIDENING_THRESHOLD} updates, and through
+	 * {@link Lattice#widening(Lattice)} afterwards. The computation starts at
+	 * the entrypoints of this cfg, using {@code entryState} as entry state for
+	 * all of them. {@code interprocedural} will be invoked to get the
+	 * approximation of all invoked cfgs.
+	 * 
+	 * @param <A>             the type of {@link AbstractState} contained into
+	 *                            the analysis state
+	 * @param <H>             the type of {@link HeapDomain} contained into the
+	 *                            computed abstract state
+	 * @param <V>             the type of {@link ValueDomain} contained into the
+	 *                            computed abstract state
+	 * @param entryState      the entry states to apply to each
+	 *                            {@link Statement} in {@link #entrypoints}
+	 * @param interprocedural the interprocedural analysis that can be queried
+	 *                            when a call towards an other cfg is
+	 *                            encountered
+	 * 
+	 * @return a {@link CFGWithAnalysisResults} instance that is equivalent to
+	 *             this control flow graph, and that stores for each
+	 *             {@link Statement} the result of the fixpoint computation
+	 * 
+	 * @throws FixpointException if an error occurs during the semantic
+	 *                               computation of a statement
+	 * 
+	 * @see #sparseFixpoint(AnalysisState, InterproceduralAnalysis, int)
+	 */
+	public final <A extends AbstractState<A, H, V>,
+			H extends HeapDomain<H>,
+			V extends ValueDomain<V>> CFGWithAnalysisResults<A, H, V> sparseFixpoint(
+					AnalysisState<A, H, V> entryState, InterproceduralAnalysis<A, H, V> interprocedural)
+					throws FixpointException {
+		return sparseFixpoint(entryState, interprocedural, DEFAULT_WIDENING_THRESHOLD);
+	}
+
+	/**
+	 * Computes a sparse fixpoint over this control flow graph, propagating the
+	 * values of variables along the {@link DefUseChains} of this cfg instead of
+	 * through every statement. This method returns a
+	 * {@link CFGWithAnalysisResults} instance mapping each {@link Statement} to
+	 * the {@link AnalysisState} computed by this method. The values assigned to
+	 * a variable by a statement are composed through
+	 * {@link Lattice#lub(Lattice)} for the first {@code widenAfter} updates,
+	 * and through {@link Lattice#widening(Lattice)} afterwards. The computation
+	 * starts at the entrypoints of this cfg, using {@code entryState} as entry
+	 * state for all of them. {@code interprocedural} will be invoked to get the
+	 * approximation of all invoked cfgs.<br>
+	 * <br>
+	 * The sparse computation is available only for analyses whose abstract
+	 * state is a {@link SimpleAbstractState} having a {@link MonolithicHeap} as
+	 * heap state and a {@link ValueEnvironment} as value state (e.g., the ones
+	 * of {@code Interval}, {@code Sign}, {@code Parity} and
+	 * {@code IntegerConstantPropagation}), and only for cfgs that access local
+	 * variables and invoke native calls (see {@link DefUseChains#onlyLocals()})
+	 * that do not write the heap. In all other cases, this method falls
+	 * back to {@link #fixpoint(AnalysisState, InterproceduralAnalysis,
+	 * WorkingSet, int)}. Since values flow along def-use chains, they are not
+	 * refined by the conditions of {@link TrueEdge}s and {@link FalseEdge}s,
+	 * possibly yielding less precise results than the other fixpoints.
+	 * 
+	 * @param <A>             the type of {@link AbstractState} contained into
+	 *                            the analysis state
+	 * @param <H>             the type of {@link HeapDomain} contained into the
+	 *                            computed abstract state
+	 * @param <V>             the type of {@link ValueDomain} contained into the
+	 *                            computed abstract state
+	 * @param entryState      the entry states to apply to each
+	 *                            {@link Statement} in {@link #entrypoints}
+	 * @param interprocedural the interprocedural analysis that can be queried
+	 *                            when a call towards an other cfg is
+	 *                            encountered
+	 * @param widenAfter      the number of updates of a variable's value in a
+	 *                            statement after which the
+	 *                            {@link Lattice#lub(Lattice)} invocation gets
+	 *                            replaced by the
+	 *                            {@link Lattice#widening(Lattice)} call. Use
+	 *                            {@code 0} to <b>always</b> use
+	 *                            {@link Lattice#lub(Lattice)}
+	 * 
+	 * @return a {@link CFGWithAnalysisResults} instance that is equivalent to
+	 *             this control flow graph, and that stores for each
+	 *             {@link Statement} the result of the fixpoint computation
+	 * 
+	 * @throws FixpointException if an error occurs during the semantic
+	 *                               computation of a statement
+	 */
+	public final <A extends AbstractState<A, H, V>,
+			H extends HeapDomain<H>,
+			V extends ValueDomain<V>> CFGWithAnalysisResults<A, H, V> sparseFixpoint(
+					AnalysisState<A, H, V> entryState, InterproceduralAnalysis<A, H, V> interprocedural,
+					int widenAfter)
+					throws FixpointException {
+		DefUseChains chains = new DefUseChains(this);
+		if (!SparseFixpoint.supports(entryState) || !chains.onlyLocals())
+			return fixpoint(entryState, interprocedural, FIFOWorkingSet.mk(), widenAfter);
+
+		Map<Statement, AnalysisState<A, H, V>> results = new SparseFixpoint<>(this, chains, entryState,
+				interprocedural, widenAfter).run();
+		if (results == null)
+			// the heap cannot be propagated along def-use chains
+			return fixpoint(entryState, interprocedural, FIFOWorkingSet.mk(), widenAfter);
+
+		Map<Statement, AnalysisState<A, H, V>> start = new HashMap<>();
+		entrypoints.forEach(e -> start.put(e, entryState));
+		return new CFGWithAnalysisResults<>(this, entryState, start, results);
+	}
+
+	/**
+	 * Computes a fixpoint over the basic blocks of this control flow graph,
+	 * storing only the states needed to recompute the per-statement ones. This
+	 * method returns a {@link CFGWithAnalysisResults} instance mapping each
+	 * {@link Statement} to the {@link AnalysisState} computed by this method.
+	 * Results are composed on the first statement of each basic block: through
+	 * {@link Lattice#lub(Lattice)} for the first
+	 * {@link #DEFAULT_WIDENING_THRESHOLD} updates for each of its predecessors,
+	 * and through {@link Lattice#widening(Lattice)} afterwards. The computation
+	 * starts at the entrypoints of this cfg, using {@code entryState} as entry
+	 * state for all of them. {@code interprocedural} will be invoked to get the
+	 * approximation of all invoked cfgs.
+	 * 
+	 * @param <A>             the type of {@link AbstractState} contained into
+	 *                            the analysis state
+	 * @param <H>             the type of {@link HeapDomain} contained into the
+	 *                            computed abstract state
+	 * @param <V>             the type of {@link ValueDomain} contained into the
+	 *                            computed abstract state
+	 * @param entryState      the entry states to apply to each
+	 *                            {@link Statement} in {@link #entrypoints}
+	 * @param interprocedural the interprocedural analysis that can be queried
+	 *                            when a call towards an other cfg is
+	 *                            encountered
+	 * 
+	 * @return a {@link CFGWithAnalysisResults} instance that is equivalent to
+	 *             this control flow graph, and that stores for each
+	 *             {@link Statement} the result of the fixpoint computation
+	 * 
+	 * @throws FixpointException if an error occurs during the semantic
+	 *                               computation of a statement
+	 * 
+	 * @see #blockFixpoint(AnalysisState, InterproceduralAnalysis, int)
+	 */
+	public final <A extends AbstractState<A, H, V>,
+			H extends HeapDomain<H>,
+			V extends ValueDomain<V>> CFGWithAnalysisResults<A, H, V> blockFixpoint(
+					AnalysisState<A, H, V> entryState, InterproceduralAnalysis<A, H, V> interprocedural)
+					throws FixpointException {
+		return blockFixpoint(entryState, interprocedural, DEFAULT_WIDENING_THRESHOLD);
+	}
+
+	/**
+	 * Computes a fixpoint over the basic blocks of this control flow graph,
+	 * storing only the states needed to recompute the per-statement ones. A
+	 * basic block is a maximal chain of statements that can only be entered
+	 * from its first statement and exited from its last one: the working set
+	 * of this fixpoint contains blocks instead of statements, and only the
+	 * states before the first statement and after the last statement of each
+	 * block are stored (together with the results of statements containing
+	 * calls to other cfgs). The results of the other statements are recomputed
+	 * from the state before their block the first time they are requested (see
+	 * {@link CFGWithAnalysisResults#getAnalysisStateAfter(Statement)}), and
+	 * only a few of them are cached: this trades some recomputation for a
+	 * large reduction of the memory needed to hold the results of long cfgs.
+	 * This method returns a {@link CFGWithAnalysisResults} instance mapping
+	 * each {@link Statement} to the {@link AnalysisState} computed by this
+	 * method. Results are composed on the first statement of each basic block:
+	 * through {@link Lattice#lub(Lattice)} for the first {@code widenAfter}
+	 * updates for each of its predecessors, and through
+	 * {@link Lattice#widening(Lattice)} afterwards. The computation starts at
+	 * the entrypoints of this cfg, using {@code entryState} as entry state for
+	 * all of them. {@code interprocedural} will be invoked to get the
+	 * approximation of all invoked cfgs.
+	 * 
+	 * @param <A>             the type of {@link AbstractState} contained into
+	 *                            the analysis state
+	 * @param <H>             the type of {@link HeapDomain} contained into the
+	 *                            computed abstract state
+	 * @param <V>             the type of {@link ValueDomain} contained into the
+	 *                            computed abstract state
+	 * @param entryState      the entry states to apply to each
+	 *                            {@link Statement} in {@link #entrypoints}
+	 * @param interprocedural the interprocedural analysis that can be queried
+	 *                            when a call towards an other cfg is
+	 *                            encountered
+	 * @param widenAfter      the number of updates of the state before a
+	 *                            block, for each of its predecessors, after
+	 *                            which the {@link Lattice#lub(Lattice)}
+	 *                            invocation gets replaced by the
+	 *                            {@link Lattice#widening(Lattice)} call. Use
+	 *                            {@code 0} to <b>always</b> use
+	 *                            {@link Lattice#lub(Lattice)}
+	 * 
+	 * @return a {@link CFGWithAnalysisResults} instance that is equivalent to
+	 *             this control flow graph, and that stores for each
+	 *             {@link Statement} the result of the fixpoint computation
+	 * 
+	 * @throws FixpointException if an error occurs during the semantic
+	 *                               computation of a statement
+	 */
+	public final <A extends AbstractState<A, H, V>,
+			H extends HeapDomain<H>,
+			V extends ValueDomain<V>> CFGWithAnalysisResults<A, H, V> blockFixpoint(
+					AnalysisState<A, H, V> entryState, InterproceduralAnalysis<A, H, V> interprocedural,
+					int widenAfter)
+					throws FixpointException {
+		BlockFixpoint<A, H, V> fixpoint = new BlockFixpoint<>(this, entryState, interprocedural, widenAfter);
+		Map<Statement, AnalysisState<A, H, V>> start = new HashMap<>();
+		entrypoints.forEach(e -> start.put(e, entryState));
+		Map<Statement, AnalysisState<A, H, V>> results = fixpoint.run();
+		return new CFGWithAnalysisResults<>(this, entryState, start, results, fixpoint.getSeeds(), fixpoint);
+	}
+
+	/**
+	 * Sets whether or not the fixpoints over this cfg should remove dead
+	 * variables from the computed states. If enabled, the variables that die
+	 * at a statement according to {@link #getLiveVariables()} (that is, whose
+	 * current value will never be read again) are forgotten from the state
+	 * that is propagated to the statement's followers, as it happens for
+	 * variables whose scope ends at the statement. This makes the states
+	 * smaller, reducing the cost of lattice operations on long cfgs, at the
+	 * price of hiding dead variables from the results of the analysis.
+	 * 
+	 * @param pruneDeadVariables whether or not dead variables must be removed
+	 */
+	public void setPruneDeadVariables(boolean pruneDeadVariables) {
+		this.pruneDeadVariables = pruneDeadVariables;
+	}
+
+	/**
+	 * Yields whether or not the fixpoints over this cfg remove dead variables
+	 * from the computed states.
+	 * 
+	 * @return {@code true} if that condition holds
+	 * 
+	 * @see #setPruneDeadVariables(boolean)
+	 */
+	public boolean isPruneDeadVariables() {
+		return pruneDeadVariables;
+	}
+
+	/**
+	 * Sets the {@link FixpointStrategy} that interprocedural analyses use to
+	 * compute fixpoints over this cfg. By default,
+	 * {@link FixpointStrategy#WORKLIST} is used.
+	 * 
+	 * @param fixpointStrategy the strategy
+	 */
+	public void setFixpointStrategy(FixpointStrategy fixpointStrategy) {
+		this.fixpointStrategy = fixpointStrategy;
+	}
+
+	/**
+	 * Yields the {@link FixpointStrategy} that interprocedural analyses use to
+	 * compute fixpoints over this cfg.
+	 * 
+	 * @return the strategy
+	 * 
+	 * @see #setFixpointStrategy(FixpointStrategy)
+	 */
+	public FixpointStrategy getFixpointStrategy() {
+		return fixpointStrategy;
+	}
+
+	/**
+	 * Sets the maximum number of states before statements (see
+	 * {@link CFGWithAnalysisResults#getAnalysisStateBefore(Statement)}) that
+	 * each result of the fixpoints over this cfg caches, evicting the least
+	 * recently used ones when the limit is exceeded. The entry and exit states
+	 * of each result are always cached. The limit applies to the results built
+	 * after this method is invoked.
+	 * 
+	 * @param cachedStatesLimit the maximum number of cached states, or
+	 *                              {@code 0} for no limit
+	 */
+	public void setCachedStatesLimit(int cachedStatesLimit) {
+		this.cachedStatesLimit = cachedStatesLimit;
+	}
+
+	/**
+	 * Yields the maximum number of states before statements that each result
+	 * of the fixpoints over this cfg caches.
+	 * 
+	 * @return the limit, or {@code 0} if there is no limit
+	 * 
+	 * @see #setCachedStatesLimit(int)
+	 */
+	public int getCachedStatesLimit() {
+		return cachedStatesLimit;
+	}
+
+	/**
+	 * Sets the counters that the results of the fixpoints over this cfg update
+	 * when their derived states are requested. The counters apply to the
+	 * results built after this method is invoked.
+	 * 
+	 * @param cacheStatistics the counters, or {@code null} if the cached
+	 *                            states should not be counted
+	 */
+	public void setCacheStatistics(CacheStatistics cacheStatistics) {
+		this.cacheStatistics = cacheStatistics;
+	}
+
+	/**
+	 * Yields the counters that the results of the fixpoints over this cfg
+	 * update when their derived states are requested.
+	 * 
+	 * @return the counters, or {@code null} if the cached states are not
+	 *             counted
+	 * 
+	 * @see #setCacheStatistics(CacheStatistics)
+	 */
+	public CacheStatistics getCacheStatistics() {
+		return cacheStatistics;
+	}
+
+	/**
+	 * Yields the {@link LiveVariables} of this cfg. These are computed the
+	 * first time this method is invoked, and must not be requested before
+	 * this cfg has been finalized.
+	 * 
+	 * @return the live variables of this cfg
+	 */
+	public LiveVariables getLiveVariables() {
+		LiveVariables result = liveness;
+		if (result == null)
+			// concurrent computations yield the same result
+			liveness = result = new LiveVariables(this);
+		return result;
+	}
+
+	/**
+	 * Sets the filter selecting the inner expressions whose results are part
+	 * of the results of the fixpoints over this cfg. The results of the other
+	 * inner expressions are discarded as soon as a fixpoint converges, while
+	 * the results of the statements that are nodes of this cfg are always
+	 * retained. Discarding the results that are never queried (e.g., by
+	 * semantic checks) reduces the memory needed to hold the results of large
+	 * programs.
+	 * 
+	 * @param innerResultsFilter the filter, or {@code null} to retain the
+	 *                               results of all inner expressions
+	 */
+	public void setInnerResultsFilter(Predicate<Statement> innerResultsFilter) {
+		this.innerResultsFilter = innerResultsFilter;
+	}
+
+	@Override
+	protected boolean retainsInnerResult(Statement node) {
+		return innerResultsFilter == null || innerResultsFilter.test(node);
+	}
+
 	@Override
 	protected <A extends AbstractState<A, H, V>,
 			H extends HeapDomain<H>,
@@ -874,6 +1502,13 @@ public class CFG extends FixpointGraph<CFG, Statement, Edge> implements CodeMemb
 				ids.add((Identifier) expr);
 		}
 
+		if (pruneDeadVariables)
+			for (String dead : getLiveVariables().getDyingAfter(node)) {
+				SymbolicExpression v = new VariableRef(this, descriptor.getLocation(), dead).getVariable();
+				for (SymbolicExpression expr : computedState.smallStepSemantics(v, node).getComputedExpressions())
+					ids.add((Identifier) expr);
+			}
+
 		if (!ids.isEmpty())
 			return computedState.forgetIdentifiers(ids);
 
@@ -1267,4 +1902,23 @@ public class CFG extends FixpointGraph<CFG, Statement, Edge> implements CodeMemb
 	public Statement getMostRecentIfThenElseGuard(ProgramPoint pp) {
 		return getRecent(pp, IfThenElse.class::isInstance);
 	}
+
+	private static class StatementsCollector implements GraphVisitor<CFG, Statement, Edge, Map<Integer, Statement>> {
+
+		@Override
+		public boolean visit(Map<Integer, Statement> tool, CFG graph) {
+			return true;
+		}
+
+		@Override
+		public boolean visit(Map<Integer, Statement> tool, CFG graph, Statement node) {
+			tool.put(node.getOffset(), node);
+			return true;
+		}
+
+		@Override
+		public boolean visit(Map<Integer, Statement> tool, CFG graph, Edge edge) {
+			return true;
+		}
+	}
 }
@@ -0,0 +1,270 @@
+package it.unive.lisa.program.cfg;
+
+import it.unive.lisa.program.cfg.edge.Edge;
+import it.unive.lisa.program.cfg.statement.AccessGlobal;
+import it.unive.lisa.program.cfg.statement.AccessInstanceGlobal;
+import it.unive.lisa.program.cfg.statement.Assignment;
+import it.unive.lisa.program.cfg.statement.Call;
+import it.unive.lisa.program.cfg.statement.NativeCall;
+import it.unive.lisa.program.cfg.statement.Statement;
+import it.unive.lisa.program.cfg.statement.VariableRef;
+import it.unive.lisa.util.datastructures.graph.GraphVisitor;
+import it.unive.lisa.util.workset.FIFOWorkingSet;
+import it.unive.lisa.util.workset.WorkingSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The def-use chains of the local variables of a {@link CFG}. A node of the
+ * cfg <i>defines</i> a variable if it contains an {@link Assignment} whose
+ * target is a {@link VariableRef} to it, and it <i>uses</i> a variable if it
+ * contains any other {@link VariableRef} to it. Variables are identified by
+ * their name. The chains are built from the reaching definitions of each node:
+ * a definition reaches a node if there is a path from the former to the latter
+ * that does not pass through another definition of the same variable, nor
+ * through the end of the variable's scope. The entry of the cfg acts as an
+ * implicit definition of every variable, reaching the nodes where a variable
+ * might still hold the value it had when the cfg was entered.
+ *
+ * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+ */
+public class DefUseChains {
+
+	private final Map<Statement, Set<String>> definitions = new IdentityHashMap<>();
+
+	private final Map<Statement, Set<String>> uses = new IdentityHashMap<>();
+
+	private final Map<Statement, Map<String, Set<Statement>>> reaching = new IdentityHashMap<>();
+
+	private final Map<Statement, Set<String>> reachingFromEntry = new IdentityHashMap<>();
+
+	private final Map<Statement, Map<String, Set<Statement>>> users = new IdentityHashMap<>();
+
+	private final Set<String> variables = new HashSet<>();
+
+	private boolean onlyLocals = true;
+
+	/**
+	 * Builds the def-use chains of the given cfg.
+	 *
+	 * @param cfg the cfg
+	 */
+	public DefUseChains(CFG cfg) {
+		for (Statement node : cfg.getNodes()) {
+			Collector collector = new Collector();
+			collector.collect(node);
+			definitions.put(node, collector.defs);
+			uses.put(node, collector.uses);
+			variables.addAll(collector.defs);
+			variables.addAll(collector.uses);
+		}
+
+		computeReachingDefinitions(cfg);
+
+		for (Statement node : cfg.getNodes())
+			for (String variable : uses.get(node))
+				for (Statement def : getReachingDefinitions(node, variable))
+					users.computeIfAbsent(def, d -> new HashMap<>())
+							.computeIfAbsent(variable, v -> new HashSet<>()).add(node);
+	}
+
+	private void computeReachingDefinitions(CFG cfg) {
+		Map<Statement, Set<String>> scopeEnds = new IdentityHashMap<>();
+		for (VariableTableEntry entry : cfg.getDescriptor().getVariables())
+			if (entry.getScopeEnd() != null)
+				scopeEnds.computeIfAbsent(entry.getScopeEnd(), s -> new HashSet<>()).add(entry.getName());
+
+		Map<Statement, Map<String, Set<Statement>>> out = new IdentityHashMap<>();
+		Map<Statement, Set<String>> outFromEntry = new IdentityHashMap<>();
+		WorkingSet<Statement> ws = FIFOWorkingSet.mk();
+		for (Statement node : cfg.getNodes()) {
+			reaching.put(node, new HashMap<>());
+			reachingFromEntry.put(node, new HashSet<>());
+			ws.push(node);
+		}
+		for (Statement entry : cfg.getEntrypoints())
+			reachingFromEntry.get(entry).addAll(variables);
+
+		while (!ws.isEmpty()) {
+			Statement current = ws.pop();
+			Map<String, Set<Statement>> in = reaching.get(current);
+			Set<String> inFromEntry = reachingFromEntry.get(current);
+			for (Statement pred : cfg.predecessorsOf(current)) {
+				Map<String, Set<Statement>> predOut = out.get(pred);
+				if (predOut != null)
+					predOut.forEach((v, defs) -> in.computeIfAbsent(v, k -> new HashSet<>()).addAll(defs));
+				Set<String> predOutFromEntry = outFromEntry.get(pred);
+				if (predOutFromEntry != null)
+					inFromEntry.addAll(predOutFromEntry);
+			}
+
+			Map<String, Set<Statement>> newOut = new HashMap<>();
+			in.forEach((v, defs) -> newOut.put(v, new HashSet<>(defs)));
+			Set<String> newOutFromEntry = new HashSet<>(inFromEntry);
+			for (String def : definitions.get(current)) {
+				newOut.put(def, new HashSet<>(Collections.singleton(current)));
+				newOutFromEntry.remove(def);
+			}
+			for (String dead : scopeEnds.getOrDefault(current, Collections.emptySet())) {
+				newOut.remove(dead);
+				newOutFromEntry.remove(dead);
+			}
+
+			if (!newOut.equals(out.get(current)) || !newOutFromEntry.equals(outFromEntry.get(current))) {
+				out.put(current, newOut);
+				outFromEntry.put(current, newOutFromEntry);
+				for (Statement follower : cfg.followersOf(current))
+					ws.push(follower);
+			}
+		}
+	}
+
+	/**
+	 * Yields {@code true} if and only if the cfg only accesses local variables
+	 * and invokes native calls. The chains of cfgs that do not satisfy this
+	 * condition cannot capture all the ways the state of the program can be
+	 * modified: other cfgs might be invoked, and the heap might be accessed.
+	 * Note that this condition does not exclude heap accesses: native calls
+	 * (e.g., allocations and array accesses) might still read and write the
+	 * heap, and their semantics is needed to find out if they do.
+	 *
+	 * @return {@code true} if that condition holds
+	 */
+	public boolean onlyLocals() {
+		return onlyLocals;
+	}
+
+	/**
+	 * Yields the names of all the variables that are defined or used by some
+	 * node of the cfg.
+	 *
+	 * @return the names of the variables
+	 */
+	public Set<String> getVariables() {
+		return variables;
+	}
+
+	/**
+	 * Yields the names of the variables defined by the given node.
+	 *
+	 * @param node the node
+	 *
+	 * @return the names of the defined variables
+	 */
+	public Set<String> getDefinitions(Statement node) {
+		return definitions.getOrDefault(node, Collections.emptySet());
+	}
+
+	/**
+	 * Yields the names of the variables used by the given node.
+	 *
+	 * @param node the node
+	 *
+	 * @return the names of the used variables
+	 */
+	public Set<String> getUses(Statement node) {
+		return uses.getOrDefault(node, Collections.emptySet());
+	}
+
+	/**
+	 * Yields the names of the variables that have at least one definition
+	 * reaching the given node, including the implicit one of the cfg's entry.
+	 *
+	 * @param node the node
+	 *
+	 * @return the names of the variables
+	 */
+	public Set<String> getReachingVariables(Statement node) {
+		Set<String> result = new HashSet<>(reachingFromEntry.getOrDefault(node, Collections.emptySet()));
+		result.addAll(reaching.getOrDefault(node, Collections.emptyMap()).keySet());
+		return result;
+	}
+
+	/**
+	 * Yields the nodes whose definition of the given variable reaches the
+	 * given node. The implicit definition of the cfg's entry is not part of
+	 * the result: use {@link #isReachedByEntry(Statement, String)} for it.
+	 *
+	 * @param node     the node
+	 * @param variable the name of the variable
+	 *
+	 * @return the reaching definitions
+	 */
+	public Collection<Statement> getReachingDefinitions(Statement node, String variable) {
+		return reaching.getOrDefault(node, Collections.emptyMap()).getOrDefault(variable, Collections.emptySet());
+	}
+
+	/**
+	 * Yields {@code true} if and only if the implicit definition of the given
+	 * variable of the cfg's entry reaches the given node.
+	 *
+	 * @param node     the node
+	 * @param variable the name of the variable
+	 *
+	 * @return {@code true} if that condition holds
+	 */
+	public boolean isReachedByEntry(Statement node, String variable) {
+		return reachingFromEntry.getOrDefault(node, Collections.emptySet()).contains(variable);
+	}
+
+	/**
+	 * Yields the nodes using the given variable that are reached by the
+	 * definition of the given node.
+	 *
+	 * @param definition the node defining the variable
+	 * @param variable   the name of the variable
+	 *
+	 * @return the users of the definition
+	 */
+	public Collection<Statement> getUsers(Statement definition, String variable) {
+		return users.getOrDefault(definition, Collections.emptyMap()).getOrDefault(variable, Collections.emptySet());
+	}
+
+	private class Collector implements GraphVisitor<CFG, Statement, Edge, Void> {
+
+		private final Set<String> defs = new HashSet<>();
+
+		private final Set<String> uses = new HashSet<>();
+
+		private final Collection<VariableRef> refs = new LinkedList<>();
+
+		private final Set<Statement> targets = Collections.newSetFromMap(new IdentityHashMap<>());
+
+		private void collect(Statement node) {
+			node.accept(this, null);
+			for (VariableRef ref : refs)
+				if (!targets.contains(ref))
+					uses.add(ref.getName());
+		}
+
+		@Override
+		public boolean visit(Void tool, CFG graph) {
+			return true;
+		}
+
+		@Override
+		public boolean visit(Void tool, CFG graph, Statement node) {
+			if (node instanceof Assignment && ((Assignment) node).getLeft() instanceof VariableRef) {
+				VariableRef target = (VariableRef) ((Assignment) node).getLeft();
+				targets.add(target);
+				defs.add(target.getName());
+			} else if (node instanceof VariableRef)
+				refs.add((VariableRef) node);
+			else if ((node instanceof Call && !(node instanceof NativeCall)) || node instanceof AccessGlobal
+					|| node instanceof AccessInstanceGlobal)
+				onlyLocals = false;
+			return true;
+		}
+
+		@Override
+		public boolean visit(Void tool, CFG graph, Edge edge) {
+			return true;
+		}
+	}
+}
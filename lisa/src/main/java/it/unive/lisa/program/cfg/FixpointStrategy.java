@@ -0,0 +1,116 @@
+package it.unive.lisa.program.cfg;
+
+import it.unive.lisa.analysis.AbstractState;
+import it.unive.lisa.analysis.AnalysisState;
+import it.unive.lisa.analysis.CFGWithAnalysisResults;
+import it.unive.lisa.analysis.heap.HeapDomain;
+import it.unive.lisa.analysis.value.ValueDomain;
+import it.unive.lisa.interprocedural.InterproceduralAnalysis;
+import it.unive.lisa.program.cfg.statement.Statement;
+import it.unive.lisa.util.datastructures.graph.FixpointException;
+
+/**
+ * An enum defining the different algorithms that can be used to compute the
+ * fixpoint over a {@link CFG}. The strategy of each cfg is set through
+ * {@link CFG#setFixpointStrategy(FixpointStrategy)}, and it is honored by the
+ * interprocedural analyses when they analyze that cfg. All strategies use
+ * {@link CFG#DEFAULT_WIDENING_THRESHOLD} as widening threshold.
+ *
+ * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+ */
+public enum FixpointStrategy {
+
+	/**
+	 * A strategy that processes statements through a working set, as in
+	 * {@link CFG#fixpoint(AnalysisState, InterproceduralAnalysis)}.
+	 */
+	WORKLIST {
+		@Override
+		public <A extends AbstractState<A, H, V>,
+				H extends HeapDomain<H>,
+				V extends ValueDomain<V>> CFGWithAnalysisResults<A, H, V> fixpoint(
+						CFG cfg, AnalysisState<A, H, V> entryState, InterproceduralAnalysis<A, H, V> interprocedural)
+						throws FixpointException {
+			return cfg.fixpoint(entryState, interprocedural);
+		}
+	},
+
+	/**
+	 * A strategy that processes statements following a weak topological
+	 * ordering of the cfg, as in
+	 * {@link CFG#wtoFixpoint(AnalysisState, InterproceduralAnalysis)}.
+	 */
+	WTO {
+		@Override
+		public <A extends AbstractState<A, H, V>,
+				H extends HeapDomain<H>,
+				V extends ValueDomain<V>> CFGWithAnalysisResults<A, H, V> fixpoint(
+						CFG cfg, AnalysisState<A, H, V> entryState, InterproceduralAnalysis<A, H, V> interprocedural)
+						throws FixpointException {
+			return cfg.wtoFixpoint(entryState, interprocedural);
+		}
+	},
+
+	/**
+	 * A strategy that processes basic blocks through a working set, storing
+	 * only the states needed to recompute the other ones, as in
+	 * {@link CFG#blockFixpoint(AnalysisState, InterproceduralAnalysis)}.
+	 */
+	BLOCKS {
+		@Override
+		public <A extends AbstractState<A, H, V>,
+				H extends HeapDomain<H>,
+				V extends ValueDomain<V>> CFGWithAnalysisResults<A, H, V> fixpoint(
+						CFG cfg, AnalysisState<A, H, V> entryState, InterproceduralAnalysis<A, H, V> interprocedural)
+						throws FixpointException {
+			return cfg.blockFixpoint(entryState, interprocedural);
+		}
+	},
+
+	/**
+	 * A strategy that propagates the values of variables along def-use
+	 * chains, as in
+	 * {@link CFG#sparseFixpoint(AnalysisState, InterproceduralAnalysis)}.
+	 * Cfgs and analyses that the sparse computation does not support are
+	 * analyzed as in {@link #WORKLIST}.
+	 */
+	SPARSE {
+		@Override
+		public <A extends AbstractState<A, H, V>,
+				H extends HeapDomain<H>,
+				V extends ValueDomain<V>> CFGWithAnalysisResults<A, H, V> fixpoint(
+						CFG cfg, AnalysisState<A, H, V> entryState, InterproceduralAnalysis<A, H, V> interprocedural)
+						throws FixpointException {
+			return cfg.sparseFixpoint(entryState, interprocedural);
+		}
+	};
+
+	/**
+	 * Computes the fixpoint over the given cfg following this strategy.
+	 *
+	 * @param <A>             the type of {@link AbstractState} contained into
+	 *                            the analysis state
+	 * @param <H>             the type of {@link HeapDomain} contained into the
+	 *                            computed abstract state
+	 * @param <V>             the type of {@link ValueDomain} contained into the
+	 *                            computed abstract state
+	 * @param cfg             the cfg to analyze
+	 * @param entryState      the entry state to apply to each entrypoint of
+	 *                            {@code cfg}
+	 * @param interprocedural the interprocedural analysis that can be queried
+	 *                            when a call towards an other cfg is
+	 *                            encountered
+	 *
+	 * @return a {@link CFGWithAnalysisResults} instance that is equivalent to
+	 *             {@code cfg}, and that stores for each {@link Statement} the
+	 *             result of the fixpoint computation
+	 *
+	 * @throws FixpointException if an error occurs during the semantic
+	 *                               computation of a statement
+	 */
+	public abstract <A extends AbstractState<A, H, V>,
+			H extends HeapDomain<H>,
+			V extends ValueDomain<V>> CFGWithAnalysisResults<A, H, V> fixpoint(
+					CFG cfg, AnalysisState<A, H, V> entryState, InterproceduralAnalysis<A, H, V> interprocedural)
+					throws FixpointException;
+}
@@ -0,0 +1,127 @@
+package it.unive.lisa.program.cfg;
+
+import it.unive.lisa.program.cfg.statement.Statement;
+import it.unive.lisa.util.workset.FIFOWorkingSet;
+import it.unive.lisa.util.workset.WorkingSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The live variables of a {@link CFG}, computed through a backward dataflow
+ * analysis over the definitions and uses of local variables provided by
+ * {@link DefUseChains}. A variable is <i>live</i> after a node if there is a
+ * path from the node to a use of the variable that does not pass through
+ * another definition of it. Variables are identified by their name.<br>
+ * <br>
+ * Besides the live variables before and after each node, this class computes
+ * the variables that <i>die</i> at each node, that is, the ones that might be
+ * part of the state after the node even if their current value will never be
+ * read again: these can be safely removed from the state after the node.
+ *
+ * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+ */
+public class LiveVariables {
+
+	private final Map<Statement, Set<String>> liveBefore = new IdentityHashMap<>();
+
+	private final Map<Statement, Set<String>> liveAfter = new IdentityHashMap<>();
+
+	private final Map<Statement, Set<String>> dying = new IdentityHashMap<>();
+
+	/**
+	 * Builds the live variables of the given cfg.
+	 *
+	 * @param cfg the cfg
+	 */
+	public LiveVariables(CFG cfg) {
+		this(cfg, new DefUseChains(cfg));
+	}
+
+	/**
+	 * Builds the live variables of the given cfg, using the given def-use
+	 * chains to retrieve the definitions and uses of each node.
+	 *
+	 * @param cfg    the cfg
+	 * @param chains the def-use chains of {@code cfg}
+	 */
+	public LiveVariables(CFG cfg, DefUseChains chains) {
+		WorkingSet<Statement> ws = FIFOWorkingSet.mk();
+		for (Statement node : cfg.getNodes()) {
+			liveBefore.put(node, new HashSet<>(chains.getUses(node)));
+			liveAfter.put(node, new HashSet<>());
+			ws.push(node);
+		}
+
+		while (!ws.isEmpty()) {
+			Statement current = ws.pop();
+			Set<String> out = liveAfter.get(current);
+			for (Statement follower : cfg.followersOf(current))
+				out.addAll(liveBefore.get(follower));
+
+			Set<String> in = liveBefore.get(current);
+			boolean changed = false;
+			for (String variable : out)
+				if (!chains.getDefinitions(current).contains(variable))
+					changed |= in.add(variable);
+
+			if (changed)
+				for (Statement pred : cfg.predecessorsOf(current))
+					ws.push(pred);
+		}
+
+		Set<String> all = new HashSet<>(chains.getVariables());
+		for (VariableTableEntry entry : cfg.getDescriptor().getVariables())
+			all.add(entry.getName());
+
+		for (Statement node : cfg.getNodes()) {
+			// variables that might reach the node, either from a predecessor
+			// or from the entry of the cfg
+			Set<String> dead = new HashSet<>(liveBefore.get(node));
+			dead.addAll(chains.getDefinitions(node));
+			for (Statement pred : cfg.predecessorsOf(node))
+				dead.addAll(liveAfter.get(pred));
+			if (cfg.getEntrypoints().contains(node))
+				dead.addAll(all);
+			dead.removeAll(liveAfter.get(node));
+			dying.put(node, dead);
+		}
+	}
+
+	/**
+	 * Yields the names of the variables that are live before the given node.
+	 *
+	 * @param node the node
+	 *
+	 * @return the names of the live variables
+	 */
+	public Set<String> getLiveBefore(Statement node) {
+		return liveBefore.getOrDefault(node, Collections.emptySet());
+	}
+
+	/**
+	 * Yields the names of the variables that are live after the given node.
+	 *
+	 * @param node the node
+	 *
+	 * @return the names of the live variables
+	 */
+	public Set<String> getLiveAfter(Statement node) {
+		return liveAfter.getOrDefault(node, Collections.emptySet());
+	}
+
+	/**
+	 * Yields the names of the variables that die at the given node, that is,
+	 * the ones that might be part of the state after the node but that are
+	 * not live after it.
+	 *
+	 * @param node the node
+	 *
+	 * @return the names of the dying variables
+	 */
+	public Set<String> getDyingAfter(Statement node) {
+		return dying.getOrDefault(node, Collections.emptySet());
+	}
+}
@@ -0,0 +1,290 @@
+package it.unive.lisa.program.cfg;
+
+import it.unive.lisa.analysis.AbstractState;
+import it.unive.lisa.analysis.AnalysisState;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.SimpleAbstractState;
+import it.unive.lisa.analysis.StatementStore;
+import it.unive.lisa.analysis.heap.HeapDomain;
+import it.unive.lisa.analysis.impl.heap.MonolithicHeap;
+import it.unive.lisa.analysis.nonrelational.value.NonRelationalValueDomain;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
+import it.unive.lisa.analysis.value.ValueDomain;
+import it.unive.lisa.interprocedural.InterproceduralAnalysis;
+import it.unive.lisa.program.cfg.statement.Statement;
+import it.unive.lisa.symbolic.value.Identifier;
+import it.unive.lisa.symbolic.value.Variable;
+import it.unive.lisa.util.datastructures.graph.FixpointException;
+import it.unive.lisa.util.datastructures.graph.NodeMap;
+import it.unive.lisa.util.workset.FIFOWorkingSet;
+import it.unive.lisa.util.workset.WorkingSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * A sparse fixpoint over a {@link CFG}, for analyses whose abstract state is a
+ * {@link SimpleAbstractState} with a {@link MonolithicHeap} as heap state and a
+ * {@link ValueEnvironment} as value state. Instead of propagating whole states
+ * through every node, the value of each variable is computed only at the nodes
+ * defining it, and propagated along the {@link DefUseChains} of the cfg: a node
+ * is evaluated in a state containing only the variables it uses, each mapped to
+ * the lub of the definitions reaching it, and it is evaluated again only when
+ * one of those definitions changes. Once the definitions are stable, each node
+ * is evaluated a single time in a state containing all the variables reaching
+ * it, producing the per-node results.<br>
+ * <br>
+ * Since values flow along def-use edges, they are not refined by the
+ * conditions guarding the edges of the cfg. The monolith never changes, and
+ * the value of the only heap location it yields, stored in the value state, is
+ * the one of the entry state: if a node (e.g., a native call accessing an
+ * array) writes it, the fixpoint gives up. Callers should also restrict this
+ * fixpoint to cfgs for which {@link DefUseChains#onlyLocals()} holds.
+ *
+ * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+ *
+ * @param <A> the type of {@link AbstractState} contained into the analysis
+ *                state
+ * @param <H> the type of {@link HeapDomain} contained into the computed
+ *                abstract state
+ * @param <V> the type of {@link ValueDomain} contained into the computed
+ *                abstract state
+ * @param <T> the type of {@link NonRelationalValueDomain} mapped by the
+ *                {@link ValueEnvironment}
+ */
+class SparseFixpoint<A extends AbstractState<A, H, V>,
+		H extends HeapDomain<H>,
+		V extends ValueDomain<V>,
+		T extends NonRelationalValueDomain<T>> {
+
+	private final CFG cfg;
+
+	private final DefUseChains chains;
+
+	private final AnalysisState<A, H, V> entryState;
+
+	private final InterproceduralAnalysis<A, H, V> interprocedural;
+
+	private final int widenAfter;
+
+	private final H heap;
+
+	private final T domain;
+
+	/**
+	 * The values of the variables in the entry state, indexed by name.
+	 */
+	private final Map<String, Pair<Identifier, T>> entry = new HashMap<>();
+
+	/**
+	 * The values of the identifiers in the entry state that no node defines,
+	 * including the heap location of the monolith: they are part of every
+	 * state, and must never change.
+	 */
+	private final Map<Identifier, T> untouched = new HashMap<>();
+
+	/**
+	 * The values that each node assigns to the variables it defines, indexed
+	 * by name.
+	 */
+	private final Map<Statement, Map<String, Pair<Identifier, T>>> facts = new IdentityHashMap<>();
+
+	private final Map<Statement, Map<String, Integer>> updates = new IdentityHashMap<>();
+
+	/**
+	 * Yields {@code true} if and only if a sparse fixpoint can be computed
+	 * starting from the given state.
+	 *
+	 * @param state the entry state
+	 *
+	 * @return {@code true} if that condition holds
+	 */
+	static boolean supports(AnalysisState<?, ?, ?> state) {
+		return state.getState() instanceof SimpleAbstractState
+				&& ((SimpleAbstractState<?, ?>) state.getState()).getHeapState() instanceof MonolithicHeap
+				&& ((SimpleAbstractState<?, ?>) state.getState()).getValueState() instanceof ValueEnvironment;
+	}
+
+	/**
+	 * Builds the fixpoint.
+	 *
+	 * @param cfg             the cfg to analyze
+	 * @param chains          the def-use chains of {@code cfg}
+	 * @param entryState      the entry state of {@code cfg}, that must satisfy
+	 *                            {@link #supports(AnalysisState)}
+	 * @param interprocedural the interprocedural analysis to query when a call
+	 *                            is encountered
+	 * @param widenAfter      the number of updates of a definition after which
+	 *                            lub is replaced by widening, or {@code 0} to
+	 *                            always use lub
+	 */
+	@SuppressWarnings("unchecked")
+	SparseFixpoint(CFG cfg, DefUseChains chains, AnalysisState<A, H, V> entryState,
+			InterproceduralAnalysis<A, H, V> interprocedural, int widenAfter) {
+		this.cfg = cfg;
+		this.chains = chains;
+		this.entryState = entryState;
+		this.interprocedural = interprocedural;
+		this.widenAfter = widenAfter;
+		SimpleAbstractState<H, V> state = (SimpleAbstractState<H, V>) entryState.getState();
+		this.heap = state.getHeapState();
+		ValueEnvironment<T> env = (ValueEnvironment<T>) state.getValueState();
+		// the top environment yields the top element of its domain for any
+		// key, and any element can be used as singleton of the domain
+		this.domain = env.top().getState(null);
+		for (Identifier id : env.getKeys())
+			if (chains.getVariables().contains(id.getName()))
+				entry.put(id.getName(), Pair.of(id, env.getState(id)));
+			else
+				untouched.put(id, env.getState(id));
+	}
+
+	/**
+	 * Runs the fixpoint.
+	 *
+	 * @return the results of the fixpoint, mapping each node reachable from
+	 *             the entrypoints and each inner expression to the state
+	 *             computed after it, or {@code null} if a node writes a heap
+	 *             location
+	 *
+	 * @throws FixpointException if an error occurs during the semantic
+	 *                               computation of a node
+	 */
+	Map<Statement, AnalysisState<A, H, V>> run() throws FixpointException {
+		WorkingSet<Statement> ws = FIFOWorkingSet.mk();
+		Set<Statement> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+		WorkingSet<Statement> visit = FIFOWorkingSet.mk();
+		cfg.getEntrypoints().forEach(visit::push);
+		// definitions are first processed in breadth-first order
+		while (!visit.isEmpty()) {
+			Statement current = visit.pop();
+			if (!seen.add(current))
+				continue;
+			if (!chains.getDefinitions(current).isEmpty())
+				ws.push(current);
+			cfg.followersOf(current).forEach(visit::push);
+		}
+
+		while (!ws.isEmpty()) {
+			Statement current = ws.pop();
+			try {
+				for (String variable : update(current))
+					for (Statement user : chains.getUsers(current, variable))
+						if (!chains.getDefinitions(user).isEmpty())
+							ws.push(user);
+			} catch (SemanticException e) {
+				throw new FixpointException("Exception while computing the definitions of '" + current + "' in "
+						+ cfg, e);
+			}
+		}
+
+		Map<Statement, AnalysisState<A, H, V>> results = new NodeMap<>();
+		// unreachable nodes are not part of the results, as in the other
+		// fixpoints
+		for (Statement node : seen)
+			try {
+				Map<Identifier, T> function = new HashMap<>(untouched);
+				for (String variable : chains.getReachingVariables(node))
+					addReaching(node, variable, function);
+
+				AnalysisState<A, H, V> in = mkState(function);
+				StatementStore<A, H, V> expressions = new StatementStore<>(in);
+				AnalysisState<A, H, V> post = node.semantics(in, interprocedural, expressions);
+				if (writesHeap(function, post))
+					return null;
+				results.put(node, post);
+				for (Entry<Statement, AnalysisState<A, H, V>> e : expressions)
+					if (cfg.retainsInnerResult(e.getKey()))
+						results.put(e.getKey(), e.getValue());
+			} catch (SemanticException e) {
+				throw new FixpointException("Semantic exception during fixpoint computation of '" + node + "' in "
+						+ cfg, e);
+			}
+
+		return results;
+	}
+
+	private Set<String> update(Statement node) throws SemanticException {
+		Map<Identifier, T> function = new HashMap<>(untouched);
+		for (String variable : chains.getUses(node))
+			addReaching(node, variable, function);
+
+		AnalysisState<A, H, V> in = mkState(function);
+		AnalysisState<A, H, V> post = node.semantics(in, interprocedural, new StatementStore<>(in));
+		ValueEnvironment<T> env = valueState(post);
+
+		Set<String> changed = new HashSet<>();
+		Map<String, Pair<Identifier, T>> defs = facts.computeIfAbsent(node, n -> new HashMap<>());
+		Map<String, Integer> counts = updates.computeIfAbsent(node, n -> new HashMap<>());
+		for (Identifier id : env.getKeys()) {
+			String variable = id.getName();
+			if (!chains.getDefinitions(node).contains(variable))
+				continue;
+
+			T value = env.getState(id);
+			Pair<Identifier, T> previous = defs.get(variable);
+			if (previous != null) {
+				int count = counts.merge(variable, 1, Integer::sum);
+				if (widenAfter == 0 || count <= widenAfter)
+					value = previous.getRight().lub(value);
+				else
+					value = previous.getRight().widening(value);
+				if (value.lessOrEqual(previous.getRight()))
+					continue;
+			}
+
+			defs.put(variable, Pair.of(id, value));
+			changed.add(variable);
+		}
+
+		return changed;
+	}
+
+	private boolean writesHeap(Map<Identifier, T> function, AnalysisState<A, H, V> post) throws SemanticException {
+		ValueEnvironment<T> env = valueState(post);
+		for (Identifier id : env.getKeys())
+			if (!(id instanceof Variable)
+					&& (!function.containsKey(id) || !env.getState(id).lessOrEqual(function.get(id))))
+				return true;
+		return false;
+	}
+
+	private void addReaching(Statement node, String variable, Map<Identifier, T> function)
+			throws SemanticException {
+		Identifier id = null;
+		T value = null;
+		if (chains.isReachedByEntry(node, variable) && entry.containsKey(variable)) {
+			id = entry.get(variable).getLeft();
+			value = entry.get(variable).getRight();
+		}
+
+		for (Statement def : chains.getReachingDefinitions(node, variable)) {
+			Pair<Identifier, T> fact = facts.getOrDefault(def, new HashMap<>()).get(variable);
+			if (fact == null)
+				// not computed yet
+				continue;
+			id = id == null ? fact.getLeft() : id;
+			value = value == null ? fact.getRight() : value.lub(fact.getRight());
+		}
+
+		if (id != null)
+			function.put(id, value);
+	}
+
+	@SuppressWarnings("unchecked")
+	private AnalysisState<A, H, V> mkState(Map<Identifier, T> function) {
+		V env = (V) new ValueEnvironment<>(domain, function);
+		A state = (A) new SimpleAbstractState<>(heap, env);
+		return new AnalysisState<>(state, entryState.getComputedExpressions());
+	}
+
+	@SuppressWarnings("unchecked")
+	private ValueEnvironment<T> valueState(AnalysisState<A, H, V> state) {
+		return (ValueEnvironment<T>) ((SimpleAbstractState<H, V>) state.getState()).getValueState();
+	}
+}
@@ -10,8 +10,9 @@ import it.unive.lisa.type.Type;
 import it.unive.lisa.type.Untyped;
 import it.unive.lisa.util.collections.externalSet.ExternalSet;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * An expression that is part of a statement of the program.
@@ -67,7 +68,9 @@ public abstract class Expression extends Statement {
 		super(cfg, location);
 		Objects.requireNonNull(staticType, "The expression type of a CFG cannot be null");
 		this.staticType = staticType;
-		this.metaVariables = new HashSet<>();
+		// meta variables are registered during the semantic evaluation, that
+		// might happen concurrently on the same expression
+		this.metaVariables = Collections.newSetFromMap(new ConcurrentHashMap<>());
 	}
 
 	/**
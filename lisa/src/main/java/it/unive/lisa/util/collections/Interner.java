@@ -0,0 +1,73 @@
+package it.unive.lisa.util.collections;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A canonicalization table for objects, also known as hash-consing table.
+ * Interning an object through {@link #intern(Object)} yields the first object
+ * interned in this table that is equal to it, so that equal objects can share
+ * the same instance. This saves memory and lets equality checks short-circuit
+ * on reference identity. Tables can be used concurrently by different
+ * threads.<br>
+ * <br>
+ * Elements are strongly referenced by the table, that is thus meant to be
+ * owned by the object storing the interned elements and to share its
+ * lifetime (e.g., the results of a single analysis), instead of being shared
+ * globally. Since interning an element requires its hash code, which usually
+ * means a visit of the whole element, elements should be interned only when
+ * they are stored for a long time, and not while they are being computed.<br>
+ * <br>
+ * Interned objects must be immutable, or at least not be modified after being
+ * interned, since their hash code is used to index them.
+ *
+ * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+ *
+ * @param <T> the type of elements that this table stores
+ */
+public class Interner<T> {
+
+	/**
+	 * The canonical elements, each mapped to itself
+	 */
+	private final Map<T, T> elements = new ConcurrentHashMap<>();
+
+	/**
+	 * Yields the canonical instance of the given element. If no element equal
+	 * to {@code element} has been interned before, {@code element} becomes
+	 * the canonical instance and it is returned.<br>
+	 * <br>
+	 * The returned element is always equal to {@code element}: if the
+	 * {@link Object#equals(Object)} implementation of the elements compares
+	 * their runtime classes, it is also an instance of the same class.
+	 *
+	 * @param <E>     the type of the element
+	 * @param element the element to intern
+	 *
+	 * @return the canonical instance of {@code element}
+	 */
+	@SuppressWarnings("unchecked")
+	public <E extends T> E intern(E element) {
+		if (element == null)
+			return null;
+
+		T canonical = elements.putIfAbsent(element, element);
+		return canonical == null ? element : (E) canonical;
+	}
+
+	/**
+	 * Yields the number of elements currently interned in this table.
+	 *
+	 * @return the number of elements
+	 */
+	public int size() {
+		return elements.size();
+	}
+
+	/**
+	 * Removes all the elements interned in this table.
+	 */
+	public void clear() {
+		elements.clear();
+	}
+}
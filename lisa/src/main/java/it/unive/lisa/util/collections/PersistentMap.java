@@ -0,0 +1,560 @@
+package it.unive.lisa.util.collections;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A {@link Map} backed by a persistent hash array mapped trie (HAMT). The
+ * nodes of the trie are never modified: {@link #put(Object, Object)} and
+ * {@link #remove(Object)} copy only the path from the root to the affected
+ * entry, and the rest of the trie is shared with the previous version. As a
+ * consequence, copying a map through {@link #PersistentMap(Map)} takes constant
+ * time, and updating the copy costs logarithmic time in the size of the map,
+ * without affecting the original.<br>
+ * <br>
+ * This makes this map a good fit for functions that are copied to change a
+ * small number of keys, as it happens in
+ * {@link it.unive.lisa.analysis.nonrelational.Environment}s. Instances are not
+ * thread safe, exactly as {@link java.util.HashMap}s. Both {@code null} keys and
+ * values are supported. Entries yielded by {@link #entrySet()} do not support
+ * {@link Map.Entry#setValue(Object)}.
+ *
+ * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class PersistentMap<K, V> extends AbstractMap<K, V> {
+
+	/**
+	 * The number of bits of the hash consumed at each level of the trie.
+	 */
+	private static final int BITS = 5;
+
+	/**
+	 * The mask selecting the bits of the hash consumed at each level.
+	 */
+	private static final int MASK = (1 << BITS) - 1;
+
+	/**
+	 * The root of the trie.
+	 */
+	private Node root;
+
+	/**
+	 * The number of entries in this map.
+	 */
+	private int size;
+
+	/**
+	 * Builds an empty map.
+	 */
+	public PersistentMap() {
+		root = BitmapNode.EMPTY;
+		size = 0;
+	}
+
+	/**
+	 * Builds a map containing the same entries of the given one. If
+	 * {@code other} is a {@link PersistentMap}, its trie is shared with the new
+	 * map and this constructor runs in constant time.
+	 *
+	 * @param other the map to copy
+	 */
+	public PersistentMap(Map<? extends K, ? extends V> other) {
+		this();
+		if (other instanceof PersistentMap) {
+			PersistentMap<?, ?> persistent = (PersistentMap<?, ?>) other;
+			root = persistent.root;
+			size = persistent.size;
+		} else
+			putAll(other);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return root.find(key, Objects.hashCode(key), 0) != null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		Leaf leaf = root.find(key, Objects.hashCode(key), 0);
+		return leaf == null ? null : (V) leaf.getValue();
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V put(K key, V value) {
+		int hash = Objects.hashCode(key);
+		Leaf previous = root.find(key, hash, 0);
+		if (previous == null)
+			size++;
+		else if (previous.getValue() == value)
+			return value;
+		root = root.put(new Leaf(hash, key, value), 0);
+		return previous == null ? null : (V) previous.getValue();
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V remove(Object key) {
+		int hash = Objects.hashCode(key);
+		Leaf previous = root.find(key, hash, 0);
+		if (previous == null)
+			return null;
+		size--;
+		root = root.remove(key, hash, 0);
+		return (V) previous.getValue();
+	}
+
+	@Override
+	public void clear() {
+		root = BitmapNode.EMPTY;
+		size = 0;
+	}
+
+	/**
+	 * Yields the entries of this map that are not shared with {@code other},
+	 * that is, the ones whose key is not mapped by {@code other} to the very
+	 * same value object. Sub-tries that the two maps share (since one has been
+	 * copied from the other, or both from a common one) are skipped without
+	 * visiting them, making this method proportional to the number of
+	 * differences between the two maps rather than to their size.
+	 *
+	 * @param other the other map
+	 *
+	 * @return the entries of this map not shared with {@code other}
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Entry<K, V>> entriesNotSharedWith(PersistentMap<K, V> other) {
+		List<Leaf> diff = new ArrayList<>();
+		difference(root, other.root, 0, diff);
+		return (List<Entry<K, V>>) (List<?>) diff;
+	}
+
+	private static void difference(Node mine, Node theirs, int shift, List<Leaf> diff) {
+		if (mine == theirs)
+			return;
+
+		if (!(mine instanceof BitmapNode) || !(theirs instanceof BitmapNode)) {
+			collect(mine, theirs, shift, diff);
+			return;
+		}
+
+		BitmapNode first = (BitmapNode) mine;
+		BitmapNode second = (BitmapNode) theirs;
+		for (int i = 0, bits = first.bitmap; bits != 0; i++, bits &= bits - 1) {
+			int bit = Integer.lowestOneBit(bits);
+			Object slot = first.slots[i];
+			if ((second.bitmap & bit) == 0)
+				collect(slot, null, shift + BITS, diff);
+			else {
+				Object other = second.slots[second.index(bit)];
+				if (slot == other)
+					continue;
+				if (slot instanceof Node && other instanceof Node)
+					difference((Node) slot, (Node) other, shift + BITS, diff);
+				else
+					collect(slot, other, shift + BITS, diff);
+			}
+		}
+	}
+
+	private static void collect(Object mine, Object theirs, int shift, List<Leaf> diff) {
+		if (mine instanceof Leaf) {
+			Leaf leaf = (Leaf) mine;
+			Leaf match = null;
+			if (theirs instanceof Leaf)
+				match = ((Leaf) theirs).matches(leaf.getKey(), leaf.hash) ? (Leaf) theirs : null;
+			else if (theirs != null)
+				match = ((Node) theirs).find(leaf.getKey(), leaf.hash, shift);
+			if (match == null || match.getValue() != leaf.getValue())
+				diff.add(leaf);
+		} else
+			for (Object slot : ((Node) mine).slots())
+				// theirs stays at the same level while visiting mine
+				collect(slot, theirs, shift, diff);
+	}
+
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		return new AbstractSet<Entry<K, V>>() {
+
+			@Override
+			public Iterator<Entry<K, V>> iterator() {
+				return new EntryIterator();
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				if (!(o instanceof Entry))
+					return false;
+				Entry<?, ?> e = (Entry<?, ?>) o;
+				Leaf leaf = root.find(e.getKey(), Objects.hashCode(e.getKey()), 0);
+				return leaf != null && Objects.equals(leaf.getValue(), e.getValue());
+			}
+
+			@Override
+			public void clear() {
+				PersistentMap.this.clear();
+			}
+		};
+	}
+
+	/**
+	 * An iterator over the entries of the trie. The iterator visits the trie
+	 * that was the root of the map when it was created, and removals performed
+	 * through it only replace the root of the map: they never affect the
+	 * visit.
+	 *
+	 * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+	 */
+	private class EntryIterator implements Iterator<Entry<K, V>> {
+
+		private final Deque<Object[]> slots = new ArrayDeque<>();
+
+		private final Deque<Integer> positions = new ArrayDeque<>();
+
+		private Leaf next;
+
+		private Leaf last;
+
+		private EntryIterator() {
+			push(root);
+			advance();
+		}
+
+		private void push(Node node) {
+			slots.push(node.slots());
+			positions.push(0);
+		}
+
+		private void advance() {
+			next = null;
+			while (next == null && !slots.isEmpty()) {
+				Object[] current = slots.peek();
+				int pos = positions.pop();
+				if (pos >= current.length) {
+					slots.pop();
+					continue;
+				}
+
+				positions.push(pos + 1);
+				if (current[pos] instanceof Leaf)
+					next = (Leaf) current[pos];
+				else
+					push((Node) current[pos]);
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Entry<K, V> next() {
+			if (next == null)
+				throw new NoSuchElementException();
+			last = next;
+			advance();
+			return (Entry<K, V>) (Entry<?, ?>) last;
+		}
+
+		@Override
+		public void remove() {
+			if (last == null)
+				throw new IllegalStateException();
+			PersistentMap.this.remove(last.getKey());
+			last = null;
+		}
+	}
+
+	/**
+	 * An entry of the map, stored in the trie together with the hash of its
+	 * key.
+	 *
+	 * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+	 */
+	private static final class Leaf extends SimpleImmutableEntry<Object, Object> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int hash;
+
+		private Leaf(int hash, Object key, Object value) {
+			super(key, value);
+			this.hash = hash;
+		}
+
+		private boolean matches(Object key, int hash) {
+			return this.hash == hash && Objects.equals(getKey(), key);
+		}
+	}
+
+	/**
+	 * An immutable node of the trie.
+	 *
+	 * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+	 */
+	private interface Node {
+
+		/**
+		 * Yields the leaf for the given key, or {@code null} if the key is not
+		 * in the sub-trie rooted at this node.
+		 */
+		Leaf find(Object key, int hash, int shift);
+
+		/**
+		 * Yields a node containing the entries of this one, plus the given leaf
+		 * that replaces the one with an equal key, if any.
+		 */
+		Node put(Leaf leaf, int shift);
+
+		/**
+		 * Yields a node containing the entries of this one, except for the one
+		 * with the given key. Yields {@code this} if the key is not present.
+		 */
+		Node remove(Object key, int hash, int shift);
+
+		/**
+		 * Yields the contents of this node, that are either {@link Leaf}s or
+		 * other {@link Node}s.
+		 */
+		Object[] slots();
+
+		/**
+		 * Yields the only leaf contained in the sub-trie rooted at this node,
+		 * or {@code null} if it contains zero or more than one entries.
+		 */
+		Leaf singleLeaf();
+	}
+
+	/**
+	 * A node indexed by a portion of the hash of the keys. Bit {@code i} of
+	 * the bitmap is set if the node contains an entry for the {@code i}-th
+	 * value of that portion, and the slot holding it is found by counting the
+	 * bits set before {@code i}.
+	 *
+	 * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+	 */
+	private static final class BitmapNode implements Node {
+
+		private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+		private final int bitmap;
+
+		private final Object[] slots;
+
+		private BitmapNode(int bitmap, Object[] slots) {
+			this.bitmap = bitmap;
+			this.slots = slots;
+		}
+
+		private static int bit(int hash, int shift) {
+			return 1 << ((hash >>> shift) & MASK);
+		}
+
+		private int index(int bit) {
+			return Integer.bitCount(bitmap & (bit - 1));
+		}
+
+		@Override
+		public Leaf find(Object key, int hash, int shift) {
+			int bit = bit(hash, shift);
+			if ((bitmap & bit) == 0)
+				return null;
+
+			Object slot = slots[index(bit)];
+			if (slot instanceof Leaf)
+				return ((Leaf) slot).matches(key, hash) ? (Leaf) slot : null;
+			return ((Node) slot).find(key, hash, shift + BITS);
+		}
+
+		@Override
+		public Node put(Leaf leaf, int shift) {
+			int bit = bit(leaf.hash, shift);
+			int idx = index(bit);
+			if ((bitmap & bit) == 0) {
+				Object[] copy = new Object[slots.length + 1];
+				System.arraycopy(slots, 0, copy, 0, idx);
+				copy[idx] = leaf;
+				System.arraycopy(slots, idx, copy, idx + 1, slots.length - idx);
+				return new BitmapNode(bitmap | bit, copy);
+			}
+
+			Object slot = slots[idx];
+			Object replacement;
+			if (slot instanceof Leaf) {
+				Leaf existing = (Leaf) slot;
+				if (existing.matches(leaf.getKey(), leaf.hash))
+					replacement = leaf;
+				else
+					replacement = merge(existing, leaf, shift + BITS);
+			} else
+				replacement = ((Node) slot).put(leaf, shift + BITS);
+
+			return replace(idx, replacement);
+		}
+
+		@Override
+		public Node remove(Object key, int hash, int shift) {
+			int bit = bit(hash, shift);
+			if ((bitmap & bit) == 0)
+				return this;
+
+			int idx = index(bit);
+			Object slot = slots[idx];
+			if (slot instanceof Leaf) {
+				if (!((Leaf) slot).matches(key, hash))
+					return this;
+				return drop(bit, idx);
+			}
+
+			Node child = (Node) slot;
+			Node updated = child.remove(key, hash, shift + BITS);
+			if (updated == child)
+				return this;
+			if (updated.slots().length == 0)
+				return drop(bit, idx);
+
+			// sub-tries with a single entry are inlined to keep paths short
+			Leaf single = updated.singleLeaf();
+			return replace(idx, single != null ? single : updated);
+		}
+
+		private Node replace(int idx, Object slot) {
+			Object[] copy = slots.clone();
+			copy[idx] = slot;
+			return new BitmapNode(bitmap, copy);
+		}
+
+		private Node drop(int bit, int idx) {
+			if (slots.length == 1)
+				return EMPTY;
+			Object[] copy = new Object[slots.length - 1];
+			System.arraycopy(slots, 0, copy, 0, idx);
+			System.arraycopy(slots, idx + 1, copy, idx, slots.length - idx - 1);
+			return new BitmapNode(bitmap & ~bit, copy);
+		}
+
+		private static Node merge(Leaf first, Leaf second, int shift) {
+			if (first.hash == second.hash)
+				return new CollisionNode(first.hash, new Leaf[] { first, second });
+
+			int firstBit = bit(first.hash, shift);
+			int secondBit = bit(second.hash, shift);
+			if (firstBit == secondBit)
+				return new BitmapNode(firstBit, new Object[] { merge(first, second, shift + BITS) });
+
+			// slots are sorted by the position of their bit in the bitmap
+			if (Integer.compareUnsigned(firstBit, secondBit) < 0)
+				return new BitmapNode(firstBit | secondBit, new Object[] { first, second });
+			return new BitmapNode(firstBit | secondBit, new Object[] { second, first });
+		}
+
+		@Override
+		public Object[] slots() {
+			return slots;
+		}
+
+		@Override
+		public Leaf singleLeaf() {
+			return slots.length == 1 && slots[0] instanceof Leaf ? (Leaf) slots[0] : null;
+		}
+	}
+
+	/**
+	 * A node containing entries whose keys have the same hash.
+	 *
+	 * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+	 */
+	private static final class CollisionNode implements Node {
+
+		private final int hash;
+
+		private final Leaf[] leaves;
+
+		private CollisionNode(int hash, Leaf[] leaves) {
+			this.hash = hash;
+			this.leaves = leaves;
+		}
+
+		private int indexOf(Object key, int hash) {
+			for (int i = 0; i < leaves.length; i++)
+				if (leaves[i].matches(key, hash))
+					return i;
+			return -1;
+		}
+
+		@Override
+		public Leaf find(Object key, int hash, int shift) {
+			int idx = indexOf(key, hash);
+			return idx == -1 ? null : leaves[idx];
+		}
+
+		@Override
+		public Node put(Leaf leaf, int shift) {
+			if (leaf.hash != hash)
+				// the new key diverges from the colliding ones at this level
+				return new BitmapNode(BitmapNode.bit(hash, shift), new Object[] { this }).put(leaf, shift);
+
+			int idx = indexOf(leaf.getKey(), leaf.hash);
+			Leaf[] copy;
+			if (idx == -1) {
+				copy = new Leaf[leaves.length + 1];
+				System.arraycopy(leaves, 0, copy, 0, leaves.length);
+				copy[leaves.length] = leaf;
+			} else {
+				copy = leaves.clone();
+				copy[idx] = leaf;
+			}
+			return new CollisionNode(hash, copy);
+		}
+
+		@Override
+		public Node remove(Object key, int hash, int shift) {
+			int idx = indexOf(key, hash);
+			if (idx == -1)
+				return this;
+			if (leaves.length == 1)
+				return BitmapNode.EMPTY;
+
+			Leaf[] copy = new Leaf[leaves.length - 1];
+			System.arraycopy(leaves, 0, copy, 0, idx);
+			System.arraycopy(leaves, idx + 1, copy, idx, leaves.length - idx - 1);
+			return new CollisionNode(hash, copy);
+		}
+
+		@Override
+		public Object[] slots() {
+			return leaves;
+		}
+
+		@Override
+		public Leaf singleLeaf() {
+			return leaves.length == 1 ? leaves[0] : null;
+		}
+	}
+}
@@ -1,15 +1,25 @@
 package it.unive.lisa.util.collections.externalSet;
 
-import java.util.ArrayList;
+import java.util.AbstractCollection;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * A cache for creating {@link ExternalSet}s of the elements contained in this
- * cache.
+ * cache.<br>
+ * <br>
+ * This cache can be accessed concurrently without locking: indexes are stored
+ * in a {@link ConcurrentHashMap}, while elements are stored in an append-only
+ * sequence of segments, each twice as big as the previous one, that are never
+ * moved once allocated. Looking up an element or an index thus never blocks,
+ * and adding a new element only contends with threads adding an element that
+ * is hashed to the same bin. The only exception is {@link #clear()}, that
+ * must not be invoked concurrently with other operations.
  * 
  * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
  * 
@@ -18,24 +28,37 @@ import java.util.Map;
 public class ExternalSetCache<T> {
 
 	/**
-	 * The collection of elements in this cache
+	 * The base-2 logarithm of the size of the first segment.
 	 */
-	private final List<T> elements = new ArrayList<>(16);
+	private static final int FIRST_SEGMENT_BITS = 4;
 
 	/**
-	 * A map from the elements to their index
+	 * The maximum number of segments, enough to hold
+	 * {@link Integer#MAX_VALUE} elements.
 	 */
-	private final Map<T, Integer> indexes = new HashMap<>(16);
+	private static final int MAX_SEGMENTS = Integer.SIZE - FIRST_SEGMENT_BITS;
 
 	/**
-	 * The next index available for new elements
+	 * The placeholder for {@code null}, used both as key in {@link #indexes}
+	 * and as element in {@link #segments}.
+	 */
+	private static final Object NULL = new Object();
+
+	/**
+	 * The segments containing the elements in this cache
+	 */
+	private volatile AtomicReferenceArray<AtomicReferenceArray<Object>> segments = new AtomicReferenceArray<>(
+			MAX_SEGMENTS);
+
+	/**
+	 * A map from the elements to their index
 	 */
-	private int nextIndex;
+	private final ConcurrentMap<Object, Integer> indexes = new ConcurrentHashMap<>(16);
 
 	/**
-	 * The index assigned to the {@code null} key, if any.
+	 * The next index available for new elements
 	 */
-	private int indexOfNull = -1;
+	private final AtomicInteger nextIndex = new AtomicInteger();
 
 	/**
 	 * Builds an empty {@link ExternalSet} that uses this cache.
@@ -87,12 +110,9 @@ public class ExternalSetCache<T> {
 	 * 
 	 * @return the index of {@code e}, or {@code -1}
 	 */
-	protected synchronized final int indexOf(T e) {
-		if (e == null)
-			return indexOfNull;
-
-		Integer result;
-		return (result = indexes.get(e)) == null ? -1 : result;
+	protected final int indexOf(T e) {
+		Integer result = indexes.get(e == null ? NULL : e);
+		return result == null ? -1 : result;
 	}
 
 	/**
@@ -103,23 +123,34 @@ public class ExternalSetCache<T> {
 	 * 
 	 * @return the index of {@code e}
 	 */
-	protected synchronized final int indexOfOrAdd(T e) {
-		if (e == null) {
-			if (indexOfNull == -1) {
-				elements.add(null);
-				indexOfNull = nextIndex++;
-			}
-			return indexOfNull;
-		}
+	protected final int indexOfOrAdd(T e) {
+		Object key = e == null ? NULL : e;
+		Integer result = indexes.get(key);
+		if (result != null)
+			return result;
 
-		Integer result = indexes.get(e);
-		if (result == null)
-			return indexes.computeIfAbsent(e, el -> {
-				elements.add(e);
-				return nextIndex++;
-			});
+		// the element is stored before the index is published in the map:
+		// whoever reads the index will also see the element
+		return indexes.computeIfAbsent(key, k -> {
+			int index = reserve();
+			segmentOf(index, false).set(offsetOf(index), k);
+			return index;
+		});
+	}
 
-		return result;
+	/**
+	 * Reserves the next index available for new elements. The index is
+	 * reserved only after the segment that will contain it has been allocated:
+	 * if the allocation fails, no index is left empty, and the threads reading
+	 * the elements of this cache are never stuck waiting for it.
+	 */
+	private int reserve() {
+		int index;
+		do {
+			index = nextIndex.get();
+			segmentOf(index, true);
+		} while (!nextIndex.compareAndSet(index, index + 1));
+		return index;
 	}
 
 	/**
@@ -129,18 +160,58 @@ public class ExternalSetCache<T> {
 	 * 
 	 * @return the element
 	 */
-	protected final synchronized T get(int pos) {
-		return elements.get(pos);
+	protected final T get(int pos) {
+		if (pos < 0 || pos >= nextIndex.get())
+			throw new IndexOutOfBoundsException("Index: " + pos + ", Size: " + size());
+		return await(pos);
 	}
 
 	/**
-	 * Cleans the cache, removing all elements.
+	 * Yields the {@code pos}-th element of this cache, waiting for it to be
+	 * stored if another thread has reserved its index but has not stored it
+	 * yet. Since indexes are reserved only after their segment exists (see
+	 * {@link #reserve()}), the wait spans a single store.
 	 */
-	public final synchronized void clear() {
-		elements.clear();
+	@SuppressWarnings("unchecked")
+	private T await(int pos) {
+		Object element;
+		AtomicReferenceArray<Object> segment;
+		while ((segment = segmentOf(pos, false)) == null || (element = segment.get(offsetOf(pos))) == null)
+			Thread.yield();
+		return element == NULL ? null : (T) element;
+	}
+
+	private static int segmentIndex(int index) {
+		// segment s starts at index (2^s - 1) * 2^FIRST_SEGMENT_BITS
+		int shifted = (index >>> FIRST_SEGMENT_BITS) + 1;
+		return Integer.SIZE - 1 - Integer.numberOfLeadingZeros(shifted);
+	}
+
+	private static int offsetOf(int index) {
+		int s = segmentIndex(index);
+		return index - (((1 << s) - 1) << FIRST_SEGMENT_BITS);
+	}
+
+	private AtomicReferenceArray<Object> segmentOf(int index, boolean create) {
+		int s = segmentIndex(index);
+		AtomicReferenceArray<AtomicReferenceArray<Object>> segs = segments;
+		AtomicReferenceArray<Object> segment = segs.get(s);
+		if (segment != null || !create)
+			return segment;
+
+		segs.compareAndSet(s, null, new AtomicReferenceArray<>(1 << (s + FIRST_SEGMENT_BITS)));
+		return segs.get(s);
+	}
+
+	/**
+	 * Cleans the cache, removing all elements. This method must not be
+	 * invoked while other threads are accessing this cache. Subclasses that
+	 * override this method must invoke it.
+	 */
+	public void clear() {
 		indexes.clear();
-		indexOfNull = -1;
-		nextIndex = 0;
+		segments = new AtomicReferenceArray<>(MAX_SEGMENTS);
+		nextIndex.set(0);
 	}
 
 	/**
@@ -148,13 +219,20 @@ public class ExternalSetCache<T> {
 	 * 
 	 * @return the number of elements
 	 */
-	public final synchronized int size() {
-		return elements.size();
+	public final int size() {
+		return nextIndex.get();
 	}
 
 	@Override
-	public final synchronized String toString() {
-		return elements.toString();
+	public final String toString() {
+		StringBuilder builder = new StringBuilder("[");
+		int size = size();
+		for (int i = 0; i < size; i++) {
+			if (i > 0)
+				builder.append(", ");
+			builder.append(await(i));
+		}
+		return builder.append("]").toString();
 	}
 
 	/**
@@ -163,7 +241,34 @@ public class ExternalSetCache<T> {
 	 * 
 	 * @return a view of the elements inside this cache
 	 */
-	synchronized Collection<T> getAllElements() {
-		return Collections.unmodifiableCollection(elements);
+	Collection<T> getAllElements() {
+		return new AbstractCollection<T>() {
+
+			@Override
+			public Iterator<T> iterator() {
+				int size = size();
+				return new Iterator<T>() {
+
+					private int next = 0;
+
+					@Override
+					public boolean hasNext() {
+						return next < size;
+					}
+
+					@Override
+					public T next() {
+						if (!hasNext())
+							throw new NoSuchElementException();
+						return await(next++);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return ExternalSetCache.this.size();
+			}
+		};
 	}
-}
\ No newline at end of file
+}
@@ -55,6 +55,12 @@ public class AdjacencyMatrix<N extends Node<N, E, G>, E extends Edge<N, E, G>, G
 	 */
 	private int nextOffset;
 
+	/**
+	 * The lazily computed snapshot of this matrix, discarded at each
+	 * modification
+	 */
+	private volatile CompactAdjacency<N, E, G> compact;
+
 	/**
 	 * Builds a new matrix.
 	 */
@@ -106,8 +112,10 @@ public class AdjacencyMatrix<N extends Node<N, E, G>, E extends Edge<N, E, G>, G
 	 * @param node the node to add
 	 */
 	public void addNode(N node) {
-		if (matrix.putIfAbsent(node, Pair.of(edgeFactory.mkEmptySet(), edgeFactory.mkEmptySet())) == null)
+		if (matrix.putIfAbsent(node, Pair.of(edgeFactory.mkEmptySet(), edgeFactory.mkEmptySet())) == null) {
 			nextOffset = node.setOffset(nextOffset) + 1;
+			compact = null;
+		}
 	}
 
 	/**
@@ -124,6 +132,7 @@ public class AdjacencyMatrix<N extends Node<N, E, G>, E extends Edge<N, E, G>, G
 		edges.getLeft().forEach(this::removeEdge);
 		edges.getRight().forEach(this::removeEdge);
 		matrix.remove(node);
+		compact = null;
 	}
 
 	/**
@@ -153,6 +162,7 @@ public class AdjacencyMatrix<N extends Node<N, E, G>, E extends Edge<N, E, G>, G
 
 		matrix.get(e.getSource()).getRight().add(e);
 		matrix.get(e.getDestination()).getLeft().add(e);
+		compact = null;
 	}
 
 	/**
@@ -166,6 +176,7 @@ public class AdjacencyMatrix<N extends Node<N, E, G>, E extends Edge<N, E, G>, G
 
 		matrix.get(e.getSource()).getRight().remove(e);
 		matrix.get(e.getDestination()).getLeft().remove(e);
+		compact = null;
 	}
 
 	/**
@@ -258,6 +269,25 @@ public class AdjacencyMatrix<N extends Node<N, E, G>, E extends Edge<N, E, G>, G
 		return matrix.get(node).getLeft().collect().stream().map(e -> e.getSource()).collect(Collectors.toSet());
 	}
 
+	/**
+	 * Yields a read-only snapshot of this matrix, in compressed sparse row
+	 * format. The snapshot is computed once and reused until this matrix is
+	 * modified through one of its methods: edges added to or removed from the
+	 * collections returned by {@link #getIngoingEdges(Node)} and
+	 * {@link #getOutgoingEdges(Node)} are not tracked. This is meant to be used
+	 * once the matrix has been finalized, to query the adjacency of nodes
+	 * without materializing new collections.
+	 * 
+	 * @return the snapshot of this matrix
+	 */
+	public CompactAdjacency<N, E, G> compact() {
+		CompactAdjacency<N, E, G> result = compact;
+		if (result == null)
+			compact = result = new CompactAdjacency<>(matrix.keySet(), n -> matrix.get(n).getLeft(),
+					n -> matrix.get(n).getRight());
+		return result;
+	}
+
 	/**
 	 * Simplifies this matrix, removing all the given nodes and rewriting the
 	 * edge set accordingly. This method will throw an
@@ -288,6 +318,7 @@ public class AdjacencyMatrix<N extends Node<N, E, G>, E extends Edge<N, E, G>, G
 			Map<Pair<E, E>, E> replacedEdges) {
 		removedEdges.clear();
 		replacedEdges.clear();
+		compact = null;
 
 		for (N t : targets) {
 			ExternalSet<E> ingoing = matrix.get(t).getLeft();
@@ -0,0 +1,219 @@
+package it.unive.lisa.util.datastructures.graph;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A read-only snapshot of the edges of an {@link AdjacencyMatrix}, stored in
+ * compressed sparse row format. Each node is assigned an index, and the
+ * ingoing edges, outgoing edges, predecessors and followers of all nodes are
+ * laid out in four flat arrays: the ones of the node with index {@code i} are
+ * stored between positions {@code start[i]} and {@code start[i + 1]} of the
+ * corresponding array. Querying the adjacency of a node thus only requires to
+ * find its index, without materializing new collections.<br>
+ * <br>
+ * Snapshots are produced by {@link AdjacencyMatrix#compact()}, and are not
+ * updated if the matrix is modified afterwards.
+ *
+ * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+ *
+ * @param <N> the type of the {@link Node}s in this snapshot
+ * @param <E> the type of the {@link Edge}s in this snapshot
+ * @param <G> the type of the {@link Graph}s this snapshot can be used in
+ */
+public final class CompactAdjacency<N extends Node<N, E, G>, E extends Edge<N, E, G>, G extends Graph<G, N, E>> {
+
+	private final Map<N, Integer> indexes;
+
+	private final int[] inStart;
+
+	private final Object[] ingoing;
+
+	private final int[] outStart;
+
+	private final Object[] outgoing;
+
+	private final int[] predStart;
+
+	private final Object[] predecessors;
+
+	private final int[] followStart;
+
+	private final Object[] followers;
+
+	/**
+	 * Builds the snapshot of the given adjacency.
+	 *
+	 * @param nodes the nodes to include in the snapshot
+	 * @param in    a function yielding the ingoing edges of each node
+	 * @param out   a function yielding the outgoing edges of each node
+	 */
+	CompactAdjacency(Collection<N> nodes, Function<N, Collection<E>> in, Function<N, Collection<E>> out) {
+		int size = nodes.size();
+		indexes = new HashMap<>(size * 2);
+		inStart = new int[size + 1];
+		outStart = new int[size + 1];
+		predStart = new int[size + 1];
+		followStart = new int[size + 1];
+
+		List<Object> ins = new ArrayList<>(), outs = new ArrayList<>();
+		List<Object> preds = new ArrayList<>(), follows = new ArrayList<>();
+		int i = 0;
+		for (N node : nodes) {
+			indexes.put(node, i);
+			inStart[i] = ins.size();
+			outStart[i] = outs.size();
+			predStart[i] = preds.size();
+			followStart[i] = follows.size();
+			for (E e : in.apply(node)) {
+				ins.add(e);
+				addIfMissing(preds, predStart[i], e.getSource());
+			}
+			for (E e : out.apply(node)) {
+				outs.add(e);
+				addIfMissing(follows, followStart[i], e.getDestination());
+			}
+			i++;
+		}
+
+		inStart[size] = ins.size();
+		outStart[size] = outs.size();
+		predStart[size] = preds.size();
+		followStart[size] = follows.size();
+		ingoing = ins.toArray();
+		outgoing = outs.toArray();
+		predecessors = preds.toArray();
+		followers = follows.toArray();
+	}
+
+	private static void addIfMissing(List<Object> list, int from, Object element) {
+		// nodes have few neighbors: a linear scan is enough
+		for (int i = from; i < list.size(); i++)
+			if (list.get(i).equals(element))
+				return;
+		list.add(element);
+	}
+
+	/**
+	 * Yields {@code true} if and only if the given node is part of this
+	 * snapshot.
+	 *
+	 * @param node the node
+	 *
+	 * @return {@code true} if that condition holds
+	 */
+	public boolean containsNode(N node) {
+		return indexes.containsKey(node);
+	}
+
+	/**
+	 * Yields the ingoing edges to the given node. Yields {@code null} if the
+	 * node is not in this snapshot.
+	 *
+	 * @param node the node
+	 *
+	 * @return the list of ingoing edges, or {@code null}
+	 */
+	public List<E> getIngoingEdges(N node) {
+		return slice(node, inStart, ingoing);
+	}
+
+	/**
+	 * Yields the outgoing edges from the given node. Yields {@code null} if the
+	 * node is not in this snapshot.
+	 *
+	 * @param node the node
+	 *
+	 * @return the list of outgoing edges, or {@code null}
+	 */
+	public List<E> getOutgoingEdges(N node) {
+		return slice(node, outStart, outgoing);
+	}
+
+	/**
+	 * Yields the nodes that are predecessors of the given one, without
+	 * duplicates. Yields {@code null} if the node is not in this snapshot.
+	 *
+	 * @param node the node
+	 *
+	 * @return the list of predecessors, or {@code null}
+	 */
+	public List<N> predecessorsOf(N node) {
+		return slice(node, predStart, predecessors);
+	}
+
+	/**
+	 * Yields the nodes that are followers of the given one, without
+	 * duplicates. Yields {@code null} if the node is not in this snapshot.
+	 *
+	 * @param node the node
+	 *
+	 * @return the list of followers, or {@code null}
+	 */
+	public List<N> followersOf(N node) {
+		return slice(node, followStart, followers);
+	}
+
+	/**
+	 * Yields the edge connecting the two given nodes, if any. Yields
+	 * {@code null} if such edge does not exist, or if the source node is not
+	 * in this snapshot.
+	 *
+	 * @param source      the source node
+	 * @param destination the destination node
+	 *
+	 * @return the edge connecting {@code source} to {@code destination}, or
+	 *             {@code null}
+	 */
+	public E getEdgeConnecting(N source, N destination) {
+		List<E> out = getOutgoingEdges(source);
+		if (out == null)
+			return null;
+
+		for (E e : out)
+			if (e.getDestination().equals(destination))
+				return e;
+
+		return null;
+	}
+
+	private <T> List<T> slice(N node, int[] start, Object[] elements) {
+		Integer index = indexes.get(node);
+		if (index == null)
+			return null;
+		return new Slice<>(elements, start[index], start[index + 1]);
+	}
+
+	private static final class Slice<T> extends AbstractList<T> {
+
+		private final Object[] elements;
+
+		private final int from;
+
+		private final int to;
+
+		private Slice(Object[] elements, int from, int to) {
+			this.elements = elements;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public T get(int index) {
+			if (index < 0 || index >= to - from)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+			return (T) elements[from + index];
+		}
+
+		@Override
+		public int size() {
+			return to - from;
+		}
+	}
+}
@@ -8,10 +8,11 @@ import it.unive.lisa.analysis.heap.HeapDomain;
 import it.unive.lisa.analysis.lattices.FunctionalLattice;
 import it.unive.lisa.analysis.value.ValueDomain;
 import it.unive.lisa.interprocedural.InterproceduralAnalysis;
+import it.unive.lisa.util.datastructures.graph.algorithms.WeakTopologicalOrder;
+import it.unive.lisa.util.datastructures.graph.algorithms.WeakTopologicalOrder.Component;
 import it.unive.lisa.util.workset.WorkingSet;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -175,7 +176,6 @@ public abstract class FixpointGraph<G extends FixpointGraph<G, N, E>,
 	 *                               unknown/invalid node ends up in the working
 	 *                               set
 	 */
-	@SuppressWarnings("unchecked")
 	protected <A extends AbstractState<A, H, V>,
 			H extends HeapDomain<H>,
 			V extends ValueDomain<V>,
@@ -183,9 +183,10 @@ public abstract class FixpointGraph<G extends FixpointGraph<G, N, E>,
 					Map<N, AnalysisState<A, H, V>> startingPoints, InterproceduralAnalysis<A, H, V> interprocedural,
 					WorkingSet<N> ws, int widenAfter, SemanticFunction<N, E, G, A, H, V, F> semantics)
 					throws FixpointException {
+		CompactAdjacency<N, E, G> adjacency = adjacencyMatrix.compact();
 		int size = adjacencyMatrix.getNodes().size();
-		Map<N, AtomicInteger> lubs = new HashMap<>(size);
-		Map<N, Pair<AnalysisState<A, H, V>, F>> result = new HashMap<>(size);
+		Map<N, AtomicInteger> lubs = new NodeMap<>(size);
+		Map<N, Pair<AnalysisState<A, H, V>, F>> result = new NodeMap<>(size);
 		startingPoints.keySet().forEach(ws::push);
 
 		AnalysisState<A, H, V> oldApprox = null, newApprox;
@@ -194,23 +195,10 @@ public abstract class FixpointGraph<G extends FixpointGraph<G, N, E>,
 			while (!ws.isEmpty()) {
 				N current = ws.pop();
 
-				if (current == null)
-					throw new FixpointException(
-							"Unknown node encountered during fixpoint execution in '" + this + "'");
-				if (!adjacencyMatrix.getNodes().contains(current))
-					throw new FixpointException("'" + current
-							+ "' is not part of this graph, and cannot be analyzed in this fixpoint computation");
-
-				AnalysisState<A, H, V> entrystate;
-				try {
-					entrystate = getEntryState(current, startingPoints, result);
-				} catch (SemanticException e) {
-					throw new FixpointException(
-							"Exception while computing the entry state for '" + current + "' in " + this, e);
-				}
-
-				if (entrystate == null)
-					throw new FixpointException(current + " does not have an entry state");
+				Pair<AnalysisState<A, H, V>, F> computed = computeNode(current, adjacency, startingPoints, result,
+						interprocedural, semantics);
+				newApprox = computed.getLeft();
+				newIntermediate = computed.getRight();
 
 				if (result.containsKey(current)) {
 					oldApprox = result.get(current).getLeft();
@@ -220,15 +208,6 @@ public abstract class FixpointGraph<G extends FixpointGraph<G, N, E>,
 					oldIntermediate = null;
 				}
 
-				try {
-					newIntermediate = (F) mkInternalStore(entrystate);
-					newApprox = semantics.compute(current, entrystate, interprocedural, newIntermediate);
-				} catch (SemanticException e) {
-					log.error("Evaluation of the semantics of '" + current + "' in " + this
-							+ " led to an exception: " + e);
-					throw new FixpointException("Semantic exception during fixpoint computation", e);
-				}
-
 				if (oldApprox != null && oldIntermediate != null)
 					try {
 						if (widenAfter == 0) {
@@ -240,7 +219,7 @@ public abstract class FixpointGraph<G extends FixpointGraph<G, N, E>,
 							// the threshold will be reached faster
 							int lub = lubs
 									.computeIfAbsent(current,
-											e -> new AtomicInteger(widenAfter * predecessorsOf(e).size()))
+											e -> new AtomicInteger(widenAfter * adjacency.predecessorsOf(e).size()))
 									.getAndDecrement();
 							if (lub > 0) {
 								newApprox = newApprox.lub(oldApprox);
@@ -259,25 +238,222 @@ public abstract class FixpointGraph<G extends FixpointGraph<G, N, E>,
 				if ((oldApprox == null && oldIntermediate == null) || !newApprox.lessOrEqual(oldApprox)
 						|| !newIntermediate.lessOrEqual(oldIntermediate)) {
 					result.put(current, Pair.of(newApprox, newIntermediate));
-					for (N instr : followersOf(current))
+					for (N instr : adjacency.followersOf(current))
 						ws.push(instr);
 				}
 			}
 
-			HashMap<N, AnalysisState<A, H, V>> finalResults = new HashMap<>(result.size());
-			for (Entry<N, Pair<AnalysisState<A, H, V>, F>> e : result.entrySet()) {
-				finalResults.put(e.getKey(), e.getValue().getLeft());
-				for (Entry<N, AnalysisState<A, H, V>> ee : e.getValue().getRight())
-					finalResults.put(ee.getKey(), ee.getValue());
-			}
+			return flatten(result);
+		} catch (Exception e) {
+			log.fatal("Unexpected exception during fixpoint computation of '" + this + "': " + e);
+			throw new FixpointException("Unexpected exception during fixpoint computation", e);
+		}
+	}
+
+	/**
+	 * Computes a fixpoint over this graph, iterating over the nodes following
+	 * a weak topological ordering (see {@link WeakTopologicalOrder}) instead
+	 * of a working set. This method returns a
+	 * {@code Map<N, AnalysisState<A, H, V>>} instance mapping each {@link Node}
+	 * to the {@link AnalysisState} computed by this method. Note that the
+	 * returned map has entries also for inner nodes. Nodes are visited in
+	 * topological order, and each loop is iterated until its head is
+	 * stabilized before moving to the nodes that follow it (the so-called
+	 * recursive iteration strategy). Since every cycle of the graph passes
+	 * through a loop head, results are composed only at heads: the first
+	 * {@code widenAfter} times through {@link Lattice#lub(Lattice)}, and then
+	 * through {@link Lattice#widening(Lattice)}, where times are counted anew
+	 * each time an enclosing loop iterates over the inner one. Results of all other nodes are
+	 * simply recomputed from the ones of their predecessors. The computation
+	 * starts at the nodes in {@code startingPoints}, using as its entry state
+	 * their respective value. {@code cg} will be invoked to get the
+	 * approximation of all invoked graphs.
+	 * 
+	 * @param <A>             the type of {@link AbstractState}
+	 * @param <H>             the type of {@link HeapDomain} contained into the
+	 *                            computed abstract state
+	 * @param <V>             the type of {@link ValueDomain} contained into the
+	 *                            computed abstract state
+	 * @param <F>             the type of {@link FunctionalLattice} that will
+	 *                            hold analysis states computed on intermediate
+	 *                            nodes
+	 * @param startingPoints  a map between {@link Node}s that to use as a
+	 *                            starting point of the computation (that must
+	 *                            be nodes of this graph) and the entry states
+	 *                            to apply on it
+	 * @param interprocedural the interprocedural analysis that can be queried
+	 *                            when a call towards an other graph is
+	 *                            encountered
+	 * @param widenAfter      the number of times after which the
+	 *                            {@link Lattice#lub(Lattice)} invocation on
+	 *                            loop heads gets replaced by the
+	 *                            {@link Lattice#widening(Lattice)} call. Use
+	 *                            {@code 0} to <b>always</b> use
+	 *                            {@link Lattice#lub(Lattice)}
+	 * @param semantics       the {@link SemanticFunction} that will be used for
+	 *                            computing the abstract post-state of nodes
+	 * 
+	 * @return a map that stores for each {@link Node} the result of the
+	 *             fixpoint computation
+	 * 
+	 * @throws FixpointException if an error occurs during the semantic
+	 *                               computation of a node, or if some
+	 *                               unknown/invalid node is used as starting
+	 *                               point
+	 */
+	@SuppressWarnings("unchecked")
+	protected <A extends AbstractState<A, H, V>,
+			H extends HeapDomain<H>,
+			V extends ValueDomain<V>,
+			F extends FunctionalLattice<F, N, AnalysisState<A, H, V>>> Map<N, AnalysisState<A, H, V>> wtoFixpoint(
+					Map<N, AnalysisState<A, H, V>> startingPoints, InterproceduralAnalysis<A, H, V> interprocedural,
+					int widenAfter, SemanticFunction<N, E, G, A, H, V, F> semantics)
+					throws FixpointException {
+		CompactAdjacency<N, E, G> adjacency = adjacencyMatrix.compact();
+		int size = adjacencyMatrix.getNodes().size();
+		Map<N, Pair<AnalysisState<A, H, V>, F>> result = new NodeMap<>(size);
+		List<Component<N>> order = new WeakTopologicalOrder<G, N, E>().build((G) this, startingPoints.keySet());
 
-			return finalResults;
+		try {
+			for (Component<N> component : order)
+				wtoIterate(component, adjacency, startingPoints, result, interprocedural, widenAfter, semantics);
+			return flatten(result);
 		} catch (Exception e) {
 			log.fatal("Unexpected exception during fixpoint computation of '" + this + "': " + e);
 			throw new FixpointException("Unexpected exception during fixpoint computation", e);
 		}
 	}
 
+	private <A extends AbstractState<A, H, V>,
+			H extends HeapDomain<H>,
+			V extends ValueDomain<V>,
+			F extends FunctionalLattice<F, N, AnalysisState<A, H, V>>> void wtoIterate(
+					Component<N> component,
+					CompactAdjacency<N, E, G> adjacency,
+					Map<N, AnalysisState<A, H, V>> startingPoints,
+					Map<N, Pair<AnalysisState<A, H, V>, F>> result,
+					InterproceduralAnalysis<A, H, V> interprocedural,
+					int widenAfter,
+					SemanticFunction<N, E, G, A, H, V, F> semantics)
+					throws FixpointException {
+		N head = component.getHead();
+		if (!component.isLoop()) {
+			result.put(head, computeNode(head, adjacency, startingPoints, result, interprocedural, semantics));
+			return;
+		}
+
+		// the iterations are counted from the last time the enclosing
+		// component entered this loop, so that the head is not widened right
+		// away each time an outer loop iterates over it
+		int iteration = 0;
+		while (true) {
+			Pair<AnalysisState<A, H, V>, F> computed = computeNode(head, adjacency, startingPoints, result,
+					interprocedural, semantics);
+			AnalysisState<A, H, V> newApprox = computed.getLeft();
+			F newIntermediate = computed.getRight();
+
+			Pair<AnalysisState<A, H, V>, F> old = result.get(head);
+			if (old != null)
+				try {
+					AnalysisState<A, H, V> oldApprox = old.getLeft();
+					F oldIntermediate = old.getRight();
+					if (widenAfter == 0 || iteration++ < widenAfter) {
+						newApprox = newApprox.lub(oldApprox);
+						newIntermediate = newIntermediate.lub(oldIntermediate);
+					} else {
+						newApprox = oldApprox.widening(newApprox);
+						newIntermediate = oldIntermediate.widening(newIntermediate);
+					}
+
+					if (newApprox.lessOrEqual(oldApprox) && newIntermediate.lessOrEqual(oldIntermediate))
+						// the head is stable: the body has already been
+						// iterated with this approximation
+						return;
+				} catch (SemanticException e) {
+					throw new FixpointException(
+							"Exception while updating the analysis results of '" + head + "' in " + this, e);
+				}
+
+			result.put(head, Pair.of(newApprox, newIntermediate));
+			for (Component<N> inner : component.getBody())
+				wtoIterate(inner, adjacency, startingPoints, result, interprocedural, widenAfter, semantics);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private <A extends AbstractState<A, H, V>,
+			H extends HeapDomain<H>,
+			V extends ValueDomain<V>,
+			F extends FunctionalLattice<F, N, AnalysisState<A, H, V>>> Pair<AnalysisState<A, H, V>, F> computeNode(
+					N current,
+					CompactAdjacency<N, E, G> adjacency,
+					Map<N, AnalysisState<A, H, V>> startingPoints,
+					Map<N, Pair<AnalysisState<A, H, V>, F>> result,
+					InterproceduralAnalysis<A, H, V> interprocedural,
+					SemanticFunction<N, E, G, A, H, V, F> semantics)
+					throws FixpointException {
+		if (current == null)
+			throw new FixpointException(
+					"Unknown node encountered during fixpoint execution in '" + this + "'");
+		if (!adjacency.containsNode(current))
+			throw new FixpointException("'" + current
+					+ "' is not part of this graph, and cannot be analyzed in this fixpoint computation");
+
+		AnalysisState<A, H, V> entrystate;
+		try {
+			entrystate = getEntryState(current, adjacency, startingPoints, result);
+		} catch (SemanticException e) {
+			throw new FixpointException(
+					"Exception while computing the entry state for '" + current + "' in " + this, e);
+		}
+
+		if (entrystate == null)
+			throw new FixpointException(current + " does not have an entry state");
+
+		try {
+			F intermediate = (F) mkInternalStore(entrystate);
+			AnalysisState<A, H, V> approx = semantics.compute(current, entrystate, interprocedural, intermediate);
+			return Pair.of(approx, intermediate);
+		} catch (SemanticException e) {
+			log.error("Evaluation of the semantics of '" + current + "' in " + this
+					+ " led to an exception: " + e);
+			throw new FixpointException("Semantic exception during fixpoint computation", e);
+		}
+	}
+
+	private <A extends AbstractState<A, H, V>,
+			H extends HeapDomain<H>,
+			V extends ValueDomain<V>,
+			F extends FunctionalLattice<F, N, AnalysisState<A, H, V>>> Map<N, AnalysisState<A, H, V>> flatten(
+					Map<N, Pair<AnalysisState<A, H, V>, F>> result) {
+		Map<N, AnalysisState<A, H, V>> finalResults = new NodeMap<>(result.size());
+		for (Entry<N, Pair<AnalysisState<A, H, V>, F>> e : result.entrySet()) {
+			finalResults.put(e.getKey(), e.getValue().getLeft());
+			for (Entry<N, AnalysisState<A, H, V>> ee : e.getValue().getRight())
+				if (retainsInnerResult(ee.getKey()))
+					finalResults.put(ee.getKey(), ee.getValue());
+		}
+
+		return finalResults;
+	}
+
+	/**
+	 * Yields whether or not the result computed for the given inner node (that
+	 * is, a node nested within an outer one, whose result is stored in the
+	 * {@link FunctionalLattice} built by
+	 * {@link #mkInternalStore(AnalysisState)}) should be part of the results
+	 * of fixpoint computations once they converged. Results of inner nodes are
+	 * always available during the computation. The default implementation of
+	 * this method returns {@code true}.
+	 * 
+	 * @param node the inner node
+	 * 
+	 * @return {@code true} if the result of {@code node} should be retained
+	 */
+	protected boolean retainsInnerResult(N node) {
+		return true;
+	}
+
 	/**
 	 * Builds a new instance of the {@link FunctionalLattice} that is used to
 	 * store the fixpoint results on internal nodes, that is, node that are
@@ -303,21 +479,30 @@ public abstract class FixpointGraph<G extends FixpointGraph<G, N, E>,
 			V extends ValueDomain<V>,
 			F extends FunctionalLattice<F, N, AnalysisState<A, H, V>>> AnalysisState<A, H, V> getEntryState(
 					N current,
+					CompactAdjacency<N, E, G> adjacency,
 					Map<N, AnalysisState<A, H, V>> startingPoints,
 					Map<N, Pair<AnalysisState<A, H, V>, F>> result)
 					throws SemanticException {
 		AnalysisState<A, H, V> entrystate = startingPoints.get(current);
-		Collection<N> preds = predecessorsOf(current);
-		List<AnalysisState<A, H, V>> states = new ArrayList<>(preds.size());
+		List<E> ingoing = adjacency.getIngoingEdges(current);
+		List<AnalysisState<A, H, V>> states = new ArrayList<>(ingoing.size());
+
+		for (int i = 0; i < ingoing.size(); i++) {
+			E edge = ingoing.get(i);
+			N pred = edge.getSource();
+			if (hasSourceBefore(ingoing, i, pred))
+				// only the first edge coming from each predecessor is
+				// traversed
+				continue;
 
-		for (N pred : preds)
-			if (result.containsKey(pred)) {
+			Pair<AnalysisState<A, H, V>, F> computed = result.get(pred);
+			if (computed != null) {
 				// this might not have been computed yet
-				E edge = adjacencyMatrix.getEdgeConnecting(pred, current);
-				AnalysisState<A, H, V> traversed = edge.traverse(result.get(pred).getLeft());
+				AnalysisState<A, H, V> traversed = edge.traverse(computed.getLeft());
 				// we clean it from out-of-scope variables
 				states.add(cleanUpPostState(pred, traversed));
 			}
+		}
 
 		for (AnalysisState<A, H, V> s : states)
 			if (entrystate == null)
@@ -328,6 +513,13 @@ public abstract class FixpointGraph<G extends FixpointGraph<G, N, E>,
 		return entrystate;
 	}
 
+	private static <N, E extends Edge<?, ?, ?>> boolean hasSourceBefore(List<E> edges, int index, N source) {
+		for (int i = 0; i < index; i++)
+			if (edges.get(i).getSource().equals(source))
+				return true;
+		return false;
+	}
+
 	/**
 	 * Cleans up the exit state of a node. This is an optional operation: the
 	 * default implementation of this method returns the given
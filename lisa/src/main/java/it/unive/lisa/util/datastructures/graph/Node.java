@@ -22,6 +22,16 @@ public interface Node<N extends Node<N, E, G>, E extends Edge<N, E, G>, G extend
 	 */
 	int setOffset(int offset);
 
+	/**
+	 * Yields the offset of this node, as set by {@link #setOffset(int)}.
+	 * Offsets are unique among the nodes of a graph, including nested ones,
+	 * and are assigned consecutively as nodes are added. Nodes that do not
+	 * have an offset yield {@code -1}.
+	 * 
+	 * @return the offset of this node
+	 */
+	int getOffset();
+
 	/**
 	 * Checks if this node is effectively equal to the given one, that is, if
 	 * they have the same structure while potentially being different instances.
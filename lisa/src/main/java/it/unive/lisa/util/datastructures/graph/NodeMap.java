@@ -0,0 +1,287 @@
+package it.unive.lisa.util.datastructures.graph;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A {@link Map} having {@link Node}s as keys, where each mapping is stored in
+ * an array at the position given by the offset of its key
+ * ({@link Node#getOffset()}). Since offsets are dense within a graph, this
+ * avoids hashing keys and allocating entries for each mapping. The array only
+ * spans the offsets between the smallest and the biggest ones inserted, so
+ * that maps whose keys are close to each other (e.g., the expressions nested
+ * in a node) stay small.<br>
+ * <br>
+ * Keys that do not have an offset, or whose offset is already used by a
+ * different key (e.g., when nodes of different graphs are mixed), are stored
+ * in a secondary {@link HashMap}. Nodes that are equal must have the same
+ * offset: nodes that use reference equality satisfy this trivially.
+ *
+ * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class NodeMap<K extends Node<?, ?, ?>, V> extends AbstractMap<K, V> {
+
+	private static final Object[] EMPTY = new Object[0];
+
+	/**
+	 * The offset of the key stored at position {@code 0}
+	 */
+	private int base;
+
+	private Object[] keys;
+
+	private Object[] values;
+
+	/**
+	 * The number of mappings stored in the arrays
+	 */
+	private int stored;
+
+	/**
+	 * The mappings that could not be stored in the arrays, lazily created
+	 */
+	private Map<K, V> overflow;
+
+	/**
+	 * Builds an empty map.
+	 */
+	public NodeMap() {
+		keys = EMPTY;
+		values = EMPTY;
+	}
+
+	/**
+	 * Builds an empty map, that will not need to be resized until the given
+	 * number of consecutive offsets has been inserted.
+	 *
+	 * @param capacity the initial capacity
+	 */
+	public NodeMap(int capacity) {
+		keys = new Object[capacity];
+		values = new Object[capacity];
+	}
+
+	/**
+	 * Builds a map containing the same mappings of the given one.
+	 *
+	 * @param other the map to copy
+	 */
+	public NodeMap(Map<? extends K, ? extends V> other) {
+		if (other instanceof NodeMap) {
+			NodeMap<?, ?> o = (NodeMap<?, ?>) other;
+			base = o.base;
+			keys = o.keys.length == 0 ? EMPTY : o.keys.clone();
+			values = o.values.length == 0 ? EMPTY : o.values.clone();
+			stored = o.stored;
+			if (o.overflow != null)
+				overflow = new HashMap<>(((NodeMap<? extends K, ? extends V>) other).overflow);
+		} else {
+			keys = EMPTY;
+			values = EMPTY;
+			putAll(other);
+		}
+	}
+
+	private int slotOf(Object key) {
+		if (!(key instanceof Node))
+			return -1;
+		int slot = ((Node<?, ?, ?>) key).getOffset() - base;
+		if (slot < 0 || slot >= keys.length || !Objects.equals(keys[slot], key))
+			return -1;
+		return slot;
+	}
+
+	@Override
+	public int size() {
+		return stored + (overflow == null ? 0 : overflow.size());
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return slotOf(key) >= 0 || (overflow != null && overflow.containsKey(key));
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		int slot = slotOf(key);
+		if (slot >= 0)
+			return (V) values[slot];
+		return overflow == null ? null : overflow.get(key);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V put(K key, V value) {
+		int slot = slotOf(key);
+		if (slot >= 0) {
+			V previous = (V) values[slot];
+			values[slot] = value;
+			return previous;
+		}
+
+		int offset = key == null ? -1 : key.getOffset();
+		if (offset < 0 || (overflow != null && overflow.containsKey(key)))
+			return putOverflow(key, value);
+
+		ensureCovered(offset);
+		slot = offset - base;
+		if (keys[slot] != null)
+			// the offset is taken by a different node
+			return putOverflow(key, value);
+
+		keys[slot] = key;
+		values[slot] = value;
+		stored++;
+		return null;
+	}
+
+	private V putOverflow(K key, V value) {
+		if (overflow == null)
+			overflow = new HashMap<>();
+		return overflow.put(key, value);
+	}
+
+	private void ensureCovered(int offset) {
+		if (stored == 0) {
+			base = offset;
+			if (keys.length == 0) {
+				keys = new Object[8];
+				values = new Object[8];
+			}
+			return;
+		}
+
+		if (offset >= base && offset < base + keys.length)
+			return;
+
+		int low = Math.min(base, offset);
+		int high = Math.max(base + keys.length, offset + 1);
+		int length = Math.max(high - low, keys.length * 2);
+		Object[] newKeys = new Object[length];
+		Object[] newValues = new Object[length];
+		System.arraycopy(keys, 0, newKeys, base - low, keys.length);
+		System.arraycopy(values, 0, newValues, base - low, values.length);
+		keys = newKeys;
+		values = newValues;
+		base = low;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V remove(Object key) {
+		int slot = slotOf(key);
+		if (slot < 0)
+			return overflow == null ? null : overflow.remove(key);
+
+		V previous = (V) values[slot];
+		keys[slot] = null;
+		values[slot] = null;
+		stored--;
+		return previous;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(keys, null);
+		Arrays.fill(values, null);
+		stored = 0;
+		overflow = null;
+	}
+
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		return new AbstractSet<Entry<K, V>>() {
+
+			@Override
+			public Iterator<Entry<K, V>> iterator() {
+				return new EntryIterator();
+			}
+
+			@Override
+			public int size() {
+				return NodeMap.this.size();
+			}
+		};
+	}
+
+	private class EntryIterator implements Iterator<Entry<K, V>> {
+
+		private int next = advance(0);
+
+		private int last = -1;
+
+		private Iterator<Entry<K, V>> overflowIterator;
+
+		private int advance(int from) {
+			while (from < keys.length && keys[from] == null)
+				from++;
+			return from;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next < keys.length)
+				return true;
+			if (overflowIterator == null)
+				overflowIterator = overflow == null ? null : overflow.entrySet().iterator();
+			return overflowIterator != null && overflowIterator.hasNext();
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Entry<K, V> next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+
+			if (next < keys.length) {
+				last = next;
+				next = advance(next + 1);
+				return new SlotEntry(last);
+			}
+
+			last = -1;
+			return overflowIterator.next();
+		}
+
+		@Override
+		public void remove() {
+			if (last >= 0) {
+				NodeMap.this.remove(keys[last]);
+				last = -1;
+			} else if (overflowIterator != null)
+				overflowIterator.remove();
+			else
+				throw new IllegalStateException();
+		}
+	}
+
+	private class SlotEntry extends SimpleEntry<K, V> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int slot;
+
+		@SuppressWarnings("unchecked")
+		private SlotEntry(int slot) {
+			super((K) keys[slot], (V) values[slot]);
+			this.slot = slot;
+		}
+
+		@Override
+		public V setValue(V value) {
+			values[slot] = value;
+			return super.setValue(value);
+		}
+	}
+}
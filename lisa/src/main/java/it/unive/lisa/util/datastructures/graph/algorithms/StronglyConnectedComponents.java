@@ -0,0 +1,154 @@
+package it.unive.lisa.util.datastructures.graph.algorithms;
+
+import it.unive.lisa.util.datastructures.graph.Edge;
+import it.unive.lisa.util.datastructures.graph.Graph;
+import it.unive.lisa.util.datastructures.graph.Node;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An algorithm that computes the strongly connected components of a graph,
+ * following Tarjan's algorithm. Two nodes belong to the same component if and
+ * only if each of them can be reached from the other. Components are yielded
+ * in reverse topological order: a component always comes after all the
+ * components that can be reached from it, making the order suitable for
+ * bottom-up visits (e.g., analyzing callees before their callers). The visit
+ * of the graph is iterative, and thus does not overflow the stack on deep
+ * graphs.
+ *
+ * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+ *
+ * @param <N> the type of {@link Node}s in the target graphs
+ * @param <E> the type of {@link Edge}s in the target graphs
+ * @param <G> the type of the target graphs
+ *
+ * @see <a href="https://doi.org/10.1137/0201010">R. Tarjan, Depth-first
+ *          search and linear graph algorithms</a>
+ */
+public class StronglyConnectedComponents<G extends Graph<G, N, E>, N extends Node<N, E, G>, E extends Edge<N, E, G>> {
+
+	private final List<Collection<N>> components;
+
+	private final Map<N, Integer> index;
+
+	private final Map<N, Integer> lowlink;
+
+	private final Set<N> onStack;
+
+	private final Deque<N> stack;
+
+	/**
+	 * Builds the algorithm. To run it, use {@link #build(Graph)} or
+	 * {@link #build(Graph, Collection)}.
+	 */
+	public StronglyConnectedComponents() {
+		components = new ArrayList<>();
+		index = new HashMap<>();
+		lowlink = new HashMap<>();
+		onStack = new HashSet<>();
+		stack = new ArrayDeque<>();
+	}
+
+	/**
+	 * Yields the last components computed through {@link #build(Graph)} or
+	 * {@link #build(Graph, Collection)}.
+	 *
+	 * @return the components, in reverse topological order
+	 */
+	public List<Collection<N>> getComponents() {
+		return components;
+	}
+
+	/**
+	 * Builds the strongly connected components of all the nodes of the given
+	 * graph. The returned value can also be accessed later through
+	 * {@link #getComponents()}.
+	 *
+	 * @param graph the graph whose components are to be computed
+	 *
+	 * @return the components, in reverse topological order
+	 */
+	public List<Collection<N>> build(G graph) {
+		return build(graph, graph.getNodes());
+	}
+
+	/**
+	 * Builds the strongly connected components of the nodes of the given
+	 * graph that are reachable from {@code roots}. The returned value can also
+	 * be accessed later through {@link #getComponents()}.
+	 *
+	 * @param graph the graph whose components are to be computed
+	 * @param roots the nodes where the visit of the graph starts
+	 *
+	 * @return the components, in reverse topological order
+	 */
+	public List<Collection<N>> build(G graph, Collection<N> roots) {
+		components.clear();
+		index.clear();
+		lowlink.clear();
+		onStack.clear();
+		stack.clear();
+
+		for (N root : roots)
+			if (!index.containsKey(root))
+				visit(graph, root);
+
+		index.clear();
+		lowlink.clear();
+		onStack.clear();
+		return components;
+	}
+
+	private void visit(G graph, N root) {
+		Deque<N> path = new ArrayDeque<>();
+		Deque<Iterator<N>> followers = new ArrayDeque<>();
+		enter(graph, root, path, followers);
+
+		while (!path.isEmpty()) {
+			N node = path.peek();
+			if (followers.peek().hasNext()) {
+				N follower = followers.peek().next();
+				if (!index.containsKey(follower))
+					enter(graph, follower, path, followers);
+				else if (onStack.contains(follower))
+					lowlink.put(node, Math.min(lowlink.get(node), index.get(follower)));
+				continue;
+			}
+
+			path.pop();
+			followers.pop();
+			int low = lowlink.get(node);
+			if (!path.isEmpty())
+				lowlink.put(path.peek(), Math.min(lowlink.get(path.peek()), low));
+
+			if (low == index.get(node)) {
+				Collection<N> component = new ArrayList<>();
+				N element;
+				do {
+					element = stack.pop();
+					onStack.remove(element);
+					component.add(element);
+				} while (!element.equals(node));
+				components.add(component);
+			}
+		}
+	}
+
+	private void enter(G graph, N node, Deque<N> path, Deque<Iterator<N>> followers) {
+		int num = index.size();
+		index.put(node, num);
+		lowlink.put(node, num);
+		stack.push(node);
+		onStack.add(node);
+		path.push(node);
+		followers.push(graph.followersOf(node).iterator());
+	}
+}
@@ -0,0 +1,246 @@
+package it.unive.lisa.util.datastructures.graph.algorithms;
+
+import it.unive.lisa.util.datastructures.graph.Edge;
+import it.unive.lisa.util.datastructures.graph.Graph;
+import it.unive.lisa.util.datastructures.graph.Node;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An algorithm that computes a weak topological ordering of the nodes of a
+ * graph, following Bourdoncle's recursive decomposition. The ordering is a
+ * list of {@link Component}s, where each component is either a single node or
+ * a loop: a loop has a head, that is the only node of the component that can
+ * be reached from outside of it, and a body that is itself a weak topological
+ * ordering of the remaining nodes of the loop. Every cycle in the graph goes
+ * through at least one loop head, making heads the only places where widening
+ * is needed during a fixpoint computation. The visit of the graph is
+ * iterative, and thus does not overflow the stack on deep graphs.
+ *
+ * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+ *
+ * @param <N> the type of {@link Node}s in the target graphs
+ * @param <E> the type of {@link Edge}s in the target graphs
+ * @param <G> the type of the target graphs
+ *
+ * @see <a href="https://doi.org/10.1007/BFb0039704">F. Bourdoncle, Efficient
+ *          chaotic iteration strategies with widenings</a>
+ */
+public class WeakTopologicalOrder<G extends Graph<G, N, E>, N extends Node<N, E, G>, E extends Edge<N, E, G>> {
+
+	private final List<Component<N>> order;
+
+	private final Map<N, Integer> dfn;
+
+	private final Deque<N> stack;
+
+	private int num;
+
+	/**
+	 * Builds the ordering. To run the algorithm, use
+	 * {@link #build(Graph, Collection)}.
+	 */
+	public WeakTopologicalOrder() {
+		order = new LinkedList<>();
+		dfn = new IdentityHashMap<>();
+		stack = new ArrayDeque<>();
+	}
+
+	/**
+	 * Yields the last ordering computed through
+	 * {@link #build(Graph, Collection)}.
+	 *
+	 * @return the components of the ordering, in the order they should be
+	 *             visited
+	 */
+	public List<Component<N>> getOrder() {
+		return order;
+	}
+
+	/**
+	 * Builds the weak topological ordering of the nodes of the given graph
+	 * that are reachable from {@code roots}. The returned value can also be
+	 * accessed later through {@link #getOrder()}.
+	 *
+	 * @param graph the graph whose ordering is to be computed
+	 * @param roots the nodes where the visit of the graph starts
+	 *
+	 * @return the components of the ordering, in the order they should be
+	 *             visited
+	 */
+	public List<Component<N>> build(G graph, Collection<N> roots) {
+		order.clear();
+		dfn.clear();
+		stack.clear();
+		num = 0;
+
+		// roots are visited in reverse since components get prepended
+		List<N> reversed = new LinkedList<>(roots);
+		Collections.reverse(reversed);
+		for (N root : reversed)
+			if (dfn(root) == 0)
+				visit(graph, root, order);
+
+		dfn.clear();
+		stack.clear();
+		return order;
+	}
+
+	private int dfn(N node) {
+		return dfn.getOrDefault(node, 0);
+	}
+
+	private void visit(G graph, N root, List<Component<N>> partition) {
+		Deque<Frame> frames = new ArrayDeque<>();
+		frames.push(enter(graph, root, partition));
+
+		while (!frames.isEmpty()) {
+			Frame frame = frames.peek();
+			if (frame.followers.hasNext()) {
+				N follower = frame.followers.next();
+				int min = dfn(follower);
+				if (min == 0)
+					frames.push(enter(graph, follower, frame.body == null ? frame.partition : frame.body));
+				else if (frame.body == null)
+					frame.update(min);
+				continue;
+			}
+
+			frames.pop();
+			if (frame.body != null)
+				// the body of a loop has been visited
+				frame.partition.add(0, new Component<>(frame.node, frame.body, true));
+			else if (frame.head == dfn(frame.node)) {
+				dfn.put(frame.node, Integer.MAX_VALUE);
+				N element = stack.pop();
+				if (frame.loop) {
+					while (element != frame.node) {
+						dfn.put(element, 0);
+						element = stack.pop();
+					}
+
+					// the body of the loop is visited before returning
+					frames.push(new Frame(frame.node, graph.followersOf(frame.node).iterator(), frame.partition,
+							new LinkedList<>(), frame.head));
+					continue;
+				}
+
+				frame.partition.add(0, new Component<>(frame.node, Collections.emptyList(), false));
+			}
+
+			if (!frames.isEmpty() && frames.peek().body == null)
+				frames.peek().update(frame.head);
+		}
+	}
+
+	private Frame enter(G graph, N node, List<Component<N>> partition) {
+		stack.push(node);
+		dfn.put(node, ++num);
+		return new Frame(node, graph.followersOf(node).iterator(), partition, null, num);
+	}
+
+	/**
+	 * A frame of the visit, replacing a recursive invocation. A frame either
+	 * visits a node, computing the head of its component, or visits the body
+	 * of a loop whose head is the frame's node.
+	 */
+	private final class Frame {
+
+		private final N node;
+
+		private final Iterator<N> followers;
+
+		private final List<Component<N>> partition;
+
+		/**
+		 * The body of the loop being visited, or {@code null} if this frame
+		 * visits a node
+		 */
+		private final List<Component<N>> body;
+
+		private int head;
+
+		private boolean loop;
+
+		private Frame(N node, Iterator<N> followers, List<Component<N>> partition, List<Component<N>> body,
+				int head) {
+			this.node = node;
+			this.followers = followers;
+			this.partition = partition;
+			this.body = body;
+			this.head = head;
+		}
+
+		private void update(int min) {
+			if (min <= head) {
+				head = min;
+				loop = true;
+			}
+		}
+	}
+
+	/**
+	 * A component of a weak topological ordering. A component is either a
+	 * single node, or a loop with a head and a body.
+	 *
+	 * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+	 *
+	 * @param <N> the type of {@link Node}s in the component
+	 */
+	public static final class Component<N> {
+
+		private final N head;
+
+		private final List<Component<N>> body;
+
+		private final boolean loop;
+
+		private Component(N head, List<Component<N>> body, boolean loop) {
+			this.head = head;
+			this.body = body;
+			this.loop = loop;
+		}
+
+		/**
+		 * Yields the head of this component. If this component is not a loop,
+		 * this is the only node of the component.
+		 *
+		 * @return the head
+		 */
+		public N getHead() {
+			return head;
+		}
+
+		/**
+		 * Yields the body of this component, that is, the weak topological
+		 * ordering of the nodes of the loop other than its head. The returned
+		 * list is always empty if this component is not a loop.
+		 *
+		 * @return the body
+		 */
+		public List<Component<N>> getBody() {
+			return body;
+		}
+
+		/**
+		 * Yields whether or not this component is a loop.
+		 *
+		 * @return {@code true} if that condition holds
+		 */
+		public boolean isLoop() {
+			return loop;
+		}
+
+		@Override
+		public String toString() {
+			return loop ? "(" + head + " " + body + ")" : String.valueOf(head);
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package it.unive.lisa.util.workset;
+
+import it.unive.lisa.util.datastructures.graph.Edge;
+import it.unive.lisa.util.datastructures.graph.Graph;
+import it.unive.lisa.util.datastructures.graph.Node;
+import it.unive.lisa.util.datastructures.graph.algorithms.WeakTopologicalOrder;
+import it.unive.lisa.util.datastructures.graph.algorithms.WeakTopologicalOrder.Component;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A working set of {@link Node}s that always yields the pending node that
+ * comes first in a fixed order, and that never contains the same node twice.
+ * Pending nodes are tracked through a bitset indexed by their position in the
+ * order, that is located through their offsets ({@link Node#getOffset()}).
+ * Nodes that are not part of the order are yielded after all the others, in
+ * first-in, first-out order. This implementation is <b>not</b> thread-safe.
+ *
+ * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+ *
+ * @param <N> the type of the nodes that this working set contains
+ */
+public class PriorityWorkingSet<N extends Node<?, ?, ?>> implements WorkingSet<N> {
+
+	/**
+	 * Yields a new, empty working set where nodes are prioritized according to
+	 * the given order.
+	 *
+	 * @param <N>   the type of the nodes that the returned working set
+	 *                  contains
+	 * @param order the nodes, from the one with the highest priority to the
+	 *                  one with the lowest
+	 *
+	 * @return the new working set
+	 */
+	public static <N extends Node<?, ?, ?>> PriorityWorkingSet<N> mk(List<N> order) {
+		return new PriorityWorkingSet<>(order);
+	}
+
+	/**
+	 * Yields a new, empty working set where the nodes of the given graph are
+	 * prioritized according to their reverse post-order, computed through a
+	 * depth-first visit starting at the entrypoints of the graph. In the
+	 * absence of loops, this guarantees that a node is processed only after
+	 * all its predecessors.
+	 *
+	 * @param <G>   the type of the graph
+	 * @param <N>   the type of the nodes that the returned working set
+	 *                  contains
+	 * @param <E>   the type of the edges of the graph
+	 * @param graph the graph
+	 *
+	 * @return the new working set
+	 */
+	public static <G extends Graph<G, N, E>,
+			N extends Node<N, E, G>,
+			E extends Edge<N, E, G>> PriorityWorkingSet<N> reversePostOrder(G graph) {
+		List<N> postOrder = new ArrayList<>();
+		Set<N> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		Deque<N> nodes = new ArrayDeque<>();
+		Deque<Iterator<N>> followers = new ArrayDeque<>();
+		for (N entry : graph.getEntrypoints()) {
+			if (!visited.add(entry))
+				continue;
+			nodes.push(entry);
+			followers.push(graph.followersOf(entry).iterator());
+			while (!nodes.isEmpty())
+				if (followers.peek().hasNext()) {
+					N next = followers.peek().next();
+					if (visited.add(next)) {
+						nodes.push(next);
+						followers.push(graph.followersOf(next).iterator());
+					}
+				} else {
+					postOrder.add(nodes.pop());
+					followers.pop();
+				}
+		}
+
+		Collections.reverse(postOrder);
+		return new PriorityWorkingSet<>(postOrder);
+	}
+
+	/**
+	 * Yields a new, empty working set where the nodes of the given graph are
+	 * prioritized according to their loop depth: nodes nested in more loops
+	 * come first, so that inner loops are stabilized before the nodes that
+	 * follow them are processed. Nodes with the same depth are prioritized
+	 * according to the weak topological ordering of the graph (see
+	 * {@link WeakTopologicalOrder}), computed starting at its entrypoints.
+	 *
+	 * @param <G>   the type of the graph
+	 * @param <N>   the type of the nodes that the returned working set
+	 *                  contains
+	 * @param <E>   the type of the edges of the graph
+	 * @param graph the graph
+	 *
+	 * @return the new working set
+	 */
+	public static <G extends Graph<G, N, E>,
+			N extends Node<N, E, G>,
+			E extends Edge<N, E, G>> PriorityWorkingSet<N> loopDepth(G graph) {
+		List<Component<N>> wto = new WeakTopologicalOrder<G, N, E>().build(graph, graph.getEntrypoints());
+		List<List<N>> byDepth = new ArrayList<>();
+		collect(wto, 0, byDepth);
+
+		List<N> order = new ArrayList<>();
+		for (int depth = byDepth.size() - 1; depth >= 0; depth--)
+			order.addAll(byDepth.get(depth));
+		return new PriorityWorkingSet<>(order);
+	}
+
+	private static <N> void collect(List<Component<N>> components, int depth, List<List<N>> byDepth) {
+		for (Component<N> component : components) {
+			int nodeDepth = component.isLoop() ? depth + 1 : depth;
+			while (byDepth.size() <= nodeDepth)
+				byDepth.add(new ArrayList<>());
+			byDepth.get(nodeDepth).add(component.getHead());
+			collect(component.getBody(), nodeDepth, byDepth);
+		}
+	}
+
+	/**
+	 * The nodes in the order, indexed by priority
+	 */
+	private final Object[] byPriority;
+
+	/**
+	 * The priority of each node, indexed by offset, or {@code -1}
+	 */
+	private final int[] priorities;
+
+	private final BitSet pending;
+
+	private int size;
+
+	/**
+	 * The working set containing the nodes that are not part of the order
+	 */
+	private final WorkingSet<N> others;
+
+	private PriorityWorkingSet(List<N> order) {
+		byPriority = order.toArray();
+		int max = -1;
+		for (N node : order)
+			max = Math.max(max, node.getOffset());
+		priorities = new int[max + 1];
+		Arrays.fill(priorities, -1);
+		for (int i = 0; i < byPriority.length; i++) {
+			int offset = order.get(i).getOffset();
+			if (offset >= 0 && priorities[offset] < 0)
+				priorities[offset] = i;
+		}
+
+		pending = new BitSet(byPriority.length);
+		others = UniqueWorkingSet.mk(FIFOWorkingSet.mk());
+	}
+
+	private int priorityOf(N node) {
+		int offset = node.getOffset();
+		if (offset < 0 || offset >= priorities.length)
+			return -1;
+		int priority = priorities[offset];
+		return priority >= 0 && byPriority[priority] == node ? priority : -1;
+	}
+
+	@Override
+	public void push(N e) {
+		int priority = priorityOf(e);
+		if (priority < 0)
+			others.push(e);
+		else if (!pending.get(priority)) {
+			pending.set(priority);
+			size++;
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public N pop() {
+		int next = pending.nextSetBit(0);
+		if (next < 0)
+			return others.pop();
+
+		pending.clear(next);
+		size--;
+		return (N) byPriority[next];
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public N peek() {
+		int next = pending.nextSetBit(0);
+		if (next < 0)
+			return others.peek();
+		return (N) byPriority[next];
+	}
+
+	@Override
+	public int size() {
+		return size + others.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public String toString() {
+		List<Object> elements = new ArrayList<>(size);
+		for (int i = pending.nextSetBit(0); i >= 0; i = pending.nextSetBit(i + 1))
+			elements.add(byPriority[i]);
+		return elements + (others.isEmpty() ? "" : " + " + others);
+	}
+}
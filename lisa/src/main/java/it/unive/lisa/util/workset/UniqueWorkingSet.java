@@ -0,0 +1,112 @@
+package it.unive.lisa.util.workset;
+
+import it.unive.lisa.util.datastructures.graph.Node;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * A working set of {@link Node}s that never contains the same node twice. It
+ * works by wrapping a different instance of {@link WorkingSet}, and delegating
+ * all operations to that instance, except for {@link #push(Node)}: a node will
+ * be pushed <i>only</i> if it is not already waiting to be processed. Contrarily
+ * to {@link VisitOnceWorkingSet}, a node can be pushed again after it has been
+ * popped out. Pending nodes are tracked through an array indexed by their
+ * offsets ({@link Node#getOffset()}), that is checked by identity: nodes that
+ * do not have an offset, or whose offset is already used by a different
+ * pending node (e.g., nodes of different graphs), are tracked separately. This
+ * implementation is <b>not</b> thread-safe.
+ *
+ * @author <a href="mailto:luca.negrini@unive.it">Luca Negrini</a>
+ *
+ * @param <N> the type of the nodes that this working set contains
+ */
+public class UniqueWorkingSet<N extends Node<?, ?, ?>> implements WorkingSet<N> {
+
+	/**
+	 * Yields a new, empty working set.
+	 *
+	 * @param <N> the type of the nodes that the returned working set contains
+	 * @param ws  the underlying working set
+	 *
+	 * @return the new working set
+	 */
+	public static <N extends Node<?, ?, ?>> UniqueWorkingSet<N> mk(WorkingSet<N> ws) {
+		return new UniqueWorkingSet<>(ws);
+	}
+
+	private final WorkingSet<N> ws;
+
+	/**
+	 * The pending node at each offset, or {@code null}
+	 */
+	private Object[] pending;
+
+	/**
+	 * The pending nodes that are not stored in {@link #pending}
+	 */
+	private final Set<N> others;
+
+	private UniqueWorkingSet(WorkingSet<N> ws) {
+		this.ws = ws;
+		this.pending = new Object[16];
+		this.others = Collections.newSetFromMap(new IdentityHashMap<>());
+	}
+
+	@Override
+	public void push(N e) {
+		int offset = e.getOffset();
+		if (offset < 0) {
+			if (!others.add(e))
+				return;
+		} else {
+			if (offset >= pending.length)
+				pending = Arrays.copyOf(pending, Math.max(offset + 1, pending.length * 2));
+			Object current = pending[offset];
+			if (current == e)
+				return;
+			else if (current != null) {
+				if (!others.add(e))
+					return;
+			} else if (!others.isEmpty() && others.contains(e))
+				// pushed while its offset was taken by a different node
+				return;
+			else
+				pending[offset] = e;
+		}
+
+		ws.push(e);
+	}
+
+	@Override
+	public N pop() {
+		N e = ws.pop();
+		int offset = e.getOffset();
+		if (offset >= 0 && offset < pending.length && pending[offset] == e)
+			pending[offset] = null;
+		else
+			others.remove(e);
+		return e;
+	}
+
+	@Override
+	public N peek() {
+		return ws.peek();
+	}
+
+	@Override
+	public int size() {
+		return ws.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return ws.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return ws.toString();
+	}
+}
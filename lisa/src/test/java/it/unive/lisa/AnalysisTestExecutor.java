@@ -89,24 +89,77 @@ public abstract class AnalysisTestExecutor {
 
 	}
 
+	/**
+	 * Performs a test, running the same analysis with two different
+	 * configurations and checking that they produce the same results. This is
+	 * meant for configurations that should not affect the results (e.g.,
+	 * parallel executions), and does not need expected results. The test will
+	 * fail if:
+	 * <ul>
+	 * <li>The imp file cannot be parsed (i.e. a {@link ParsingException} is
+	 * thrown)</li>
+	 * <li>The previous working directories using for the test execution cannot
+	 * be deleted</li>
+	 * <li>One of the analysis runs terminates with an
+	 * {@link AnalysisException}</li>
+	 * <li>One of the json reports cannot be found or cannot be opened</li>
+	 * <li>The two json reports are different</li>
+	 * <li>The external files mentioned in the reports are different</li>
+	 * </ul>
+	 * 
+	 * @param folder    the name of the sub-folder; this is used for searching
+	 *                      the source IMP program and as a working directory
+	 *                      for executing tests in the test execution folder
+	 * @param subfolder an additional folder that is appended to
+	 *                      {@code folder} when computing the working
+	 *                      directories, each of which is then suffixed with
+	 *                      the index of the configuration used
+	 * @param source    the name of the imp source file to be searched in
+	 *                      {@code folder}
+	 * @param first     the configuration of the first analysis to run
+	 * @param second    the configuration of the second analysis to run
+	 */
+	protected void performAndCompare(String folder, String subfolder, String source, LiSAConfiguration first,
+			LiSAConfiguration second) {
+		System.out.println("Testing " + getCaller());
+		Path target = Paths.get(EXPECTED_RESULTS_DIR, folder, source);
+		Path firstPath = Paths.get(ACTUAL_RESULTS_DIR, folder, subfolder + "-1");
+		Path secondPath = Paths.get(ACTUAL_RESULTS_DIR, folder, subfolder + "-2");
+
+		// programs are parsed twice to avoid sharing them between the runs
+		run(parse(target), firstPath, first);
+		run(parse(target), secondPath, second);
+
+		compareReports(firstPath, secondPath);
+	}
+
 	private void performAux(String folder, String subfolder, String source, LiSAConfiguration configuration) {
 		Path expectedPath = Paths.get(EXPECTED_RESULTS_DIR, folder);
 		Path actualPath = Paths.get(ACTUAL_RESULTS_DIR, folder);
 		Path target = Paths.get(expectedPath.toString(), source);
 
-		Program program = null;
-		try {
-			program = IMPFrontend.processFile(target.toString(), true);
-		} catch (ParsingException e) {
-			e.printStackTrace(System.err);
-			fail("Exception while parsing '" + target + "': " + e.getMessage());
-		}
+		Program program = parse(target);
 
 		if (subfolder != null) {
 			expectedPath = Paths.get(expectedPath.toString(), subfolder);
 			actualPath = Paths.get(actualPath.toString(), subfolder);
 		}
 
+		run(program, actualPath, configuration);
+		compareReports(expectedPath, actualPath);
+	}
+
+	private Program parse(Path target) {
+		try {
+			return IMPFrontend.processFile(target.toString(), true);
+		} catch (ParsingException e) {
+			e.printStackTrace(System.err);
+			fail("Exception while parsing '" + target + "': " + e.getMessage());
+			return null;
+		}
+	}
+
+	private void run(Program program, Path actualPath, LiSAConfiguration configuration) {
 		File workdir = actualPath.toFile();
 		if (workdir.exists()) {
 			System.out.println(workdir + " already exists: deleting...");
@@ -128,7 +181,9 @@ public abstract class AnalysisTestExecutor {
 			e.printStackTrace(System.err);
 			fail("Analysis terminated with errors");
 		}
+	}
 
+	private void compareReports(Path expectedPath, Path actualPath) {
 		File expFile = Paths.get(expectedPath.toString(), "report.json").toFile();
 		File actFile = Paths.get(actualPath.toString(), "report.json").toFile();
 		try (FileReader l = new FileReader(expFile); FileReader r = new FileReader(actFile)) {
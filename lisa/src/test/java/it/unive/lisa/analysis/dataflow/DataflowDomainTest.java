@@ -0,0 +1,121 @@
+package it.unive.lisa.analysis.dataflow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.impl.dataflow.AvailableExpressions;
+import it.unive.lisa.analysis.impl.dataflow.ReachingDefinitions;
+import it.unive.lisa.caches.Caches;
+import it.unive.lisa.program.SourceCodeLocation;
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.CodeLocation;
+import it.unive.lisa.program.cfg.ProgramPoint;
+import it.unive.lisa.symbolic.types.IntType;
+import it.unive.lisa.symbolic.value.BinaryExpression;
+import it.unive.lisa.symbolic.value.BinaryOperator;
+import it.unive.lisa.symbolic.value.Constant;
+import it.unive.lisa.symbolic.value.Identifier;
+import it.unive.lisa.symbolic.value.Variable;
+import it.unive.lisa.util.collections.externalSet.ExternalSet;
+import java.util.Collections;
+import org.junit.Test;
+
+public class DataflowDomainTest {
+
+	private static final SourceCodeLocation LOC = new SourceCodeLocation("unknown", 0, 0);
+
+	private static final Variable X = new Variable(Caches.types().mkSingletonSet(IntType.INSTANCE), "x", LOC);
+
+	private static final Variable Y = new Variable(Caches.types().mkSingletonSet(IntType.INSTANCE), "y", LOC);
+
+	private static final Constant ONE = new Constant(IntType.INSTANCE, 1, LOC);
+
+	private static ProgramPoint pp() {
+		return new ProgramPoint() {
+
+			@Override
+			public CFG getCFG() {
+				return null;
+			}
+
+			@Override
+			public CodeLocation getLocation() {
+				return LOC;
+			}
+		};
+	}
+
+	private static boolean definesOnly(PossibleForwardDataflowDomain<ReachingDefinitions> domain,
+			Identifier id, int count) {
+		return domain.getDataflowElements().stream().filter(e -> e.getIdentifier().equals(id)).count() == count;
+	}
+
+	@Test
+	public void testCachesAreClearedWhenAnAnalysisStarts() throws SemanticException {
+		PossibleForwardDataflowDomain<ReachingDefinitions> domain = new PossibleForwardDataflowDomain<>(
+				new ReachingDefinitions());
+		PossibleForwardDataflowDomain<ReachingDefinitions> assigned = domain.assign(X, ONE, pp());
+
+		DataflowElementCache<ReachingDefinitions> cache = new DataflowElementCache<>();
+		cache.mkSet(assigned.getDataflowElements());
+		assertEquals(1, cache.size());
+		assertEquals(1, cache.elementsOf(Collections.singleton(X)).size());
+
+		Caches.clearAnalysisCaches();
+		assertEquals(0, cache.size());
+		assertTrue(cache.elementsOf(Collections.singleton(X)).isEmpty());
+
+		// the singleton can still be used by the next analysis
+		assertEquals(1, domain.assign(X, ONE, pp()).assign(X, ONE, pp()).size());
+	}
+
+	@Test
+	public void testReachingDefinitionsGenKill() throws SemanticException {
+		PossibleForwardDataflowDomain<ReachingDefinitions> domain = new PossibleForwardDataflowDomain<>(
+				new ReachingDefinitions());
+		assertTrue(domain.elements() instanceof ExternalSet);
+
+		PossibleForwardDataflowDomain<ReachingDefinitions> first = domain.assign(X, ONE, pp()).assign(Y, ONE, pp());
+		PossibleForwardDataflowDomain<ReachingDefinitions> second = first.assign(X, ONE, pp());
+		assertEquals(2, second.size());
+		assertTrue(definesOnly(second, X, 1));
+		assertTrue(definesOnly(second, Y, 1));
+		assertFalse(second.elements().containsAll(first.elements()));
+
+		PossibleForwardDataflowDomain<ReachingDefinitions> lub = first.lub(second);
+		assertEquals(3, lub.size());
+		assertTrue(definesOnly(lub, X, 2));
+		assertTrue(first.lessOrEqual(lub));
+		assertTrue(second.lessOrEqual(lub));
+		assertFalse(lub.lessOrEqual(second));
+
+		PossibleForwardDataflowDomain<ReachingDefinitions> forgotten = lub.forgetIdentifier(X);
+		assertEquals(1, forgotten.size());
+		assertTrue(definesOnly(forgotten, Y, 1));
+		assertSame(forgotten, forgotten.forgetIdentifier(X));
+	}
+
+	@Test
+	public void testAvailableExpressionsGenKill() throws SemanticException {
+		DefiniteForwardDataflowDomain<AvailableExpressions> domain = new DefiniteForwardDataflowDomain<>(
+				new AvailableExpressions());
+		BinaryExpression xPlusOne = new BinaryExpression(Caches.types().mkSingletonSet(IntType.INSTANCE), X, ONE,
+				BinaryOperator.NUMERIC_ADD, LOC);
+
+		DefiniteForwardDataflowDomain<AvailableExpressions> first = domain.assign(Y, xPlusOne, pp());
+		assertEquals(1, first.size());
+		// assigning x kills the expressions using it
+		DefiniteForwardDataflowDomain<AvailableExpressions> second = first.assign(X, ONE, pp());
+		assertTrue(second.getDataflowElements().stream().noneMatch(e -> e.getIdentifier().equals(Y)));
+
+		DefiniteForwardDataflowDomain<AvailableExpressions> lub = first.lub(second);
+		// the lub is the intersection, that is, the least precise element
+		assertTrue(first.lessOrEqual(lub));
+		assertTrue(second.lessOrEqual(lub));
+		assertTrue(lub.getDataflowElements().stream().allMatch(e -> first.getDataflowElements().contains(e)
+				&& second.getDataflowElements().contains(e)));
+	}
+}
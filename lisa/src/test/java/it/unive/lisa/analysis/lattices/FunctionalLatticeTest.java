@@ -0,0 +1,47 @@
+package it.unive.lisa.analysis.lattices;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.impl.numeric.Sign;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
+import it.unive.lisa.caches.Caches;
+import it.unive.lisa.program.SyntheticLocation;
+import it.unive.lisa.symbolic.value.Constant;
+import it.unive.lisa.symbolic.value.Variable;
+import it.unive.lisa.type.Untyped;
+import org.junit.Test;
+
+public class FunctionalLatticeTest {
+
+	private static Variable variable(String name) {
+		return new Variable(Caches.types().mkSingletonSet(Untyped.INSTANCE), name, SyntheticLocation.INSTANCE);
+	}
+
+	private static Constant constant(int value) {
+		return new Constant(Untyped.INSTANCE, value, SyntheticLocation.INSTANCE);
+	}
+
+	@Test
+	public void testUnchangedLiftDoesNotShareTheFunction() throws SemanticException {
+		Variable x = variable("x"), y = variable("y");
+		ValueEnvironment<Sign> small = new ValueEnvironment<>(new Sign()).assign(x, constant(1), null);
+		ValueEnvironment<Sign> big = small.assign(y, constant(-1), null);
+
+		// small <= big, so no value of big changes
+		ValueEnvironment<Sign> lub = big.lub(small);
+		assertEquals(big.getMap(), lub.getMap());
+		assertNotSame(big, lub);
+		assertNotSame(big.getMap(), lub.getMap());
+
+		// updating the result in place does not affect the operands
+		lub.getMap().put(variable("z"), lub.getState(x));
+		assertFalse(big.getKeys().contains(variable("z")));
+
+		ValueEnvironment<Sign> widening = big.widening(small);
+		assertEquals(big.getMap(), widening.getMap());
+		assertNotSame(big.getMap(), widening.getMap());
+	}
+}
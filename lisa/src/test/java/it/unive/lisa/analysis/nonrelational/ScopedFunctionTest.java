@@ -0,0 +1,148 @@
+package it.unive.lisa.analysis.nonrelational;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import it.unive.lisa.analysis.ScopeToken;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.impl.numeric.Interval;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
+import it.unive.lisa.caches.Caches;
+import it.unive.lisa.program.SourceCodeLocation;
+import it.unive.lisa.symbolic.value.HeapLocation;
+import it.unive.lisa.symbolic.value.Identifier;
+import it.unive.lisa.symbolic.value.Variable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+public class ScopedFunctionTest {
+
+	private static final SourceCodeLocation LOC = new SourceCodeLocation("unknown", 0, 0);
+
+	private static final ScopeToken CALL = new ScopeToken(() -> new SourceCodeLocation("unknown", 1, 0));
+
+	private static final ScopeToken NESTED = new ScopeToken(() -> new SourceCodeLocation("unknown", 2, 0));
+
+	private static final Variable X = new Variable(Caches.types().mkEmptySet(), "x", LOC);
+
+	private static final Variable Y = new Variable(Caches.types().mkEmptySet(), "y", LOC);
+
+	private static final Variable Z = new Variable(Caches.types().mkEmptySet(), "z", LOC);
+
+	private static final HeapLocation H = new HeapLocation(Caches.types().mkEmptySet(), "h", true, LOC);
+
+	private static Identifier push(Identifier id, ScopeToken scope) throws SemanticException {
+		return (Identifier) id.pushScope(scope);
+	}
+
+	private static ValueEnvironment<Interval> caller() {
+		Map<Identifier, Interval> function = new HashMap<>();
+		function.put(X, new Interval(1, 1));
+		function.put(Y, new Interval(2, 2));
+		function.put(H, new Interval(3, 3));
+		return new ValueEnvironment<>(new Interval(), function);
+	}
+
+	@Test
+	public void testPushMatchesEagerRenaming() throws SemanticException {
+		ValueEnvironment<Interval> pushed = caller().pushScope(CALL);
+		assertTrue(pushed.getMap() instanceof ScopedFunction);
+
+		Map<Identifier, Interval> expected = new HashMap<>();
+		expected.put(push(X, CALL), new Interval(1, 1));
+		expected.put(push(Y, CALL), new Interval(2, 2));
+		expected.put(H, new Interval(3, 3));
+		assertEquals(expected, pushed.getMap());
+		assertEquals(pushed.getMap(), expected);
+		assertEquals(expected.hashCode(), pushed.getMap().hashCode());
+		assertEquals(new ValueEnvironment<>(new Interval(), expected), pushed);
+		assertFalse(pushed.getMap().containsKey(X));
+		assertEquals(new Interval(3, 3), pushed.getState(H));
+	}
+
+	@Test
+	public void testPopMatchesEagerRenaming() throws SemanticException {
+		ValueEnvironment<Interval> lazy = caller().pushScope(CALL);
+		// the eager renaming is used on functions that are not scoped
+		ValueEnvironment<Interval> eager = new ValueEnvironment<>(new Interval(), new HashMap<>(lazy.getMap()));
+
+		for (Map<Identifier, Interval> function : Arrays.asList(lazy.getMap(), eager.getMap())) {
+			function.put(Z, new Interval(4, 4));
+			function.put(H, new Interval(5, 5));
+			function.remove(push(Y, CALL));
+		}
+
+		ValueEnvironment<Interval> lazyPopped = lazy.popScope(CALL);
+		ValueEnvironment<Interval> eagerPopped = eager.popScope(CALL);
+		assertFalse(lazyPopped.getMap() instanceof ScopedFunction);
+		assertEquals(eagerPopped, lazyPopped);
+
+		Map<Identifier, Interval> expected = new HashMap<>();
+		expected.put(X, new Interval(1, 1));
+		expected.put(H, new Interval(5, 5));
+		assertEquals(expected, lazyPopped.getMap());
+	}
+
+	@Test
+	public void testNestedScopes() throws SemanticException {
+		ValueEnvironment<Interval> caller = caller();
+		ValueEnvironment<Interval> nested = caller.pushScope(CALL).pushScope(NESTED);
+		assertEquals(new Interval(1, 1), nested.getState(push(push(X, CALL), NESTED)));
+		assertEquals(new Interval(3, 3), nested.getState(H));
+		assertEquals(3, nested.getMap().size());
+		assertEquals(caller, nested.popScope(NESTED).popScope(CALL));
+	}
+
+	@Test
+	public void testCopiesSharingTheCallerAreCompared() throws SemanticException {
+		ValueEnvironment<Interval> pushed = caller().pushScope(CALL);
+		ValueEnvironment<Interval> wider = new ValueEnvironment<>(new Interval(),
+				new ScopedFunction<>((ScopedFunction<Interval>) pushed.getMap()));
+		wider.getMap().put(push(X, CALL), new Interval(0, 10));
+		wider.getMap().put(Z, new Interval(4, 4));
+
+		assertTrue(pushed.lessOrEqual(wider));
+		assertFalse(wider.lessOrEqual(pushed));
+		assertEquals(new Interval(1, 1), pushed.getState(push(X, CALL)));
+		assertEquals(wider.getMap(), pushed.lub(wider).getMap());
+	}
+
+	@Test
+	public void testBehavesLikeHashMap() throws SemanticException {
+		Map<Identifier, Interval> outer = caller().getMap();
+		List<Identifier> keys = new ArrayList<>();
+		for (int i = 0; i < 20; i++)
+			keys.add(new Variable(Caches.types().mkEmptySet(), "v" + i, LOC));
+		for (Identifier id : new ArrayList<>(outer.keySet()))
+			keys.add(push(id, CALL));
+		keys.add(H);
+
+		Random random = new Random(42);
+		ScopedFunction<Interval> actual = new ScopedFunction<>(outer, CALL);
+		Map<Identifier, Interval> expected = new HashMap<>(actual);
+		for (int i = 0; i < 2000; i++) {
+			Identifier key = keys.get(random.nextInt(keys.size()));
+			if (random.nextInt(3) == 0)
+				assertEquals(expected.remove(key), actual.remove(key));
+			else {
+				Interval value = new Interval(i, i);
+				assertEquals(expected.put(key, value), actual.put(key, value));
+			}
+			assertEquals(expected.size(), actual.size());
+			if (random.nextInt(10) == 0)
+				actual = new ScopedFunction<>(actual);
+		}
+
+		assertEquals(expected, actual);
+		assertEquals(actual, expected);
+		assertEquals(expected.hashCode(), actual.hashCode());
+		for (Identifier key : keys)
+			assertEquals(expected.get(key), actual.get(key));
+	}
+}
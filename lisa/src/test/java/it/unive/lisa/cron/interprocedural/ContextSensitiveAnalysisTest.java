@@ -13,6 +13,8 @@ import it.unive.lisa.analysis.impl.numeric.Sign;
 import it.unive.lisa.interprocedural.callgraph.impl.RTACallGraph;
 import it.unive.lisa.interprocedural.impl.ContextBasedAnalysis;
 import it.unive.lisa.interprocedural.impl.RecursionFreeToken;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.junit.Test;
 
 public class ContextSensitiveAnalysisTest extends AnalysisTestExecutor {
@@ -77,4 +79,62 @@ public class ContextSensitiveAnalysisTest extends AnalysisTestExecutor {
 		perform("interprocedural", "RTAContextSensitive6", "programContextSensitive5.imp", conf);
 	}
 
+	@Test
+	public void testRTAContextSensitiveParallel() throws AnalysisSetupException {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			LiSAConfiguration conf = new LiSAConfiguration().setInferTypes(true)
+					.setAbstractState(getDefaultFor(AbstractState.class, getDefaultFor(HeapDomain.class), new Sign()))
+					.setDumpAnalysis(true)
+					.setInterproceduralAnalysis(
+							new ContextBasedAnalysis<>(RecursionFreeToken.getSingleton(), executor))
+					.setCallGraph(new RTACallGraph());
+			// results must be the same of the sequential analysis
+			perform("interprocedural", "RTAContextSensitive4", "programContextSensitive3.imp", conf);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testRTAContextSensitiveRecursionParallel() throws AnalysisSetupException {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			performAndCompare("interprocedural", "RTAContextSensitiveRecursion", "programRecursive.imp",
+					recursionFreeConf(null), recursionFreeConf(executor));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testRTAContextSensitiveEntrypointsParallel() throws AnalysisSetupException {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			performAndCompare("interprocedural", "RTAContextSensitiveEntrypoints", "programMultipleEntrypoints.imp",
+					recursionFreeConf(null), recursionFreeConf(executor));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static LiSAConfiguration recursionFreeConf(ExecutorService executor) throws AnalysisSetupException {
+		return new LiSAConfiguration().setInferTypes(true)
+				.setAbstractState(getDefaultFor(AbstractState.class, getDefaultFor(HeapDomain.class), new Sign()))
+				.setDumpAnalysis(true)
+				.setInterproceduralAnalysis(new ContextBasedAnalysis<>(RecursionFreeToken.getSingleton(), executor))
+				.setCallGraph(new RTACallGraph());
+	}
+
+	@Test
+	public void testRTAContextSensitiveDependencies() throws AnalysisSetupException {
+		LiSAConfiguration conf = new LiSAConfiguration().setInferTypes(true)
+				.setAbstractState(getDefaultFor(AbstractState.class, getDefaultFor(HeapDomain.class), new Sign()))
+				.setDumpAnalysis(true)
+				.setInterproceduralAnalysis(new ContextBasedAnalysis<>(RecursionFreeToken.getSingleton(), null, true))
+				.setCallGraph(new RTACallGraph());
+		// results must be the same of the ones obtained by restarting the
+		// analysis
+		perform("interprocedural", "RTAContextSensitive4", "programContextSensitive3.imp", conf);
+	}
 }
@@ -0,0 +1,100 @@
+package it.unive.lisa.interprocedural.callgraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import it.unive.lisa.caches.Caches;
+import it.unive.lisa.imp.types.ClassType;
+import it.unive.lisa.program.CompilationUnit;
+import it.unive.lisa.program.Program;
+import it.unive.lisa.program.SourceCodeLocation;
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.CFGDescriptor;
+import it.unive.lisa.program.cfg.NativeCFG;
+import it.unive.lisa.program.cfg.Parameter;
+import it.unive.lisa.program.cfg.statement.CFGCall;
+import it.unive.lisa.program.cfg.statement.Call;
+import it.unive.lisa.program.cfg.statement.Expression;
+import it.unive.lisa.program.cfg.statement.Ret;
+import it.unive.lisa.program.cfg.statement.UnresolvedCall;
+import it.unive.lisa.program.cfg.statement.UnresolvedCall.ResolutionStrategy;
+import it.unive.lisa.program.cfg.statement.VariableRef;
+import it.unive.lisa.type.Type;
+import it.unive.lisa.util.collections.externalSet.ExternalSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import org.junit.Test;
+
+public class BaseCallGraphTest {
+
+	private static final SourceCodeLocation LOCATION = new SourceCodeLocation("test", 0, 0);
+
+	/**
+	 * A call graph whose receivers can have the types stored in a set that is
+	 * updated in place, as the runtime types computed by the analysis, and
+	 * that counts how many times the edges of a call are registered.
+	 */
+	private static class CountingCallGraph extends BaseCallGraph {
+
+		private final ExternalSet<Type> receivers = Caches.types().mkEmptySet();
+
+		private int registrations;
+
+		@Override
+		protected Collection<Type> getPossibleTypesOfReceiver(Expression receiver) {
+			return receivers;
+		}
+
+		@Override
+		void registerCall(CFG caller, Collection<CFG> targets, Collection<NativeCFG> nativeTargets) {
+			registrations++;
+			super.registerCall(caller, targets, nativeTargets);
+		}
+	}
+
+	private static CFG foo(CompilationUnit unit) {
+		CFG foo = new CFG(new CFGDescriptor(LOCATION, unit, true, "foo", new Parameter(LOCATION, "this")));
+		foo.addNode(new Ret(foo, LOCATION), true);
+		unit.addInstanceCFG(foo);
+		return foo;
+	}
+
+	@Test
+	public void testResolutionsAreCachedUntilTypesChange() throws CallGraphConstructionException,
+			CallResolutionException {
+		Program program = new Program();
+		CompilationUnit a = new CompilationUnit(LOCATION, "A", false);
+		CompilationUnit b = new CompilationUnit(LOCATION, "B", false);
+		program.addCompilationUnit(a);
+		program.addCompilationUnit(b);
+		CFG fooA = foo(a), fooB = foo(b);
+
+		CFG main = new CFG(new CFGDescriptor(LOCATION, program, false, "main"));
+		UnresolvedCall call = new UnresolvedCall(main, LOCATION, ResolutionStrategy.STATIC_TYPES, true, "foo",
+				new VariableRef(main, LOCATION, "x"));
+		main.addNode(call, true);
+		program.addCFG(main);
+		program.addEntryPoint(main);
+
+		CountingCallGraph graph = new CountingCallGraph();
+		graph.init(program);
+		graph.receivers.add(ClassType.lookup("A", a));
+
+		Call first = graph.resolve(call);
+		assertEquals(1, graph.registrations);
+		assertEquals(new HashSet<>(Arrays.asList(fooA)), new HashSet<>(((CFGCall) first).getTargets()));
+
+		Call second = graph.resolve(call);
+		assertEquals("Resolving with the same types updated the graph", 1, graph.registrations);
+		assertEquals(new HashSet<>(Arrays.asList(fooA)), new HashSet<>(((CFGCall) second).getTargets()));
+
+		// the set is updated in place, as the analysis does with runtime types
+		graph.receivers.add(ClassType.lookup("B", b));
+		Call third = graph.resolve(call);
+		assertEquals("Resolving with different types did not update the graph", 2, graph.registrations);
+		assertEquals(new HashSet<>(Arrays.asList(fooA, fooB)), new HashSet<>(((CFGCall) third).getTargets()));
+		assertTrue(graph.getCallees(main).contains(fooB));
+		assertTrue(graph.getCallers(fooB).contains(main));
+	}
+}
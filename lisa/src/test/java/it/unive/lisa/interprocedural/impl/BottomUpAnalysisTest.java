@@ -0,0 +1,130 @@
+package it.unive.lisa.interprocedural.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import it.unive.lisa.analysis.AnalysisState;
+import it.unive.lisa.analysis.CFGWithAnalysisResults;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.SimpleAbstractState;
+import it.unive.lisa.analysis.impl.heap.MonolithicHeap;
+import it.unive.lisa.analysis.impl.numeric.Sign;
+import it.unive.lisa.analysis.lattices.ExpressionSet;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
+import it.unive.lisa.caches.Caches;
+import it.unive.lisa.imp.IMPFrontend;
+import it.unive.lisa.imp.ParsingException;
+import it.unive.lisa.interprocedural.InterproceduralAnalysisException;
+import it.unive.lisa.interprocedural.callgraph.BaseCallGraph;
+import it.unive.lisa.interprocedural.callgraph.CallGraphConstructionException;
+import it.unive.lisa.interprocedural.callgraph.CallGraphEdge;
+import it.unive.lisa.interprocedural.callgraph.CallGraphNode;
+import it.unive.lisa.interprocedural.callgraph.impl.RTACallGraph;
+import it.unive.lisa.program.Program;
+import it.unive.lisa.program.ProgramValidationException;
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.util.datastructures.graph.FixpointException;
+import it.unive.lisa.util.datastructures.graph.algorithms.StronglyConnectedComponents;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class BottomUpAnalysisTest {
+
+	private static final String SOURCE = "class rec { "
+			+ "main() { def x = this.even(10); def y = this.leaf(); return x; } "
+			+ "even(n) { if (n == 0) { return 1; } else { return this.odd(n - 1); } } "
+			+ "odd(n) { if (n == 0) { return 0; } else { return this.even(n - 1); } } "
+			+ "leaf() { return -1; } }";
+
+	private static Program program() throws ParsingException, ProgramValidationException {
+		Program p = IMPFrontend.processText(SOURCE);
+		// finalize the program as done by LiSA before the analysis
+		Caches.types().clear();
+		Caches.types().mkSet(p.getRegisteredTypes());
+		p.validateAndFinalize();
+		return p;
+	}
+
+	private static CFG cfg(Program p, String name) {
+		return p.getAllCFGs().stream().filter(c -> c.getDescriptor().getName().equals(name)).findFirst().get();
+	}
+
+	private Map<CFG, CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>,
+			MonolithicHeap, ValueEnvironment<Sign>>> run(Program p, BaseCallGraph callgraph,
+					ExecutorService executor)
+					throws InterproceduralAnalysisException, CallGraphConstructionException, FixpointException {
+		BottomUpAnalysis<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> analysis = new BottomUpAnalysis<>(executor);
+		callgraph.init(p);
+		analysis.init(p, callgraph);
+		analysis.fixpoint(new AnalysisState<>(
+				new SimpleAbstractState<>(new MonolithicHeap(), new ValueEnvironment<>(new Sign())),
+				new ExpressionSet<>()));
+
+		Map<CFG, CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>>> results = new HashMap<>();
+		for (CFG cfg : p.getAllCFGs()) {
+			assertEquals("Wrong number of results for " + cfg, 1, analysis.getAnalysisResultsOf(cfg).size());
+			results.put(cfg, analysis.getAnalysisResultsOf(cfg).iterator().next());
+		}
+		return results;
+	}
+
+	@Test
+	public void testComponentsOfRecursiveCalls() throws ParsingException, ProgramValidationException,
+			InterproceduralAnalysisException, CallGraphConstructionException, FixpointException {
+		Program p = program();
+		RTACallGraph callgraph = new RTACallGraph();
+		run(p, callgraph, null);
+
+		List<Collection<CFG>> components = new StronglyConnectedComponents<BaseCallGraph, CallGraphNode,
+				CallGraphEdge>().build(callgraph).stream()
+				.map(c -> c.stream().map(n -> (CFG) n.getCodeMember()).collect(Collectors.toList()))
+				.collect(Collectors.toList());
+
+		int recursive = -1, main = -1, leaf = -1;
+		for (int i = 0; i < components.size(); i++) {
+			Collection<CFG> component = components.get(i);
+			if (component.contains(cfg(p, "even"))) {
+				assertTrue("even and odd are not in the same component", component.contains(cfg(p, "odd")));
+				assertEquals(2, component.size());
+				recursive = i;
+			} else if (component.contains(cfg(p, "main"))) {
+				assertEquals(1, component.size());
+				main = i;
+			} else if (component.contains(cfg(p, "leaf"))) {
+				assertEquals(1, component.size());
+				leaf = i;
+			}
+		}
+
+		assertTrue("Missing components", recursive >= 0 && main >= 0 && leaf >= 0);
+		assertTrue("Callees must come before their callers", recursive < main && leaf < main);
+	}
+
+	@Test
+	public void testParallelAnalysisMatchesSequentialOne() throws ParsingException, ProgramValidationException,
+			InterproceduralAnalysisException, CallGraphConstructionException, FixpointException,
+			SemanticException {
+		Program p = program();
+		Map<CFG, CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>>> sequential = run(p, new RTACallGraph(), null);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			Map<CFG, CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>,
+					MonolithicHeap, ValueEnvironment<Sign>>> parallel = run(p, new RTACallGraph(), executor);
+			for (CFG cfg : p.getAllCFGs())
+				assertEquals("Different results for " + cfg, sequential.get(cfg).getExitState(),
+						parallel.get(cfg).getExitState());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
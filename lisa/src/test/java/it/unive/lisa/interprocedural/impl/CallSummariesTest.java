@@ -0,0 +1,131 @@
+package it.unive.lisa.interprocedural.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import it.unive.lisa.analysis.AnalysisState;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.SimpleAbstractState;
+import it.unive.lisa.analysis.impl.heap.MonolithicHeap;
+import it.unive.lisa.analysis.impl.numeric.Sign;
+import it.unive.lisa.analysis.lattices.ExpressionSet;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
+import it.unive.lisa.caches.Caches;
+import it.unive.lisa.program.CompilationUnit;
+import it.unive.lisa.program.SourceCodeLocation;
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.CFGDescriptor;
+import it.unive.lisa.symbolic.value.Constant;
+import it.unive.lisa.symbolic.value.Variable;
+import it.unive.lisa.type.Untyped;
+import org.junit.Test;
+
+public class CallSummariesTest {
+
+	private static final SourceCodeLocation UNKNOWN = new SourceCodeLocation("unknown", 0, 0);
+
+	private static final CompilationUnit UNIT = new CompilationUnit(UNKNOWN, "foo", false);
+
+	private static final MonolithicHeap HEAP = new MonolithicHeap();
+
+	private static AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+			ValueEnvironment<Sign>> state(int... values) throws SemanticException {
+		// each value is assigned to a different variable, and the state with
+		// no values is the empty one
+		AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> state = new AnalysisState<>(
+						new SimpleAbstractState<>(HEAP, new ValueEnvironment<>(new Sign())), new ExpressionSet<>());
+		for (int i = 0; i < values.length; i++)
+			state = state.assign(new Variable(Caches.types().mkSingletonSet(Untyped.INSTANCE), "x" + i, UNKNOWN),
+					new Constant(Untyped.INSTANCE, values[i], UNKNOWN), null);
+		return state;
+	}
+
+	@Test
+	public void testSummariesAreBound() throws SemanticException {
+		CFG cfg = new CFG(new CFGDescriptor(UNKNOWN, UNIT, true, "foo"));
+		CallSummaries<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> summaries = new CallSummaries<>(2);
+		ContextSensitivityToken token = ContextInsensitiveToken.getSingleton();
+
+		summaries.put(cfg, token, state(1), state(10));
+		summaries.put(cfg, token, state(-1), state(-10));
+		// the first summary becomes the most recently used one
+		assertEquals(state(10), summaries.get(cfg, token, state(1)));
+		summaries.put(cfg, token, state(0), state(0));
+
+		assertEquals(state(10), summaries.get(cfg, token, state(1)));
+		assertNull(summaries.get(cfg, token, state(-1)));
+		assertEquals(state(0), summaries.get(cfg, token, state(0)));
+		assertEquals(3, summaries.getHits());
+		assertEquals(1, summaries.getMisses());
+	}
+
+	@Test
+	public void testSummariesCoverSmallerEntryStates() throws SemanticException {
+		CFG cfg = new CFG(new CFGDescriptor(UNKNOWN, UNIT, true, "foo"));
+		CallSummaries<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> summaries = new CallSummaries<>(2);
+		ContextSensitivityToken token = ContextInsensitiveToken.getSingleton();
+
+		// unbound variables are bottom, so a state binding fewer variables is
+		// smaller
+		summaries.put(cfg, token, state(1, 1), state(10));
+		assertEquals(state(10), summaries.get(cfg, token, state(1)));
+		assertEquals(state(10), summaries.get(cfg, token, state()));
+		assertNull(summaries.get(cfg, token, state(1, -1)));
+		assertNull(summaries.get(cfg, token, state(1, 1, 1)));
+	}
+
+	@Test
+	public void testSummariesAreForgotten() throws SemanticException {
+		CFG cfg = new CFG(new CFGDescriptor(UNKNOWN, UNIT, true, "foo"));
+		CFG other = new CFG(new CFGDescriptor(UNKNOWN, UNIT, true, "bar"));
+		CallSummaries<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> summaries = new CallSummaries<>(2);
+		ContextSensitivityToken token = ContextInsensitiveToken.getSingleton();
+		ContextSensitivityToken scoped = SingleScopeToken.getSingleton();
+		AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> exit = state(10);
+
+		summaries.put(cfg, token, state(1), exit);
+		summaries.put(cfg, scoped, state(1), exit);
+		summaries.put(other, token, state(1), exit);
+
+		assertTrue(summaries.forget(cfg, scoped));
+		assertFalse(summaries.forget(cfg, scoped));
+		assertNull(summaries.get(cfg, scoped, state(1)));
+		assertSame(exit, summaries.get(cfg, token, state(1)));
+
+		summaries.forget(cfg);
+		assertNull(summaries.get(cfg, token, state(1)));
+		assertSame(exit, summaries.get(other, token, state(1)));
+	}
+
+	@Test
+	public void testDisabledSummaries() throws SemanticException {
+		CFG cfg = new CFG(new CFGDescriptor(UNKNOWN, UNIT, true, "foo"));
+		CallSummaries<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> summaries = new CallSummaries<>(0);
+		ContextSensitivityToken token = ContextInsensitiveToken.getSingleton();
+
+		assertFalse(summaries.isEnabled());
+		summaries.put(cfg, token, state(1), state(10));
+		assertNull(summaries.get(cfg, token, state(1)));
+	}
+
+	@Test
+	public void testNegativeBound() {
+		try {
+			new CallSummaries<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+					ValueEnvironment<Sign>>(-1);
+			fail("A negative bound has been accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package it.unive.lisa.interprocedural.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import it.unive.lisa.analysis.AnalysisState;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.SimpleAbstractState;
+import it.unive.lisa.analysis.impl.heap.MonolithicHeap;
+import it.unive.lisa.analysis.impl.numeric.Sign;
+import it.unive.lisa.analysis.lattices.ExpressionSet;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
+import it.unive.lisa.caches.Caches;
+import it.unive.lisa.imp.IMPFrontend;
+import it.unive.lisa.imp.ParsingException;
+import it.unive.lisa.interprocedural.InterproceduralAnalysisException;
+import it.unive.lisa.interprocedural.callgraph.CallGraphConstructionException;
+import it.unive.lisa.interprocedural.callgraph.impl.RTACallGraph;
+import it.unive.lisa.program.Program;
+import it.unive.lisa.program.ProgramValidationException;
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.symbolic.value.Identifier;
+import it.unive.lisa.util.datastructures.graph.FixpointException;
+import org.junit.Test;
+
+public class ContextBasedAnalysisTest {
+
+	private static final String SOURCE = "class budget { "
+			+ "main() { def a = this.id(1); def b = this.id(-1); def c = this.id(0); return a; } "
+			+ "id(x) { return x; } }";
+
+	private static CFG cfg(Program p, String name) {
+		return p.getAllCFGs().stream().filter(c -> c.getDescriptor().getName().equals(name)).findFirst().get();
+	}
+
+	private ContextBasedAnalysis<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+			ValueEnvironment<Sign>> run(Program p, int maxContexts)
+					throws InterproceduralAnalysisException, CallGraphConstructionException, FixpointException {
+		ContextBasedAnalysis<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> analysis = new ContextBasedAnalysis<>();
+		analysis.setContextBudget(maxContexts, 0);
+		return run(p, analysis);
+	}
+
+	private ContextBasedAnalysis<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+			ValueEnvironment<Sign>> run(Program p,
+					ContextBasedAnalysis<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+							ValueEnvironment<Sign>> analysis)
+					throws InterproceduralAnalysisException, CallGraphConstructionException, FixpointException {
+		RTACallGraph callgraph = new RTACallGraph();
+		callgraph.init(p);
+		analysis.init(p, callgraph);
+		analysis.fixpoint(new AnalysisState<>(
+				new SimpleAbstractState<>(new MonolithicHeap(), new ValueEnvironment<>(new Sign())),
+				new ExpressionSet<>()));
+		return analysis;
+	}
+
+	@Test
+	public void testContextBudget() throws ParsingException, ProgramValidationException,
+			InterproceduralAnalysisException, CallGraphConstructionException, FixpointException {
+		Program p = IMPFrontend.processText(SOURCE);
+		// finalize the program as done by LiSA before the analysis
+		Caches.types().clear();
+		Caches.types().mkSet(p.getRegisteredTypes());
+		p.validateAndFinalize();
+		p.addEntryPoint(cfg(p, "main"));
+
+		ContextBasedAnalysis<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> unbounded = run(p, 0);
+		assertTrue(unbounded.getDemotedCFGs().isEmpty());
+		assertEquals(3, unbounded.getAnalysisResultsOf(cfg(p, "id")).size());
+
+		ContextBasedAnalysis<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> merged = run(p, 1);
+		assertEquals(1, merged.getDemotedCFGs().size());
+		assertTrue(merged.getDemotedCFGs().contains(cfg(p, "id")));
+		// all calls are merged
+		assertEquals(1, merged.getAnalysisResultsOf(cfg(p, "id")).size());
+
+		ContextBasedAnalysis<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> bounded = run(p, 2);
+		assertEquals(1, bounded.getDemotedCFGs().size());
+		assertTrue(bounded.getDemotedCFGs().contains(cfg(p, "id")));
+		// the first context, plus the one where other calls are merged
+		assertEquals(2, bounded.getAnalysisResultsOf(cfg(p, "id")).size());
+	}
+
+	private static final String SUMMARIES = "class summaries { "
+			+ "main() { def a = this.id(1); def b = this.id(-1); return a; } "
+			+ "id(x) { return x; } }";
+
+	private static Sign valueOf(
+			ContextBasedAnalysis<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+					ValueEnvironment<Sign>> analysis,
+			CFG cfg, String variable) throws SemanticException {
+		ValueEnvironment<Sign> env = analysis.getAnalysisResultsOf(cfg).iterator().next().getExitState().getState()
+				.getValueState();
+		for (Identifier id : env.getKeys())
+			if (id.getName().equals(variable))
+				return env.getState(id);
+		fail(variable + " is not part of the exit state of " + cfg);
+		return null;
+	}
+
+	@Test
+	public void testCallSummaries() throws ParsingException, ProgramValidationException,
+			InterproceduralAnalysisException, CallGraphConstructionException, FixpointException, SemanticException {
+		Program p = IMPFrontend.processText(SUMMARIES);
+		// finalize the program as done by LiSA before the analysis
+		Caches.types().clear();
+		Caches.types().mkSet(p.getRegisteredTypes());
+		p.validateAndFinalize();
+		p.addEntryPoint(cfg(p, "main"));
+
+		// both calls share the same result of id, whose exit state is joined
+		ContextBasedAnalysis<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> joined = run(p,
+						new ContextBasedAnalysis<>(ContextInsensitiveToken.getSingleton()));
+		assertTrue(valueOf(joined, cfg(p, "main"), "a").isTop());
+
+		// once the result of id grows, main is analyzed again, and the first
+		// call is covered by the fixpoint computed for it
+		ContextBasedAnalysis<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> memoized = new ContextBasedAnalysis<>(ContextInsensitiveToken.getSingleton());
+		memoized.setSummaryBound(16);
+		run(p, memoized);
+		assertEquals("+", valueOf(memoized, cfg(p, "main"), "a").representation().toString());
+	}
+
+	@Test
+	public void testInvalidContextBudget() {
+		ContextBasedAnalysis<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> analysis = new ContextBasedAnalysis<>();
+		for (double share : new double[] { -0.1, 1.1 })
+			try {
+				analysis.setContextBudget(0, share);
+				fail("A time share of " + share + " has been accepted");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		try {
+			analysis.setContextBudget(-1, 0);
+			fail("A negative budget has been accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		analysis.setContextBudget(0, 1);
+	}
+}
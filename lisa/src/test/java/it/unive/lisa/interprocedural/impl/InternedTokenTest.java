@@ -0,0 +1,79 @@
+package it.unive.lisa.interprocedural.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+import it.unive.lisa.analysis.ScopeToken;
+import it.unive.lisa.program.SourceCodeLocation;
+import org.junit.Test;
+
+public class InternedTokenTest {
+
+	private static final ScopeToken A = new ScopeToken(() -> new SourceCodeLocation("unknown", 1, 0));
+
+	private static final ScopeToken B = new ScopeToken(() -> new SourceCodeLocation("unknown", 2, 0));
+
+	private static final ScopeToken C = new ScopeToken(() -> new SourceCodeLocation("unknown", 3, 0));
+
+	@Test
+	public void testTokensAreInterned() {
+		ContextSensitivityToken empty = RecursionFreeToken.getSingleton().empty();
+		ContextSensitivityToken a = empty.pushToken(A);
+		assertSame(a, empty.pushToken(A));
+		assertSame(a.pushToken(B), a.pushToken(B));
+		assertSame(empty, a.popToken());
+		assertSame(a, a.pushToken(B).popToken());
+	}
+
+	@Test
+	public void testSingleScopeTokensKeepTheLastCallSite() {
+		ContextSensitivityToken empty = SingleScopeToken.getSingleton().empty();
+		ContextSensitivityToken ab = empty.pushToken(A).pushToken(B);
+		assertEquals(empty.pushToken(B), ab);
+		assertEquals(empty.pushToken(B).hashCode(), ab.hashCode());
+		assertNotEquals(empty.pushToken(A), ab);
+		// popping restores the caller's token
+		assertSame(empty.pushToken(A), ab.popToken());
+	}
+
+	@Test
+	public void testRecursionFreeTokensIgnoreRecursion() {
+		ContextSensitivityToken ab = RecursionFreeToken.getSingleton().empty().pushToken(A).pushToken(B);
+		ContextSensitivityToken aba = ab.pushToken(A);
+		assertEquals(ab, aba);
+		assertEquals(ab.hashCode(), aba.hashCode());
+		assertEquals(ab.toString(), aba.toString());
+		assertSame(ab, aba.popToken());
+		assertNotEquals(ab, ab.pushToken(C));
+	}
+
+	@Test
+	public void testCallStringsAreLimited() {
+		ContextSensitivityToken empty = new CallStringToken(2).empty();
+		ContextSensitivityToken abc = empty.pushToken(A).pushToken(B).pushToken(C);
+		assertEquals(empty.pushToken(B).pushToken(C), abc);
+		assertEquals(empty.pushToken(C).pushToken(B).pushToken(C), abc);
+		assertNotEquals(empty.pushToken(C), abc);
+		assertNotEquals(empty.pushToken(A).pushToken(C), abc);
+		assertEquals(((InternedToken) empty.pushToken(B).pushToken(C)).getId(), ((InternedToken) abc).getId());
+		assertSame(empty.pushToken(A).pushToken(B), abc.popToken());
+	}
+
+	@Test
+	public void testHashCodesDoNotDependOnCreationOrder() {
+		ContextSensitivityToken first = RecursionFreeToken.getSingleton().empty();
+		first.pushToken(A);
+		ContextSensitivityToken second = RecursionFreeToken.getSingleton().empty();
+		second.pushToken(C);
+		assertEquals(first.pushToken(C).hashCode(), second.pushToken(C).hashCode());
+		assertEquals(first.pushToken(A).pushToken(B).hashCode(), second.pushToken(A).pushToken(B).hashCode());
+	}
+
+	@Test
+	public void testTokensOfDifferentTriesAreDifferent() {
+		ContextSensitivityToken first = RecursionFreeToken.getSingleton().empty().pushToken(A);
+		ContextSensitivityToken second = RecursionFreeToken.getSingleton().empty().pushToken(A);
+		assertNotEquals(first, second);
+	}
+}
@@ -0,0 +1,380 @@
+package it.unive.lisa.interprocedural.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import it.unive.lisa.analysis.AnalysisState;
+import it.unive.lisa.analysis.CFGWithAnalysisResults;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.SimpleAbstractState;
+import it.unive.lisa.analysis.impl.heap.MonolithicHeap;
+import it.unive.lisa.analysis.impl.numeric.Sign;
+import it.unive.lisa.analysis.lattices.ExpressionSet;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
+import it.unive.lisa.caches.Caches;
+import it.unive.lisa.imp.IMPFrontend;
+import it.unive.lisa.imp.ParsingException;
+import it.unive.lisa.interprocedural.InterproceduralAnalysisException;
+import it.unive.lisa.interprocedural.callgraph.CallGraphConstructionException;
+import it.unive.lisa.interprocedural.callgraph.impl.RTACallGraph;
+import it.unive.lisa.interprocedural.impl.PersistentResults.StateCodec;
+import it.unive.lisa.program.Program;
+import it.unive.lisa.program.ProgramValidationException;
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.statement.Statement;
+import it.unive.lisa.util.datastructures.graph.FixpointException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PersistentResultsTest {
+
+	private static final String ORIGINAL = "class persistent { "
+			+ "foo() { def x = 1; while (x < 10) x = x + 1; return x; } "
+			+ "bar() { def z = -1; return z * 2; } }";
+
+	private static final String CHANGED = "class persistent { "
+			+ "foo() { def x = 1; while (x < 10) x = x + 1; return x; } "
+			+ "bar() { def z = 1; return z * 2; } }";
+
+	private static final String WITH_NEW_METHOD = "class persistent { "
+			+ "foo() { def x = 1; while (x < 10) x = x + 1; return x; } "
+			+ "bar() { def z = -1; return z * 2; } "
+			+ "baz() { return 0; } }";
+
+	private static final String CHAIN = "class chain { "
+			+ "main() { def a = this.id(1); return a; } "
+			+ "id(x) { return x; } }";
+
+	private static final String CHANGED_CALLEE = "class chain { "
+			+ "main() { def a = this.id(1); return a; } "
+			+ "id(x) { return -1; } }";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * A codec that keeps states in memory, encoding them as their index. This
+	 * is enough to test how results are addressed and stored, without
+	 * requiring a serializable domain.
+	 */
+	private static class RegistryCodec implements StateCodec<SimpleAbstractState<MonolithicHeap,
+			ValueEnvironment<Sign>>, MonolithicHeap, ValueEnvironment<Sign>> {
+
+		private final List<AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>>> registry = new ArrayList<>();
+
+		@Override
+		public byte[] encode(AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>,
+				MonolithicHeap, ValueEnvironment<Sign>> state) throws IOException {
+			// equal states must have the same encoding
+			for (int i = 0; i < registry.size(); i++)
+				try {
+					if (registry.get(i).lessOrEqual(state) && state.lessOrEqual(registry.get(i)))
+						return ByteBuffer.allocate(4).putInt(i).array();
+				} catch (Exception e) {
+					throw new IOException(e);
+				}
+			registry.add(state);
+			return ByteBuffer.allocate(4).putInt(registry.size() - 1).array();
+		}
+
+		@Override
+		public AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> decode(byte[] bytes,
+						AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+								ValueEnvironment<Sign>> singleton) {
+			return registry.get(ByteBuffer.wrap(bytes).getInt());
+		}
+	}
+
+	/**
+	 * A codec that fails when encoding the results of statements, that is,
+	 * any state with computed expressions.
+	 */
+	private static class FailingCodec extends RegistryCodec {
+
+		@Override
+		public byte[] encode(AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>,
+				MonolithicHeap, ValueEnvironment<Sign>> state) throws IOException {
+			if (!state.getComputedExpressions().isEmpty())
+				throw new IOException("Failing on purpose");
+			return super.encode(state);
+		}
+	}
+
+	private Map<CFG, CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>,
+			MonolithicHeap, ValueEnvironment<Sign>>> run(
+					String source,
+					PersistentResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+							ValueEnvironment<Sign>> previous)
+					throws ParsingException, InterproceduralAnalysisException, CallGraphConstructionException,
+					FixpointException, ProgramValidationException {
+		Program p = IMPFrontend.processText(source);
+		// finalize the program as done by LiSA before the analysis
+		Caches.types().clear();
+		Caches.types().mkSet(p.getRegisteredTypes());
+		p.validateAndFinalize();
+		ModularWorstCaseAnalysis<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> analysis = new ModularWorstCaseAnalysis<>(previous);
+		RTACallGraph callgraph = new RTACallGraph();
+		callgraph.init(p);
+		analysis.init(p, callgraph);
+		analysis.fixpoint(new AnalysisState<>(
+				new SimpleAbstractState<>(new MonolithicHeap(), new ValueEnvironment<>(new Sign())),
+				new ExpressionSet<>()));
+
+		Map<CFG, CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>>> results = new HashMap<>();
+		for (CFG cfg : p.getAllCFGs())
+			results.put(cfg, analysis.getAnalysisResultsOf(cfg).iterator().next());
+		return results;
+	}
+
+	@Test
+	public void testResultsAreLoadedFromDisk() throws ParsingException, InterproceduralAnalysisException,
+			CallGraphConstructionException, FixpointException, ProgramValidationException {
+		Path dir = folder.getRoot().toPath();
+		RegistryCodec codec = new RegistryCodec();
+
+		PersistentResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> first = new PersistentResults<>(dir, codec, "sign");
+		run(ORIGINAL, first);
+		assertEquals(0, first.getHits());
+		assertEquals(2, first.getMisses());
+		File[] files = folder.getRoot().listFiles();
+		assertEquals(2, files.length);
+
+		// a new store, sharing only the directory, simulates a new execution
+		PersistentResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> second = new PersistentResults<>(dir, codec, "sign");
+		run(ORIGINAL, second);
+		assertEquals(2, second.getHits());
+		assertEquals(0, second.getMisses());
+		assertEquals(2, folder.getRoot().listFiles().length);
+	}
+
+	@Test
+	public void testResultsAreDecodedFromDisk() throws ParsingException, InterproceduralAnalysisException,
+			CallGraphConstructionException, FixpointException, ProgramValidationException {
+		Path dir = folder.getRoot().toPath();
+		run(ORIGINAL, new PersistentResults<>(dir, new ValueEnvironmentCodec<>(ValueEnvironmentCodecTest.SIGN),
+				"sign"));
+		assertEquals(2, folder.getRoot().listFiles().length);
+
+		// a new codec ensures that states are actually decoded from bytes
+		PersistentResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> second = new PersistentResults<>(dir,
+						new ValueEnvironmentCodec<>(ValueEnvironmentCodecTest.SIGN), "sign");
+		Map<CFG, CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>>> loaded = run(ORIGINAL, second);
+		assertEquals(2, second.getHits());
+		assertEquals(0, second.getMisses());
+
+		Map<CFG, CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>>> fresh = run(ORIGINAL, null);
+		for (CFG cfg : loaded.keySet()) {
+			CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+					ValueEnvironment<Sign>> expected = find(fresh, cfg.getDescriptor().getFullSignatureWithParNames());
+			for (Statement st : expected.getNodes()) {
+				Statement other = cfg.getStatementsByOffset().get(st.getOffset());
+				assertEquals("Decoded results differ on '" + st + "'", expected.getAnalysisStateAfter(st),
+						loaded.get(cfg).getAnalysisStateAfter(other));
+			}
+		}
+	}
+
+	@Test
+	public void testFailedWritesLeaveNoFiles() throws ParsingException, InterproceduralAnalysisException,
+			CallGraphConstructionException, FixpointException, ProgramValidationException {
+		PersistentResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> results = new PersistentResults<>(folder.getRoot().toPath(),
+						new FailingCodec(), "sign");
+		run(ORIGINAL, results);
+		assertEquals(2, results.getMisses());
+		assertEquals(0, folder.getRoot().listFiles().length);
+	}
+
+	@Test
+	public void testResultsAreNotSharedAmongConfigurations() throws ParsingException,
+			InterproceduralAnalysisException, CallGraphConstructionException, FixpointException,
+			ProgramValidationException {
+		Path dir = folder.getRoot().toPath();
+		RegistryCodec codec = new RegistryCodec();
+
+		run(ORIGINAL, new PersistentResults<>(dir, codec, "sign"));
+		PersistentResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> other = new PersistentResults<>(dir, codec, "other");
+		run(ORIGINAL, other);
+		assertEquals(0, other.getHits());
+		assertEquals(2, other.getMisses());
+		assertEquals(4, folder.getRoot().listFiles().length);
+	}
+
+	@Test
+	public void testUnchangedProgramIsReused() throws ParsingException, InterproceduralAnalysisException,
+			CallGraphConstructionException, FixpointException, ProgramValidationException {
+		PersistentResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> previous = new PersistentResults<>(folder.getRoot().toPath(), new RegistryCodec(), "sign");
+		run(ORIGINAL, previous);
+		assertEquals(0, previous.getHits());
+		assertEquals(2, previous.getMisses());
+
+		Map<CFG, CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>>> fresh = run(ORIGINAL, null);
+		Map<CFG, CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>>> reused = run(ORIGINAL, previous);
+		assertEquals(2, previous.getHits());
+		assertEquals(2, previous.getMisses());
+
+		for (CFG cfg : reused.keySet()) {
+			CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+					ValueEnvironment<Sign>> actual = reused.get(cfg);
+			CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+					ValueEnvironment<Sign>> expected = find(fresh, cfg.getDescriptor().getFullSignatureWithParNames());
+			assertTrue("Reused results have not been relocated on the new cfg",
+					cfg.getNodes().containsAll(actual.getNodes()));
+			for (Statement st : expected.getNodes()) {
+				Statement other = cfg.getStatementsByOffset().get(st.getOffset());
+				assertEquals("Reused results differ on '" + st + "'", expected.getAnalysisStateAfter(st),
+						actual.getAnalysisStateAfter(other));
+			}
+		}
+	}
+
+	@Test
+	public void testChangedCFGsAreRecomputed() throws ParsingException, InterproceduralAnalysisException,
+			CallGraphConstructionException, FixpointException, ProgramValidationException {
+		PersistentResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> previous = new PersistentResults<>(folder.getRoot().toPath(), new RegistryCodec(), "sign");
+		run(ORIGINAL, previous);
+		run(CHANGED, previous);
+		assertEquals(1, previous.getHits());
+		assertEquals(3, previous.getMisses());
+	}
+
+	@Test
+	public void testNewCFGsAreComputed() throws ParsingException, InterproceduralAnalysisException,
+			CallGraphConstructionException, FixpointException, ProgramValidationException {
+		PersistentResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> previous = new PersistentResults<>(folder.getRoot().toPath(), new RegistryCodec(), "sign");
+		run(ORIGINAL, previous);
+		run(WITH_NEW_METHOD, previous);
+		assertEquals(2, previous.getHits());
+		assertEquals(3, previous.getMisses());
+	}
+
+	private static Program parse(String source) throws ParsingException, ProgramValidationException {
+		Program p = IMPFrontend.processText(source);
+		// finalize the program as done by LiSA before the analysis
+		Caches.types().clear();
+		Caches.types().mkSet(p.getRegisteredTypes());
+		p.validateAndFinalize();
+		p.addEntryPoint(cfg(p, "main"));
+		return p;
+	}
+
+	private static CFG cfg(Program p, String name) {
+		return p.getAllCFGs().stream().filter(c -> c.getDescriptor().getName().equals(name)).findFirst().get();
+	}
+
+	private static ContextBasedAnalysis<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+			ValueEnvironment<Sign>> runContextBased(Program p,
+					PersistentResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+							ValueEnvironment<Sign>> previous)
+					throws InterproceduralAnalysisException, CallGraphConstructionException, FixpointException {
+		ContextBasedAnalysis<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> analysis = new ContextBasedAnalysis<>();
+		analysis.setPersistentResults(previous);
+		RTACallGraph callgraph = new RTACallGraph();
+		callgraph.init(p);
+		analysis.init(p, callgraph);
+		analysis.fixpoint(new AnalysisState<>(
+				new SimpleAbstractState<>(new MonolithicHeap(), new ValueEnvironment<>(new Sign())),
+				new ExpressionSet<>()));
+		return analysis;
+	}
+
+	private static void assertSameExitStates(
+			ContextBasedAnalysis<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+					ValueEnvironment<Sign>> expected,
+			ContextBasedAnalysis<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+					ValueEnvironment<Sign>> actual,
+			CFG cfg) throws SemanticException {
+		Set<String> exp = new HashSet<>(), act = new HashSet<>();
+		for (CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> result : expected.getAnalysisResultsOf(cfg))
+			exp.add(result.getId() + "=" + result.getExitState());
+		for (CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> result : actual.getAnalysisResultsOf(cfg))
+			act.add(result.getId() + "=" + result.getExitState());
+		assertEquals("Results of " + cfg + " differ", exp, act);
+	}
+
+	@Test
+	public void testCallChainsAreReused() throws ParsingException, InterproceduralAnalysisException,
+			CallGraphConstructionException, FixpointException, ProgramValidationException, SemanticException {
+		PersistentResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> previous = new PersistentResults<>(folder.getRoot().toPath(),
+						new RegistryCodec(), "sign");
+		runContextBased(parse(CHAIN), previous);
+		assertEquals(0, previous.getHits());
+		assertEquals(1, previous.getMisses());
+
+		Program p = parse(CHAIN);
+		ContextBasedAnalysis<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> reused = runContextBased(p, previous);
+		assertEquals(1, previous.getHits());
+		assertEquals(1, previous.getMisses());
+
+		ContextBasedAnalysis<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> fresh = runContextBased(p, null);
+		assertSameExitStates(fresh, reused, cfg(p, "main"));
+		assertSameExitStates(fresh, reused, cfg(p, "id"));
+	}
+
+	@Test
+	public void testCallersOfChangedCFGsAreInvalidated() throws ParsingException,
+			InterproceduralAnalysisException, CallGraphConstructionException, FixpointException,
+			ProgramValidationException, SemanticException {
+		PersistentResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> previous = new PersistentResults<>(folder.getRoot().toPath(),
+						new RegistryCodec(), "sign");
+		runContextBased(parse(CHAIN), previous);
+
+		// main did not change, but it used the results of id
+		Program p = parse(CHANGED_CALLEE);
+		Set<String> dirty = previous.invalidate(p.getAllCFGs());
+		assertTrue(dirty.contains(cfg(p, "id").getDescriptor().getFullSignatureWithParNames()));
+		assertTrue(dirty.contains(cfg(p, "main").getDescriptor().getFullSignatureWithParNames()));
+
+		// the results of main on disk are not reusable without the ones of id
+		ContextBasedAnalysis<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> recomputed = runContextBased(p, previous);
+		ContextBasedAnalysis<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> fresh = runContextBased(p, null);
+		assertSameExitStates(fresh, recomputed, cfg(p, "main"));
+		assertSameExitStates(fresh, recomputed, cfg(p, "id"));
+	}
+
+	private static CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>,
+			MonolithicHeap, ValueEnvironment<Sign>> find(
+					Map<CFG, CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>,
+							MonolithicHeap, ValueEnvironment<Sign>>> results,
+					String signature) {
+		for (CFG cfg : results.keySet())
+			if (cfg.getDescriptor().getFullSignatureWithParNames().equals(signature))
+				return results.get(cfg);
+		return null;
+	}
+}
@@ -0,0 +1,142 @@
+package it.unive.lisa.interprocedural.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import it.unive.lisa.analysis.AnalysisState;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.SimpleAbstractState;
+import it.unive.lisa.analysis.impl.heap.MonolithicHeap;
+import it.unive.lisa.analysis.impl.numeric.Sign;
+import it.unive.lisa.analysis.lattices.ExpressionSet;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
+import it.unive.lisa.caches.Caches;
+import it.unive.lisa.interprocedural.impl.ValueEnvironmentCodec.ValueCodec;
+import it.unive.lisa.program.SyntheticLocation;
+import it.unive.lisa.symbolic.SymbolicExpression;
+import it.unive.lisa.symbolic.value.BinaryExpression;
+import it.unive.lisa.symbolic.value.BinaryOperator;
+import it.unive.lisa.symbolic.value.Constant;
+import it.unive.lisa.symbolic.value.HeapLocation;
+import it.unive.lisa.symbolic.value.Identifier;
+import it.unive.lisa.symbolic.value.Skip;
+import it.unive.lisa.symbolic.value.Variable;
+import it.unive.lisa.type.Type;
+import it.unive.lisa.type.Untyped;
+import it.unive.lisa.util.collections.externalSet.ExternalSet;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+
+public class ValueEnvironmentCodecTest {
+
+	/**
+	 * A codec for signs, decoding them by evaluating constants with the
+	 * corresponding sign.
+	 */
+	static final ValueCodec<Sign> SIGN = new ValueCodec<Sign>() {
+
+		@Override
+		public String encode(Sign value) {
+			return value.representation().toString();
+		}
+
+		@Override
+		public Sign decode(String value, Sign singleton) throws IOException {
+			if (value.equals(singleton.top().representation().toString()))
+				return singleton.top();
+			if (value.equals(singleton.bottom().representation().toString()))
+				return singleton.bottom();
+			int constant;
+			switch (value) {
+			case "+":
+				constant = 1;
+				break;
+			case "-":
+				constant = -1;
+				break;
+			case "0":
+				constant = 0;
+				break;
+			default:
+				throw new IOException("Unknown sign: " + value);
+			}
+
+			try {
+				return singleton.eval(new Constant(Untyped.INSTANCE, constant, SyntheticLocation.INSTANCE),
+						new ValueEnvironment<>(singleton), null);
+			} catch (SemanticException e) {
+				throw new IOException(e);
+			}
+		}
+	};
+
+	private final ExternalSet<Type> untyped = Caches.types().mkSingletonSet(Untyped.INSTANCE);
+
+	private Sign sign(int value) throws IOException {
+		return SIGN.decode(value == 0 ? "0" : value > 0 ? "+" : "-", new Sign());
+	}
+
+	private AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+			ValueEnvironment<Sign>> mk(MonolithicHeap heap, ValueEnvironment<Sign> env,
+					ExpressionSet<SymbolicExpression> computed) {
+		return new AnalysisState<>(new SimpleAbstractState<>(heap, env), computed);
+	}
+
+	private void assertRoundTrip(AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>,
+			MonolithicHeap, ValueEnvironment<Sign>> state) throws IOException {
+		ValueEnvironmentCodec<Sign> codec = new ValueEnvironmentCodec<>(SIGN);
+		byte[] bytes = codec.encode(state);
+		AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> decoded = codec.decode(bytes, state);
+		assertEquals(state, decoded);
+		assertArrayEquals(bytes, codec.encode(decoded));
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		Variable x = new Variable(untyped, "x", SyntheticLocation.INSTANCE);
+		HeapLocation loc = new HeapLocation(untyped, "loc", true, SyntheticLocation.INSTANCE);
+		Map<Identifier, Sign> function = new HashMap<>();
+		function.put(x, sign(5));
+		function.put(loc, sign(-3));
+		function.put(new Variable(untyped, "y", SyntheticLocation.INSTANCE), sign(0));
+		function.put(new Variable(untyped, "z", SyntheticLocation.INSTANCE), new Sign().top());
+		ValueEnvironment<Sign> env = new ValueEnvironment<>(new Sign(), function);
+
+		Set<SymbolicExpression> computed = new HashSet<>();
+		computed.add(new BinaryExpression(untyped, x,
+				new Constant(Untyped.INSTANCE, 1, SyntheticLocation.INSTANCE), BinaryOperator.NUMERIC_ADD,
+				SyntheticLocation.INSTANCE));
+		computed.add(new Constant(Untyped.INSTANCE, "str", SyntheticLocation.INSTANCE));
+		computed.add(new Skip(SyntheticLocation.INSTANCE));
+		computed.add(loc);
+
+		MonolithicHeap heap = new MonolithicHeap().top();
+		assertRoundTrip(mk(heap, env, new ExpressionSet<>(computed)));
+		assertRoundTrip(mk(heap, env, new ExpressionSet<>().top()));
+		assertRoundTrip(mk(heap, env.top(), new ExpressionSet<>()));
+		assertRoundTrip(mk(heap.bottom(), env.bottom(), new ExpressionSet<>()));
+	}
+
+	@Test
+	public void testEqualStatesHaveEqualEncodings() throws IOException {
+		ValueEnvironmentCodec<Sign> codec = new ValueEnvironmentCodec<>(SIGN);
+		MonolithicHeap heap = new MonolithicHeap().top();
+		ExpressionSet<SymbolicExpression> computed = new ExpressionSet<>();
+
+		// environments built in different orders, with different hash maps
+		Map<Identifier, Sign> first = new HashMap<>();
+		Map<Identifier, Sign> second = new HashMap<>(64);
+		for (int i = 0; i < 20; i++)
+			first.put(new Variable(untyped, "v" + i, SyntheticLocation.INSTANCE), sign(i % 3 - 1));
+		for (int i = 19; i >= 0; i--)
+			second.put(new Variable(untyped, "v" + i, SyntheticLocation.INSTANCE), sign(i % 3 - 1));
+
+		assertArrayEquals(codec.encode(mk(heap, new ValueEnvironment<>(new Sign(), first), computed)),
+				codec.encode(mk(heap, new ValueEnvironment<>(new Sign(), second), computed)));
+	}
+}
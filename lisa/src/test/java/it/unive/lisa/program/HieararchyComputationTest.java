@@ -1,5 +1,6 @@
 package it.unive.lisa.program;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -7,6 +8,10 @@ import static org.junit.Assert.assertTrue;
 import it.unive.lisa.imp.IMPFrontend;
 import it.unive.lisa.imp.ParsingException;
 import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.CFGDescriptor;
+import it.unive.lisa.program.cfg.CodeMember;
+import java.util.Collection;
+import java.util.Collections;
 import org.junit.Test;
 
 public class HieararchyComputationTest {
@@ -88,6 +93,33 @@ public class HieararchyComputationTest {
 		overrides(fooFirst, fooSecond);
 	}
 
+	@Test
+	public void testDispatchAfterFinalization() throws ParsingException, ProgramValidationException {
+		Program prog = IMPFrontend.processFile("imp-testcases/program-finalization/simple-inheritance.imp", false);
+		prog.validateAndFinalize();
+
+		CompilationUnit first = findUnit(prog, "first");
+		CompilationUnit second = findUnit(prog, "second");
+		CFG fooFirst = findCFG(first, "foo");
+		CFG fooSecond = findCFG(second, "foo");
+
+		Collection<CodeMember> fromFirst = first.getInstanceCodeMembersByName("foo", true);
+		assertEquals(Collections.singleton(fooFirst), fromFirst);
+		// the overridden cfg is hidden from the subunit
+		Collection<CodeMember> fromSecond = second.getInstanceCodeMembersByName("foo", true);
+		assertEquals(Collections.singleton(fooSecond), fromSecond);
+		assertEquals(fromSecond, second.getMatchingInstanceCodeMembers(fooSecond.getDescriptor(), true));
+		assertTrue(second.getInstanceCodeMembersByName("bar", true).isEmpty());
+
+		// members added after the finalization are not part of the dispatch
+		// table, and are thus found only without traversing the hierarchy
+		CFG bar = new CFG(new CFGDescriptor(SyntheticLocation.INSTANCE, second, true, "bar"));
+		second.addInstanceCFG(bar);
+		assertEquals(Collections.singleton(bar), second.getInstanceCodeMembersByName("bar", false));
+		assertTrue(second.getInstanceCodeMembersByName("bar", true).isEmpty());
+		assertTrue(second.getMatchingInstanceCodeMembers(bar.getDescriptor(), true).isEmpty());
+	}
+
 	@Test(expected = ProgramValidationException.class)
 	public void testFinalCfg() throws ParsingException, ProgramValidationException {
 		Program prog = IMPFrontend.processFile("imp-testcases/program-finalization/final-cfg.imp", false);
@@ -1,5 +1,9 @@
 package it.unive.lisa.program.cfg;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import it.unive.lisa.analysis.AbstractState;
@@ -29,6 +33,8 @@ import it.unive.lisa.program.cfg.statement.VariableRef;
 import it.unive.lisa.symbolic.SymbolicExpression;
 import it.unive.lisa.type.Untyped;
 import it.unive.lisa.util.datastructures.graph.AdjacencyMatrix;
+import it.unive.lisa.util.datastructures.graph.CompactAdjacency;
+import java.util.HashSet;
 import org.junit.Test;
 
 public class CFGSimplificationTest {
@@ -68,6 +74,41 @@ public class CFGSimplificationTest {
 		assertTrue("Different CFGs", second.isEqualTo(first));
 	}
 
+	@Test
+	public void testCompactAdjacencyAfterSimplification() throws ProgramValidationException {
+		SourceCodeLocation unknown = new SourceCodeLocation("unknown", 0, 0);
+		CompilationUnit unit = new CompilationUnit(unknown, "foo", false);
+		CFG cfg = new CFG(new CFGDescriptor(unknown, unit, true, "foo"));
+		Assignment assign = new Assignment(cfg, unknown,
+				new VariableRef(cfg, unknown, "x"),
+				new Literal(cfg, unknown, 5, Untyped.INSTANCE));
+		NoOp noop = new NoOp(cfg, unknown);
+		Return ret = new Return(cfg, unknown,
+				new VariableRef(cfg, unknown, "x"));
+		cfg.addNode(assign, true);
+		cfg.addNode(noop);
+		cfg.addNode(ret);
+		cfg.addEdge(new SequentialEdge(assign, noop));
+		cfg.addEdge(new SequentialEdge(noop, ret));
+
+		AdjacencyMatrix<Statement, Edge, CFG> matrix = cfg.getAdjacencyMatrix();
+		CompactAdjacency<Statement, Edge, CFG> before = matrix.compact();
+		assertSame(before, matrix.compact());
+		assertTrue(before.containsNode(noop));
+
+		cfg.simplify();
+		CompactAdjacency<Statement, Edge, CFG> after = matrix.compact();
+		assertNotSame(before, after);
+		assertFalse(after.containsNode(noop));
+		for (Statement node : cfg.getNodes()) {
+			assertEquals(new HashSet<>(cfg.followersOf(node)), new HashSet<>(after.followersOf(node)));
+			assertEquals(new HashSet<>(cfg.predecessorsOf(node)), new HashSet<>(after.predecessorsOf(node)));
+			assertEquals(new HashSet<>(matrix.getIngoingEdges(node)), new HashSet<>(after.getIngoingEdges(node)));
+			assertEquals(new HashSet<>(matrix.getOutgoingEdges(node)), new HashSet<>(after.getOutgoingEdges(node)));
+		}
+		assertEquals(cfg.getEdgeConnecting(assign, ret), after.getEdgeConnecting(assign, ret));
+	}
+
 	@Test
 	public void testDoubleSimplification() throws ProgramValidationException {
 		SourceCodeLocation unknown = new SourceCodeLocation("unknown", 0, 0);
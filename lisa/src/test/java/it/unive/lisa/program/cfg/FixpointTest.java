@@ -1,8 +1,15 @@
 package it.unive.lisa.program.cfg;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import it.unive.lisa.analysis.AnalysisState;
+import it.unive.lisa.analysis.CFGWithAnalysisResults;
+import it.unive.lisa.analysis.CFGWithAnalysisResults.CacheStatistics;
+import it.unive.lisa.analysis.SemanticException;
 import it.unive.lisa.analysis.SimpleAbstractState;
 import it.unive.lisa.analysis.impl.heap.MonolithicHeap;
 import it.unive.lisa.analysis.impl.numeric.Sign;
@@ -10,12 +17,32 @@ import it.unive.lisa.analysis.lattices.ExpressionSet;
 import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
 import it.unive.lisa.imp.IMPFrontend;
 import it.unive.lisa.imp.ParsingException;
+import it.unive.lisa.interprocedural.InterproceduralAnalysis;
 import it.unive.lisa.interprocedural.InterproceduralAnalysisException;
 import it.unive.lisa.interprocedural.callgraph.CallGraphConstructionException;
 import it.unive.lisa.interprocedural.callgraph.impl.RTACallGraph;
 import it.unive.lisa.interprocedural.impl.ModularWorstCaseAnalysis;
 import it.unive.lisa.program.Program;
+import it.unive.lisa.program.SourceCodeLocation;
+import it.unive.lisa.program.cfg.edge.Edge;
+import it.unive.lisa.program.cfg.edge.SequentialEdge;
+import it.unive.lisa.program.cfg.statement.Assignment;
+import it.unive.lisa.program.cfg.statement.Literal;
+import it.unive.lisa.program.cfg.statement.Return;
+import it.unive.lisa.program.cfg.statement.Statement;
+import it.unive.lisa.program.cfg.statement.VariableRef;
+import it.unive.lisa.symbolic.value.Identifier;
+import it.unive.lisa.type.Untyped;
 import it.unive.lisa.util.datastructures.graph.FixpointException;
+import it.unive.lisa.util.datastructures.graph.algorithms.WeakTopologicalOrder;
+import it.unive.lisa.util.datastructures.graph.algorithms.WeakTopologicalOrder.Component;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 import org.junit.Test;
 
 public class FixpointTest {
@@ -37,6 +64,91 @@ public class FixpointTest {
 				new ExpressionSet<>());
 	}
 
+	/**
+	 * A fixpoint algorithm over the cfgs of these tests.
+	 */
+	private interface Fixpoint {
+		CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> compute(CFG cfg,
+						AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+								ValueEnvironment<Sign>> entryState,
+						InterproceduralAnalysis<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>,
+								MonolithicHeap, ValueEnvironment<Sign>> interprocedural)
+						throws FixpointException;
+	}
+
+	/**
+	 * A condition on the states computed by two fixpoints after the same node.
+	 */
+	private interface Condition {
+		boolean holds(
+				AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+						ValueEnvironment<Sign>> first,
+				AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+						ValueEnvironment<Sign>> second)
+				throws SemanticException;
+	}
+
+	/**
+	 * The fixpoint computed by the strategy of the cfg.
+	 */
+	private static final Fixpoint STRATEGY = (cfg, entryState, interprocedural) -> cfg.getFixpointStrategy()
+			.fixpoint(cfg, entryState, interprocedural);
+
+	/**
+	 * Runs the given fixpoint over the first cfg of the given program, after
+	 * applying the given setting to the cfg. The test fails if the fixpoint
+	 * raises an exception, and the settings of the cfg are restored to their
+	 * defaults afterwards.
+	 */
+	private CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+			ValueEnvironment<Sign>> run(Program p, Consumer<CFG> setting, Fixpoint fixpoint)
+					throws InterproceduralAnalysisException, CallGraphConstructionException {
+		CFG cfg = p.getAllCFGs().iterator().next();
+		setting.accept(cfg);
+		try {
+			return fixpoint.compute(cfg, mkState(), mkAnalysis(p));
+		} catch (FixpointException e) {
+			e.printStackTrace(System.err);
+			fail("The fixpoint computation has thrown an exception");
+			return null;
+		} finally {
+			cfg.setFixpointStrategy(FixpointStrategy.WORKLIST);
+			cfg.setPruneDeadVariables(false);
+			cfg.setInnerResultsFilter(null);
+		}
+	}
+
+	private CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+			ValueEnvironment<Sign>> run(Program p, Fixpoint fixpoint)
+					throws InterproceduralAnalysisException, CallGraphConstructionException {
+		return run(p, cfg -> {
+		}, fixpoint);
+	}
+
+	/**
+	 * Runs the two fixpoints over the first cfg of the given program, the
+	 * second one after applying the given setting to the cfg, and checks that
+	 * the given condition holds between their results after each node.
+	 */
+	private void assertOnAllNodes(String message, Program p, Fixpoint first, Consumer<CFG> setting, Fixpoint second,
+			Condition condition)
+			throws InterproceduralAnalysisException, CallGraphConstructionException, SemanticException {
+		CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> firstResult = run(p, first);
+		CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> secondResult = run(p, setting, second);
+		for (Statement st : p.getAllCFGs().iterator().next().getNodes())
+			assertTrue(message + " on '" + st + "'",
+					condition.holds(firstResult.getAnalysisStateAfter(st), secondResult.getAnalysisStateAfter(st)));
+	}
+
+	private void assertOnAllNodes(String message, Program p, Fixpoint first, Fixpoint second, Condition condition)
+			throws InterproceduralAnalysisException, CallGraphConstructionException, SemanticException {
+		assertOnAllNodes(message, p, first, cfg -> {
+		}, second, condition);
+	}
+
 	@Test
 	public void testEmptyCFG()
 			throws InterproceduralAnalysisException, CallGraphConstructionException, ParsingException {
@@ -75,4 +187,362 @@ public class FixpointTest {
 			fail("The fixpoint computation has thrown an exception");
 		}
 	}
+
+	private static final String NESTED_LOOPS = "class nested { foo() { "
+			+ "def i = 0; "
+			+ "while (i < 10) { def j = 0; while (j < i) { j = j + 1; } i = i + 1; } "
+			+ "return i; } }";
+
+	@Test
+	public void testWeakTopologicalOrderOfNestedLoops() throws ParsingException {
+		Program p = IMPFrontend.processText(NESTED_LOOPS);
+		CFG cfg = p.getAllCFGs().iterator().next();
+		List<Component<Statement>> order = new WeakTopologicalOrder<CFG, Statement, Edge>().build(cfg,
+				cfg.getEntrypoints());
+
+		Component<Statement> outer = null;
+		for (Component<Statement> c : order)
+			if (c.isLoop()) {
+				assertTrue("More than one top-level loop found", outer == null);
+				outer = c;
+			}
+		assertTrue("No top-level loop found", outer != null);
+		assertFalse("The first statement is part of a loop", order.get(0).isLoop());
+
+		long inner = outer.getBody().stream().filter(Component::isLoop).count();
+		assertEquals("Wrong number of nested loops", 1, inner);
+	}
+
+	@Test
+	public void testWTOFixpointOnNestedLoops()
+			throws ParsingException, InterproceduralAnalysisException, CallGraphConstructionException,
+			SemanticException {
+		assertOnAllNodes("The result of the weak topological iteration is less precise than the classic one",
+				IMPFrontend.processText(NESTED_LOOPS), CFG::fixpoint, CFG::wtoFixpoint,
+				(classic, wto) -> wto.lessOrEqual(classic));
+	}
+
+	@Test
+	public void testWTOFixpointThroughStrategy()
+			throws ParsingException, InterproceduralAnalysisException, CallGraphConstructionException,
+			SemanticException {
+		assertOnAllNodes("The strategy did not compute the weak topological iteration",
+				IMPFrontend.processText(NESTED_LOOPS), CFG::wtoFixpoint,
+				cfg -> cfg.setFixpointStrategy(FixpointStrategy.WTO), STRATEGY, AnalysisState::equals);
+	}
+
+	private static final String STRAIGHT_LINE = "class straight { foo() { "
+			+ "def x = 1; def y = -2; def z = x + y; x = z; y = 3; "
+			+ "return x; } }";
+
+	@Test
+	public void testDefUseChainsOfStraightLineCode() throws ParsingException {
+		Program p = IMPFrontend.processText(STRAIGHT_LINE);
+		CFG cfg = p.getAllCFGs().iterator().next();
+		DefUseChains chains = new DefUseChains(cfg);
+		assertTrue("Straight-line code only uses locals", chains.onlyLocals());
+
+		Statement sum = null;
+		for (Statement st : cfg.getNodes())
+			if (chains.getDefinitions(st).contains("z"))
+				sum = st;
+		assertTrue("No definition of z found", sum != null);
+		assertEquals("Wrong uses of " + sum, new HashSet<>(Arrays.asList("x", "y")), chains.getUses(sum));
+		assertFalse("The entry value of x reaches " + sum, chains.isReachedByEntry(sum, "x"));
+		assertEquals("Wrong reaching definitions of x in " + sum, 1,
+				chains.getReachingDefinitions(sum, "x").size());
+
+		Statement def = chains.getReachingDefinitions(sum, "y").iterator().next();
+		assertEquals("Wrong users of " + def, Collections.singleton(sum),
+				new HashSet<>(chains.getUsers(def, "y")));
+	}
+
+	@Test
+	public void testSparseFixpointOnStraightLineCode()
+			throws ParsingException, InterproceduralAnalysisException, CallGraphConstructionException,
+			SemanticException {
+		assertOnAllNodes("The result of the sparse fixpoint differs from the classic one",
+				IMPFrontend.processText(STRAIGHT_LINE), CFG::fixpoint, CFG::sparseFixpoint,
+				(classic, sparse) -> classic.getState().equals(sparse.getState()));
+	}
+
+	@Test
+	public void testSparseFixpointOnNestedLoops()
+			throws ParsingException, InterproceduralAnalysisException, CallGraphConstructionException,
+			SemanticException {
+		// values are not refined by conditions in the sparse fixpoint
+		assertOnAllNodes("The result of the sparse fixpoint is not sound w.r.t. the classic one",
+				IMPFrontend.processText(NESTED_LOOPS), CFG::fixpoint, CFG::sparseFixpoint,
+				(classic, sparse) -> classic.getState().getValueState()
+						.lessOrEqual(sparse.getState().getValueState()));
+	}
+
+	@Test
+	public void testSparseFixpointThroughStrategy()
+			throws ParsingException, InterproceduralAnalysisException, CallGraphConstructionException,
+			SemanticException {
+		assertOnAllNodes("The strategy did not compute the sparse fixpoint", IMPFrontend.processText(NESTED_LOOPS),
+				CFG::sparseFixpoint, cfg -> cfg.setFixpointStrategy(FixpointStrategy.SPARSE), STRATEGY,
+				AnalysisState::equals);
+	}
+
+	private static final String FIELD_ACCESS = "class fields { foo() { "
+			+ "def x = 1; this.field = x; def y = this.field; "
+			+ "return y; } }";
+
+	@Test
+	public void testSparseStrategyFallsBackOnFieldAccesses()
+			throws ParsingException, InterproceduralAnalysisException, CallGraphConstructionException,
+			SemanticException {
+		Program p = IMPFrontend.processText(FIELD_ACCESS);
+		assertFalse("Field accesses have not been detected",
+				new DefUseChains(p.getAllCFGs().iterator().next()).onlyLocals());
+		assertOnAllNodes("The strategy did not fall back to the classic fixpoint", p, CFG::fixpoint,
+				cfg -> cfg.setFixpointStrategy(FixpointStrategy.SPARSE), STRATEGY, AnalysisState::equals);
+	}
+
+	private static final String ARRAY_ACCESS = "class arrays { foo() { "
+			+ "def a = new int[2]; a[0] = -1; def y = a[0]; "
+			+ "return y; } }";
+
+	@Test
+	public void testSparseStrategyFallsBackOnHeapWrites()
+			throws ParsingException, InterproceduralAnalysisException, CallGraphConstructionException,
+			SemanticException {
+		// array accesses are native calls, that do not prevent the sparse
+		// fixpoint from starting
+		Program p = IMPFrontend.processText(ARRAY_ACCESS);
+		assertTrue("Array accesses have been detected as non-local",
+				new DefUseChains(p.getAllCFGs().iterator().next()).onlyLocals());
+		assertOnAllNodes("The strategy did not fall back to the classic fixpoint", p, CFG::fixpoint,
+				cfg -> cfg.setFixpointStrategy(FixpointStrategy.SPARSE), STRATEGY, AnalysisState::equals);
+	}
+
+	@Test
+	public void testSparseFixpointSkipsUnreachableNodes()
+			throws InterproceduralAnalysisException, CallGraphConstructionException, SemanticException {
+		// the frontend never produces unreachable nodes
+		SourceCodeLocation unknown = new SourceCodeLocation("unknown", 0, 0);
+		Program p = new Program();
+		CFG cfg = new CFG(new CFGDescriptor(unknown, p, false, "foo"));
+		Assignment assign = new Assignment(cfg, unknown, new VariableRef(cfg, unknown, "x"),
+				new Literal(cfg, unknown, 1, Untyped.INSTANCE));
+		Return ret = new Return(cfg, unknown, new VariableRef(cfg, unknown, "x"));
+		Assignment unreachable = new Assignment(cfg, unknown, new VariableRef(cfg, unknown, "x"),
+				new Literal(cfg, unknown, -1, Untyped.INSTANCE));
+		cfg.addNode(assign, true);
+		cfg.addNode(ret);
+		cfg.addNode(unreachable);
+		cfg.addEdge(new SequentialEdge(assign, ret));
+		p.addCFG(cfg);
+
+		assertOnAllNodes("The sparse fixpoint computed a result for an unreachable node", p, CFG::fixpoint,
+				CFG::sparseFixpoint, (classic, sparse) -> classic.getState().equals(sparse.getState()));
+	}
+
+	@Test
+	public void testLiveVariablesOfStraightLineCode() throws ParsingException {
+		Program p = IMPFrontend.processText(STRAIGHT_LINE);
+		CFG cfg = p.getAllCFGs().iterator().next();
+		DefUseChains chains = new DefUseChains(cfg);
+		LiveVariables liveness = new LiveVariables(cfg, chains);
+
+		Statement sum = null;
+		for (Statement st : cfg.getNodes())
+			if (chains.getDefinitions(st).contains("z"))
+				sum = st;
+		assertTrue("No definition of z found", sum != null);
+		assertEquals("Wrong live variables before " + sum, new HashSet<>(Arrays.asList("x", "y")),
+				liveness.getLiveBefore(sum));
+		assertEquals("Wrong live variables after " + sum, Collections.singleton("z"), liveness.getLiveAfter(sum));
+		assertEquals("Wrong dying variables at " + sum, new HashSet<>(Arrays.asList("x", "y")),
+				liveness.getDyingAfter(sum));
+
+		for (Statement ret : cfg.getNormalExitpoints()) {
+			assertEquals("Wrong live variables before " + ret, Collections.singleton("x"),
+					liveness.getLiveBefore(ret));
+			assertTrue("Variables are live after " + ret, liveness.getLiveAfter(ret).isEmpty());
+		}
+	}
+
+	@Test
+	public void testFixpointWithDeadVariablesPruning()
+			throws ParsingException, InterproceduralAnalysisException, CallGraphConstructionException,
+			SemanticException {
+		Program p = IMPFrontend.processText(STRAIGHT_LINE);
+		CFG cfg = p.getAllCFGs().iterator().next();
+		LiveVariables liveness = new LiveVariables(cfg);
+		CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> classic = run(p, CFG::fixpoint);
+		CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> pruned = run(p, c -> c.setPruneDeadVariables(true), CFG::fixpoint);
+
+		// dead variables are missing from the pruned results
+		for (Statement st : cfg.getNodes()) {
+			ValueEnvironment<Sign> expected = classic.getAnalysisStateAfter(st).getState().getValueState();
+			ValueEnvironment<Sign> actual = pruned.getAnalysisStateAfter(st).getState().getValueState();
+			for (Identifier id : expected.getKeys())
+				if (liveness.getLiveAfter(st).contains(id.getName()))
+					assertTrue("The value of " + id + " after '" + st + "' is not sound w.r.t. the classic one",
+							expected.getState(id).lessOrEqual(actual.getState(id)));
+		}
+
+		// y and z die before the return statement
+		for (Statement ret : cfg.getNormalExitpoints())
+			for (Identifier id : pruned.getAnalysisStateAfter(ret).getState().getValueState().getKeys())
+				assertFalse("The dead variable " + id + " reached '" + ret + "'",
+						id.getName().equals("y") || id.getName().equals("z"));
+	}
+
+	@Test
+	public void testBlockFixpointOnStraightLineCode()
+			throws ParsingException, InterproceduralAnalysisException, CallGraphConstructionException,
+			SemanticException {
+		Program p = IMPFrontend.processText(STRAIGHT_LINE);
+		CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> classic = run(p, CFG::fixpoint);
+		CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> blocks = run(p, CFG::blockFixpoint);
+		for (Statement st : p.getAllCFGs().iterator().next().getNodes())
+			assertEquals("The result of the block fixpoint on '" + st + "' differs from the classic one",
+					classic.getAnalysisStateAfter(st), blocks.getAnalysisStateAfter(st));
+		assertTrue("The recomputed results differ from the classic ones",
+				classic.lessOrEqual(blocks) && blocks.lessOrEqual(classic));
+	}
+
+	@Test
+	public void testBlockFixpointOnNestedLoops()
+			throws ParsingException, InterproceduralAnalysisException, CallGraphConstructionException,
+			SemanticException {
+		assertOnAllNodes("The result of the block fixpoint is not sound w.r.t. the classic one",
+				IMPFrontend.processText(NESTED_LOOPS), CFG::fixpoint, CFG::blockFixpoint,
+				AnalysisState::lessOrEqual);
+	}
+
+	@Test
+	public void testBlockFixpointThroughStrategy()
+			throws ParsingException, InterproceduralAnalysisException, CallGraphConstructionException,
+			SemanticException {
+		assertOnAllNodes("The strategy did not compute the block fixpoint", IMPFrontend.processText(NESTED_LOOPS),
+				CFG::blockFixpoint, cfg -> cfg.setFixpointStrategy(FixpointStrategy.BLOCKS), STRATEGY,
+				AnalysisState::equals);
+	}
+
+	@Test
+	public void testLatticeOperationsOnBlockFixpoints()
+			throws ParsingException, InterproceduralAnalysisException, CallGraphConstructionException,
+			SemanticException {
+		Program p = IMPFrontend.processText(NESTED_LOOPS);
+		CFG cfg = p.getAllCFGs().iterator().next();
+		CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> blocks = run(p, CFG::blockFixpoint);
+		CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> other = run(p, CFG::blockFixpoint);
+		CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> lub = blocks.lub(other);
+		CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> relocated = blocks.relocate(cfg);
+		assertTrue("Equal block fixpoints are not comparable", blocks.lessOrEqual(other) && other.lessOrEqual(blocks));
+		assertTrue("The lub of equal block fixpoints differs from them", lub.lessOrEqual(blocks));
+		for (Statement st : cfg.getNodes()) {
+			assertEquals("The lub of equal block fixpoints changed the result of '" + st + "'",
+					blocks.getAnalysisStateAfter(st), lub.getAnalysisStateAfter(st));
+			assertEquals("The relocated block fixpoint changed the result of '" + st + "'",
+					blocks.getAnalysisStateAfter(st), relocated.getAnalysisStateAfter(st));
+		}
+	}
+
+	@Test
+	public void testCachedDerivedStates()
+			throws ParsingException, InterproceduralAnalysisException, CallGraphConstructionException,
+			SemanticException {
+		Program p = IMPFrontend.processText(NESTED_LOOPS);
+		CFG cfg = p.getAllCFGs().iterator().next();
+		CacheStatistics statistics = new CacheStatistics();
+		CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> result = run(p, c -> c.setCacheStatistics(statistics), CFG::fixpoint);
+		long hits = statistics.getHits();
+		assertSame("The exit state has not been cached", result.getExitState(), result.getExitState());
+		assertSame("The entry state has not been cached", result.getEntryState(), result.getEntryState());
+		for (Statement st : cfg.getNodes())
+			if (cfg.predecessorsOf(st).size() > 1) {
+				AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+						ValueEnvironment<Sign>> before = result.bottom().getAnalysisStateAfter(st);
+				for (Statement pred : cfg.predecessorsOf(st))
+					before = before.lub(result.getAnalysisStateAfter(pred));
+				assertEquals("Wrong state before '" + st + "'", before, result.getAnalysisStateBefore(st));
+				assertSame("The state before '" + st + "' has not been cached",
+						result.getAnalysisStateBefore(st), result.getAnalysisStateBefore(st));
+			}
+		assertTrue("No cache hits recorded", statistics.getHits() > hits);
+	}
+
+	@Test
+	public void testCacheSettingsArePerCfg()
+			throws ParsingException, InterproceduralAnalysisException, CallGraphConstructionException,
+			SemanticException {
+		Program p1 = IMPFrontend.processText(NESTED_LOOPS);
+		Program p2 = IMPFrontend.processText(NESTED_LOOPS);
+		CFG bounded = p1.getAllCFGs().iterator().next();
+		CFG unbounded = p2.getAllCFGs().iterator().next();
+		CacheStatistics boundedStatistics = new CacheStatistics();
+		CacheStatistics unboundedStatistics = new CacheStatistics();
+
+		CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> first = run(p1, cfg -> {
+			cfg.setCachedStatesLimit(1);
+			cfg.setCacheStatistics(boundedStatistics);
+		}, CFG::fixpoint);
+		List<Statement> joins = new ArrayList<>();
+		for (Statement st : bounded.getNodes())
+			if (bounded.predecessorsOf(st).size() > 1)
+				joins.add(st);
+		assertTrue("Not enough join points", joins.size() > 1);
+		// the state before the second join point evicts the first one
+		first.getAnalysisStateBefore(joins.get(0));
+		first.getAnalysisStateBefore(joins.get(1));
+		first.getAnalysisStateBefore(joins.get(0));
+		assertEquals("Wrong number of hits", 0, boundedStatistics.getHits());
+		assertEquals("Wrong number of misses", 3, boundedStatistics.getMisses());
+		assertEquals("The counters of other cfgs have been updated", 0,
+				unboundedStatistics.getHits() + unboundedStatistics.getMisses());
+
+		CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> second = run(p2, cfg -> cfg.setCacheStatistics(unboundedStatistics), CFG::fixpoint);
+		Map<Integer, Statement> statements = unbounded.getStatementsByOffset();
+		second.getAnalysisStateBefore(statements.get(joins.get(0).getOffset()));
+		second.getAnalysisStateBefore(statements.get(joins.get(1).getOffset()));
+		second.getAnalysisStateBefore(statements.get(joins.get(0).getOffset()));
+		assertEquals("Wrong number of hits", 1, unboundedStatistics.getHits());
+		assertEquals("Wrong number of misses", 2, unboundedStatistics.getMisses());
+		assertEquals("The counters of other cfgs have been updated", 3,
+				boundedStatistics.getHits() + boundedStatistics.getMisses());
+	}
+
+	@Test
+	public void testFixpointDroppingInnerResults()
+			throws ParsingException, InterproceduralAnalysisException, CallGraphConstructionException,
+			SemanticException {
+		Program p = IMPFrontend.processText(STRAIGHT_LINE);
+		CFG cfg = p.getAllCFGs().iterator().next();
+		CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> classic = run(p, CFG::fixpoint);
+		CFGWithAnalysisResults<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> dropped = run(p, c -> c.setInnerResultsFilter(st -> false), CFG::fixpoint);
+		for (Statement st : cfg.getNodes()) {
+			assertEquals("The result of '" + st + "' differs from the classic one",
+					classic.getAnalysisStateAfter(st), dropped.getAnalysisStateAfter(st));
+			if (st instanceof Assignment) {
+				Statement right = ((Assignment) st).getRight();
+				assertFalse("The result of the right-hand side of '" + st + "' is missing",
+						classic.getAnalysisStateAfter(right).isBottom());
+				try {
+					dropped.getAnalysisStateAfter(right);
+					fail("The result of the right-hand side of '" + st + "' has been retained");
+				} catch (IllegalStateException e) {
+					// expected: dropped results are not silently bottom
+				}
+			}
+		}
+	}
 }
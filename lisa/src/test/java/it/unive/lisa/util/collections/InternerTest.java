@@ -0,0 +1,103 @@
+package it.unive.lisa.util.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import it.unive.lisa.analysis.AnalysisState;
+import it.unive.lisa.analysis.SemanticException;
+import it.unive.lisa.analysis.SimpleAbstractState;
+import it.unive.lisa.analysis.impl.heap.MonolithicHeap;
+import it.unive.lisa.analysis.impl.numeric.Sign;
+import it.unive.lisa.analysis.lattices.ExpressionSet;
+import it.unive.lisa.analysis.nonrelational.value.ValueEnvironment;
+import it.unive.lisa.caches.Caches;
+import it.unive.lisa.program.SourceCodeLocation;
+import it.unive.lisa.symbolic.value.Constant;
+import it.unive.lisa.symbolic.value.Variable;
+import it.unive.lisa.type.Type;
+import it.unive.lisa.type.Untyped;
+import it.unive.lisa.util.collections.externalSet.ExternalSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+
+public class InternerTest {
+
+	@Test
+	public void testEqualElementsAreShared() {
+		Interner<Object> interner = new Interner<>();
+		String first = new String("foo");
+		String second = new String("foo");
+		assertNotSame(first, second);
+
+		assertSame(first, interner.intern(first));
+		assertSame(first, interner.intern(second));
+		assertSame(first, interner.intern(new String("foo")));
+		assertNull(interner.intern(null));
+		assertEquals(1, interner.size());
+
+		interner.clear();
+		assertSame(second, interner.intern(second));
+	}
+
+	@Test
+	public void testStatesAreInternedWithTheirComponents() {
+		Interner<Object> interner = new Interner<>();
+		MonolithicHeap heap = new MonolithicHeap();
+		SourceCodeLocation location = new SourceCodeLocation("unknown", 0, 0);
+		AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> first = new AnalysisState<>(
+						new SimpleAbstractState<>(heap, new ValueEnvironment<>(new Sign())),
+						new ExpressionSet<>(new Constant(Untyped.INSTANCE, 1, location)));
+		AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> second = new AnalysisState<>(
+						new SimpleAbstractState<>(heap, new ValueEnvironment<>(new Sign())),
+						new ExpressionSet<>(new Constant(Untyped.INSTANCE, 1, location)));
+		AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> third = new AnalysisState<>(
+						new SimpleAbstractState<>(heap, new ValueEnvironment<>(new Sign())),
+						new ExpressionSet<>(new Constant(Untyped.INSTANCE, 2, location)));
+
+		AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>> interned = first.intern(interner);
+		assertEquals(first, interned);
+		assertSame(interned, second.intern(interner));
+		// different states still share equal components
+		assertNotSame(interned, third.intern(interner));
+		assertSame(interned.getState(), third.intern(interner).getState());
+		assertSame(interned.getState().getValueState(), third.intern(interner).getState().getValueState());
+	}
+
+	@Test
+	public void testInterningStoredStatesSharesEqualEnvironments() throws SemanticException {
+		// the results of a cfg analyzed in many contexts often contain equal
+		// states, that are computed independently
+		int contexts = 500, variables = 50;
+		SourceCodeLocation location = new SourceCodeLocation("unknown", 0, 0);
+		ExternalSet<Type> untyped = Caches.types().mkSingletonSet(Untyped.INSTANCE);
+		Interner<Object> interner = new Interner<>();
+		List<AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+				ValueEnvironment<Sign>>> stored = new ArrayList<>();
+		for (int i = 0; i < contexts; i++) {
+			AnalysisState<SimpleAbstractState<MonolithicHeap, ValueEnvironment<Sign>>, MonolithicHeap,
+					ValueEnvironment<Sign>> state = new AnalysisState<>(
+							new SimpleAbstractState<>(new MonolithicHeap(), new ValueEnvironment<>(new Sign())),
+							new ExpressionSet<>());
+			for (int v = 0; v < variables; v++)
+				state = state.assign(new Variable(untyped, "v" + v, location),
+						new Constant(Untyped.INSTANCE, i % 3 - 1, location), null);
+			stored.add(state.intern(interner));
+		}
+
+		// only one environment for each distinct content is retained, instead
+		// of one for each context
+		Set<ValueEnvironment<Sign>> environments = Collections.newSetFromMap(new IdentityHashMap<>());
+		stored.forEach(state -> environments.add(state.getState().getValueState()));
+		assertEquals(3, environments.size());
+	}
+}
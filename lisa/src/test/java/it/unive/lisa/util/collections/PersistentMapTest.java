@@ -0,0 +1,150 @@
+package it.unive.lisa.util.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import org.junit.Test;
+
+public class PersistentMapTest {
+
+	private static class Colliding {
+		private final int id;
+
+		private Colliding(int id) {
+			this.id = id;
+		}
+
+		@Override
+		public int hashCode() {
+			return id % 3;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Colliding && ((Colliding) obj).id == id;
+		}
+	}
+
+	@Test
+	public void testBehavesLikeHashMap() {
+		Random random = new Random(42);
+		Map<Integer, Integer> expected = new HashMap<>();
+		PersistentMap<Integer, Integer> actual = new PersistentMap<>();
+		for (int i = 0; i < 20000; i++) {
+			int key = random.nextInt(2000) - 1000;
+			if (random.nextInt(3) == 0)
+				assertEquals(expected.remove(key), actual.remove(key));
+			else
+				assertEquals(expected.put(key, i), actual.put(key, i));
+			assertEquals(expected.size(), actual.size());
+		}
+
+		assertEquals(expected, actual);
+		assertEquals(actual, expected);
+		assertEquals(expected.hashCode(), actual.hashCode());
+		for (int key = -1000; key < 1000; key++)
+			assertEquals(expected.get(key), actual.get(key));
+	}
+
+	@Test
+	public void testCopiesAreIndependent() {
+		PersistentMap<String, Integer> original = new PersistentMap<>();
+		for (int i = 0; i < 100; i++)
+			original.put("k" + i, i);
+
+		PersistentMap<String, Integer> copy = new PersistentMap<>(original);
+		copy.put("k0", -1);
+		copy.put("new", 100);
+		copy.remove("k1");
+
+		assertEquals(100, original.size());
+		assertEquals(Integer.valueOf(0), original.get("k0"));
+		assertEquals(Integer.valueOf(1), original.get("k1"));
+		assertFalse(original.containsKey("new"));
+
+		assertEquals(100, copy.size());
+		assertEquals(Integer.valueOf(-1), copy.get("k0"));
+		assertFalse(copy.containsKey("k1"));
+		assertTrue(copy.containsKey("new"));
+	}
+
+	@Test
+	public void testCollisionsAndNulls() {
+		PersistentMap<Object, String> map = new PersistentMap<>();
+		for (int i = 0; i < 10; i++)
+			map.put(new Colliding(i), "v" + i);
+		map.put(null, "null");
+		map.put("key", null);
+
+		assertEquals(12, map.size());
+		assertEquals("v7", map.get(new Colliding(7)));
+		assertEquals("null", map.get(null));
+		assertTrue(map.containsKey("key"));
+		assertNull(map.get("key"));
+
+		for (int i = 0; i < 10; i += 2)
+			assertEquals("v" + i, map.remove(new Colliding(i)));
+		assertEquals(7, map.size());
+		assertNull(map.get(new Colliding(4)));
+		assertEquals("v5", map.get(new Colliding(5)));
+	}
+
+	@Test
+	public void testIteratorRemove() {
+		PersistentMap<Integer, Integer> map = new PersistentMap<>();
+		for (int i = 0; i < 500; i++)
+			map.put(i, i);
+
+		int visited = 0;
+		for (Iterator<Entry<Integer, Integer>> it = map.entrySet().iterator(); it.hasNext();) {
+			Entry<Integer, Integer> e = it.next();
+			visited++;
+			if (e.getKey() % 2 == 0)
+				it.remove();
+		}
+
+		assertEquals(500, visited);
+		assertEquals(250, map.size());
+		for (int i = 0; i < 500; i++)
+			assertEquals(i % 2 != 0, map.containsKey(i));
+	}
+
+	@Test
+	public void testEntriesNotShared() {
+		PersistentMap<Integer, String> original = new PersistentMap<>();
+		for (int i = 0; i < 1000; i++)
+			original.put(i, "v" + i);
+
+		PersistentMap<Integer, String> copy = new PersistentMap<>(original);
+		assertTrue(copy.entriesNotSharedWith(original).isEmpty());
+
+		copy.put(5, "changed");
+		copy.put(2000, "new");
+		copy.put(7, new String("v7"));
+		copy.put(8, original.get(8));
+		copy.remove(9);
+
+		Map<Integer, String> diff = new HashMap<>();
+		for (Entry<Integer, String> e : copy.entriesNotSharedWith(original))
+			diff.put(e.getKey(), e.getValue());
+		assertEquals(3, diff.size());
+		assertEquals("changed", diff.get(5));
+		assertEquals("new", diff.get(2000));
+		assertEquals("v7", diff.get(7));
+
+		Map<Integer, String> reverse = new HashMap<>();
+		for (Entry<Integer, String> e : original.entriesNotSharedWith(copy))
+			reverse.put(e.getKey(), e.getValue());
+		assertEquals(3, reverse.size());
+		assertTrue(reverse.containsKey(5));
+		assertTrue(reverse.containsKey(7));
+		assertTrue(reverse.containsKey(9));
+	}
+}
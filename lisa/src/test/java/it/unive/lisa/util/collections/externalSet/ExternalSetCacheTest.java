@@ -0,0 +1,131 @@
+package it.unive.lisa.util.collections.externalSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+import org.junit.Test;
+
+public class ExternalSetCacheTest {
+
+	@Test
+	public void testIndexesAreStable() {
+		ExternalSetCache<Object> cache = new ExternalSetCache<Object>();
+		for (int i = 0; i < 1000; i++)
+			assertEquals(i, cache.indexOfOrAdd("e" + i));
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(i, cache.indexOf("e" + i));
+			assertEquals("e" + i, cache.get(i));
+		}
+
+		assertEquals(-1, cache.indexOf(null));
+		assertEquals(1000, cache.indexOfOrAdd(null));
+		assertNull(cache.get(1000));
+		assertEquals(1001, cache.size());
+		assertEquals(1001, cache.getAllElements().size());
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(-1, cache.indexOf("e0"));
+		assertEquals(0, cache.indexOfOrAdd("e1"));
+	}
+
+	@Test
+	public void testConcurrentAdditions() throws Exception {
+		ExternalSetCache<Object> cache = new ExternalSetCache<Object>();
+		int threads = 8, elements = 20000;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<int[]>> results = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			int offset = t;
+			results.add(executor.submit(() -> {
+				int[] indexes = new int[elements];
+				// each thread adds the same elements in a different order
+				for (int i = 0; i < elements; i++) {
+					int e = (i + offset * 997) % elements;
+					indexes[e] = cache.indexOfOrAdd(e);
+					assertEquals(Integer.valueOf(e), cache.get(indexes[e]));
+				}
+				return indexes;
+			}));
+		}
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+
+		int[] first = results.get(0).get();
+		for (Future<int[]> result : results) {
+			int[] indexes = result.get();
+			for (int e = 0; e < elements; e++)
+				assertEquals(first[e], indexes[e]);
+		}
+
+		assertEquals(elements, cache.size());
+		Set<Object> all = new HashSet<>(cache.getAllElements());
+		assertEquals(elements, all.size());
+		for (int e = 0; e < elements; e++)
+			assertSame(cache.get(first[e]), cache.get(cache.indexOf(e)));
+	}
+
+	@Test
+	public void testContention() throws Exception {
+		int elements = 1000, lookups = 50000;
+		for (int threads = 1; threads <= 32; threads *= 2) {
+			ExternalSetCache<Object> lockFree = new ExternalSetCache<Object>();
+			long free = time(threads, elements, lookups, lockFree::indexOfOrAdd, lockFree::get);
+			assertEquals(elements, lockFree.size());
+
+			// the cache as accessed before it became lock-free
+			ExternalSetCache<Object> locked = new ExternalSetCache<Object>();
+			Object monitor = new Object();
+			long sync = time(threads, elements, lookups, e -> {
+				synchronized (monitor) {
+					return locked.indexOfOrAdd(e);
+				}
+			}, i -> {
+				synchronized (monitor) {
+					return locked.get(i);
+				}
+			});
+			assertEquals(elements, locked.size());
+
+			System.out.println(threads + " threads: " + TimeUnit.NANOSECONDS.toMillis(free) + "ms lock-free, "
+					+ TimeUnit.NANOSECONDS.toMillis(sync) + "ms synchronized");
+		}
+	}
+
+	/**
+	 * Yields the nanoseconds needed by the given number of threads to each
+	 * perform the given number of lookups over the given number of elements,
+	 * using {@code indexOf} to add an element and {@code get} to read it back.
+	 */
+	private static long time(int threads, int elements, int lookups, ToIntFunction<Object> indexOf,
+			IntFunction<Object> get) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<?>> results = new ArrayList<>();
+		long start = System.nanoTime();
+		for (int t = 0; t < threads; t++) {
+			int offset = t;
+			results.add(executor.submit(() -> {
+				for (int i = 0; i < lookups; i++) {
+					Integer e = (i + offset * 997) % elements;
+					assertEquals(e, get.apply(indexOf.applyAsInt(e)));
+				}
+			}));
+		}
+		for (Future<?> result : results)
+			result.get();
+		long elapsed = System.nanoTime() - start;
+		executor.shutdown();
+		return elapsed;
+	}
+}
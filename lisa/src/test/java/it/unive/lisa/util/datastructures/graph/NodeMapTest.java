@@ -0,0 +1,114 @@
+package it.unive.lisa.util.datastructures.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import it.unive.lisa.program.CompilationUnit;
+import it.unive.lisa.program.SourceCodeLocation;
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.CFGDescriptor;
+import it.unive.lisa.program.cfg.statement.NoOp;
+import it.unive.lisa.program.cfg.statement.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import org.junit.Test;
+
+public class NodeMapTest {
+
+	private static final SourceCodeLocation UNKNOWN = new SourceCodeLocation("unknown", 0, 0);
+
+	private static List<Statement> mkNodes(int count, boolean numbered) {
+		CompilationUnit unit = new CompilationUnit(UNKNOWN, "foo", false);
+		CFG cfg = new CFG(new CFGDescriptor(UNKNOWN, unit, true, "foo"));
+		List<Statement> nodes = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			NoOp noop = new NoOp(cfg, UNKNOWN);
+			if (numbered)
+				cfg.addNode(noop, i == 0);
+			nodes.add(noop);
+		}
+		return nodes;
+	}
+
+	@Test
+	public void testBehavesLikeHashMap() {
+		List<Statement> nodes = mkNodes(200, true);
+		// same offsets as the ones above, and no offsets at all
+		nodes.addAll(mkNodes(50, true));
+		nodes.addAll(mkNodes(50, false));
+
+		Random random = new Random(42);
+		Map<Statement, Integer> expected = new HashMap<>();
+		NodeMap<Statement, Integer> actual = new NodeMap<>();
+		for (int i = 0; i < 10000; i++) {
+			Statement key = nodes.get(random.nextInt(nodes.size()));
+			if (random.nextInt(3) == 0)
+				assertEquals(expected.remove(key), actual.remove(key));
+			else
+				assertEquals(expected.put(key, i), actual.put(key, i));
+			assertEquals(expected.size(), actual.size());
+		}
+
+		assertEquals(expected, actual);
+		assertEquals(actual, expected);
+		for (Statement node : nodes) {
+			assertEquals(expected.get(node), actual.get(node));
+			assertEquals(expected.containsKey(node), actual.containsKey(node));
+		}
+		assertEquals(expected, new NodeMap<>(actual));
+	}
+
+	@Test
+	public void testCopiesAreIndependent() {
+		List<Statement> nodes = mkNodes(20, true);
+		NodeMap<Statement, String> original = new NodeMap<>();
+		for (int i = 10; i >= 0; i--)
+			original.put(nodes.get(i), "v" + i);
+
+		NodeMap<Statement, String> copy = new NodeMap<>(original);
+		copy.put(nodes.get(0), "changed");
+		copy.put(nodes.get(15), "new");
+		copy.remove(nodes.get(1));
+
+		assertEquals(11, original.size());
+		assertEquals("v0", original.get(nodes.get(0)));
+		assertEquals("v1", original.get(nodes.get(1)));
+		assertFalse(original.containsKey(nodes.get(15)));
+
+		assertEquals(11, copy.size());
+		assertEquals("changed", copy.get(nodes.get(0)));
+		assertNull(copy.get(nodes.get(1)));
+		assertTrue(copy.containsKey(nodes.get(15)));
+	}
+
+	@Test
+	public void testIteratorRemove() {
+		List<Statement> nodes = mkNodes(100, true);
+		nodes.addAll(mkNodes(10, false));
+		NodeMap<Statement, Integer> map = new NodeMap<>();
+		for (int i = 0; i < nodes.size(); i++)
+			map.put(nodes.get(i), i);
+
+		int visited = 0;
+		for (Iterator<Entry<Statement, Integer>> it = map.entrySet().iterator(); it.hasNext();) {
+			Entry<Statement, Integer> e = it.next();
+			visited++;
+			if (e.getValue() % 2 == 0)
+				it.remove();
+			else
+				e.setValue(-e.getValue());
+		}
+
+		assertEquals(110, visited);
+		assertEquals(55, map.size());
+		for (int i = 0; i < nodes.size(); i++)
+			assertEquals(i % 2 == 0 ? null : Integer.valueOf(-i), map.get(nodes.get(i)));
+	}
+}
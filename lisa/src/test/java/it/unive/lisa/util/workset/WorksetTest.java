@@ -5,6 +5,13 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import it.unive.lisa.program.CompilationUnit;
+import it.unive.lisa.program.SourceCodeLocation;
+import it.unive.lisa.program.cfg.CFG;
+import it.unive.lisa.program.cfg.CFGDescriptor;
+import it.unive.lisa.program.cfg.edge.SequentialEdge;
+import it.unive.lisa.program.cfg.statement.NoOp;
+import it.unive.lisa.program.cfg.statement.Statement;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -98,4 +105,130 @@ public class WorksetTest {
 		linear(ConcurrentFIFOWorkingSet.mk(), false, "a", "b", "c", "d", "e", "f", "g", "h", "i");
 		random(ConcurrentFIFOWorkingSet.mk(), false, "a", "b", "c", "d", "e", "f", "g", "h", "i");
 	}
+
+	@Test
+	public void UniqueWsTest() {
+		linear(UniqueWorkingSet.mk(FIFOWorkingSet.mk()), false, loop());
+		linear(UniqueWorkingSet.mk(LIFOWorkingSet.mk()), true, loop());
+
+		Statement[] nodes = loop();
+		WorkingSet<Statement> ws = UniqueWorkingSet.mk(FIFOWorkingSet.mk());
+		ws.push(nodes[0]);
+		ws.push(nodes[1]);
+		ws.push(nodes[0]);
+		assertEquals("A pending node has been pushed twice", 2, ws.size());
+		assertSame(nodes[0], ws.pop());
+		ws.push(nodes[0]);
+		assertEquals("A popped node could not be pushed again", 2, ws.size());
+		assertSame(nodes[1], ws.pop());
+		assertSame(nodes[0], ws.pop());
+		assertTrue(ws.isEmpty());
+	}
+
+	@Test
+	public void UniqueWsWithSameOffsetsTest() {
+		// nodes of different cfgs share their offsets
+		Statement[] first = loop(), second = loop();
+		assertEquals(first[0].getOffset(), second[0].getOffset());
+
+		WorkingSet<Statement> ws = UniqueWorkingSet.mk(FIFOWorkingSet.mk());
+		ws.push(first[0]);
+		ws.push(second[0]);
+		ws.push(second[0]);
+		ws.push(first[0]);
+		assertEquals("A node with the offset of a pending one has been dropped", 2, ws.size());
+		assertSame(first[0], ws.pop());
+		ws.push(second[0]);
+		assertEquals("A pending node has been pushed twice", 1, ws.size());
+		ws.push(first[0]);
+		assertSame(second[0], ws.pop());
+		assertSame(first[0], ws.pop());
+		assertTrue(ws.isEmpty());
+	}
+
+	@Test
+	public void ReevaluationsTest() {
+		int branches = 10;
+		Statement[] nodes = diamond(branches);
+		CFG cfg = nodes[0].getCFG();
+
+		// the join and the exit are evaluated once per branch
+		assertEquals(1 + 3 * branches, evaluations(FIFOWorkingSet.mk(), nodes[0]));
+		assertEquals(1 + branches + 2, evaluations(UniqueWorkingSet.mk(FIFOWorkingSet.mk()), nodes[0]));
+		assertEquals(1 + branches + 2, evaluations(PriorityWorkingSet.reversePostOrder(cfg), nodes[0]));
+	}
+
+	/**
+	 * Counts how many nodes are evaluated by a worklist-based visit starting
+	 * at the given entry, that pushes the followers of each evaluated node.
+	 */
+	private static int evaluations(WorkingSet<Statement> ws, Statement entry) {
+		int evaluations = 0;
+		ws.push(entry);
+		while (!ws.isEmpty()) {
+			Statement current = ws.pop();
+			evaluations++;
+			for (Statement follower : current.getCFG().followersOf(current))
+				ws.push(follower);
+		}
+		return evaluations;
+	}
+
+	@Test
+	public void PriorityWsTest() {
+		Statement[] nodes = loop();
+		CFG cfg = nodes[0].getCFG();
+		Statement outside = new NoOp(cfg, nodes[0].getLocation());
+
+		WorkingSet<Statement> ws = PriorityWorkingSet.reversePostOrder(cfg);
+		ws.push(outside);
+		for (int i = nodes.length - 1; i >= 0; i--) {
+			ws.push(nodes[i]);
+			ws.push(nodes[i]);
+		}
+		assertEquals("A pending node has been pushed twice", nodes.length + 1, ws.size());
+		assertSame(nodes[0], ws.pop());
+		assertSame(nodes[1], ws.pop());
+		ws.pop();
+		ws.pop();
+		assertSame("Nodes outside of the order should come last", outside, ws.pop());
+		assertTrue(ws.isEmpty());
+
+		// the loop made of nodes 1 and 2 comes first
+		linear(PriorityWorkingSet.loopDepth(cfg), false, nodes[1], nodes[2], nodes[0], nodes[3]);
+	}
+
+	private static Statement[] diamond(int branches) {
+		SourceCodeLocation unknown = new SourceCodeLocation("unknown", 0, 0);
+		CompilationUnit unit = new CompilationUnit(unknown, "foo", false);
+		CFG cfg = new CFG(new CFGDescriptor(unknown, unit, true, "foo"));
+		Statement entry = new NoOp(cfg, unknown), join = new NoOp(cfg, unknown), exit = new NoOp(cfg, unknown);
+		cfg.addNode(entry, true);
+		cfg.addNode(join);
+		cfg.addNode(exit);
+		for (int i = 0; i < branches; i++) {
+			Statement branch = new NoOp(cfg, unknown);
+			cfg.addNode(branch);
+			cfg.addEdge(new SequentialEdge(entry, branch));
+			cfg.addEdge(new SequentialEdge(branch, join));
+		}
+		cfg.addEdge(new SequentialEdge(join, exit));
+		return new Statement[] { entry, join, exit };
+	}
+
+	private static Statement[] loop() {
+		SourceCodeLocation unknown = new SourceCodeLocation("unknown", 0, 0);
+		CompilationUnit unit = new CompilationUnit(unknown, "foo", false);
+		CFG cfg = new CFG(new CFGDescriptor(unknown, unit, true, "foo"));
+		Statement[] nodes = new Statement[4];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = new NoOp(cfg, unknown);
+			cfg.addNode(nodes[i], i == 0);
+		}
+		cfg.addEdge(new SequentialEdge(nodes[0], nodes[1]));
+		cfg.addEdge(new SequentialEdge(nodes[1], nodes[2]));
+		cfg.addEdge(new SequentialEdge(nodes[2], nodes[1]));
+		cfg.addEdge(new SequentialEdge(nodes[1], nodes[3]));
+		return nodes;
+	}
 }